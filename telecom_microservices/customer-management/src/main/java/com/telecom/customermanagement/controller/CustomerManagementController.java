@@ -4,6 +4,7 @@ import com.telecom.customermanagement.model.*;
 import com.telecom.customermanagement.service.*;
 import com.telecom.customermanagement.config.FeatureFlagConstants;
 import com.telecom.common.FeatureFlagReader;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -204,6 +205,7 @@ public class CustomerManagementController {
             Map<String, Object> response = new HashMap<>();
             response.put("contractId", contractId);
             response.put("status", "RENEWED");
+            response.put("endDate", contract.getEndDate());
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
             return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
@@ -223,6 +225,40 @@ public class CustomerManagementController {
         }
     }
 
+    /**
+     * Contracts expiring within a window - Feature flag protected
+     */
+    @GetMapping("/contracts/expiring")
+    public ResponseEntity<?> getContractsExpiring(@RequestParam(defaultValue = "0") int fromDays,
+                                                  @RequestParam(defaultValue = "30") int withinDays,
+                                                  @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(service.getContractsExpiring(fromDays, withinDays, Math.max(1, Math.min(limit, 1000))));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Renew or expire contracts that reached their end date - Feature flag protected
+     */
+    @PostMapping("/contracts/renewals/run")
+    public ResponseEntity<Map<String, Object>> runContractRenewals() {
+        try {
+            return ResponseEntity.ok(service.runContractRenewals());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Contract renewal scheduler statistics
+     */
+    @GetMapping("/contracts/renewals/stats")
+    public ResponseEntity<Map<String, Object>> getContractRenewalStats() {
+        return ResponseEntity.ok(service.getContractRenewalStats());
+    }
+
     /**
      * Update customer preferences - Feature flag protected
      */
@@ -252,6 +288,55 @@ public class CustomerManagementController {
         }
     }
 
+    /**
+     * Accrue loyalty points for a purchase - Feature flag protected
+     */
+    @PostMapping("/{customerId}/loyalty/accrue")
+    public ResponseEntity<Map<String, Object>> accrueLoyaltyPoints(@PathVariable String customerId, @RequestParam long points) {
+        try {
+            return ResponseEntity.ok(service.accrueLoyaltyPoints(customerId, points));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Redeem loyalty points - Feature flag protected
+     */
+    @PostMapping("/{customerId}/loyalty/redeem")
+    public ResponseEntity<Map<String, Object>> redeemLoyaltyPoints(@PathVariable String customerId, @RequestParam long points) {
+        try {
+            return ResponseEntity.ok(service.redeemLoyaltyPoints(customerId, points));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Loyalty balance and audit trail - Feature flag protected
+     */
+    @GetMapping("/{customerId}/loyalty")
+    public ResponseEntity<Map<String, Object>> getLoyaltyAccount(@PathVariable String customerId,
+                                                                 @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(service.getLoyaltyAccount(customerId, Math.max(1, Math.min(limit, 1000))));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Run monthly loyalty accrual for all enrolled customers - Feature flag protected
+     */
+    @PostMapping("/loyalty/monthly-accrual")
+    public ResponseEntity<Map<String, Object>> runMonthlyLoyaltyAccrual() {
+        try {
+            return ResponseEntity.ok(service.runMonthlyLoyaltyAccrual());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Segment customers - Feature flag protected
      */
@@ -295,6 +380,60 @@ public class CustomerManagementController {
         }
     }
 
+    /**
+     * Re-run the credit check for a customer - Feature flag protected
+     */
+    @PostMapping("/{customerId}/credit-check")
+    public ResponseEntity<?> recheckCredit(@PathVariable String customerId) {
+        try {
+            return ResponseEntity.ok(service.recheckCredit(customerId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Credit check cache and bureau call statistics
+     */
+    @GetMapping("/credit-check/stats")
+    public ResponseEntity<Map<String, Object>> getCreditCheckStats() {
+        return ResponseEntity.ok(service.getCreditCheckStats());
+    }
+
+    /**
+     * Typeahead customer lookup by partial name, phone number or MSISDN
+     */
+    @GetMapping("/lookup")
+    public ResponseEntity<List<Map<String, Object>>> lookupCustomers(@RequestParam String q,
+                                                                     @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(service.lookupCustomers(q, Math.max(1, Math.min(limit, 100))));
+    }
+
+    /**
+     * Lookup index size
+     */
+    @GetMapping("/lookup/stats")
+    public ResponseEntity<Map<String, Object>> getLookupIndexStats() {
+        return ResponseEntity.ok(service.getLookupIndexStats());
+    }
+
+    /**
+     * Customer-360 view served as pre-serialized JSON
+     */
+    @GetMapping(value = "/{customerId}/view360", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getCustomer360(@PathVariable String customerId) {
+        byte[] view = service.getCustomer360(customerId);
+        return view != null ? ResponseEntity.ok(view) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Customer-360 cache hit rate and staleness
+     */
+    @GetMapping("/view360/stats")
+    public ResponseEntity<Map<String, Object>> getCustomer360Stats() {
+        return ResponseEntity.ok(service.getCustomer360Stats());
+    }
+
     /**
      * Export customer data - Feature flag protected
      */
@@ -325,6 +464,105 @@ public class CustomerManagementController {
         }
     }
 
+    /**
+     * Submit a bulk registration job - Feature flag protected
+     */
+    @PostMapping("/bulk-registrations")
+    public ResponseEntity<Map<String, Object>> submitBulkRegistration(@RequestBody List<Map<String, Object>> customers) {
+        try {
+            return ResponseEntity.accepted().body(service.submitBulkRegistration(customers));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Per-stage bulk registration metrics
+     */
+    @GetMapping("/bulk-registrations/metrics")
+    public ResponseEntity<Map<String, Object>> getBulkRegistrationMetrics() {
+        return ResponseEntity.ok(service.getBulkRegistrationMetrics());
+    }
+
+    /**
+     * Progress of a bulk registration job
+     */
+    @GetMapping("/bulk-registrations/{jobId}")
+    public ResponseEntity<Map<String, Object>> getBulkRegistrationStatus(@PathVariable String jobId) {
+        Map<String, Object> status = service.getBulkRegistrationStatus(jobId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Ingest a batch of call-detail records - Feature flag protected
+     */
+    @PostMapping("/usage/cdrs")
+    public ResponseEntity<Map<String, Object>> ingestUsageRecords(@RequestBody List<CallDetailRecord> records) {
+        try {
+            return ResponseEntity.ok(service.ingestUsageRecords(records));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Fold buffered usage into subscription metrics now - Feature flag protected
+     */
+    @PostMapping("/usage/flush")
+    public ResponseEntity<Map<String, Object>> flushUsage() {
+        try {
+            return ResponseEntity.ok(service.flushUsage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Usage ingestion pipeline statistics
+     */
+    @GetMapping("/usage/stats")
+    public ResponseEntity<Map<String, Object>> getUsageIngestionStats() {
+        return ResponseEntity.ok(service.getUsageIngestionStats());
+    }
+
+    /**
+     * Tail lifecycle events from the journal by offset
+     */
+    @GetMapping("/events")
+    public ResponseEntity<Map<String, Object>> readLifecycleEvents(
+            @RequestParam(defaultValue = "0") long fromOffset,
+            @RequestParam(defaultValue = "100") int limit) {
+        int boundedLimit = Math.max(1, Math.min(limit, 1000));
+        try {
+            return ResponseEntity.ok(service.readLifecycleEvents(fromOffset, boundedLimit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Customer counts per lifecycle status from the journal projection
+     */
+    @GetMapping("/events/status-counts")
+    public ResponseEntity<Map<String, Object>> getLifecycleStatusCounts() {
+        return ResponseEntity.ok(service.getLifecycleStatusCounts());
+    }
+
+    /**
+     * Lifecycle history of a customer
+     */
+    @GetMapping("/{customerId}/history")
+    public ResponseEntity<Map<String, Object>> getLifecycleHistory(@PathVariable String customerId) {
+        List<CustomerEvent> events = service.getLifecycleHistory(customerId);
+        Map<String, Object> response = new HashMap<>();
+        response.put("customerId", customerId);
+        response.put("count", events.size());
+        response.put("events", events);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Generic create - Legacy support
      */
@@ -476,3 +476,84 @@ class LocalDateTime implements Serializable {
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
 }
 
+/**
+ * Customer lifecycle event types recorded in the event journal.
+ */
+enum CustomerEventType {
+    REGISTERED,
+    ACTIVATED,
+    SUSPENDED,
+    TERMINATED,
+    PROFILE_UPDATED,
+    BILLING_PROFILE_UPDATED
+}
+
+/**
+ * Lifecycle event decoded from the customer event journal.
+ * The offset identifies the record in the journal; consumers resume from nextOffset.
+ */
+class CustomerEvent implements Serializable {
+    private long offset;
+    private long nextOffset;
+    private CustomerEventType eventType;
+    private String customerId;
+    private CustomerStatus status;
+    private String reason;
+    private long timestamp;
+
+    // Getters and setters
+    public long getOffset() { return offset; }
+    public void setOffset(long offset) { this.offset = offset; }
+
+    public long getNextOffset() { return nextOffset; }
+    public void setNextOffset(long nextOffset) { this.nextOffset = nextOffset; }
+
+    public CustomerEventType getEventType() { return eventType; }
+    public void setEventType(CustomerEventType eventType) { this.eventType = eventType; }
+
+    public String getCustomerId() { return customerId; }
+    public void setCustomerId(String customerId) { this.customerId = customerId; }
+
+    public CustomerStatus getStatus() { return status; }
+    public void setStatus(CustomerStatus status) { this.status = status; }
+
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+
+    public long getTimestamp() { return timestamp; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+}
+
+/**
+ * Usage categories carried by call-detail records.
+ */
+enum UsageType {
+    VOICE,              // quantity in minutes
+    SMS,                // quantity in messages
+    DATA,               // quantity in MB
+    VIDEO               // quantity in video call minutes
+}
+
+/**
+ * Call-detail record submitted to the usage ingestion endpoint.
+ */
+class CallDetailRecord implements Serializable {
+    private String customerId;
+    private UsageType usageType;
+    private long quantity;
+    private long timestamp;
+
+    // Getters and setters
+    public String getCustomerId() { return customerId; }
+    public void setCustomerId(String customerId) { this.customerId = customerId; }
+
+    public UsageType getUsageType() { return usageType; }
+    public void setUsageType(UsageType usageType) { this.usageType = usageType; }
+
+    public long getQuantity() { return quantity; }
+    public void setQuantity(long quantity) { this.quantity = quantity; }
+
+    public long getTimestamp() { return timestamp; }
+    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+}
+
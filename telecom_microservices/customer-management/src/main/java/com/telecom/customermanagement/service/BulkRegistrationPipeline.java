@@ -0,0 +1,506 @@
+package com.telecom.customermanagement.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telecom.customermanagement.model.*;
+import com.telecom.common.FeatureFlagReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Staged pipeline for bulk customer registration.
+ *
+ * Every stage (verification, KYC, credit check, ...) has its own worker pool and a
+ * bounded input queue, so slow stages can be given more workers and a full queue
+ * pushes back on the stage before it instead of buffering the whole import in memory.
+ * Stages whose feature flag is off when a job is submitted are skipped for that job.
+ * Customers rejected by any stage are written to a dead-letter file as JSON lines.
+ * Completed jobs stay queryable for {@code completed-job-retention-ms} and are then
+ * dropped the next time a job is submitted.
+ */
+@Component
+public class BulkRegistrationPipeline {
+
+    /**
+     * Work done by one stage on one customer. Throwing a RuntimeException rejects
+     * the customer and routes it to the dead-letter file.
+     */
+    public interface StageAction {
+        void process(TelecomCustomer customer, BulkJob job);
+    }
+
+    /**
+     * Stage definition: a null feature flag means the stage always runs.
+     */
+    public static final class Stage {
+        private final String name;
+        private final String featureFlag;
+        private final int workers;
+        private final StageAction action;
+
+        public Stage(String name, String featureFlag, int workers, StageAction action) {
+            this.name = name;
+            this.featureFlag = featureFlag;
+            this.workers = workers;
+            this.action = action;
+        }
+    }
+
+    @Value("${customer.bulk.queue-capacity:1024}")
+    private int queueCapacity = 1024;
+
+    // Per-stage worker overrides, e.g. "kyc:4,credit-check:8"
+    @Value("${customer.bulk.stage-workers:}")
+    private String stageWorkers = "";
+
+    @Value("${customer.bulk.dead-letter-path:data/bulk-registration-dead-letter.jsonl}")
+    private String deadLetterPath = "data/bulk-registration-dead-letter.jsonl";
+
+    @Value("${customer.bulk.completed-job-retention-ms:3600000}")
+    private long completedJobRetentionMs = 3600000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder deadLetterWriteFailures = new LongAdder();
+    private final LongAdder jobsExpired = new LongAdder();
+
+    private volatile StageRuntime[] stages = new StageRuntime[0];
+    private volatile boolean running = true;
+    private BufferedWriter deadLetterWriter;
+
+    /**
+     * Set up the stages in execution order and start their worker pools.
+     */
+    public synchronized void configure(List<Stage> definitions) {
+        if (stages.length > 0) {
+            throw new IllegalStateException("Bulk registration pipeline is already configured");
+        }
+        Map<String, Integer> overrides = parseStageWorkers(stageWorkers);
+        StageRuntime[] runtimes = new StageRuntime[definitions.size()];
+        for (int i = 0; i < runtimes.length; i++) {
+            Stage stage = definitions.get(i);
+            int workers = Math.max(1, overrides.getOrDefault(stage.name, stage.workers));
+            runtimes[i] = new StageRuntime(i, stage, workers, new ArrayBlockingQueue<>(queueCapacity));
+        }
+        stages = runtimes;
+        for (StageRuntime stage : runtimes) {
+            for (int w = 0; w < stage.workers; w++) {
+                Thread t = new Thread(() -> runWorker(stage), "bulk-" + stage.name + "-" + w);
+                t.setDaemon(true);
+                t.start();
+                threads.add(t);
+            }
+        }
+    }
+
+    /**
+     * Submit a bulk registration job and return immediately. Requests are converted
+     * by {@code intake} and fed into the pipeline on a separate thread.
+     *
+     * @param reservedKeys keys (e.g. emails) already taken before the job starts
+     */
+    public BulkJob submit(List<Map<String, Object>> requests,
+                          Function<Map<String, Object>, TelecomCustomer> intake,
+                          Collection<String> reservedKeys) {
+        StageRuntime[] pipeline = stages;
+        if (pipeline.length == 0) {
+            throw new IllegalStateException("Bulk registration pipeline is not configured");
+        }
+        boolean[] enabled = new boolean[pipeline.length];
+        for (int i = 0; i < pipeline.length; i++) {
+            String flag = pipeline[i].featureFlag;
+            enabled[i] = flag == null || FeatureFlagReader.isFeatureEnabled(flag);
+        }
+
+        expireCompletedJobs();
+        String[] names = new String[pipeline.length];
+        for (int i = 0; i < pipeline.length; i++) names[i] = pipeline[i].name;
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), requests.size(), names, enabled);
+        if (job.total > 0) job.claimedKeys.addAll(reservedKeys);
+        jobs.put(job.jobId, job);
+
+        Thread feeder = new Thread(() -> feed(job, requests, intake), "bulk-intake-" + job.jobId.substring(0, 8));
+        feeder.setDaemon(true);
+        feeder.start();
+        return job;
+    }
+
+    public BulkJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Per-stage throughput, latency, queue depth and skip/failure counts.
+     */
+    public Map<String, Object> metrics() {
+        List<Map<String, Object>> stageMetrics = new ArrayList<>();
+        for (StageRuntime stage : stages) {
+            stageMetrics.add(stage.metrics());
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("stages", stageMetrics);
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("jobs", jobs.size());
+        metrics.put("jobsExpired", jobsExpired.sum());
+        metrics.put("deadLettered", deadLettered.sum());
+        metrics.put("deadLetterWriteFailures", deadLetterWriteFailures.sum());
+        metrics.put("deadLetterPath", deadLetterPath);
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread t : threads) t.interrupt();
+        closeDeadLetter();
+    }
+
+    // ============ Private Helper Methods ============
+
+    private void expireCompletedJobs() {
+        long cutoff = System.currentTimeMillis() - completedJobRetentionMs;
+        for (Iterator<BulkJob> it = jobs.values().iterator(); it.hasNext(); ) {
+            BulkJob job = it.next();
+            if (job.completedAt != 0 && job.completedAt <= cutoff) {
+                it.remove();
+                jobsExpired.increment();
+            }
+        }
+    }
+
+    private void feed(BulkJob job, List<Map<String, Object>> requests, Function<Map<String, Object>, TelecomCustomer> intake) {
+        int row = 0;
+        try {
+            for (Map<String, Object> request : requests) {
+                TelecomCustomer customer;
+                try {
+                    customer = intake.apply(request);
+                } catch (RuntimeException e) {
+                    deadLetter(job, row++, "intake", request, e);
+                    continue;
+                }
+                if (!forward(new Item(job, row++, customer), 0)) {
+                    job.finish(false);
+                    return;
+                }
+            }
+        } finally {
+            // Rows never handed to the pipeline (shutdown) count as failed
+            for (; row < job.total; row++) job.finish(false);
+            job.intakeCompletedAt = System.currentTimeMillis();
+        }
+    }
+
+    private void runWorker(StageRuntime stage) {
+        while (running) {
+            Item item;
+            try {
+                item = stage.queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (item == null) continue;
+
+            long start = System.nanoTime();
+            try {
+                stage.action.process(item.customer, item.job);
+            } catch (RuntimeException e) {
+                stage.recordFailure(System.nanoTime() - start);
+                deadLetter(item.job, item.row, stage.name, item.customer, e);
+                continue;
+            }
+            stage.recordSuccess(System.nanoTime() - start);
+            if (!forward(item, stage.index + 1)) return;
+        }
+    }
+
+    /**
+     * Hand an item to the next stage enabled for its job, blocking while that stage's
+     * queue is full. Returns false if interrupted during shutdown.
+     */
+    private boolean forward(Item item, int from) {
+        StageRuntime[] pipeline = stages;
+        int next = from;
+        while (next < pipeline.length && !item.job.enabledStages[next]) {
+            pipeline[next].skipped.increment();
+            next++;
+        }
+        if (next == pipeline.length) {
+            complete(item.job, true);
+            return true;
+        }
+        try {
+            pipeline[next].queue.put(item);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void complete(BulkJob job, boolean registered) {
+        if (job.finish(registered)) {
+            flushDeadLetter();
+        }
+    }
+
+    /**
+     * Record a rejected row. Never throws: a dead-letter file that cannot be written
+     * is counted and logged, and the row still counts as failed.
+     */
+    private void deadLetter(BulkJob job, int row, String stage, Object payload, RuntimeException error) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("jobId", job.jobId);
+        entry.put("row", row);
+        entry.put("stage", stage);
+        entry.put("error", error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName());
+        entry.put("timestamp", System.currentTimeMillis());
+        entry.put("payload", payload);
+        try {
+            String line = mapper.writeValueAsString(entry);
+            synchronized (this) {
+                if (deadLetterWriter == null) deadLetterWriter = openDeadLetter();
+                deadLetterWriter.write(line);
+                deadLetterWriter.newLine();
+            }
+        } catch (JsonProcessingException e) {
+            System.err.println("Failed to serialize dead letter for job " + job.jobId + " row " + row + ": " + e.getMessage());
+        } catch (IOException e) {
+            deadLetterWriteFailures.increment();
+            System.err.println("Failed to write bulk registration dead letter for job " + job.jobId + " row " + row
+                + " to " + deadLetterPath + ": " + e.getMessage());
+            discardDeadLetterWriter();
+        } finally {
+            deadLettered.increment();
+            complete(job, false);
+        }
+    }
+
+    private BufferedWriter openDeadLetter() throws IOException {
+        Path path = Paths.get(deadLetterPath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        return Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private synchronized void flushDeadLetter() {
+        try {
+            if (deadLetterWriter != null) deadLetterWriter.flush();
+        } catch (IOException e) {
+            // Called from stage workers, which must keep running
+            deadLetterWriteFailures.increment();
+            System.err.println("Failed to flush bulk registration dead letters to " + deadLetterPath + ": " + e.getMessage());
+            discardDeadLetterWriter();
+        }
+    }
+
+    /**
+     * Drop a writer that failed so the next dead letter reopens the file.
+     */
+    private synchronized void discardDeadLetterWriter() {
+        if (deadLetterWriter == null) return;
+        try {
+            deadLetterWriter.close();
+        } catch (IOException ignored) {
+            // Already failing; the error was reported by the caller
+        }
+        deadLetterWriter = null;
+    }
+
+    private synchronized void closeDeadLetter() {
+        try {
+            if (deadLetterWriter != null) deadLetterWriter.close();
+            deadLetterWriter = null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close bulk registration dead letters", e);
+        }
+    }
+
+    private static Map<String, Integer> parseStageWorkers(String spec) {
+        Map<String, Integer> overrides = new HashMap<>();
+        if (spec == null || spec.isEmpty()) return overrides;
+        for (String part : spec.split(",")) {
+            int colon = part.indexOf(':');
+            if (colon <= 0) continue;
+            overrides.put(part.substring(0, colon).trim(), Integer.parseInt(part.substring(colon + 1).trim()));
+        }
+        return overrides;
+    }
+
+    /**
+     * A bulk registration job. Stages may use {@link #claimKey} for job-wide uniqueness checks.
+     */
+    public static final class BulkJob {
+        private final String jobId;
+        private final int total;
+        private final String[] stageNames;
+        private final boolean[] enabledStages;
+        private final long submittedAt = System.currentTimeMillis();
+        private final Set<String> claimedKeys = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger registered = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile long intakeCompletedAt;
+        private volatile long completedAt;
+
+        BulkJob(String jobId, int total, String[] stageNames, boolean[] enabledStages) {
+            this.jobId = jobId;
+            this.total = total;
+            this.stageNames = stageNames;
+            this.enabledStages = enabledStages;
+            if (total == 0) completedAt = submittedAt;
+        }
+
+        public String getJobId() { return jobId; }
+
+        /**
+         * Atomically claim a key for this job; false if it was already taken.
+         */
+        public boolean claimKey(String key) {
+            return key == null || claimedKeys.add(key);
+        }
+
+        /**
+         * Whether the named stage runs for this job, as decided when it was submitted.
+         */
+        public boolean isStageEnabled(String stage) {
+            for (int i = 0; i < stageNames.length; i++) {
+                if (stageNames[i].equals(stage)) return enabledStages[i];
+            }
+            return false;
+        }
+
+        /**
+         * Record the outcome of one row; returns true when this was the job's last row.
+         */
+        boolean finish(boolean success) {
+            int done = (success ? registered.incrementAndGet() + failed.get() : failed.incrementAndGet() + registered.get());
+            if (done >= total && completedAt == 0) {
+                synchronized (this) {
+                    if (completedAt == 0 && registered.get() + failed.get() >= total) {
+                        completedAt = System.currentTimeMillis();
+                        // Uniqueness checks are only needed while rows are in flight
+                        claimedKeys.clear();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        public Map<String, Object> status() {
+            int ok = registered.get();
+            int ko = failed.get();
+            long end = completedAt != 0 ? completedAt : System.currentTimeMillis();
+            double seconds = Math.max(1, end - submittedAt) / 1000.0;
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("jobId", jobId);
+            status.put("status", completedAt != 0 ? "COMPLETED" : "RUNNING");
+            status.put("total", total);
+            status.put("registered", ok);
+            status.put("failed", ko);
+            status.put("inFlight", total - ok - ko);
+            status.put("submittedAt", submittedAt);
+            status.put("intakeCompletedAt", intakeCompletedAt);
+            status.put("completedAt", completedAt);
+            status.put("rowsPerSecond", Math.round((ok + ko) / seconds));
+            return status;
+        }
+    }
+
+    private static final class Item {
+        private final BulkJob job;
+        private final int row;
+        private final TelecomCustomer customer;
+
+        Item(BulkJob job, int row, TelecomCustomer customer) {
+            this.job = job;
+            this.row = row;
+            this.customer = customer;
+        }
+    }
+
+    private static final class StageRuntime {
+        private final int index;
+        private final String name;
+        private final String featureFlag;
+        private final int workers;
+        private final StageAction action;
+        private final BlockingQueue<Item> queue;
+
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong firstAt = new AtomicLong();
+        private volatile long lastAt;
+
+        StageRuntime(int index, Stage stage, int workers, BlockingQueue<Item> queue) {
+            this.index = index;
+            this.name = stage.name;
+            this.featureFlag = stage.featureFlag;
+            this.workers = workers;
+            this.action = stage.action;
+            this.queue = queue;
+        }
+
+        void recordSuccess(long nanos) {
+            processed.increment();
+            record(nanos);
+        }
+
+        void recordFailure(long nanos) {
+            failed.increment();
+            record(nanos);
+        }
+
+        private void record(long nanos) {
+            long now = System.nanoTime();
+            firstAt.compareAndSet(0, now - nanos);
+            lastAt = now;
+            busyNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> metrics() {
+            long done = processed.sum() + failed.sum();
+            long first = firstAt.get();
+            double elapsedSeconds = first == 0 ? 0 : Math.max(1, lastAt - first) / 1e9;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("stage", name);
+            m.put("featureFlag", featureFlag);
+            m.put("enabled", featureFlag == null || FeatureFlagReader.isFeatureEnabled(featureFlag));
+            m.put("workers", workers);
+            m.put("queueDepth", queue.size());
+            m.put("processed", processed.sum());
+            m.put("failed", failed.sum());
+            m.put("skipped", skipped.sum());
+            m.put("throughputPerSecond", elapsedSeconds == 0 ? 0 : Math.round(done / elapsedSeconds));
+            m.put("avgLatencyMicros", done == 0 ? 0 : busyNanos.sum() / done / 1000);
+            m.put("maxLatencyMicros", maxNanos.get() / 1000);
+            return m;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.telecom.customermanagement.service;
+
+import com.telecom.customermanagement.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of customer contracts by id and by end date.
+ *
+ * Contract lookups by id are a single hash lookup, and contracts still running are
+ * kept in an expiry-ordered skip list so "what expires next" is a range scan over
+ * only the matching contracts. A background job periodically hands contracts that
+ * have reached their end date to the registered {@link RenewalHandler} in batches.
+ */
+@Component
+public class ContractExpiryIndex {
+
+    /**
+     * Decides what happens to a contract that has reached its end date.
+     */
+    public interface RenewalHandler {
+        /**
+         * @return what happened to the contract; {@link Outcome#NOT_DUE} if it was
+         *         renewed or changed after being picked for this run
+         */
+        Outcome onExpiry(String customerId, Contract contract);
+    }
+
+    public enum Outcome { RENEWED, EXPIRED, NOT_DUE }
+
+    /**
+     * Gate checked before each scheduled run (e.g. a feature flag).
+     */
+    public interface RenewalGate {
+        boolean isEnabled();
+    }
+
+    @Value("${customer.contracts.renewal-interval-ms:60000}")
+    private long renewalIntervalMs = 60000;
+
+    @Value("${customer.contracts.renewal-batch-size:500}")
+    private int renewalBatchSize = 500;
+
+    private final Map<String, IndexedContract> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<ExpiryKey> byExpiry = new ConcurrentSkipListSet<>();
+
+    private final AtomicLong renewed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong notDue = new AtomicLong();
+    private final AtomicLong runs = new AtomicLong();
+    private volatile long lastRunAt;
+
+    private volatile RenewalHandler handler;
+    private volatile RenewalGate gate = () -> true;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "contract-renewal");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::processDueQuietly, renewalIntervalMs, renewalIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    public void setRenewalHandler(RenewalHandler handler, RenewalGate gate) {
+        this.handler = handler;
+        this.gate = gate;
+    }
+
+    /**
+     * Add a contract, or refresh its position after its end date or status changed.
+     * Only ACTIVE and RENEWED contracts with an end date are scheduled for expiry.
+     */
+    public void index(String customerId, Contract contract) {
+        IndexedContract entry = new IndexedContract(customerId, contract);
+        IndexedContract previous = byId.put(contract.getContractId(), entry);
+        if (previous != null && previous.scheduledAt != 0) {
+            byExpiry.remove(new ExpiryKey(previous.scheduledAt, contract.getContractId()));
+        }
+        if (contract.getEndDate() != null && isRunning(contract)) {
+            entry.scheduledAt = contract.getEndDate().getTimestamp();
+            byExpiry.add(new ExpiryKey(entry.scheduledAt, contract.getContractId()));
+        }
+    }
+
+    public Contract find(String contractId) {
+        IndexedContract entry = byId.get(contractId);
+        return entry != null ? entry.contract : null;
+    }
+
+    public String customerOf(String contractId) {
+        IndexedContract entry = byId.get(contractId);
+        return entry != null ? entry.customerId : null;
+    }
+
+    public void remove(String contractId) {
+        IndexedContract entry = byId.remove(contractId);
+        if (entry != null && entry.scheduledAt != 0) {
+            byExpiry.remove(new ExpiryKey(entry.scheduledAt, contractId));
+        }
+    }
+
+    /**
+     * Running contracts whose end date (epoch millis) falls in [from, to), earliest first.
+     */
+    public List<Map<String, Object>> expiringBetween(long from, long to, int limit) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ExpiryKey key : byExpiry.subSet(ExpiryKey.lowest(from), ExpiryKey.lowest(to))) {
+            if (result.size() >= limit) break;
+            IndexedContract entry = byId.get(key.contractId);
+            if (entry == null) continue;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("contractId", key.contractId);
+            row.put("customerId", entry.customerId);
+            row.put("endDate", key.endAt);
+            row.put("contractType", entry.contract.getContractType());
+            row.put("contractStatus", entry.contract.getContractStatus());
+            row.put("renewalOption", entry.contract.getRenewalOption());
+            row.put("contractValue", entry.contract.getContractValue());
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Hand every contract whose end date has passed to the renewal handler, one batch at a time.
+     */
+    public synchronized Map<String, Object> processDue() {
+        RenewalHandler target = handler;
+        int renewedNow = 0;
+        int expiredNow = 0;
+        int notDueNow = 0;
+        if (target != null && gate.isEnabled()) {
+            long now = System.currentTimeMillis();
+            List<ExpiryKey> batch;
+            do {
+                batch = new ArrayList<>(renewalBatchSize);
+                for (ExpiryKey key : byExpiry.headSet(ExpiryKey.lowest(now))) {
+                    batch.add(key);
+                    if (batch.size() == renewalBatchSize) break;
+                }
+                for (ExpiryKey key : batch) {
+                    IndexedContract entry = byId.get(key.contractId);
+                    if (entry == null || !byExpiry.remove(key)) continue;
+                    entry.scheduledAt = 0;
+                    switch (target.onExpiry(entry.customerId, entry.contract)) {
+                        case RENEWED: renewedNow++; break;
+                        case EXPIRED: expiredNow++; break;
+                        default: notDueNow++; break;
+                    }
+                }
+            } while (batch.size() == renewalBatchSize);
+        }
+        renewed.addAndGet(renewedNow);
+        expired.addAndGet(expiredNow);
+        notDue.addAndGet(notDueNow);
+        runs.incrementAndGet();
+        lastRunAt = System.currentTimeMillis();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("renewed", renewedNow);
+        result.put("expired", expiredNow);
+        result.put("notDue", notDueNow);
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("indexedContracts", byId.size());
+        stats.put("scheduledForExpiry", byExpiry.size());
+        stats.put("renewed", renewed.get());
+        stats.put("expired", expired.get());
+        stats.put("notDue", notDue.get());
+        stats.put("runs", runs.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("renewalIntervalMs", renewalIntervalMs);
+        stats.put("renewalBatchSize", renewalBatchSize);
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private void processDueQuietly() {
+        try {
+            processDue();
+        } catch (RuntimeException e) {
+            System.err.println("Contract renewal run failed: " + e.getMessage());
+        }
+    }
+
+    private static boolean isRunning(Contract contract) {
+        String status = contract.getContractStatus();
+        return "ACTIVE".equals(status) || "RENEWED".equals(status);
+    }
+
+    private static final class IndexedContract {
+        private final String customerId;
+        private final Contract contract;
+        private volatile long scheduledAt;
+
+        IndexedContract(String customerId, Contract contract) {
+            this.customerId = customerId;
+            this.contract = contract;
+        }
+    }
+
+    /**
+     * Orders by end date, then contract id so equal end dates stay distinct.
+     */
+    private static final class ExpiryKey implements Comparable<ExpiryKey> {
+        private final long endAt;
+        private final String contractId;
+
+        ExpiryKey(long endAt, String contractId) {
+            this.endAt = endAt;
+            this.contractId = contractId;
+        }
+
+        static ExpiryKey lowest(long endAt) {
+            return new ExpiryKey(endAt, "");
+        }
+
+        @Override
+        public int compareTo(ExpiryKey other) {
+            int c = Long.compare(endAt, other.endAt);
+            return c != 0 ? c : contractId.compareTo(other.contractId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ExpiryKey)) return false;
+            ExpiryKey other = (ExpiryKey) o;
+            return endAt == other.endAt && contractId.equals(other.contractId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(endAt) * 31 + contractId.hashCode();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.telecom.customermanagement.service;
+
+import com.telecom.customermanagement.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the external credit bureau.
+ * Returns a report with a score between 600 and 1000. Benchmarks can set a latency
+ * to mimic a paid remote lookup; it is 0 by default so registrations don't wait.
+ */
+@Component
+public class CreditBureauClient {
+
+    @Value("${customer.credit.bureau-latency-ms:0}")
+    private long latencyMs = 0;
+
+    private final AtomicLong calls = new AtomicLong();
+
+    public CreditHistory fetchReport(String identityKey) {
+        calls.incrementAndGet();
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Credit bureau call interrupted");
+            }
+        }
+        CreditHistory report = new CreditHistory();
+        report.setRecordId(UUID.randomUUID().toString());
+        report.setCreditScore(600 + ThreadLocalRandom.current().nextDouble() * 400); // 600-1000
+        report.setCheckDate(new LocalDateTime(System.currentTimeMillis()));
+        report.setStatus("APPROVED");
+        return report;
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    public long getLatencyMs() {
+        return latencyMs;
+    }
+}
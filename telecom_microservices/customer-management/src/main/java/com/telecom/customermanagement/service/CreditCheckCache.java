@@ -0,0 +1,175 @@
+package com.telecom.customermanagement.service;
+
+import com.telecom.customermanagement.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded TTL cache of credit bureau reports, keyed by a hash of the person's
+ * normalized identity.
+ *
+ * Entries expire after the configured TTL and the least recently used entry is
+ * evicted once the cache is full. Concurrent lookups for the same key that miss
+ * are coalesced: the first caller performs the bureau call and the others wait
+ * for its result, so one person never costs more than one call per TTL.
+ */
+@Component
+public class CreditCheckCache {
+
+    @Value("${customer.credit.cache-ttl-ms:86400000}")
+    private long ttlMs = 86400000;
+
+    @Value("${customer.credit.cache-max-entries:100000}")
+    private int maxEntries = 100000;
+
+    private final Map<String, CachedReport> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<CreditHistory>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+
+    /**
+     * Hash of the normalized identity: lowercase trimmed name and email, and the
+     * digits of the MSISDN. Raw personal data never becomes a cache key.
+     */
+    public static String identityKey(String firstName, String lastName, String email, String msisdn) {
+        StringBuilder identity = new StringBuilder();
+        identity.append(normalize(firstName)).append('|')
+            .append(normalize(lastName)).append('|')
+            .append(normalize(email)).append('|');
+        if (msisdn != null) {
+            for (int i = 0; i < msisdn.length(); i++) {
+                char c = msisdn.charAt(i);
+                if (c >= '0' && c <= '9') identity.append(c);
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(identity.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Cached report for the key, or the result of {@code loader} on a miss.
+     * Failed loads are not cached and are rethrown to every waiting caller.
+     */
+    public CreditHistory get(String key, Supplier<CreditHistory> loader) {
+        CreditHistory cached = lookup(key);
+        if (cached != null) return cached;
+
+        CompletableFuture<CreditHistory> mine = new CompletableFuture<>();
+        CompletableFuture<CreditHistory> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            return join(running);
+        }
+        try {
+            // Another caller may have stored the report between our lookup and putIfAbsent
+            cached = lookup(key);
+            if (cached == null) {
+                misses.increment();
+                cached = loader.get();
+                store(key, cached);
+            }
+            mine.complete(cached);
+            return cached;
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public synchronized void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        long c = coalesced.sum();
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("coalesced", c);
+        stats.put("hitRate", h + m + c == 0 ? 0.0 : Math.round((h + c) * 10000.0 / (h + m + c)) / 100.0);
+        stats.put("expirations", expirations.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private synchronized CreditHistory lookup(String key) {
+        CachedReport entry = entries.get(key);
+        if (entry == null) return null;
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            entries.remove(key);
+            expirations.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.report;
+    }
+
+    private synchronized void store(String key, CreditHistory report) {
+        entries.put(key, new CachedReport(report, System.currentTimeMillis() + ttlMs));
+        Iterator<CachedReport> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static CreditHistory join(CompletableFuture<CreditHistory> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class CachedReport {
+        private final CreditHistory report;
+        private final long expiresAt;
+
+        CachedReport(CreditHistory report, long expiresAt) {
+            this.report = report;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.telecom.customermanagement.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache of serialized Customer-360 views.
+ *
+ * A view is assembled and serialized to JSON once, and later reads return the
+ * cached bytes directly. Writes to a customer invalidate its view by bumping a
+ * per-customer version; a view built while a write was in progress is served
+ * once but not cached, so an invalidation is never overwritten by older data.
+ * Views older than the configured max age are rebuilt as a safety net for
+ * writes that do not go through the service.
+ */
+@Component
+public class Customer360Cache {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${customer.view360.max-age-ms:300000}")
+    private long maxAgeMs = 300000;
+
+    private final Map<String, CachedView> views = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expiredRebuilds = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder servedAgeMs = new LongAdder();
+    private final AtomicLong maxServedAgeMs = new AtomicLong();
+    private final LongAdder buildNanos = new LongAdder();
+
+    /**
+     * Serialized view for a customer, built with {@code assembler} on a miss.
+     * Returns null if the assembler returns null (unknown customer).
+     */
+    public byte[] get(String customerId, Supplier<Map<String, Object>> assembler) {
+        long now = System.currentTimeMillis();
+        CachedView view = views.get(customerId);
+        if (view != null) {
+            long age = now - view.builtAt;
+            if (age <= maxAgeMs) {
+                hits.increment();
+                servedAgeMs.add(age);
+                maxServedAgeMs.accumulateAndGet(age, Math::max);
+                return view.json;
+            }
+            expiredRebuilds.increment();
+        }
+        misses.increment();
+
+        AtomicLong version = versions.computeIfAbsent(customerId, k -> new AtomicLong());
+        long before = version.get();
+        long start = System.nanoTime();
+        Map<String, Object> assembled = assembler.get();
+        if (assembled == null) {
+            // Unknown customer: don't keep a version for ids that were only looked up
+            versions.remove(customerId, version);
+            return null;
+        }
+        byte[] json = serialize(assembled);
+        buildNanos.add(System.nanoTime() - start);
+
+        // Only cache if no write happened while the view was being assembled
+        CachedView built = new CachedView(json, now, before);
+        views.compute(customerId, (id, current) ->
+            version.get() == before && (current == null || current.version <= before) ? built : current);
+        return json;
+    }
+
+    /**
+     * Drop the cached view after a write to the customer.
+     */
+    public void invalidate(String customerId) {
+        if (customerId == null) return;
+        AtomicLong version = versions.get(customerId);
+        if (version != null) version.incrementAndGet();
+        if (views.remove(customerId) != null) invalidations.increment();
+    }
+
+    /**
+     * Drop the view and all bookkeeping for a customer that no longer exists.
+     */
+    public void evict(String customerId) {
+        invalidate(customerId);
+        versions.remove(customerId);
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        long bytes = 0;
+        long oldest = 0;
+        long now = System.currentTimeMillis();
+        for (CachedView view : views.values()) {
+            bytes += view.json.length;
+            oldest = Math.max(oldest, now - view.builtAt);
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : Math.round(h * 10000.0 / (h + m)) / 100.0);
+        stats.put("invalidations", invalidations.sum());
+        stats.put("expiredRebuilds", expiredRebuilds.sum());
+        stats.put("cachedViews", views.size());
+        stats.put("cachedBytes", bytes);
+        stats.put("avgServedAgeMs", h == 0 ? 0 : servedAgeMs.sum() / h);
+        stats.put("maxServedAgeMs", maxServedAgeMs.get());
+        stats.put("oldestCachedAgeMs", oldest);
+        stats.put("avgBuildMicros", m == 0 ? 0 : buildNanos.sum() / m / 1000);
+        stats.put("maxAgeMs", maxAgeMs);
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private byte[] serialize(Map<String, Object> view) {
+        try {
+            return objectMapper.writeValueAsBytes(view);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize customer view: " + e.getMessage());
+        }
+    }
+
+    private static final class CachedView {
+        private final byte[] json;
+        private final long builtAt;
+        private final long version;
+
+        CachedView(byte[] json, long builtAt, long version) {
+            this.json = json;
+            this.builtAt = builtAt;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.telecom.customermanagement.service;
+
+import com.telecom.customermanagement.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Append-only, memory-mapped journal of customer lifecycle events.
+ *
+ * Each record is 8-byte aligned and laid out as:
+ * <pre>
+ *   0  int    record length (including header and padding)
+ *   4  byte   event type ordinal
+ *   5  byte   customer status ordinal
+ *   6  short  reason length in bytes
+ *   8  long   timestamp
+ *  16  long   customer id (UUID most significant bits)
+ *  24  long   customer id (UUID least significant bits)
+ *  32  byte[] reason (UTF-8)
+ * </pre>
+ * The length field is written last with release semantics, so a zero length marks
+ * the end of the journal and readers tailing the file never observe a partial record.
+ * Record start offsets are also kept in memory, so offsets supplied by callers can be
+ * checked before anything is read from the mapped file.
+ *
+ * The journal is split into segment files of up to {@code max-segment-mb} each, the
+ * first at {@code customer.journal.path} and the next ones with a ".1", ".2", ...
+ * suffix. An offset holds the segment number above bit 31 and the position within
+ * the segment below, so a full segment rolls over to the next one instead of failing
+ * the append. The end of a full segment reads as the start of the next one, so
+ * consumers tailing by nextOffset carry on across the boundary.
+ */
+@Component
+public class CustomerEventJournal {
+
+    static final int HEADER_SIZE = 32;
+    private static final int SEGMENT_SHIFT = 31;
+    private static final long POSITION_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int MAX_REASON_CHARS = 256;
+    private static final VarHandle INT_VIEW =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final CustomerEventType[] EVENT_TYPES = CustomerEventType.values();
+    private static final CustomerStatus[] STATUSES = CustomerStatus.values();
+
+    @Value("${customer.journal.path:data/customer-events.journal}")
+    private String journalPath = "data/customer-events.journal";
+
+    @Value("${customer.journal.initial-size-mb:64}")
+    private int initialSizeMb = 64;
+
+    @Value("${customer.journal.max-segment-mb:1024}")
+    private int maxSegmentMb = 1024;
+
+    // Channel of the newest segment, the only one still written to
+    private FileChannel channel;
+    // Copy-on-write: one mapping per segment, replaced when the newest one grows
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    // End offset of every full segment, i.e. all but the newest
+    private volatile long[] sealedEnds = new long[0];
+    private volatile long writeOffset;
+
+    // Start offset of every record, ascending; entries below recordCount are published
+    private volatile long[] recordStarts = new long[1024];
+    private volatile int recordCount;
+
+    @PostConstruct
+    public synchronized void open() {
+        try {
+            Path path = Paths.get(journalPath);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            List<MappedByteBuffer> mapped = new ArrayList<>();
+            List<Long> ends = new ArrayList<>();
+            long end = 0;
+            for (int i = 0; i == 0 || Files.exists(segmentPath(i)); i++) {
+                if (channel != null) {
+                    channel.close();
+                    ends.add(end);
+                }
+                channel = FileChannel.open(segmentPath(i), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+                long capacity = Math.max(channel.size(), Math.min((long) initialSizeMb * 1024 * 1024, maxSegmentBytes()));
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                mapped.add(buf);
+                end = scanRecords(i, buf);
+            }
+            segments = mapped.toArray(new MappedByteBuffer[0]);
+            sealedEnds = ends.stream().mapToLong(Long::longValue).toArray();
+            writeOffset = end;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open customer event journal: " + journalPath, e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            MappedByteBuffer[] mapped = segments;
+            if (mapped.length > 0) mapped[mapped.length - 1].force();
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close customer event journal", e);
+        }
+    }
+
+    /**
+     * Append an event and return its offset in the journal.
+     */
+    public synchronized long append(CustomerEventType type, String customerId, CustomerStatus status,
+                                    String reason, long timestamp) {
+        UUID id = UUID.fromString(customerId);
+        byte[] reasonBytes = encodeReason(reason);
+        int length = align(HEADER_SIZE + reasonBytes.length);
+
+        long offset = writeOffset;
+        if (positionOf(offset) + length + Integer.BYTES > maxSegmentBytes()) {
+            roll();
+            offset = writeOffset;
+        }
+        int pos = positionOf(offset);
+        MappedByteBuffer buf = ensureCapacity(pos + length + Integer.BYTES);
+
+        buf.put(pos + 4, (byte) type.ordinal());
+        buf.put(pos + 5, (byte) (status != null ? status.ordinal() : -1));
+        buf.putShort(pos + 6, (short) reasonBytes.length);
+        buf.putLong(pos + 8, timestamp);
+        buf.putLong(pos + 16, id.getMostSignificantBits());
+        buf.putLong(pos + 24, id.getLeastSignificantBits());
+        if (reasonBytes.length > 0) {
+            ByteBuffer dst = buf.duplicate();
+            dst.position(pos + HEADER_SIZE);
+            dst.put(reasonBytes);
+        }
+        // Publish the record: readers only see it once the length is visible
+        INT_VIEW.setRelease(buf, pos, length);
+
+        addRecordStart(offset);
+        writeOffset = offset + length;
+        return offset;
+    }
+
+    /**
+     * Read a single event at the given offset, or null at the end of the journal.
+     *
+     * @throws IllegalArgumentException if the offset is not the start of a record
+     */
+    public CustomerEvent read(long offset) {
+        // End first: a roll publishes the sealed end before moving the end offset
+        long end = writeOffset;
+        if (offset == end) return null;
+        offset = resolve(offset);
+        if (offset == end) return null;
+        requireRecordStart(offset);
+        MappedByteBuffer buf = segments[segmentOf(offset)];
+        int length = (int) INT_VIEW.getAcquire(buf, positionOf(offset));
+        if (length <= 0) return null;
+        return decode(buf, offset, length);
+    }
+
+    /**
+     * Read up to {@code limit} events starting at {@code fromOffset}.
+     * Downstream consumers tail the journal by passing the last event's nextOffset.
+     *
+     * @throws IllegalArgumentException if {@code fromOffset} is neither the start of a
+     *         record nor the end of the journal
+     */
+    public List<CustomerEvent> readFrom(long fromOffset, int limit) {
+        long end = writeOffset;
+        long from = fromOffset == end ? end : resolve(fromOffset);
+        if (from != end) requireRecordStart(from);
+        List<CustomerEvent> events = new ArrayList<>();
+        long offset = from;
+        while (events.size() < limit) {
+            CustomerEvent event = read(offset);
+            if (event == null) break;
+            events.add(event);
+            offset = event.getNextOffset();
+        }
+        return events;
+    }
+
+    /**
+     * Offsets of all committed records, so replay can decode them in parallel chunks.
+     */
+    public long[] recordOffsets() {
+        int count = recordCount;
+        return Arrays.copyOf(recordStarts, count);
+    }
+
+    /**
+     * Whether a record starts at {@code offset}. Binary search over the in-memory index.
+     */
+    public boolean isRecordStart(long offset) {
+        int count = recordCount;
+        return offset >= 0 && Arrays.binarySearch(recordStarts, 0, count, offset) >= 0;
+    }
+
+    /**
+     * Offset at which the next event will be appended.
+     */
+    public long endOffset() {
+        return writeOffset;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private CustomerEvent decode(MappedByteBuffer buf, long offset, int length) {
+        int pos = positionOf(offset);
+        int reasonLength = buf.getShort(pos + 6);
+        int statusOrdinal = buf.get(pos + 5);
+
+        CustomerEvent event = new CustomerEvent();
+        event.setOffset(offset);
+        event.setNextOffset(offset + length);
+        event.setEventType(EVENT_TYPES[buf.get(pos + 4)]);
+        event.setStatus(statusOrdinal >= 0 ? STATUSES[statusOrdinal] : null);
+        event.setTimestamp(buf.getLong(pos + 8));
+        event.setCustomerId(new UUID(buf.getLong(pos + 16), buf.getLong(pos + 24)).toString());
+        if (reasonLength > 0) {
+            byte[] reasonBytes = new byte[reasonLength];
+            ByteBuffer src = buf.duplicate();
+            src.position(pos + HEADER_SIZE);
+            src.get(reasonBytes);
+            event.setReason(new String(reasonBytes, StandardCharsets.UTF_8));
+        }
+        return event;
+    }
+
+    /**
+     * Grow the newest segment's mapping to at least {@code required} bytes, doubling
+     * up to the segment size limit. append rolls over before a record would pass it.
+     */
+    private MappedByteBuffer ensureCapacity(long required) {
+        MappedByteBuffer[] mapped = segments;
+        MappedByteBuffer buf = mapped[mapped.length - 1];
+        if (required <= buf.capacity()) return buf;
+        long capacity = buf.capacity();
+        while (capacity < required) capacity *= 2;
+        capacity = Math.min(capacity, maxSegmentBytes());
+        try {
+            buf.force();
+            MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            MappedByteBuffer[] next = mapped.clone();
+            next[next.length - 1] = grown;
+            segments = next;
+            return grown;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow customer event journal", e);
+        }
+    }
+
+    /**
+     * Seal the newest segment at the current end and start the next one. The sealed
+     * end is published before the end offset moves, see {@link #read}.
+     */
+    private void roll() {
+        MappedByteBuffer[] mapped = segments;
+        int index = mapped.length;
+        Path path = segmentPath(index);
+        try {
+            mapped[index - 1].force();
+            FileChannel next = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buf;
+            try {
+                buf = next.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.min((long) initialSizeMb * 1024 * 1024, maxSegmentBytes()));
+            } catch (IOException e) {
+                next.close();
+                throw e;
+            }
+            channel.close();
+            channel = next;
+            segments = append(mapped, buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open customer event journal segment: " + path, e);
+        }
+        long[] ends = Arrays.copyOf(sealedEnds, index);
+        ends[index - 1] = writeOffset;
+        sealedEnds = ends;
+        writeOffset = (long) index << SEGMENT_SHIFT;
+    }
+
+    /**
+     * The end of a sealed segment stands for the start of the next one.
+     */
+    private long resolve(long offset) {
+        int segment = segmentOf(offset);
+        long[] ends = sealedEnds;
+        return segment >= 0 && segment < ends.length && offset == ends[segment]
+            ? (long) (segment + 1) << SEGMENT_SHIFT : offset;
+    }
+
+    /**
+     * Walk a segment's length fields from its start, indexing every record; returns the end offset.
+     */
+    private long scanRecords(int segment, MappedByteBuffer buf) {
+        long base = (long) segment << SEGMENT_SHIFT;
+        int pos = 0;
+        while (pos + HEADER_SIZE <= buf.capacity()) {
+            int length = (int) INT_VIEW.getAcquire(buf, pos);
+            if (length < HEADER_SIZE || (long) pos + length > buf.capacity()) break;
+            addRecordStart(base + pos);
+            pos += length;
+        }
+        return base + pos;
+    }
+
+    private Path segmentPath(int index) {
+        return Paths.get(index == 0 ? journalPath : journalPath + "." + index);
+    }
+
+    private long maxSegmentBytes() {
+        return Math.min((long) maxSegmentMb * 1024 * 1024, Integer.MAX_VALUE);
+    }
+
+    private static int segmentOf(long offset) {
+        return (int) (offset >>> SEGMENT_SHIFT);
+    }
+
+    private static int positionOf(long offset) {
+        return (int) (offset & POSITION_MASK);
+    }
+
+    private static MappedByteBuffer[] append(MappedByteBuffer[] mapped, MappedByteBuffer buf) {
+        MappedByteBuffer[] next = Arrays.copyOf(mapped, mapped.length + 1);
+        next[mapped.length] = buf;
+        return next;
+    }
+
+    private void addRecordStart(long offset) {
+        long[] starts = recordStarts;
+        int count = recordCount;
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            recordStarts = starts;
+        }
+        starts[count] = offset;
+        // Publish after the entry is written; readers load the count before the array
+        recordCount = count + 1;
+    }
+
+    private void requireRecordStart(long offset) {
+        if (offset < 0 || offset > writeOffset) {
+            throw new IllegalArgumentException("Journal offset " + offset + " is outside 0.." + writeOffset);
+        }
+        if (!isRecordStart(offset)) {
+            throw new IllegalArgumentException("Journal offset " + offset + " is not the start of a record");
+        }
+    }
+
+    private static byte[] encodeReason(String reason) {
+        if (reason == null || reason.isEmpty()) return new byte[0];
+        String trimmed = reason.length() > MAX_REASON_CHARS ? reason.substring(0, MAX_REASON_CHARS) : reason;
+        return trimmed.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+}
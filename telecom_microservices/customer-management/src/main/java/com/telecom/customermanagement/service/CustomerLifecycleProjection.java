@@ -0,0 +1,156 @@
+package com.telecom.customermanagement.service;
+
+import com.telecom.customermanagement.model.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Read-side projection of the customer event journal.
+ * Tracks the current lifecycle status of every journaled customer, the offsets of
+ * each customer's events (for lazy history reads) and per-status counts.
+ * Rebuilt from the journal in parallel at startup and kept current as events are appended.
+ */
+@Component
+public class CustomerLifecycleProjection {
+
+    private static final CustomerStatus[] STATUSES = CustomerStatus.values();
+
+    @Autowired
+    private CustomerEventJournal journal;
+
+    private final Map<String, CustomerState> states = new ConcurrentHashMap<>();
+    private final AtomicLongArray statusCounts = new AtomicLongArray(STATUSES.length);
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Rebuild the projection from the journal. Records are decoded in parallel chunks;
+     * chunk results are merged in journal order so the last event per customer wins.
+     */
+    public synchronized void rebuild() {
+        states.clear();
+        for (int i = 0; i < STATUSES.length; i++) statusCounts.set(i, 0);
+
+        long[] offsets = journal.recordOffsets();
+        if (offsets.length == 0) return;
+
+        int chunks = Math.min(Runtime.getRuntime().availableProcessors(), Math.max(1, offsets.length / 1024));
+        int chunkSize = (offsets.length + chunks - 1) / chunks;
+
+        List<Map<String, CustomerState>> partials = IntStream.range(0, chunks)
+            .parallel()
+            .mapToObj(c -> replayChunk(offsets, c * chunkSize, Math.min(offsets.length, (c + 1) * chunkSize)))
+            .collect(Collectors.toList());
+
+        for (Map<String, CustomerState> partial : partials) {
+            partial.forEach((customerId, chunkState) -> states.merge(customerId, chunkState, CustomerState::append));
+        }
+        for (CustomerState state : states.values()) {
+            if (state.status != null) statusCounts.incrementAndGet(state.status.ordinal());
+        }
+    }
+
+    /**
+     * Apply a freshly appended event to the projection.
+     */
+    public void apply(long offset, String customerId, CustomerStatus status) {
+        states.compute(customerId, (id, state) -> {
+            if (state == null) state = new CustomerState();
+            CustomerStatus previous = state.status;
+            state.record(offset, status);
+            if (previous != status) {
+                if (previous != null) statusCounts.decrementAndGet(previous.ordinal());
+                if (status != null) statusCounts.incrementAndGet(status.ordinal());
+            }
+            return state;
+        });
+    }
+
+    /**
+     * Current status of a customer according to the journal, or null if it has no events.
+     */
+    public CustomerStatus currentStatus(String customerId) {
+        CustomerState state = states.get(customerId);
+        return state != null ? state.status : null;
+    }
+
+    /**
+     * Full event history of a customer, read lazily from the journal.
+     */
+    public List<CustomerEvent> history(String customerId) {
+        CustomerState state = states.get(customerId);
+        if (state == null) return new ArrayList<>();
+        long[] offsets;
+        synchronized (state) {
+            offsets = Arrays.copyOf(state.offsets, state.size);
+        }
+        List<CustomerEvent> events = new ArrayList<>(offsets.length);
+        for (long offset : offsets) {
+            CustomerEvent event = journal.read(offset);
+            if (event != null) events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Number of journaled customers per lifecycle status.
+     */
+    public Map<String, Long> statusCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (CustomerStatus status : STATUSES) {
+            counts.put(status.toString(), statusCounts.get(status.ordinal()));
+        }
+        return counts;
+    }
+
+    public int trackedCustomers() {
+        return states.size();
+    }
+
+    // ============ Private Helper Methods ============
+
+    private Map<String, CustomerState> replayChunk(long[] offsets, int from, int to) {
+        Map<String, CustomerState> chunk = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            CustomerEvent event = journal.read(offsets[i]);
+            if (event == null) continue;
+            chunk.computeIfAbsent(event.getCustomerId(), k -> new CustomerState())
+                .record(event.getOffset(), event.getStatus());
+        }
+        return chunk;
+    }
+
+    /**
+     * Per-customer projection state with a primitive offset list.
+     */
+    private static final class CustomerState {
+        private CustomerStatus status;
+        private long[] offsets = new long[4];
+        private int size;
+
+        synchronized void record(long offset, CustomerStatus newStatus) {
+            if (size == offsets.length) offsets = Arrays.copyOf(offsets, size * 2);
+            offsets[size++] = offset;
+            if (newStatus != null) status = newStatus;
+        }
+
+        /**
+         * Merge a later chunk's state into this one, preserving journal order.
+         */
+        CustomerState append(CustomerState later) {
+            for (int i = 0; i < later.size; i++) {
+                record(later.offsets[i], later.status);
+            }
+            return this;
+        }
+    }
+}
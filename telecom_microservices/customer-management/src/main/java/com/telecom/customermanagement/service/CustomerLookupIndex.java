@@ -0,0 +1,383 @@
+package com.telecom.customermanagement.service;
+
+import com.telecom.customermanagement.model.*;
+import org.springframework.stereotype.Component;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typeahead index for call-center customer lookup.
+ *
+ * Two compact tries are kept: one over the digits of phone numbers and MSISDNs,
+ * and one over lowercase name tokens. Nodes live in parallel primitive arrays
+ * (first-child / next-sibling), each node counts the customers in its subtree so
+ * empty branches left by edits are skipped, and matches are collected depth-first
+ * in key order with exact matches first. Reads share a lock; updates are exclusive.
+ *
+ * Emails are kept in a map to the customer holding them, so registration can check
+ * and take an email in the same update with {@link #indexIfEmailFree}.
+ */
+@Component
+public class CustomerLookupIndex {
+
+    // Candidates gathered for the first name token before filtering on the others
+    private static final int MULTI_TOKEN_CANDIDATES = 1000;
+
+    private final Trie phoneTrie = new Trie();
+    private final Trie nameTrie = new Trie();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Map<String, String> emailOwners = new HashMap<>();
+    private final List<IndexedCustomer> customers = new ArrayList<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+
+    /**
+     * Add a customer, or re-index it after its name or numbers changed.
+     */
+    public void index(TelecomCustomer customer) {
+        IndexedCustomer entry = entryOf(customer);
+        lock.writeLock().lock();
+        try {
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index a customer unless its email already belongs to another indexed customer.
+     * The check and the update happen under one lock, so of two registrations racing
+     * for the same email exactly one succeeds.
+     *
+     * @return false, leaving the index unchanged, if the email is taken
+     */
+    public boolean indexIfEmailFree(TelecomCustomer customer) {
+        IndexedCustomer entry = entryOf(customer);
+        lock.writeLock().lock();
+        try {
+            if (entry.email != null) {
+                String owner = emailOwners.get(entry.email);
+                if (owner != null && !owner.equals(entry.customerId)) return false;
+            }
+            link(entry);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String customerId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(customerId);
+            if (slot == null) return;
+            unlink(slot);
+            customers.set(slot, null);
+            freeSlots.push(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Customer ids matching the query, best first. A query made only of digits and
+     * phone punctuation is matched as a phone/MSISDN prefix; anything else is split
+     * into name tokens, each of which must prefix one of the customer's name tokens.
+     */
+    public List<String> lookup(String query, int limit) {
+        if (query == null || limit <= 0) return new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (isPhoneQuery(query)) {
+                String digits = digitsOf(query);
+                return digits.isEmpty() ? new ArrayList<>() : toIds(phoneTrie.collect(digits, limit));
+            }
+            List<String> tokens = nameTokens(query);
+            if (tokens.isEmpty()) return new ArrayList<>();
+            if (tokens.size() == 1) return toIds(nameTrie.collect(tokens.get(0), limit));
+
+            // Longest token is the most selective starting point
+            String first = Collections.max(tokens, Comparator.comparingInt(String::length));
+            List<String> result = new ArrayList<>();
+            for (int slot : nameTrie.collect(first, Math.max(limit, MULTI_TOKEN_CANDIDATES))) {
+                if (matchesAll(customers.get(slot).nameTokens, tokens)) {
+                    result.add(customers.get(slot).customerId);
+                    if (result.size() == limit) break;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("indexedCustomers", slots.size());
+            stats.put("indexedEmails", emailOwners.size());
+            stats.put("phoneTrieNodes", phoneTrie.size);
+            stats.put("nameTrieNodes", nameTrie.size);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ============ Private Helper Methods ============
+
+    private static IndexedCustomer entryOf(TelecomCustomer customer) {
+        return new IndexedCustomer(customer.getCustomerId(), customer.getEmail(),
+            phoneKeys(customer.getPhoneNumber(), customer.getMsisdn()),
+            nameTokens(customer.getFirstName(), customer.getLastName()));
+    }
+
+    private void link(IndexedCustomer entry) {
+        Integer slot = slots.get(entry.customerId);
+        if (slot != null) {
+            unlink(slot);
+        } else {
+            slot = freeSlots.isEmpty() ? customers.size() : freeSlots.pop();
+            if (slot == customers.size()) customers.add(null);
+            slots.put(entry.customerId, slot);
+        }
+        customers.set(slot, entry);
+        for (String key : entry.phoneKeys) phoneTrie.insert(key, slot);
+        for (String token : entry.nameTokens) nameTrie.insert(token, slot);
+        // A profile edit may reuse an email held by someone else; the first holder keeps it
+        if (entry.email != null) emailOwners.putIfAbsent(entry.email, entry.customerId);
+    }
+
+    private void unlink(int slot) {
+        IndexedCustomer previous = customers.get(slot);
+        if (previous == null) return;
+        for (String key : previous.phoneKeys) phoneTrie.remove(key, slot);
+        for (String token : previous.nameTokens) nameTrie.remove(token, slot);
+        if (previous.email != null) emailOwners.remove(previous.email, previous.customerId);
+    }
+
+    private List<String> toIds(Collection<Integer> found) {
+        List<String> ids = new ArrayList<>(found.size());
+        for (int slot : found) ids.add(customers.get(slot).customerId);
+        return ids;
+    }
+
+    private static boolean matchesAll(List<String> customerTokens, List<String> queryTokens) {
+        for (String q : queryTokens) {
+            boolean matched = false;
+            for (String t : customerTokens) {
+                if (t.startsWith(q)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) return false;
+        }
+        return true;
+    }
+
+    private static boolean isPhoneQuery(String query) {
+        boolean digit = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c >= '0' && c <= '9') digit = true;
+            else if (c != '+' && c != ' ' && c != '-' && c != '(' && c != ')' && c != '.') return false;
+        }
+        return digit;
+    }
+
+    private static String digitsOf(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static List<String> phoneKeys(String phoneNumber, String msisdn) {
+        List<String> keys = new ArrayList<>(2);
+        for (String number : new String[] { phoneNumber, msisdn }) {
+            if (number == null) continue;
+            String digits = digitsOf(number);
+            if (!digits.isEmpty() && !keys.contains(digits)) keys.add(digits);
+        }
+        return keys;
+    }
+
+    /**
+     * Lowercase tokens split on anything that is not a letter or digit.
+     */
+    private static List<String> nameTokens(String... parts) {
+        List<String> tokens = new ArrayList<>(2);
+        StringBuilder token = new StringBuilder();
+        for (String text : parts) {
+            if (text == null) continue;
+            for (int i = 0; i <= text.length(); i++) {
+                char c = i < text.length() ? text.charAt(i) : ' ';
+                if (Character.isLetterOrDigit(c)) {
+                    token.append(Character.toLowerCase(c));
+                } else if (token.length() > 0) {
+                    String t = token.toString();
+                    if (!tokens.contains(t)) tokens.add(t);
+                    token.setLength(0);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static final class IndexedCustomer {
+        private final String customerId;
+        private final String email;
+        private final List<String> phoneKeys;
+        private final List<String> nameTokens;
+
+        IndexedCustomer(String customerId, String email, List<String> phoneKeys, List<String> nameTokens) {
+            this.customerId = customerId;
+            this.email = email;
+            this.phoneKeys = phoneKeys;
+            this.nameTokens = nameTokens;
+        }
+    }
+
+    /**
+     * Array-backed trie. Node 0 is the root; children of a node form a linked list
+     * through nextSibling. Customer slots are posted on the node where their key ends.
+     */
+    private static final class Trie {
+        private static final int NONE = -1;
+        private static final int[] NO_POSTINGS = new int[0];
+
+        private char[] labels = new char[1024];
+        private int[] firstChild = new int[1024];
+        private int[] nextSibling = new int[1024];
+        private int[] subtreeCount = new int[1024];
+        private int[][] postings = new int[1024][];
+        private int[] postingCount = new int[1024];
+        private int size = 1;
+
+        Trie() {
+            firstChild[0] = NONE;
+            nextSibling[0] = NONE;
+        }
+
+        void insert(String key, int slot) {
+            int node = 0;
+            subtreeCount[0]++;
+            for (int i = 0; i < key.length(); i++) {
+                node = childOrCreate(node, key.charAt(i));
+                subtreeCount[node]++;
+            }
+            int[] list = postings[node] != null ? postings[node] : NO_POSTINGS;
+            if (postingCount[node] == list.length) {
+                list = Arrays.copyOf(list, Math.max(2, list.length * 2));
+                postings[node] = list;
+            }
+            list[postingCount[node]++] = slot;
+        }
+
+        void remove(String key, int slot) {
+            int node = find(key);
+            if (node == NONE) return;
+            int[] list = postings[node];
+            int count = postingCount[node];
+            for (int i = 0; i < count; i++) {
+                if (list[i] == slot) {
+                    list[i] = list[count - 1];
+                    postingCount[node] = count - 1;
+                    // Walk the path again to decrement subtree counts
+                    int n = 0;
+                    subtreeCount[0]--;
+                    for (int j = 0; j < key.length(); j++) {
+                        n = child(n, key.charAt(j));
+                        subtreeCount[n]--;
+                    }
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Up to {@code limit} distinct slots under the prefix: exact matches first,
+         * then completions in key order. Empty subtrees are never entered, so at
+         * most about limit * key length nodes are visited.
+         */
+        Collection<Integer> collect(String prefix, int limit) {
+            LinkedHashSet<Integer> found = new LinkedHashSet<>();
+            int start = find(prefix);
+            if (start == NONE || subtreeCount[start] == 0) return found;
+            ArrayDeque<Integer> stack = new ArrayDeque<>();
+            stack.push(start);
+            while (!stack.isEmpty() && found.size() < limit) {
+                int node = stack.pop();
+                for (int i = 0; i < postingCount[node] && found.size() < limit; i++) {
+                    found.add(postings[node][i]);
+                }
+                pushChildren(stack, node);
+            }
+            return found;
+        }
+
+        /**
+         * Push non-empty children so that the smallest label is popped first.
+         */
+        private void pushChildren(ArrayDeque<Integer> stack, int node) {
+            int first = firstChild[node];
+            if (first == NONE) return;
+            ArrayDeque<Integer> reversed = new ArrayDeque<>();
+            for (int c = first; c != NONE; c = nextSibling[c]) {
+                if (subtreeCount[c] > 0) reversed.push(c);
+            }
+            while (!reversed.isEmpty()) stack.push(reversed.pop());
+        }
+
+        private int find(String key) {
+            int node = 0;
+            for (int i = 0; i < key.length() && node != NONE; i++) {
+                node = child(node, key.charAt(i));
+            }
+            return node;
+        }
+
+        private int child(int node, char label) {
+            for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+                if (labels[c] == label) return c;
+            }
+            return NONE;
+        }
+
+        /**
+         * Children are kept sorted by label so results come out in a stable order.
+         */
+        private int childOrCreate(int node, char label) {
+            int prev = NONE;
+            int c = firstChild[node];
+            while (c != NONE && labels[c] < label) {
+                prev = c;
+                c = nextSibling[c];
+            }
+            if (c != NONE && labels[c] == label) return c;
+
+            if (size == labels.length) grow();
+            int created = size++;
+            labels[created] = label;
+            firstChild[created] = NONE;
+            nextSibling[created] = c;
+            if (prev == NONE) firstChild[node] = created; else nextSibling[prev] = created;
+            return created;
+        }
+
+        private void grow() {
+            int capacity = labels.length * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            subtreeCount = Arrays.copyOf(subtreeCount, capacity);
+            postings = Arrays.copyOf(postings, capacity);
+            postingCount = Arrays.copyOf(postingCount, capacity);
+        }
+    }
+}
@@ -2,13 +2,18 @@
 package com.telecom.customermanagement.service;
 
 import org.springframework.stereotype.Service;
+import org.springframework.beans.factory.annotation.Autowired;
 import com.telecom.customermanagement.model.*;
 import com.telecom.customermanagement.config.FeatureFlagConstants;
+import com.telecom.customermanagement.util.CustomerFieldValidator;
+import com.telecom.customermanagement.util.CustomerManagementUtils;
 import com.telecom.common.FeatureFlagReader;
 import javax.annotation.PostConstruct;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Service layer for Customer Management with complex telecom business logic.
@@ -26,12 +31,51 @@ public class CustomerManagementService {
     private final Map<String, Map<String,Object>> genericStore = new ConcurrentHashMap<>();
 
     // Loyalty program state
-    private final Map<String, Integer> loyaltyPoints = new ConcurrentHashMap<>();
+    @Autowired
+    private LoyaltyLedger loyaltyLedger;
+
+    // Lifecycle event journal and its read-side projection
+    @Autowired
+    private CustomerEventJournal eventJournal;
+
+    @Autowired
+    private CustomerLifecycleProjection lifecycleProjection;
+
+    // Call-detail record aggregation pipeline
+    @Autowired
+    private UsageAggregator usageAggregator;
+
+    // Staged bulk registration
+    @Autowired
+    private BulkRegistrationPipeline bulkRegistrationPipeline;
+
+    // Contract lookup by id and expiry-ordered renewal scheduling
+    @Autowired
+    private ContractExpiryIndex contractIndex;
+
+    // Serialized Customer-360 views, invalidated on every write to a customer
+    @Autowired
+    private Customer360Cache customer360Cache;
+
+    // Typeahead lookup by name, phone number or MSISDN
+    @Autowired
+    private CustomerLookupIndex lookupIndex;
+
+    // Credit bureau and its coalescing result cache
+    @Autowired
+    private CreditBureauClient creditBureau;
+
+    @Autowired
+    private CreditCheckCache creditCheckCache;
 
     @PostConstruct
     public void init() {
         // Initialize with sample customers
         initializeSampleCustomers();
+        usageAggregator.setSink(this::applyUsage);
+        configureBulkRegistration();
+        contractIndex.setRenewalHandler(this::handleContractExpiry,
+            () -> FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_AUTO_RENEWAL));
     }
 
     /**
@@ -41,6 +85,7 @@ public class CustomerManagementService {
         for (int i = 1; i <= 5; i++) {
             TelecomCustomer customer = createSampleCustomer(i);
             customerStore.put(customer.getCustomerId(), customer);
+            lookupIndex.index(customer);
             
             // Create sample subscriptions if feature is enabled
             if (FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_SUBSCRIPTION_MANAGEMENT)) {
@@ -163,25 +208,12 @@ public class CustomerManagementService {
         }
         // Cross-service: If 2FA is enabled in auth, require 2faSetup field
         if (FeatureFlagReader.isFeatureEnabled("auth_enable_2fa")) {
-            if (!Boolean.TRUE.equals(customerData.get("2faSetup"))) {
-                throw new RuntimeException("2FA setup required for registration (auth_enable_2fa)");
-            }
+            require2faSetup(customerData);
         }
 
-        TelecomCustomer customer = new TelecomCustomer();
-        customer.setCustomerId(UUID.randomUUID().toString());
-        customer.setFirstName((String) customerData.get("firstName"));
-        customer.setLastName((String) customerData.get("lastName"));
-        customer.setEmail((String) customerData.get("email"));
-        customer.setPhoneNumber((String) customerData.get("phoneNumber"));
-        customer.setMsisdn((String) customerData.get("msisdn"));
-        customer.setCustomerType((String) customerData.getOrDefault("customerType", "INDIVIDUAL"));
-        customer.setStatus(CustomerStatus.REGISTERED);
-        customer.setAccountCreatedAt(System.currentTimeMillis());
-        customer.setLastActivityAt(System.currentTimeMillis());
-        customer.setSegment("BRONZE");
-        customer.setChurnRiskScore(0);
-        customer.setLifetimeValue(0.0);
+        TelecomCustomer customer = newCustomer(customerData);
+        // Initialize billing profile first so the credit check can adjust its limit
+        customer.setBillingProfile(newBillingProfile(customer));
 
         // Verify customer if feature enabled
         if (FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_CUSTOMER_VERIFICATION)) {
@@ -205,23 +237,49 @@ public class CustomerManagementService {
         }
 
         // Check for duplicates if enabled
-        if (FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_DUPLICATE_DETECTION)) {
+        boolean uniqueEmail = FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_DUPLICATE_DETECTION);
+        if (uniqueEmail) {
             detectDuplicateCustomer(customer);
         }
 
-        // Initialize billing profile
-        BillingProfile billing = new BillingProfile();
-        billing.setAccountNumber("ACC-" + customer.getCustomerId().substring(0, 8).toUpperCase());
-        billing.setBillingCycle("MONTHLY");
-        billing.setCreditLimit(1000.0); // Default credit limit
-        billing.setAutoPaymentEnabled(false);
-        customer.setBillingProfile(billing);
-        billingProfiles.put(customer.getCustomerId(), billing);
-
-        customerStore.put(customer.getCustomerId(), customer);
+        storeRegisteredCustomer(customer, uniqueEmail);
         return customer;
     }
 
+    /**
+     * Submit a bulk registration job. Customers flow through the same checks as
+     * registerCustomer, each stage running on its own worker pool; the job runs
+     * in the background and its progress is available by job id.
+     */
+    public Map<String, Object> submitBulkRegistration(List<Map<String, Object>> customers) {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_CUSTOMER_REGISTRATION)) {
+            throw new RuntimeException("Customer registration feature is disabled");
+        }
+        Set<String> existingEmails = new HashSet<>();
+        for (TelecomCustomer c : customerStore.values()) {
+            if (c.getEmail() != null) existingEmails.add(c.getEmail());
+        }
+        // Same 2FA requirement as registerCustomer; rows without it are dead-lettered at intake
+        boolean require2fa = FeatureFlagReader.isFeatureEnabled("auth_enable_2fa");
+        BulkRegistrationPipeline.BulkJob job = bulkRegistrationPipeline.submit(customers, data -> {
+            if (require2fa) require2faSetup(data);
+            TelecomCustomer customer = newCustomer(data);
+            // Billing profile up front so the credit check can adjust it, as in registerCustomer
+            customer.setBillingProfile(newBillingProfile(customer));
+            return customer;
+        }, existingEmails);
+        return job.status();
+    }
+
+    public Map<String, Object> getBulkRegistrationStatus(String jobId) {
+        BulkRegistrationPipeline.BulkJob job = bulkRegistrationPipeline.getJob(jobId);
+        return job != null ? job.status() : null;
+    }
+
+    public Map<String, Object> getBulkRegistrationMetrics() {
+        return bulkRegistrationPipeline.metrics();
+    }
+
     /**
      * Activate a customer account
      */
@@ -240,6 +298,8 @@ public class CustomerManagementService {
         customer.setStatus(CustomerStatus.ACTIVE);
         customer.setLastActivityAt(System.currentTimeMillis());
         customerStore.put(customerId, customer);
+        customer360Cache.invalidate(customerId);
+        recordLifecycleEvent(CustomerEventType.ACTIVATED, customer, null);
         return customer;
     }
 
@@ -264,6 +324,8 @@ public class CustomerManagementService {
         }
 
         customerStore.put(customerId, customer);
+        customer360Cache.invalidate(customerId);
+        recordLifecycleEvent(CustomerEventType.SUSPENDED, customer, reason);
         return customer;
     }
 
@@ -281,6 +343,8 @@ public class CustomerManagementService {
         customer.setStatus(CustomerStatus.TERMINATED);
         customer.setLastActivityAt(System.currentTimeMillis());
         customerStore.put(customerId, customer);
+        customer360Cache.invalidate(customerId);
+        recordLifecycleEvent(CustomerEventType.TERMINATED, customer, reason);
         return true;
     }
 
@@ -314,6 +378,7 @@ public class CustomerManagementService {
         }
 
         customerStore.put(customerId, customer);
+        customer360Cache.invalidate(customerId);
         return subscription;
     }
 
@@ -338,6 +403,7 @@ public class CustomerManagementService {
         }
 
         billingProfiles.put(customerId, billing);
+        customer360Cache.invalidate(customerId);
         return billing;
     }
 
@@ -359,6 +425,9 @@ public class CustomerManagementService {
         contract.setContractValue((Double) contractData.get("contractValue"));
         contract.setContractStatus("ACTIVE");
         contract.setRenewalOption((String) contractData.getOrDefault("renewalOption", "AUTO_RENEW"));
+        long startedAt = System.currentTimeMillis();
+        contract.setStartDate(new LocalDateTime(startedAt));
+        contract.setEndDate(new LocalDateTime(CustomerManagementUtils.addMonths(startedAt, contract.getDurationMonths())));
 
         // Calculate early termination fee
         double contractValue = contract.getContractValue();
@@ -367,8 +436,10 @@ public class CustomerManagementService {
         List<Contract> contracts = contractsByCustomer.computeIfAbsent(customerId, k -> new ArrayList<>());
         contracts.add(contract);
         customer.setContracts(contracts);
+        contractIndex.index(customerId, contract);
 
         customerStore.put(customerId, customer);
+        customer360Cache.invalidate(customerId);
         return contract;
     }
 
@@ -380,17 +451,12 @@ public class CustomerManagementService {
             throw new RuntimeException("Contract renewal feature is disabled");
         }
 
-        List<Contract> contracts = contractsByCustomer.get(customerId);
-        if (contracts == null) throw new RuntimeException("No contracts found");
-
-        Contract contract = contracts.stream()
-            .filter(c -> c.getContractId().equals(contractId))
-            .findFirst()
-            .orElse(null);
-
-        if (contract == null) throw new RuntimeException("Contract not found");
-
-        contract.setContractStatus("RENEWED");
+        Contract contract = findCustomerContract(customerId, contractId);
+        synchronized (contract) {
+            extendContract(contract);
+            contractIndex.index(customerId, contract);
+        }
+        customer360Cache.invalidate(customerId);
         return contract;
     }
 
@@ -402,25 +468,46 @@ public class CustomerManagementService {
             throw new RuntimeException("Early termination feature is disabled");
         }
 
-        List<Contract> contracts = contractsByCustomer.get(customerId);
-        if (contracts == null) throw new RuntimeException("No contracts found");
-
-        Contract contract = contracts.stream()
-            .filter(c -> c.getContractId().equals(contractId))
-            .findFirst()
-            .orElse(null);
-
-        if (contract == null) throw new RuntimeException("Contract not found");
+        Contract contract = findCustomerContract(customerId, contractId);
 
         Map<String, Object> result = new HashMap<>();
         result.put("contractId", contractId);
         result.put("earlyTerminationFee", contract.getEarlyTerminationFee());
         result.put("status", "TERMINATED_EARLY");
-        contract.setContractStatus("TERMINATED_EARLY");
+        synchronized (contract) {
+            contract.setContractStatus("TERMINATED_EARLY");
+            contractIndex.index(customerId, contract);
+        }
+        customer360Cache.invalidate(customerId);
 
         return result;
     }
 
+    /**
+     * List running contracts whose end date falls within the window, earliest first
+     */
+    public List<Map<String, Object>> getContractsExpiring(int fromDays, int withinDays, int limit) {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_CONTRACT_MANAGEMENT)) {
+            throw new RuntimeException("Contract management feature is disabled");
+        }
+        long from = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(fromDays);
+        return contractIndex.expiringBetween(from, from + TimeUnit.DAYS.toMillis(withinDays), limit);
+    }
+
+    /**
+     * Process contracts that reached their end date now instead of waiting for the scheduler
+     */
+    public Map<String, Object> runContractRenewals() {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_AUTO_RENEWAL)) {
+            throw new RuntimeException("Auto renewal feature is disabled");
+        }
+        return contractIndex.processDue();
+    }
+
+    public Map<String, Object> getContractRenewalStats() {
+        return contractIndex.stats();
+    }
+
     /**
      * Manage customer preferences
      */
@@ -445,6 +532,7 @@ public class CustomerManagementService {
 
         customer.setPreferences(prefs);
         customerStore.put(customerId, customer);
+        customer360Cache.invalidate(customerId);
 
         // Send notification preferences if enabled
         if (FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_NOTIFICATION_PREFERENCES)) {
@@ -465,17 +553,105 @@ public class CustomerManagementService {
         TelecomCustomer customer = customerStore.get(customerId);
         if (customer == null) throw new RuntimeException("Customer not found");
 
-        loyaltyPoints.putIfAbsent(customerId, 0);
+        long currentPoints = loyaltyLedger.enroll(customerId);
         
         Map<String, Object> result = new HashMap<>();
         result.put("customerId", customerId);
         result.put("enrollmentStatus", "ACTIVE");
-        result.put("currentPoints", loyaltyPoints.get(customerId));
+        result.put("currentPoints", currentPoints);
         result.put("loyaltyTier", customer.getSegment());
 
         return result;
     }
 
+    /**
+     * Accrue loyalty points for a purchase
+     */
+    public Map<String, Object> accrueLoyaltyPoints(String customerId, long points) {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_LOYALTY_PROGRAM)) {
+            throw new RuntimeException("Loyalty program feature is disabled");
+        }
+
+        long balance = loyaltyLedger.accrue(customerId, points);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("customerId", customerId);
+        result.put("pointsAccrued", points);
+        result.put("currentPoints", balance);
+        return result;
+    }
+
+    /**
+     * Redeem loyalty points
+     */
+    public Map<String, Object> redeemLoyaltyPoints(String customerId, long points) {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_LOYALTY_PROGRAM)) {
+            throw new RuntimeException("Loyalty program feature is disabled");
+        }
+
+        long balance = loyaltyLedger.redeem(customerId, points);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("customerId", customerId);
+        result.put("pointsRedeemed", points);
+        result.put("currentPoints", balance);
+        return result;
+    }
+
+    /**
+     * Loyalty balance and recent audit trail for a customer
+     */
+    public Map<String, Object> getLoyaltyAccount(String customerId, int transactionLimit) {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_LOYALTY_PROGRAM)) {
+            throw new RuntimeException("Loyalty program feature is disabled");
+        }
+        if (!loyaltyLedger.isEnrolled(customerId)) {
+            throw new RuntimeException("Customer is not enrolled in the loyalty program");
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("customerId", customerId);
+        result.put("currentPoints", loyaltyLedger.balance(customerId));
+        result.put("lifetimePoints", loyaltyLedger.lifetimePoints(customerId));
+        result.put("transactions", loyaltyLedger.transactions(customerId, transactionLimit));
+        return result;
+    }
+
+    /**
+     * Monthly loyalty accrual for all enrolled customers in one parallel pass.
+     * Points are calculated from active subscription charges and the customer segment.
+     */
+    public Map<String, Object> runMonthlyLoyaltyAccrual() {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_LOYALTY_PROGRAM)) {
+            throw new RuntimeException("Loyalty program feature is disabled");
+        }
+
+        long start = System.nanoTime();
+        List<TelecomCustomer> enrolled = customerStore.values().stream()
+            .filter(c -> loyaltyLedger.isEnrolled(c.getCustomerId()))
+            .collect(Collectors.toList());
+
+        String[] customerIds = new String[enrolled.size()];
+        int[] points = new int[enrolled.size()];
+        IntStream.range(0, enrolled.size()).parallel().forEach(i -> {
+            TelecomCustomer customer = enrolled.get(i);
+            customerIds[i] = customer.getCustomerId();
+            points[i] = CustomerManagementUtils.calculateLoyaltyPoints(
+                monthlyCharges(customer.getCustomerId()), customer.getSegment());
+        });
+
+        int credited = loyaltyLedger.accrueBatch(customerIds, points);
+        long totalPoints = 0;
+        for (int p : points) totalPoints += Math.max(0, p);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("enrolledCustomers", enrolled.size());
+        result.put("customersCredited", credited);
+        result.put("totalPointsAccrued", totalPoints);
+        result.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
     /**
      * Segment customers based on various criteria
      */
@@ -511,6 +687,7 @@ public class CustomerManagementService {
 
         customer.setLifetimeValue(ltv);
         customerStore.put(customerId, customer);
+        customer360Cache.invalidate(customerId);
 
         Map<String, Object> result = new HashMap<>();
         result.put("customerId", customerId);
@@ -536,6 +713,7 @@ public class CustomerManagementService {
         int riskScore = calculateChurnRiskScore(customer.getLastActivityAt());
         customer.setChurnRiskScore(riskScore);
         customerStore.put(customerId, customer);
+        customer360Cache.invalidate(customerId);
 
         Map<String, Object> result = new HashMap<>();
         result.put("customerId", customerId);
@@ -546,6 +724,68 @@ public class CustomerManagementService {
         return result;
     }
 
+    /**
+     * Customer-360 view (profile, subscriptions, contracts, billing, value and risk)
+     * as serialized JSON. Served from cache until the customer is next written.
+     */
+    public byte[] getCustomer360(String customerId) {
+        return customer360Cache.get(customerId, () -> assembleCustomer360(customerId));
+    }
+
+    public Map<String, Object> getCustomer360Stats() {
+        return customer360Cache.stats();
+    }
+
+    /**
+     * Re-run the credit check for an existing customer (served from the credit cache when fresh)
+     */
+    public CreditHistory recheckCredit(String customerId) {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_CREDIT_CHECK)) {
+            throw new RuntimeException("Credit check feature is disabled");
+        }
+        TelecomCustomer customer = customerStore.get(customerId);
+        if (customer == null) throw new RuntimeException("Customer not found");
+
+        performCreditCheck(customer);
+        customer360Cache.invalidate(customerId);
+        List<CreditHistory> history = customer.getCreditHistory();
+        synchronized (customer) {
+            return history.get(history.size() - 1);
+        }
+    }
+
+    public Map<String, Object> getCreditCheckStats() {
+        Map<String, Object> stats = creditCheckCache.stats();
+        stats.put("bureauCalls", creditBureau.getCallCount());
+        stats.put("bureauLatencyMs", creditBureau.getLatencyMs());
+        return stats;
+    }
+
+    /**
+     * Typeahead lookup for call-center agents by partial name, phone number or MSISDN
+     */
+    public List<Map<String, Object>> lookupCustomers(String query, int limit) {
+        List<Map<String, Object>> matches = new ArrayList<>();
+        for (String customerId : lookupIndex.lookup(query, limit)) {
+            TelecomCustomer customer = customerStore.get(customerId);
+            if (customer == null) continue;
+            Map<String, Object> match = new LinkedHashMap<>();
+            match.put("customerId", customerId);
+            match.put("firstName", customer.getFirstName());
+            match.put("lastName", customer.getLastName());
+            match.put("phoneNumber", customer.getPhoneNumber());
+            match.put("msisdn", customer.getMsisdn());
+            match.put("status", customer.getStatus());
+            match.put("segment", customer.getSegment());
+            matches.add(match);
+        }
+        return matches;
+    }
+
+    public Map<String, Object> getLookupIndexStats() {
+        return lookupIndex.stats();
+    }
+
     /**
      * Export customer data for compliance
      */
@@ -585,15 +825,62 @@ public class CustomerManagementService {
         if ("RIGHT_TO_BE_FORGOTTEN".equals(requestType)) {
             customerStore.remove(customerId);
             subscriptionsByCustomer.remove(customerId);
-            contractsByCustomer.remove(customerId);
+            List<Contract> contracts = contractsByCustomer.remove(customerId);
+            if (contracts != null) {
+                for (Contract contract : contracts) contractIndex.remove(contract.getContractId());
+            }
             billingProfiles.remove(customerId);
-            loyaltyPoints.remove(customerId);
+            loyaltyLedger.close(customerId);
+            customer360Cache.evict(customerId);
+            lookupIndex.remove(customerId);
             return true;
         }
 
         return false;
     }
 
+    /**
+     * Ingest a batch of call-detail records. Records are aggregated per customer
+     * and folded into subscription usage metrics by the periodic usage flush.
+     */
+    public Map<String, Object> ingestUsageRecords(List<CallDetailRecord> records) {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_USAGE_TRACKING)) {
+            throw new RuntimeException("Usage tracking feature is disabled");
+        }
+
+        int n = records.size();
+        String[] customerIds = new String[n];
+        UsageType[] usageTypes = new UsageType[n];
+        long[] quantities = new long[n];
+        for (int i = 0; i < n; i++) {
+            CallDetailRecord record = records.get(i);
+            customerIds[i] = record.getCustomerId();
+            usageTypes[i] = record.getUsageType();
+            quantities[i] = record.getQuantity();
+        }
+        int accepted = usageAggregator.ingest(customerIds, usageTypes, quantities);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("received", n);
+        result.put("accepted", accepted);
+        result.put("rejected", n - accepted);
+        return result;
+    }
+
+    /**
+     * Fold buffered usage into subscription metrics immediately
+     */
+    public Map<String, Object> flushUsage() {
+        if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_USAGE_TRACKING)) {
+            throw new RuntimeException("Usage tracking feature is disabled");
+        }
+        return usageAggregator.flush();
+    }
+
+    public Map<String, Object> getUsageIngestionStats() {
+        return usageAggregator.stats();
+    }
+
     /**
      * Generic CRUD operations with legacy support
      */
@@ -655,6 +942,36 @@ public class CustomerManagementService {
         return customerStore.size() + genericStore.size();
     }
 
+    /**
+     * Read lifecycle events from the journal starting at an offset
+     */
+    public Map<String, Object> readLifecycleEvents(long fromOffset, int limit) {
+        List<CustomerEvent> events = eventJournal.readFrom(fromOffset, limit);
+        Map<String, Object> result = new HashMap<>();
+        result.put("fromOffset", fromOffset);
+        result.put("nextOffset", events.isEmpty() ? fromOffset : events.get(events.size() - 1).getNextOffset());
+        result.put("endOffset", eventJournal.endOffset());
+        result.put("events", events);
+        return result;
+    }
+
+    /**
+     * Lifecycle history of a customer, read lazily from the journal
+     */
+    public List<CustomerEvent> getLifecycleHistory(String customerId) {
+        return lifecycleProjection.history(customerId);
+    }
+
+    /**
+     * Customer counts per lifecycle status from the journal projection
+     */
+    public Map<String, Object> getLifecycleStatusCounts() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("trackedCustomers", lifecycleProjection.trackedCustomers());
+        result.put("statusCounts", lifecycleProjection.statusCounts());
+        return result;
+    }
+
     public Object updateProfile(String id, Map<String, Object> payload) {
         if (!FeatureFlagReader.isFeatureEnabled(FeatureFlagConstants.ENABLE_PROFILE_EDIT)) {
             throw new RuntimeException("Profile edit feature is disabled");
@@ -684,11 +1001,107 @@ public class CustomerManagementService {
         }
 
         customerStore.put(id, customer);
+        customer360Cache.invalidate(id);
+        lookupIndex.index(customer);
         return customer;
     }
 
     // ============ Private Helper Methods ============
 
+    private void require2faSetup(Map<String, Object> customerData) {
+        if (!Boolean.TRUE.equals(customerData.get("2faSetup"))) {
+            throw new RuntimeException("2FA setup required for registration (auth_enable_2fa)");
+        }
+    }
+
+    private TelecomCustomer newCustomer(Map<String, Object> customerData) {
+        TelecomCustomer customer = new TelecomCustomer();
+        customer.setCustomerId(UUID.randomUUID().toString());
+        customer.setFirstName((String) customerData.get("firstName"));
+        customer.setLastName((String) customerData.get("lastName"));
+        customer.setEmail((String) customerData.get("email"));
+        customer.setPhoneNumber((String) customerData.get("phoneNumber"));
+        customer.setMsisdn((String) customerData.get("msisdn"));
+        customer.setCustomerType((String) customerData.getOrDefault("customerType", "INDIVIDUAL"));
+        customer.setStatus(CustomerStatus.REGISTERED);
+        customer.setAccountCreatedAt(System.currentTimeMillis());
+        customer.setLastActivityAt(System.currentTimeMillis());
+        customer.setSegment("BRONZE");
+        customer.setChurnRiskScore(0);
+        customer.setLifetimeValue(0.0);
+        return customer;
+    }
+
+    private BillingProfile newBillingProfile(TelecomCustomer customer) {
+        BillingProfile billing = new BillingProfile();
+        billing.setAccountNumber("ACC-" + customer.getCustomerId().substring(0, 8).toUpperCase());
+        billing.setBillingCycle("MONTHLY");
+        billing.setCreditLimit(1000.0); // Default credit limit
+        billing.setAutoPaymentEnabled(false);
+        return billing;
+    }
+
+    /**
+     * With uniqueEmail, the email is checked again against the live index as the
+     * customer is indexed, so registrations racing past the earlier checks cannot
+     * both store the same email.
+     */
+    private void storeRegisteredCustomer(TelecomCustomer customer, boolean uniqueEmail) {
+        if (!uniqueEmail) {
+            lookupIndex.index(customer);
+        } else if (!lookupIndex.indexIfEmailFree(customer)) {
+            throw new RuntimeException("Duplicate customer detected with email: " + customer.getEmail());
+        }
+        billingProfiles.put(customer.getCustomerId(), customer.getBillingProfile());
+        customerStore.put(customer.getCustomerId(), customer);
+        recordLifecycleEvent(CustomerEventType.REGISTERED, customer, null);
+    }
+
+    /**
+     * Bulk registration stages, in the same order as registerCustomer.
+     * Worker counts are defaults; customer.bulk.stage-workers overrides them.
+     */
+    private void configureBulkRegistration() {
+        List<BulkRegistrationPipeline.Stage> stages = new ArrayList<>();
+        stages.add(new BulkRegistrationPipeline.Stage("validation",
+            FeatureFlagConstants.ENABLE_PROFILE_VALIDATION, 2, (customer, job) -> validateRegistrationFields(customer)));
+        stages.add(new BulkRegistrationPipeline.Stage("verification",
+            FeatureFlagConstants.ENABLE_CUSTOMER_VERIFICATION, 1, (customer, job) -> verifyCustomer(customer)));
+        stages.add(new BulkRegistrationPipeline.Stage("kyc",
+            FeatureFlagConstants.ENABLE_KYC_VALIDATION, 4, (customer, job) -> {
+                performKYCValidation(customer);
+                customer.setKycVerifiedAt(System.currentTimeMillis());
+            }));
+        stages.add(new BulkRegistrationPipeline.Stage("credit-check",
+            FeatureFlagConstants.ENABLE_CREDIT_CHECK, 4, (customer, job) -> performCreditCheck(customer)));
+        stages.add(new BulkRegistrationPipeline.Stage("fraud-detection",
+            FeatureFlagConstants.ENABLE_FRAUD_DETECTION, 2, (customer, job) -> performFraudDetection(customer)));
+        stages.add(new BulkRegistrationPipeline.Stage("duplicate-detection",
+            FeatureFlagConstants.ENABLE_DUPLICATE_DETECTION, 2, (customer, job) -> {
+                // Claimed emails cover existing customers and earlier rows of the same job;
+                // other jobs and single registrations are caught when the row is persisted
+                if (!job.claimKey(customer.getEmail())) {
+                    throw new RuntimeException("Duplicate customer detected with email: " + customer.getEmail());
+                }
+            }));
+        stages.add(new BulkRegistrationPipeline.Stage("persist",
+            null, 2, (customer, job) -> storeRegisteredCustomer(customer, job.isStageEnabled("duplicate-detection"))));
+        bulkRegistrationPipeline.configure(stages);
+    }
+
+    private void validateRegistrationFields(TelecomCustomer customer) {
+        if (!CustomerFieldValidator.isValidName(customer.getFirstName())
+                || !CustomerFieldValidator.isValidName(customer.getLastName())) {
+            throw new RuntimeException("Invalid customer name");
+        }
+        if (!CustomerFieldValidator.isValidEmail(customer.getEmail())) {
+            throw new RuntimeException("Invalid email: " + customer.getEmail());
+        }
+        if (customer.getMsisdn() != null && !CustomerFieldValidator.isValidMSISDN(customer.getMsisdn())) {
+            throw new RuntimeException("Invalid MSISDN: " + customer.getMsisdn());
+        }
+    }
+
     private void verifyCustomer(TelecomCustomer customer) {
         customer.setStatus(CustomerStatus.VERIFIED);
     }
@@ -702,17 +1115,24 @@ public class CustomerManagementService {
     }
 
     private void performCreditCheck(TelecomCustomer customer) {
+        String identityKey = CreditCheckCache.identityKey(customer.getFirstName(), customer.getLastName(),
+            customer.getEmail(), customer.getMsisdn());
+        CreditHistory report = creditCheckCache.get(identityKey, () -> creditBureau.fetchReport(identityKey));
+
+        // Each customer gets its own history record; the cached report is shared
         CreditHistory history = new CreditHistory();
         history.setRecordId(UUID.randomUUID().toString());
-        history.setCreditScore(600 + Math.random() * 400); // 600-1000
-        history.setStatus("APPROVED");
+        history.setCreditScore(report.getCreditScore());
+        history.setCheckDate(report.getCheckDate());
+        history.setStatus(report.getStatus());
 
-        if (history.getCreditScore() < 700) {
-            customer.setBillingProfile(customer.getBillingProfile());
+        if (history.getCreditScore() < 700 && customer.getBillingProfile() != null) {
             customer.getBillingProfile().setCreditLimit(500.0);
         }
 
-        customer.getCreditHistory().add(history);
+        synchronized (customer) {
+            customer.getCreditHistory().add(history);
+        }
     }
 
     private void performFraudDetection(TelecomCustomer customer) {
@@ -732,14 +1152,161 @@ public class CustomerManagementService {
             });
     }
 
+    private Map<String, Object> assembleCustomer360(String customerId) {
+        TelecomCustomer customer = customerStore.get(customerId);
+        if (customer == null) return null;
+
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("customerId", customer.getCustomerId());
+        profile.put("firstName", customer.getFirstName());
+        profile.put("lastName", customer.getLastName());
+        profile.put("email", customer.getEmail());
+        profile.put("phoneNumber", customer.getPhoneNumber());
+        profile.put("msisdn", customer.getMsisdn());
+        profile.put("status", customer.getStatus());
+        profile.put("customerType", customer.getCustomerType());
+        profile.put("segment", customer.getSegment());
+        profile.put("accountCreatedAt", customer.getAccountCreatedAt());
+        profile.put("kycVerifiedAt", customer.getKycVerifiedAt());
+        profile.put("lastActivityAt", customer.getLastActivityAt());
+        profile.put("preferences", customer.getPreferences());
+
+        List<ServiceSubscription> subs = subscriptionsByCustomer.get(customerId);
+        List<Contract> contracts = contractsByCustomer.get(customerId);
+        double monthlyRevenue = 0;
+        if (subs != null) {
+            for (ServiceSubscription sub : subs) monthlyRevenue += sub.getMonthlyCharges();
+        }
+        int customerMonths = (int) ((System.currentTimeMillis() - customer.getAccountCreatedAt()) / (30L * 24 * 60 * 60 * 1000));
+
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("lifetimeValue", monthlyRevenue * customerMonths * 0.85);
+        value.put("monthlyRevenue", monthlyRevenue);
+        value.put("customerMonths", customerMonths);
+        value.put("churnRiskScore", customer.getChurnRiskScore());
+        value.put("fraudRiskDetected", customer.isFraudRiskDetected());
+
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("profile", profile);
+        view.put("billingProfile", billingProfiles.get(customerId));
+        view.put("subscriptions", subs != null ? new ArrayList<>(subs) : new ArrayList<>());
+        view.put("contracts", contracts != null ? new ArrayList<>(contracts) : new ArrayList<>());
+        view.put("value", value);
+        view.put("generatedAt", System.currentTimeMillis());
+        return view;
+    }
+
+    private Contract findCustomerContract(String customerId, String contractId) {
+        Contract contract = contractIndex.find(contractId);
+        if (contract == null || !customerId.equals(contractIndex.customerOf(contractId))) {
+            throw new RuntimeException("Contract not found");
+        }
+        return contract;
+    }
+
+    /**
+     * Start a new term where the current one ends (or now, for contracts without dates).
+     */
+    private void extendContract(Contract contract) {
+        long start = contract.getEndDate() != null ? contract.getEndDate().getTimestamp() : System.currentTimeMillis();
+        contract.setStartDate(new LocalDateTime(start));
+        contract.setEndDate(new LocalDateTime(CustomerManagementUtils.addMonths(start, contract.getDurationMonths())));
+        contract.setContractStatus("RENEWED");
+    }
+
+    /**
+     * Scheduled handling of a contract that reached its end date: AUTO_RENEW
+     * contracts start a new term, all others expire.
+     */
+    private ContractExpiryIndex.Outcome handleContractExpiry(String customerId, Contract contract) {
+        synchronized (contract) {
+            if (!"ACTIVE".equals(contract.getContractStatus()) && !"RENEWED".equals(contract.getContractStatus())) {
+                return ContractExpiryIndex.Outcome.NOT_DUE;
+            }
+            // A manual renewal may have moved the end date since this run picked the contract
+            if (contract.getEndDate() == null || contract.getEndDate().getTimestamp() > System.currentTimeMillis()) {
+                return ContractExpiryIndex.Outcome.NOT_DUE;
+            }
+            boolean renew = "AUTO_RENEW".equals(contract.getRenewalOption()) && contract.getDurationMonths() > 0;
+            if (renew) {
+                extendContract(contract);
+            } else {
+                contract.setContractStatus("EXPIRED");
+            }
+            contractIndex.index(customerId, contract);
+            customer360Cache.invalidate(customerId);
+            return renew ? ContractExpiryIndex.Outcome.RENEWED : ContractExpiryIndex.Outcome.EXPIRED;
+        }
+    }
+
     private void syncWithBillingSystem(String customerId, BillingProfile billing) {
-        // Sync with external billing system (Kafka/API call)
+        // Billing consumes the event journal by offset instead of polling REST
+        TelecomCustomer customer = customerStore.get(customerId);
+        if (customer == null) return;
+        recordLifecycleEvent(CustomerEventType.BILLING_PROFILE_UPDATED, customer,
+            "paymentMethod=" + billing.getPaymentMethod() + ";billingCycle=" + billing.getBillingCycle()
+                + ";autoPayment=" + billing.isAutoPaymentEnabled());
     }
 
     private void updateNotificationPreferences(String customerId, CustomerPreferences prefs) {
         // Send to notification service
     }
 
+    /**
+     * Fold aggregated usage for one customer into the matching subscriptions.
+     * Usage goes to the active subscription of the same service type, falling back
+     * to the first active subscription, and counts as customer activity.
+     */
+    private boolean applyUsage(String customerId, long voiceMinutes, long smsCount, long dataMB, long videoMinutes) {
+        TelecomCustomer customer = customerStore.get(customerId);
+        if (customer == null) return false;
+
+        List<ServiceSubscription> subs = subscriptionsByCustomer.get(customerId);
+        if (subs == null || subs.isEmpty()) return false;
+
+        addUsage(findUsageSubscription(subs, "VOICE"), voiceMinutes, 0, 0, 0);
+        addUsage(findUsageSubscription(subs, "SMS"), 0, smsCount, 0, 0);
+        addUsage(findUsageSubscription(subs, "DATA"), 0, 0, dataMB, 0);
+        addUsage(findUsageSubscription(subs, "VIDEO"), 0, 0, 0, videoMinutes);
+
+        customer.setLastActivityAt(System.currentTimeMillis());
+        customer360Cache.invalidate(customerId);
+        return true;
+    }
+
+    private ServiceSubscription findUsageSubscription(List<ServiceSubscription> subs, String serviceType) {
+        ServiceSubscription fallback = null;
+        for (ServiceSubscription sub : subs) {
+            if (!sub.isActive()) continue;
+            if (serviceType.equals(sub.getServiceType())) return sub;
+            if (fallback == null) fallback = sub;
+        }
+        return fallback;
+    }
+
+    private void addUsage(ServiceSubscription sub, long voiceMinutes, long smsCount, long dataMB, long videoMinutes) {
+        if (sub == null || (voiceMinutes | smsCount | dataMB | videoMinutes) == 0) return;
+        UsageMetrics metrics = sub.getUsageMetrics();
+        synchronized (metrics) {
+            metrics.setVoiceMinutesUsed(metrics.getVoiceMinutesUsed() + voiceMinutes);
+            metrics.setSmsCount(metrics.getSmsCount() + smsCount);
+            metrics.setDataUsedMB(metrics.getDataUsedMB() + dataMB);
+            metrics.setVideoCallMinutes(metrics.getVideoCallMinutes() + videoMinutes);
+            metrics.setPercentageOfQuotaUsed(CustomerManagementUtils.calculateQuotaPercentage(
+                metrics.getDataUsedMB(), metrics.getVoiceMinutesUsed(), metrics.getSmsCount()));
+        }
+    }
+
+    private double monthlyCharges(String customerId) {
+        List<ServiceSubscription> subs = subscriptionsByCustomer.get(customerId);
+        if (subs == null) return 0;
+        double total = 0;
+        for (ServiceSubscription sub : subs) {
+            if (sub.isActive()) total += sub.getMonthlyCharges();
+        }
+        return total;
+    }
+
     private boolean matchesSegmentCriteria(TelecomCustomer customer, String criteria) {
         if ("HIGH_VALUE".equals(criteria)) {
             return customer.getLifetimeValue() > 5000;
@@ -763,6 +1330,19 @@ public class CustomerManagementService {
     }
 
     private void syncProfileToExternalSystems(TelecomCustomer customer) {
-        // Sync to CRM, Billing, Notification systems
+        // CRM, Billing and Notification systems tail the event journal for profile changes
+        recordLifecycleEvent(CustomerEventType.PROFILE_UPDATED, customer, null);
+    }
+
+    /**
+     * Append a lifecycle event to the journal and apply it to the projection.
+     * Both happen under the journal lock so the projection sees events in journal order.
+     */
+    private void recordLifecycleEvent(CustomerEventType type, TelecomCustomer customer, String reason) {
+        synchronized (eventJournal) {
+            long offset = eventJournal.append(type, customer.getCustomerId(), customer.getStatus(),
+                reason, customer.getLastActivityAt());
+            lifecycleProjection.apply(offset, customer.getCustomerId(), customer.getStatus());
+        }
     }
 }
@@ -0,0 +1,469 @@
+package com.telecom.customermanagement.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Lock-free loyalty points ledger.
+ * Every enrolled account owns a slot in segmented primitive counter arrays
+ * (current balance, lifetime points earned and its latest log entry), updated with
+ * atomic add/CAS so concurrent purchases never lose an accrual. Every movement of
+ * points is also written to an append-only audit log on disk, and each entry links to
+ * the previous entry of the same account, so an account's history is read without a
+ * scan. Nothing is dropped from the log; on startup it is replayed to rebuild the
+ * enrolled accounts and their balances. Account ids are customer UUIDs, as in the
+ * customer event journal.
+ */
+@Component
+public class LoyaltyLedger {
+
+    public static final int TYPE_ENROLLMENT = 1;
+    public static final int TYPE_ACCRUAL = 2;
+    public static final int TYPE_REDEMPTION = 3;
+    public static final int TYPE_BATCH_ACCRUAL = 4;
+    public static final int TYPE_CLOSURE = 5;
+
+    private static final int SEGMENT_BITS = 16;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int MAX_SEGMENTS = 1024;
+
+    // Per slot: [3*i] = balance, [3*i+1] = lifetime, [3*i+2] = latest log sequence + 1 (0 when none)
+    private static final int FIELDS = 3;
+    private static final int LIFETIME = 1;
+    private static final int LAST_ENTRY = 2;
+
+    private final AtomicReferenceArray<AtomicLongArray> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final TransactionLog log = new TransactionLog();
+
+    @Value("${customer.loyalty.log-dir:data/loyalty}")
+    private String logDir = "data/loyalty";
+
+    @Value("${customer.loyalty.force-interval-ms:1000}")
+    private long forceIntervalMs = 1000;
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void open() {
+        try {
+            log.open(Paths.get(logDir));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open loyalty log: " + logDir, e);
+        }
+        recover();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loyalty-log-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(log::force, forceIntervalMs, forceIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) flusher.shutdown();
+        log.force();
+    }
+
+    /**
+     * Enroll an account; returns its current balance (zero for new accounts).
+     */
+    public long enroll(String customerId) {
+        UUID id = UUID.fromString(customerId);
+        boolean[] created = new boolean[1];
+        int slot = slots.computeIfAbsent(customerId, k -> {
+            created[0] = true;
+            return allocateSlot();
+        });
+        if (created[0]) {
+            record(slot, log.reserve(), TYPE_ENROLLMENT, 0, id);
+        }
+        return balanceAt(slot);
+    }
+
+    public boolean isEnrolled(String customerId) {
+        return slots.containsKey(customerId);
+    }
+
+    /**
+     * Accrue points for a purchase. Returns the new balance.
+     */
+    public long accrue(String customerId, long points) {
+        if (points <= 0) throw new IllegalArgumentException("Accrued points must be positive");
+        int slot = requireSlot(customerId);
+        long seq = log.reserve();
+        long balance = add(slot, points);
+        record(slot, seq, TYPE_ACCRUAL, points, null);
+        return balance;
+    }
+
+    /**
+     * Redeem points if the balance covers them. Returns the new balance.
+     */
+    public long redeem(String customerId, long points) {
+        if (points <= 0) throw new IllegalArgumentException("Redeemed points must be positive");
+        int slot = requireSlot(customerId);
+        AtomicLongArray segment = segments.get(slot >>> SEGMENT_BITS);
+        int index = indexOf(slot);
+        long seq = log.reserve();
+        while (true) {
+            long current = segment.get(index);
+            if (current < points) {
+                // The reserved sequence stays unwritten; readers never reach it
+                throw new RuntimeException("Insufficient loyalty points: balance " + current + ", requested " + points);
+            }
+            if (segment.compareAndSet(index, current, current - points)) {
+                record(slot, seq, TYPE_REDEMPTION, -points, null);
+                return current - points;
+            }
+        }
+    }
+
+    /**
+     * Apply a batch of accruals in one parallel pass. The arrays are columnar:
+     * {@code points[i]} is credited to {@code customerIds[i]}. Accounts that are not
+     * enrolled, and non-positive amounts, are skipped. Returns the number of accounts credited.
+     */
+    public int accrueBatch(String[] customerIds, int[] points) {
+        if (customerIds.length != points.length) {
+            throw new IllegalArgumentException("customerIds and points must have the same length");
+        }
+        return (int) IntStream.range(0, customerIds.length)
+            .parallel()
+            .filter(i -> {
+                if (points[i] <= 0) return false;
+                Integer slot = slots.get(customerIds[i]);
+                if (slot == null) return false;
+                long seq = log.reserve();
+                add(slot, points[i]);
+                record(slot, seq, TYPE_BATCH_ACCRUAL, points[i], null);
+                return true;
+            })
+            .count();
+    }
+
+    public long balance(String customerId) {
+        Integer slot = slots.get(customerId);
+        return slot != null ? balanceAt(slot) : 0;
+    }
+
+    public long lifetimePoints(String customerId) {
+        Integer slot = slots.get(customerId);
+        if (slot == null) return 0;
+        return segments.get(slot >>> SEGMENT_BITS).get(indexOf(slot) + LIFETIME);
+    }
+
+    /**
+     * Close an account (e.g. right to be forgotten). Its balance is zeroed and the
+     * closure is logged; the slot itself is not reused.
+     */
+    public void close(String customerId) {
+        Integer slot = slots.remove(customerId);
+        if (slot == null) return;
+        AtomicLongArray segment = segments.get(slot >>> SEGMENT_BITS);
+        long seq = log.reserve();
+        long previous = segment.getAndSet(indexOf(slot), 0);
+        record(slot, seq, TYPE_CLOSURE, -previous, null);
+    }
+
+    /**
+     * Most recent audit log entries for an account, newest first.
+     */
+    public List<Map<String, Object>> transactions(String customerId, int limit) {
+        Integer slot = slots.get(customerId);
+        if (slot == null) return new ArrayList<>();
+        long last = segments.get(slot >>> SEGMENT_BITS).get(indexOf(slot) + LAST_ENTRY);
+        return log.entriesFrom(last - 1, limit);
+    }
+
+    public long transactionCount() {
+        return log.size();
+    }
+
+    public int enrolledAccounts() {
+        return slots.size();
+    }
+
+    // ============ Private Helper Methods ============
+
+    private int allocateSlot() {
+        int slot = nextSlot.getAndIncrement();
+        ensureSegment(slot);
+        return slot;
+    }
+
+    private AtomicLongArray ensureSegment(int slot) {
+        int segmentIndex = slot >>> SEGMENT_BITS;
+        if (segmentIndex >= MAX_SEGMENTS) {
+            throw new IllegalStateException("Loyalty ledger capacity exceeded");
+        }
+        if (segments.get(segmentIndex) == null) {
+            segments.compareAndSet(segmentIndex, null, new AtomicLongArray(SEGMENT_SIZE * FIELDS));
+        }
+        return segments.get(segmentIndex);
+    }
+
+    /**
+     * Rebuild balances, lifetime points, history links and the enrolled accounts from
+     * the log. Balances are the sum of the logged movements, so the order in which
+     * concurrent writers took their sequence numbers does not matter.
+     */
+    private void recover() {
+        Map<Integer, String> owners = new HashMap<>();
+        Set<Integer> closed = new HashSet<>();
+        int[] highestSlot = {-1};
+        log.replay((seq, slot, type, points, customer) -> {
+            AtomicLongArray segment = ensureSegment(slot);
+            int index = indexOf(slot);
+            segment.addAndGet(index, points);
+            if (type == TYPE_ACCRUAL || type == TYPE_BATCH_ACCRUAL) segment.getAndAdd(index + LIFETIME, points);
+            segment.set(index + LAST_ENTRY, seq + 1);
+            if (type == TYPE_ENROLLMENT) owners.put(slot, customer.toString());
+            else if (type == TYPE_CLOSURE) closed.add(slot);
+            highestSlot[0] = Math.max(highestSlot[0], slot);
+        });
+        for (Map.Entry<Integer, String> owner : owners.entrySet()) {
+            if (!closed.contains(owner.getKey())) slots.put(owner.getValue(), owner.getKey());
+        }
+        nextSlot.set(highestSlot[0] + 1);
+    }
+
+    private int requireSlot(String customerId) {
+        Integer slot = slots.get(customerId);
+        if (slot == null) throw new RuntimeException("Customer is not enrolled in the loyalty program");
+        return slot;
+    }
+
+    private static int indexOf(int slot) {
+        return (slot & (SEGMENT_SIZE - 1)) * FIELDS;
+    }
+
+    private long add(int slot, long points) {
+        AtomicLongArray segment = segments.get(slot >>> SEGMENT_BITS);
+        int index = indexOf(slot);
+        segment.getAndAdd(index + LIFETIME, points);
+        return segment.addAndGet(index, points);
+    }
+
+    private long balanceAt(int slot) {
+        return segments.get(slot >>> SEGMENT_BITS).get(indexOf(slot));
+    }
+
+    /**
+     * Write a reserved log entry and make it the account's latest.
+     */
+    private void record(int slot, long seq, int type, long points, UUID customer) {
+        AtomicLongArray segment = segments.get(slot >>> SEGMENT_BITS);
+        long previous = segment.getAndSet(indexOf(slot) + LAST_ENTRY, seq + 1) - 1;
+        log.write(seq, slot, type, points, previous, customer);
+    }
+
+    /**
+     * Durable audit log: fixed-size records in memory-mapped segment files, one
+     * position per sequence number, so writers take a sequence with a single atomic
+     * increment and write their own record without coordinating with each other.
+     * A record's type is written last with release semantics; a zero type is a
+     * position that was never written (a failed redemption, or a crash mid-write).
+     * Pages are forced to disk periodically and on shutdown; recent entries are
+     * served from the page cache.
+     */
+    private static final class TransactionLog {
+        private static final int RECORD_BYTES = 48;
+        private static final int TIMESTAMP = 0;
+        private static final int POINTS = 8;
+        private static final int PREVIOUS = 16;
+        private static final int ID_HI = 24;
+        private static final int ID_LO = 32;
+        private static final int SLOT = 40;
+        private static final int TYPE = 44;
+        private static final int SEGMENT_BITS = 20;
+        private static final int SEGMENT_RECORDS = 1 << SEGMENT_BITS;
+        private static final int MAX_SEGMENTS = 4096;
+        private static final int MAX_SPINS = 1000;
+        private static final VarHandle INT_VIEW =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+        private final AtomicReferenceArray<MappedByteBuffer> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+        private final AtomicLong sequence = new AtomicLong();
+        private volatile int segmentCount;
+        private Path dir;
+
+        void open(Path dir) throws IOException {
+            this.dir = dir;
+            Files.createDirectories(dir);
+            for (int i = 0; i < MAX_SEGMENTS && Files.exists(segmentPath(i)); i++) {
+                segments.set(i, map(i));
+                segmentCount = i + 1;
+            }
+        }
+
+        long reserve() {
+            return sequence.getAndIncrement();
+        }
+
+        void write(long seq, int slot, int type, long points, long previous, UUID customer) {
+            MappedByteBuffer segment = segmentOf(seq);
+            int at = positionOf(seq);
+            segment.putLong(at + TIMESTAMP, System.currentTimeMillis());
+            segment.putLong(at + POINTS, points);
+            segment.putLong(at + PREVIOUS, previous);
+            segment.putLong(at + ID_HI, customer != null ? customer.getMostSignificantBits() : 0);
+            segment.putLong(at + ID_LO, customer != null ? customer.getLeastSignificantBits() : 0);
+            segment.putInt(at + SLOT, slot);
+            // Publish the record: readers and replay only see it once the type is set
+            INT_VIEW.setRelease(segment, at + TYPE, type);
+        }
+
+        long size() {
+            return sequence.get();
+        }
+
+        /**
+         * Replay every written record in sequence order, then continue numbering after
+         * the highest one.
+         */
+        void replay(RecordVisitor visitor) {
+            long last = -1;
+            for (int s = 0; s < segmentCount; s++) {
+                MappedByteBuffer segment = segments.get(s);
+                for (int r = 0; r < SEGMENT_RECORDS; r++) {
+                    int at = r * RECORD_BYTES;
+                    int type = (int) INT_VIEW.getAcquire(segment, at + TYPE);
+                    if (type == 0) continue;
+                    long seq = ((long) s << SEGMENT_BITS) + r;
+                    UUID customer = type == TYPE_ENROLLMENT
+                        ? new UUID(segment.getLong(at + ID_HI), segment.getLong(at + ID_LO)) : null;
+                    visitor.visit(seq, segment.getInt(at + SLOT), type, segment.getLong(at + POINTS), customer);
+                    last = seq;
+                }
+            }
+            sequence.set(last + 1);
+        }
+
+        /**
+         * Follow an account's chain back from {@code seq}.
+         */
+        List<Map<String, Object>> entriesFrom(long seq, int limit) {
+            List<Map<String, Object>> entries = new ArrayList<>();
+            while (seq >= 0 && entries.size() < limit) {
+                int s = (int) (seq >>> SEGMENT_BITS);
+                MappedByteBuffer segment = s < segmentCount ? segments.get(s) : null;
+                if (segment == null) break;
+                int at = positionOf(seq);
+                int type = awaitType(segment, at);
+                if (type == 0) break;
+
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("sequence", seq);
+                entry.put("type", typeName(type));
+                entry.put("points", segment.getLong(at + POINTS));
+                entry.put("timestamp", segment.getLong(at + TIMESTAMP));
+                entries.add(entry);
+                seq = segment.getLong(at + PREVIOUS);
+            }
+            return entries;
+        }
+
+        /**
+         * Force the newest segments to disk; records are only appended, so older ones are clean.
+         */
+        void force() {
+            int count = segmentCount;
+            for (int s = Math.max(0, count - 2); s < count; s++) {
+                try {
+                    segments.get(s).force();
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to force loyalty log segment: " + e.getMessage());
+                }
+            }
+        }
+
+        private MappedByteBuffer segmentOf(long seq) {
+            int index = (int) (seq >>> SEGMENT_BITS);
+            if (index >= MAX_SEGMENTS) throw new IllegalStateException("Loyalty log capacity exceeded");
+            MappedByteBuffer segment = segments.get(index);
+            return segment != null ? segment : addSegment(index);
+        }
+
+        private synchronized MappedByteBuffer addSegment(int index) {
+            MappedByteBuffer segment = segments.get(index);
+            if (segment != null) return segment;
+            try {
+                segment = map(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open loyalty log segment " + index, e);
+            }
+            segments.set(index, segment);
+            if (index >= segmentCount) segmentCount = index + 1;
+            return segment;
+        }
+
+        private static int positionOf(long seq) {
+            return (int) (seq & (SEGMENT_RECORDS - 1)) * RECORD_BYTES;
+        }
+
+        /**
+         * Type of the record at {@code at}, waiting briefly if it is still being written
+         * (an account's latest entry is linked just before it is written); 0 if unwritten.
+         */
+        private static int awaitType(MappedByteBuffer segment, int at) {
+            for (int spins = 0; spins < MAX_SPINS; spins++) {
+                int type = (int) INT_VIEW.getAcquire(segment, at + TYPE);
+                if (type != 0) return type;
+                Thread.onSpinWait();
+            }
+            return 0;
+        }
+
+        private MappedByteBuffer map(int index) throws IOException {
+            try (FileChannel channel = FileChannel.open(segmentPath(index),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) SEGMENT_RECORDS * RECORD_BYTES);
+            }
+        }
+
+        private Path segmentPath(int index) {
+            return dir.resolve(String.format("loyalty-%06d.log", index));
+        }
+
+        private static String typeName(int type) {
+            switch (type) {
+                case TYPE_ENROLLMENT: return "ENROLLMENT";
+                case TYPE_ACCRUAL: return "ACCRUAL";
+                case TYPE_REDEMPTION: return "REDEMPTION";
+                case TYPE_BATCH_ACCRUAL: return "BATCH_ACCRUAL";
+                case TYPE_CLOSURE: return "CLOSURE";
+                default: return "UNKNOWN";
+            }
+        }
+    }
+
+    private interface RecordVisitor {
+        void visit(long seq, int slot, int type, long points, UUID customer);
+    }
+}
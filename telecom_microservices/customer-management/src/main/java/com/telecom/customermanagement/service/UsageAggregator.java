@@ -0,0 +1,239 @@
+package com.telecom.customermanagement.service;
+
+import com.telecom.customermanagement.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * High-rate aggregation of call-detail records into per-customer usage totals.
+ *
+ * Ingesting threads add to one of several striped buffers (sized to the number of
+ * cores), chosen by thread, and take that stripe's lock once per batch rather than
+ * once per record. A background flush swaps each stripe's buffer for an empty one
+ * and folds the totals into the registered {@link UsageSink} outside of any stripe lock.
+ * Totals the sink did not take, because it failed or none is registered yet, are
+ * carried over and folded first on the next flush.
+ */
+@Component
+public class UsageAggregator {
+
+    /**
+     * Receives aggregated usage deltas for one customer.
+     */
+    public interface UsageSink {
+        /**
+         * @return false if the customer is unknown and the usage was dropped
+         */
+        boolean apply(String customerId, long voiceMinutes, long smsCount, long dataMB, long videoMinutes);
+    }
+
+    private static final int USAGE_TYPES = UsageType.values().length;
+
+    @Value("${customer.usage.flush-interval-ms:1000}")
+    private long flushIntervalMs = 1000;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    private final LongAdder recordsIngested = new LongAdder();
+    private final LongAdder recordsRejected = new LongAdder();
+    private final AtomicLong customersFolded = new AtomicLong();
+    private final AtomicLong customersDropped = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    // Totals drained from the stripes but not yet applied; only touched by flush()
+    private Map<String, long[]> carriedOver = new HashMap<>();
+    private volatile int carriedOverCustomers;
+    private volatile long lastFlushAt;
+    private volatile long lastFlushMicros;
+
+    private volatile UsageSink sink;
+    private ScheduledExecutorService scheduler;
+
+    public UsageAggregator() {
+        int size = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) stripes[i] = new Stripe();
+        stripeMask = size - 1;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "usage-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdown();
+        flush();
+    }
+
+    public void setSink(UsageSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Ingest a batch of records supplied as columns: {@code quantities[i]} of
+     * {@code usageTypes[i]} was consumed by {@code customerIds[i]}.
+     * Records with a missing customer/type or a negative quantity are rejected.
+     *
+     * @return number of records accepted
+     */
+    public int ingest(String[] customerIds, UsageType[] usageTypes, long[] quantities) {
+        if (customerIds.length != usageTypes.length || customerIds.length != quantities.length) {
+            throw new IllegalArgumentException("CDR columns must have the same length");
+        }
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        int accepted = 0;
+        synchronized (stripe) {
+            Map<String, long[]> totals = stripe.totals;
+            String lastId = null;
+            long[] last = null;
+            for (int i = 0; i < customerIds.length; i++) {
+                String customerId = customerIds[i];
+                UsageType type = usageTypes[i];
+                long quantity = quantities[i];
+                if (customerId == null || type == null || quantity < 0) continue;
+                // CDR batches are usually grouped by subscriber; skip the lookup for runs
+                if (customerId != lastId && !customerId.equals(lastId)) {
+                    last = totals.get(customerId);
+                    if (last == null) {
+                        last = new long[USAGE_TYPES];
+                        totals.put(customerId, last);
+                    }
+                    lastId = customerId;
+                }
+                last[type.ordinal()] += quantity;
+                accepted++;
+            }
+        }
+        recordsIngested.add(accepted);
+        recordsRejected.add(customerIds.length - accepted);
+        return accepted;
+    }
+
+    /**
+     * Fold all buffered usage into the sink. Safe to call concurrently with ingestion.
+     * If the sink throws, everything it has not applied yet is kept for the next flush
+     * and the exception is rethrown.
+     */
+    public synchronized Map<String, Object> flush() {
+        long start = System.nanoTime();
+        UsageSink target = sink;
+        Map<String, long[]> pending = carriedOver;
+        carriedOver = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            Map<String, long[]> drained;
+            synchronized (stripe) {
+                if (stripe.totals.isEmpty()) continue;
+                drained = stripe.totals;
+                stripe.totals = new HashMap<>(Math.max(16, drained.size() * 2));
+            }
+            if (pending.isEmpty()) {
+                pending = drained;
+            } else {
+                for (Map.Entry<String, long[]> e : drained.entrySet()) merge(pending, e.getKey(), e.getValue());
+            }
+        }
+
+        long folded = 0;
+        long dropped = 0;
+        RuntimeException failure = null;
+        if (target == null) {
+            carriedOver = pending;
+        } else {
+            Iterator<Map.Entry<String, long[]>> it = pending.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, long[]> e = it.next();
+                long[] t = e.getValue();
+                boolean applied;
+                try {
+                    applied = target.apply(e.getKey(),
+                        t[UsageType.VOICE.ordinal()], t[UsageType.SMS.ordinal()],
+                        t[UsageType.DATA.ordinal()], t[UsageType.VIDEO.ordinal()]);
+                } catch (RuntimeException ex) {
+                    failure = ex;
+                    break;
+                }
+                it.remove();
+                if (applied) folded++; else dropped++;
+            }
+            // Whatever is left, including the customer the sink failed on, goes round again
+            if (!pending.isEmpty()) carriedOver = pending;
+        }
+        carriedOverCustomers = carriedOver.size();
+        customersFolded.addAndGet(folded);
+        customersDropped.addAndGet(dropped);
+        flushCount.incrementAndGet();
+        lastFlushAt = System.currentTimeMillis();
+        lastFlushMicros = (System.nanoTime() - start) / 1000;
+        if (failure != null) {
+            flushFailures.incrementAndGet();
+            throw failure;
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("customersFolded", folded);
+        result.put("customersDropped", dropped);
+        result.put("customersCarriedOver", carriedOverCustomers);
+        result.put("durationMicros", lastFlushMicros);
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        int buffered = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                buffered += stripe.totals.size();
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("recordsIngested", recordsIngested.sum());
+        stats.put("recordsRejected", recordsRejected.sum());
+        stats.put("customersFolded", customersFolded.get());
+        stats.put("customersDropped", customersDropped.get());
+        stats.put("bufferedCustomers", buffered);
+        stats.put("carriedOverCustomers", carriedOverCustomers);
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("stripes", stripes.length);
+        stats.put("flushCount", flushCount.get());
+        stats.put("flushIntervalMs", flushIntervalMs);
+        stats.put("lastFlushAt", lastFlushAt);
+        stats.put("lastFlushMicros", lastFlushMicros);
+        return stats;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Keep the scheduled flush alive; unapplied totals are retried on the next cycle
+            System.err.println("Usage flush failed: " + e.getMessage());
+        }
+    }
+
+    private static void merge(Map<String, long[]> into, String customerId, long[] totals) {
+        long[] existing = into.putIfAbsent(customerId, totals);
+        if (existing != null) {
+            for (int i = 0; i < USAGE_TYPES; i++) existing[i] += totals[i];
+        }
+    }
+
+    private static final class Stripe {
+        private Map<String, long[]> totals = new HashMap<>();
+    }
+}
@@ -0,0 +1,219 @@
+package com.telecom.customermanagement.util;
+
+import java.util.BitSet;
+
+/**
+ * Single-pass, allocation-free validators for customer contact and device fields.
+ * Each scanner accepts exactly what the corresponding regular expression in
+ * CustomerManagementUtils used to accept, without compiling or running a regex.
+ *
+ * The batch methods take columnar input (one array per field, row i across all
+ * arrays is one subscriber) and return a BitSet with bit i set when row i is valid,
+ * so bulk imports can validate millions of rows without per-row garbage.
+ */
+public class CustomerFieldValidator {
+
+    public static final int MAX_EMAIL_LENGTH = 254;
+    public static final int MAX_NAME_LENGTH = 100;
+    public static final int IMEI_LENGTH = 15;
+
+    // ============ Single-value scanners ============
+
+    /**
+     * Equivalent to {@code ^[A-Za-z0-9+_.-]+@(.+)$} with a 254 character limit.
+     */
+    public static boolean isValidEmail(String email) {
+        if (email == null) return false;
+        int len = email.length();
+        if (len == 0 || len > MAX_EMAIL_LENGTH) return false;
+        int i = 0;
+        for (; i < len; i++) {
+            char c = email.charAt(i);
+            if (c == '@') break;
+            if (!isEmailLocalChar(c)) return false;
+        }
+        // Need a non-empty local part, the '@' and a non-empty domain
+        if (i == 0 || i >= len - 1) return false;
+        for (int j = i + 1; j < len; j++) {
+            if (isLineTerminator(email.charAt(j))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Equivalent to {@code ^\+?1?\d{9,15}$}.
+     */
+    public static boolean isValidPhoneNumber(String phone) {
+        if (phone == null) return false;
+        int len = phone.length();
+        int start = len > 0 && phone.charAt(0) == '+' ? 1 : 0;
+        int digits = len - start;
+        if (!allDigits(phone, start, len)) return false;
+        // The optional trunk prefix '1' allows one extra leading digit
+        return (digits >= 9 && digits <= 15) || (digits == 16 && phone.charAt(start) == '1');
+    }
+
+    /**
+     * Equivalent to {@code ^\+?[1-9]\d{1,14}$} (E.164).
+     */
+    public static boolean isValidMSISDN(String msisdn) {
+        if (msisdn == null) return false;
+        int len = msisdn.length();
+        int start = len > 0 && msisdn.charAt(0) == '+' ? 1 : 0;
+        int digits = len - start;
+        if (digits < 2 || digits > 15) return false;
+        char first = msisdn.charAt(start);
+        return first >= '1' && first <= '9' && allDigits(msisdn, start + 1, len);
+    }
+
+    /**
+     * Equivalent to {@code ^[a-zA-Z\s\-']+$} with a 100 character limit.
+     */
+    public static boolean isValidName(String name) {
+        if (name == null) return false;
+        int len = name.length();
+        if (len == 0 || len > MAX_NAME_LENGTH) return false;
+        for (int i = 0; i < len; i++) {
+            char c = name.charAt(i);
+            boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || c == ' ' || c == '-' || c == '\'' || (c >= '\t' && c <= '\r');
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 15 ASCII digits; when {@code checkLuhn} is set the last digit must also be
+     * the Luhn check digit of the first 14 (as assigned by GSMA).
+     */
+    public static boolean isValidIMEI(String imei, boolean checkLuhn) {
+        if (imei == null || imei.length() != IMEI_LENGTH) return false;
+        int sum = 0;
+        for (int i = 0; i < IMEI_LENGTH; i++) {
+            int d = imei.charAt(i) - '0';
+            if (d < 0 || d > 9) return false;
+            // Double every second digit counting from the left (odd index)
+            if ((i & 1) == 1) {
+                d <<= 1;
+                if (d > 9) d -= 9;
+            }
+            sum += d;
+        }
+        return !checkLuhn || sum % 10 == 0;
+    }
+
+    /**
+     * Keep digits, and a '+' only if it is the first digit-or-plus character.
+     * Returns the input itself when it is already normalized.
+     */
+    public static String normalizePhoneNumber(String phone) {
+        if (phone == null) return "";
+        int len = phone.length();
+        char[] out = null;
+        int n = 0;
+        boolean seenKept = false;
+        for (int i = 0; i < len; i++) {
+            char c = phone.charAt(i);
+            boolean keep = (c >= '0' && c <= '9') || (c == '+' && !seenKept);
+            if (c == '+' || keep) seenKept = true;
+            if (keep) {
+                if (out != null) out[n] = c;
+                n++;
+            } else if (out == null) {
+                out = new char[len];
+                phone.getChars(0, i, out, 0);
+            }
+        }
+        return out == null ? phone : new String(out, 0, n);
+    }
+
+    // ============ Batch validation ============
+
+    public static BitSet validateEmails(String[] emails) {
+        BitSet valid = new BitSet(emails.length);
+        for (int i = 0; i < emails.length; i++) {
+            if (isValidEmail(emails[i])) valid.set(i);
+        }
+        return valid;
+    }
+
+    public static BitSet validatePhoneNumbers(String[] phones) {
+        BitSet valid = new BitSet(phones.length);
+        for (int i = 0; i < phones.length; i++) {
+            if (isValidPhoneNumber(phones[i])) valid.set(i);
+        }
+        return valid;
+    }
+
+    public static BitSet validateMSISDNs(String[] msisdns) {
+        BitSet valid = new BitSet(msisdns.length);
+        for (int i = 0; i < msisdns.length; i++) {
+            if (isValidMSISDN(msisdns[i])) valid.set(i);
+        }
+        return valid;
+    }
+
+    public static BitSet validateNames(String[] names) {
+        BitSet valid = new BitSet(names.length);
+        for (int i = 0; i < names.length; i++) {
+            if (isValidName(names[i])) valid.set(i);
+        }
+        return valid;
+    }
+
+    public static BitSet validateIMEIs(String[] imeis, boolean checkLuhn) {
+        BitSet valid = new BitSet(imeis.length);
+        for (int i = 0; i < imeis.length; i++) {
+            if (isValidIMEI(imeis[i], checkLuhn)) valid.set(i);
+        }
+        return valid;
+    }
+
+    /**
+     * Normalize a column of phone numbers in place.
+     */
+    public static void normalizePhoneNumbers(String[] phones) {
+        for (int i = 0; i < phones.length; i++) {
+            phones[i] = normalizePhoneNumber(phones[i]);
+        }
+    }
+
+    /**
+     * Validate whole subscriber rows: bit i is set when name, email and MSISDN of
+     * row i are all valid. Columns must have the same length.
+     */
+    public static BitSet validateSubscribers(String[] names, String[] emails, String[] msisdns) {
+        if (names.length != emails.length || names.length != msisdns.length) {
+            throw new IllegalArgumentException("Subscriber columns must have the same length");
+        }
+        BitSet valid = new BitSet(names.length);
+        for (int i = 0; i < names.length; i++) {
+            if (isValidName(names[i]) && isValidEmail(emails[i]) && isValidMSISDN(msisdns[i])) {
+                valid.set(i);
+            }
+        }
+        return valid;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private static boolean isEmailLocalChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+            || c == '+' || c == '_' || c == '.' || c == '-';
+    }
+
+    /**
+     * Characters that regex '.' does not match by default.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean allDigits(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+}
@@ -2,8 +2,9 @@ package com.telecom.customermanagement.util;
 
 import com.telecom.customermanagement.config.FeatureFlagConstants;
 import com.telecom.common.FeatureFlagReader;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * Utility functions for Customer Management with comprehensive telecom business logic.
@@ -11,62 +12,41 @@ import java.util.regex.Pattern;
  */
 public class CustomerManagementUtils {
 
-    private static final Pattern EMAIL_PATTERN = Pattern.compile(
-        "^[A-Za-z0-9+_.-]+@(.+)$"
-    );
-    private static final Pattern PHONE_PATTERN = Pattern.compile(
-        "^\\+?1?\\d{9,15}$"
-    );
-    private static final Pattern MSISDN_PATTERN = Pattern.compile(
-        "^\\+?[1-9]\\d{1,14}$"
-    );
-
     /**
      * Validate email format with complex rules
      */
     public static boolean validateEmail(String email) {
-        if (email == null || email.isEmpty()) return false;
-        return EMAIL_PATTERN.matcher(email).matches() && email.length() <= 254;
+        return CustomerFieldValidator.isValidEmail(email);
     }
 
     /**
      * Validate phone number for telecom
      */
     public static boolean validatePhoneNumber(String phone) {
-        if (phone == null || phone.isEmpty()) return false;
-        return PHONE_PATTERN.matcher(phone).matches();
+        return CustomerFieldValidator.isValidPhoneNumber(phone);
     }
 
     /**
      * Validate MSISDN (international mobile number)
      */
     public static boolean validateMSISDN(String msisdn) {
-        if (msisdn == null || msisdn.isEmpty()) return false;
-        return MSISDN_PATTERN.matcher(msisdn).matches();
+        return CustomerFieldValidator.isValidMSISDN(msisdn);
     }
 
     /**
      * Validate and normalize phone number
      */
     public static String normalizePhoneNumber(String phone) {
-        if (phone == null) return "";
         // Remove all non-digits except + prefix
-        String normalized = phone.replaceAll("[^0-9+]", "");
-        if (normalized.startsWith("+")) {
-            normalized = "+" + normalized.substring(1).replaceAll("\\D", "");
-        } else {
-            normalized = normalized.replaceAll("\\D", "");
-        }
-        return normalized;
+        return CustomerFieldValidator.normalizePhoneNumber(phone);
     }
 
     /**
      * Validate customer name format
      */
     public static boolean validateCustomerName(String name) {
-        if (name == null || name.isEmpty() || name.length() > 100) return false;
         // Allow letters, spaces, hyphens, and apostrophes
-        return name.matches("^[a-zA-Z\\s\\-']+$");
+        return CustomerFieldValidator.isValidName(name);
     }
 
     /**
@@ -148,6 +128,18 @@ public class CustomerManagementUtils {
         return Math.round(bill * 100.0) / 100.0;
     }
 
+    /**
+     * Calculate percentage of plan quota used, based on the most consumed allowance.
+     * Uses the same base allowances as calculateMonthlyBill.
+     */
+    public static double calculateQuotaPercentage(long dataUsedMB, long voiceMinutesUsed, long smsCount) {
+        double dataPct = dataUsedMB / (10 * 1024.0);      // 10GB base
+        double voicePct = voiceMinutesUsed / 500.0;       // 500 minutes base
+        double smsPct = smsCount / 200.0;                 // 200 SMS base
+        double pct = Math.max(dataPct, Math.max(voicePct, smsPct)) * 100;
+        return Math.round(pct * 100.0) / 100.0;
+    }
+
     /**
      * Determine customer segment based on LTV and usage
      */
@@ -203,14 +195,21 @@ public class CustomerManagementUtils {
     public static String formatPhoneForDisplay(String phone) {
         if (phone == null || phone.isEmpty()) return "";
         
-        String digits = phone.replaceAll("\\D", "");
+        char[] digits = new char[phone.length()];
+        int n = 0;
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') digits[n++] = c;
+        }
         
-        if (digits.length() == 10) {
-            return String.format("(%s) %s-%s", digits.substring(0, 3), digits.substring(3, 6), digits.substring(6));
-        } else if (digits.length() == 11) {
-            return String.format("+%s %s-%s-%s", digits.charAt(0), digits.substring(1, 4), digits.substring(4, 7), digits.substring(7));
-        } else if (digits.length() > 11) {
-            return String.format("+%s", digits);
+        if (n == 10) {
+            return new StringBuilder(14).append('(').append(digits, 0, 3).append(") ")
+                .append(digits, 3, 3).append('-').append(digits, 6, 4).toString();
+        } else if (n == 11) {
+            return new StringBuilder(15).append('+').append(digits[0]).append(' ')
+                .append(digits, 1, 3).append('-').append(digits, 4, 3).append('-').append(digits, 7, 4).toString();
+        } else if (n > 11) {
+            return new StringBuilder(n + 1).append('+').append(digits, 0, n).toString();
         }
         
         return phone;
@@ -358,8 +357,15 @@ public class CustomerManagementUtils {
      * Validate IMEI for device registration
      */
     public static boolean validateIMEI(String imei) {
-        if (imei == null || imei.length() != 15) return false;
-        return imei.matches("\\d{15}");
+        return CustomerFieldValidator.isValidIMEI(imei, false);
+    }
+
+    /**
+     * Add calendar months to an epoch-millis timestamp (in the system time zone)
+     */
+    public static long addMonths(long epochMillis, int months) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault())
+            .plusMonths(months).toInstant().toEpochMilli();
     }
 
     /**
@@ -0,0 +1,168 @@
+package com.telecom.customermanagement.service;
+
+import com.telecom.customermanagement.model.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Usage aggregation: totals survive a failed flush, and concurrent ingestion
+ * neither loses nor double-counts records. The throughput benchmark is tagged
+ * "perf" and only runs with -Dperf=true; it publishes records/s as a report entry
+ * and does not assert on speed.
+ */
+class UsageAggregatorTest {
+
+    private static final UsageType[] TYPES = UsageType.values();
+
+    /**
+     * Sums whatever it is given, per customer and usage type.
+     */
+    private static class SummingSink implements UsageAggregator.UsageSink {
+        final Map<String, long[]> totals = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean apply(String customerId, long voiceMinutes, long smsCount, long dataMB, long videoMinutes) {
+            long[] t = totals.computeIfAbsent(customerId, id -> new long[TYPES.length]);
+            t[UsageType.VOICE.ordinal()] += voiceMinutes;
+            t[UsageType.SMS.ordinal()] += smsCount;
+            t[UsageType.DATA.ordinal()] += dataMB;
+            t[UsageType.VIDEO.ordinal()] += videoMinutes;
+            return true;
+        }
+
+        long total() {
+            long sum = 0;
+            for (long[] t : totals.values()) for (long v : t) sum += v;
+            return sum;
+        }
+    }
+
+    @Test
+    void keepsTotalsWhenTheSinkFails() {
+        UsageAggregator aggregator = new UsageAggregator();
+        SummingSink summing = new SummingSink();
+        AtomicBoolean failing = new AtomicBoolean(true);
+        aggregator.setSink((customerId, voice, sms, data, video) -> {
+            if (failing.get()) throw new IllegalStateException("billing store unavailable");
+            return summing.apply(customerId, voice, sms, data, video);
+        });
+
+        aggregator.ingest(new String[] {"C1", "C2", "C1"},
+            new UsageType[] {UsageType.VOICE, UsageType.DATA, UsageType.VOICE}, new long[] {10, 500, 5});
+        assertThrows(IllegalStateException.class, aggregator::flush);
+        assertEquals(2, aggregator.stats().get("carriedOverCustomers"));
+
+        // Usage arriving after the failure is merged with what was carried over
+        aggregator.ingest(new String[] {"C1"}, new UsageType[] {UsageType.SMS}, new long[] {3});
+        failing.set(false);
+        Map<String, Object> result = aggregator.flush();
+
+        assertEquals(2L, result.get("customersFolded"));
+        assertEquals(0, result.get("customersCarriedOver"));
+        assertArrayEquals(new long[] {15, 3, 0, 0}, summing.totals.get("C1"));
+        assertArrayEquals(new long[] {0, 0, 500, 0}, summing.totals.get("C2"));
+        assertEquals(1L, aggregator.stats().get("flushFailures"));
+    }
+
+    @Test
+    void keepsTotalsUntilASinkIsRegistered() {
+        UsageAggregator aggregator = new UsageAggregator();
+        aggregator.ingest(new String[] {"C1"}, new UsageType[] {UsageType.VIDEO}, new long[] {7});
+        aggregator.flush();
+
+        SummingSink summing = new SummingSink();
+        aggregator.setSink(summing);
+        aggregator.flush();
+
+        assertArrayEquals(new long[] {0, 0, 0, 7}, summing.totals.get("C1"));
+    }
+
+    @Test
+    void concurrentIngestNeitherLosesNorDoubleCounts() throws Exception {
+        ingestConcurrently(Math.max(2, Runtime.getRuntime().availableProcessors()), 50);
+    }
+
+    @Test
+    @Tag("perf")
+    @EnabledIfSystemProperty(named = "perf", matches = "true")
+    void ingestThroughput(TestReporter reporter) throws Exception {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        long records = (long) threads * 2_000 * 1_000;
+        long elapsed = ingestConcurrently(threads, 2_000);
+        reporter.publishEntry("UsageAggregator", String.format("%d records on %d threads in %d ms, %.1f M records/s",
+            records, threads, elapsed / 1_000_000, records * 1000.0 / elapsed));
+    }
+
+    /**
+     * Ingests batches of 1,000 records from several threads while flushing concurrently,
+     * checks nothing was lost or counted twice and returns the elapsed nanoseconds.
+     */
+    private static long ingestConcurrently(int threads, int batches) throws Exception {
+        int batchSize = 1_000;
+        int customers = 10_000;
+
+        UsageAggregator aggregator = new UsageAggregator();
+        SummingSink summing = new SummingSink();
+        aggregator.setSink(summing);
+
+        // CDR batches arrive grouped by subscriber, a few records per customer in a row
+        String[] ids = new String[batchSize];
+        UsageType[] types = new UsageType[batchSize];
+        long[] quantities = new long[batchSize];
+        long perBatch = 0;
+        for (int i = 0; i < batchSize; i++) {
+            ids[i] = "CUST-" + ((i / 4) % customers);
+            types[i] = TYPES[i % TYPES.length];
+            quantities[i] = 1 + (i % 7);
+            perBatch += quantities[i];
+        }
+
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int b = 0; b < batches; b++) aggregator.ingest(ids, types, quantities);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        // Flush concurrently with ingestion, as the scheduled flush does
+        Thread flusher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                aggregator.flush();
+                Thread.onSpinWait();
+            }
+        });
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        flusher.start();
+        for (Thread worker : workers) worker.join();
+        long elapsed = System.nanoTime() - start;
+        flusher.interrupt();
+        flusher.join();
+        aggregator.flush();
+
+        long records = (long) threads * batches * batchSize;
+        assertEquals(records, ((Number) aggregator.stats().get("recordsIngested")).longValue());
+        assertEquals(perBatch * threads * batches, summing.total());
+        return elapsed;
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * REST controllers for PaymentProcessing endpoints.
@@ -26,23 +27,74 @@ public class PaymentProcessingController {
     // ==================== PAYMENT TRANSACTION ENDPOINTS ====================
 
     /**
-     * Process a payment transaction
+     * Process a payment transaction. Requests carrying the same Idempotency-Key are processed once.
      */
     @PostMapping("/transactions")
-    public ResponseEntity<?> processPayment(@RequestBody PaymentTransaction paymentRequest) {
+    public ResponseEntity<?> processPayment(@RequestBody PaymentTransaction paymentRequest,
+                                            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_TRANSACTION_PROCESSING)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(Map.of("error", "Payment transaction processing is disabled"));
             }
 
-            PaymentTransaction transaction = service.processPayment(paymentRequest);
+            PaymentTransaction transaction = service.processPayment(paymentRequest, idempotencyKey);
             return ResponseEntity.status(HttpStatus.CREATED).body(transaction);
+        } catch (IdempotencyStore.IdempotencyConflictException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * Accept a payment for asynchronous processing; poll the returned status URL for the outcome
+     */
+    @PostMapping("/transactions/async")
+    public ResponseEntity<?> submitPayment(@RequestBody PaymentTransaction paymentRequest,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_TRANSACTION_PROCESSING)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Payment transaction processing is disabled"));
+            }
+
+            PaymentTransaction transaction = service.submitPayment(paymentRequest, idempotencyKey);
+            String statusUrl = "/api/payment-processing/transactions/" + transaction.getTransactionId() + "/status";
+            return ResponseEntity.accepted()
+                .header("Location", statusUrl)
+                .body(Map.of(
+                    "transactionId", transaction.getTransactionId(),
+                    "referenceNumber", transaction.getReferenceNumber(),
+                    "status", TransactionStatus.PROCESSING,
+                    "statusUrl", statusUrl));
+        } catch (IdempotencyStore.IdempotencyConflictException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Current status and event history of a transaction
+     */
+    @GetMapping("/transactions/{transactionId}/status")
+    public ResponseEntity<?> getTransactionStatus(@PathVariable String transactionId) {
+        Map<String, Object> status = service.getTransactionStatus(transactionId);
+        if (status == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Event history of a transaction, read from the event journal
+     */
+    @GetMapping("/transactions/{transactionId}/events")
+    public ResponseEntity<?> getTransactionEvents(@PathVariable String transactionId) {
+        List<TransactionEvent> events = service.getTransactionEvents(transactionId);
+        if (events == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(events);
+    }
+
     /**
      * Get transaction details
      */
@@ -75,6 +127,165 @@ public class PaymentProcessingController {
         }
     }
 
+    // ==================== FRAUD DETECTION ENDPOINTS ====================
+
+    /**
+     * Payment velocity of a customer over the last minute, hour and day
+     */
+    @GetMapping("/fraud/velocity/{customerId}")
+    public ResponseEntity<?> getCustomerVelocity(@PathVariable String customerId) {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_FRAUD_DETECTION)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Fraud detection is disabled"));
+            }
+
+            return ResponseEntity.ok(service.getCustomerVelocity(customerId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Re-score stored transactions in batches (all transactions when no ids are posted)
+     */
+    @PostMapping("/fraud/rescore")
+    public ResponseEntity<?> rescoreTransactions(@RequestBody(required = false) List<String> transactionIds) {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_FRAUD_DETECTION)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Fraud detection is disabled"));
+            }
+
+            return ResponseEntity.ok(service.rescoreTransactions(transactionIds));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Fraud scorer weights and risk thresholds
+     */
+    @GetMapping("/fraud/config")
+    public ResponseEntity<Map<String, Object>> getFraudScoringConfig() {
+        return ResponseEntity.ok(service.getFraudScoringConfig());
+    }
+
+    /**
+     * Velocity tracker statistics
+     */
+    @GetMapping("/fraud/velocity/stats")
+    public ResponseEntity<Map<String, Object>> getVelocityStats() {
+        return ResponseEntity.ok(service.getVelocityStats());
+    }
+
+    // ==================== PIPELINE & GATEWAY ENDPOINTS ====================
+
+    /**
+     * Idempotency key cache statistics
+     */
+    @GetMapping("/transactions/idempotency/stats")
+    public ResponseEntity<Map<String, Object>> getIdempotencyStats() {
+        return ResponseEntity.ok(service.getIdempotencyStats());
+    }
+
+    /**
+     * Event journal size, record counts and recovered entities
+     */
+    @GetMapping("/transactions/journal/stats")
+    public ResponseEntity<Map<String, Object>> getEventJournalStats() {
+        return ResponseEntity.ok(service.getEventJournalStats());
+    }
+
+    /**
+     * Node id and counters of the reference/invoice number generator
+     */
+    @GetMapping("/ids/stats")
+    public ResponseEntity<Map<String, Object>> getIdGeneratorStats() {
+        return ResponseEntity.ok(service.getIdGeneratorStats());
+    }
+
+    /**
+     * Payment pipeline throughput and latency metrics
+     */
+    @GetMapping("/pipeline/metrics")
+    public ResponseEntity<Map<String, Object>> getPipelineMetrics() {
+        return ResponseEntity.ok(service.getPipelineMetrics());
+    }
+
+    /**
+     * Rolling payment volume, approval rates and per-stage latency percentiles
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<?> getPaymentAnalytics(@RequestParam(defaultValue = "60") int minutes) {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_ANALYTICS)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Payment analytics is disabled"));
+            }
+
+            return ResponseEntity.ok(service.getPaymentAnalytics(minutes));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Per-gateway latency, error and approval rates, breaker state and routing score
+     */
+    @GetMapping("/gateways/metrics")
+    public ResponseEntity<Map<String, Object>> getGatewayRoutingMetrics() {
+        return ResponseEntity.ok(service.getGatewayRoutingMetrics());
+    }
+
+    /**
+     * Latency and error profiles of the simulated gateways
+     */
+    @GetMapping("/gateways/simulation")
+    public ResponseEntity<Map<String, Object>> getGatewaySimulation() {
+        return ResponseEntity.ok(service.getGatewaySimulation());
+    }
+
+    /**
+     * Change a simulated gateway's latency and error profile (fault injection)
+     */
+    @PutMapping("/gateways/{gateway}/simulation")
+    public ResponseEntity<?> configureGatewaySimulation(@PathVariable String gateway, @RequestBody Map<String, Object> settings) {
+        try {
+            return ResponseEntity.ok(service.configureGatewaySimulation(gateway, settings));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // ==================== TOKEN VAULT ENDPOINTS ====================
+
+    /**
+     * Tokenize a batch of cards
+     */
+    @PostMapping("/vault/tokens")
+    public ResponseEntity<?> tokenizeCards(@RequestBody List<CardDetails> cards) {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_TOKENIZATION)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Tokenization is disabled"));
+            }
+
+            List<String> tokens = service.tokenizeCards(cards);
+            return ResponseEntity.ok(Map.of("tokens", tokens));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Token vault size and counters
+     */
+    @GetMapping("/vault/stats")
+    public ResponseEntity<Map<String, Object>> getTokenVaultStats() {
+        return ResponseEntity.ok(service.getTokenVaultStats());
+    }
+
     // ==================== INVOICE ENDPOINTS ====================
 
     /**
@@ -116,6 +327,48 @@ public class PaymentProcessingController {
         }
     }
 
+    /**
+     * Invoice index and overdue wheel statistics
+     */
+    @GetMapping("/invoices/overdue-tracking/stats")
+    public ResponseEntity<?> getOverdueTrackingStats() {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_OVERDUE_TRACKING)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Overdue tracking is disabled"));
+            }
+
+            return ResponseEntity.ok(service.getOverdueTrackingStats());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Close open settlement batches and write their settlement files
+     */
+    @PostMapping("/settlement/batches/close")
+    public ResponseEntity<?> closeSettlementBatches() {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_SETTLEMENT)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Payment settlement is disabled"));
+            }
+
+            return ResponseEntity.ok(service.closeSettlementBatches());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Recent settlement batches and open batch sizes
+     */
+    @GetMapping("/settlement/batches")
+    public ResponseEntity<?> getSettlementBatches() {
+        return ResponseEntity.ok(service.getSettlementBatches());
+    }
+
     /**
      * Reconcile payments with invoice
      */
@@ -134,6 +387,23 @@ public class PaymentProcessingController {
         }
     }
 
+    /**
+     * Reconcile a bank payments file against all invoices
+     */
+    @PostMapping("/reconciliation/bulk")
+    public ResponseEntity<?> reconcileBankFile(@RequestParam String file) {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_RECONCILIATION)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Payment reconciliation is disabled"));
+            }
+
+            return ResponseEntity.ok(service.reconcileBankFile(file));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     // ==================== REFUND ENDPOINTS ====================
 
     /**
@@ -153,11 +423,31 @@ public class PaymentProcessingController {
 
             Refund refund = service.processRefund(transactionId, reason, refundAmount);
             return ResponseEntity.status(HttpStatus.CREATED).body(refund);
+        } catch (RefundLedger.OverRefundException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * Captured, refunded and refundable amounts of a transaction
+     */
+    @GetMapping("/transactions/{transactionId}/refunds/balance")
+    public ResponseEntity<?> getRefundBalance(@PathVariable String transactionId) {
+        Map<String, Object> balance = service.getRefundBalance(transactionId);
+        if (balance == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(balance);
+    }
+
+    /**
+     * Refund ledger reservations, rejections and CAS retries
+     */
+    @GetMapping("/refunds/ledger/stats")
+    public ResponseEntity<Map<String, Object>> getRefundLedgerStats() {
+        return ResponseEntity.ok(service.getRefundLedgerStats());
+    }
+
     // ==================== RECURRING PAYMENT ENDPOINTS ====================
 
     /**
@@ -178,6 +468,35 @@ public class PaymentProcessingController {
         }
     }
 
+    /**
+     * Get recurring payment with its execution history
+     */
+    @GetMapping("/recurring-payments/{recurringPaymentId}")
+    public ResponseEntity<?> getRecurringPayment(@PathVariable String recurringPaymentId) {
+        RecurringPayment recurring = service.getRecurringPayment(recurringPaymentId);
+        if (recurring == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(recurring);
+    }
+
+    /**
+     * Recurring payment scheduler statistics
+     */
+    @GetMapping("/recurring-payments/scheduler/stats")
+    public ResponseEntity<?> getRecurringSchedulerStats() {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_RECURRING_PAYMENT)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Recurring payment setup is disabled"));
+            }
+
+            return ResponseEntity.ok(service.getRecurringSchedulerStats());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     // ==================== DISPUTE ENDPOINTS ====================
 
     /**
@@ -221,6 +540,53 @@ public class PaymentProcessingController {
         }
     }
 
+    /**
+     * Event history of a dispute, read from the event journal
+     */
+    @GetMapping("/disputes/{disputeId}/events")
+    public ResponseEntity<?> getDisputeEvents(@PathVariable String disputeId) {
+        List<DisputeEvent> events = service.getDisputeEvents(disputeId);
+        if (events == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(events);
+    }
+
+    /**
+     * Open disputes with evidence due within the next {@code withinHours}, earliest first
+     */
+    @GetMapping("/disputes/due")
+    public ResponseEntity<?> getDisputesDue(
+            @RequestParam(defaultValue = "168") long withinHours,
+            @RequestParam(defaultValue = "false") boolean includeOverdue,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_DISPUTE_TRACKING)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Dispute tracking is disabled"));
+            }
+
+            long withinMs = TimeUnit.HOURS.toMillis(Math.max(0, withinHours));
+            return ResponseEntity.ok(service.getDisputesDueWithin(withinMs, includeOverdue, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Recent deadline alerts and escalations, newest first
+     */
+    @GetMapping("/disputes/deadlines/alerts")
+    public ResponseEntity<?> getDisputeDeadlineAlerts(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(service.getRecentDisputeAlerts(limit));
+    }
+
+    /**
+     * Dispute deadline tracking statistics
+     */
+    @GetMapping("/disputes/deadlines/stats")
+    public ResponseEntity<Map<String, Object>> getDisputeDeadlineStats() {
+        return ResponseEntity.ok(service.getDisputeDeadlineStats());
+    }
+
     // ==================== LEGACY GENERIC ENDPOINTS ====================
 
     /**
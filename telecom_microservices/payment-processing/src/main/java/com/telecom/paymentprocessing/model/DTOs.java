@@ -49,7 +49,7 @@ public class PaymentTransaction {
     private AuthorizationInfo authorizationInfo;
     private SettlementInfo settlementInfo;
     private ComplianceInfo complianceInfo;
-    private List<TransactionEvent> events;
+    private long eventJournalOffset = -1;
     private long createdAt;
     private long updatedAt;
 
@@ -96,8 +96,8 @@ public class PaymentTransaction {
     public ComplianceInfo getComplianceInfo() { return complianceInfo; }
     public void setComplianceInfo(ComplianceInfo complianceInfo) { this.complianceInfo = complianceInfo; }
     
-    public List<TransactionEvent> getEvents() { return events; }
-    public void setEvents(List<TransactionEvent> events) { this.events = events; }
+    public long getEventJournalOffset() { return eventJournalOffset; }
+    public void setEventJournalOffset(long eventJournalOffset) { this.eventJournalOffset = eventJournalOffset; }
     
     public long getCreatedAt() { return createdAt; }
     public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
@@ -656,6 +656,7 @@ public class RecurringPayment {
     private String billingAccountId;
     private RecurringPaymentStatus status;
     private PaymentMethod paymentMethod;
+    private String paymentToken;
     private double recurringAmount;
     private String currency;
     private BillingFrequency billingFrequency;
@@ -680,6 +681,9 @@ public class RecurringPayment {
     public PaymentMethod getPaymentMethod() { return paymentMethod; }
     public void setPaymentMethod(PaymentMethod paymentMethod) { this.paymentMethod = paymentMethod; }
     
+    public String getPaymentToken() { return paymentToken; }
+    public void setPaymentToken(String paymentToken) { this.paymentToken = paymentToken; }
+    
     public double getRecurringAmount() { return recurringAmount; }
     public void setRecurringAmount(double recurringAmount) { this.recurringAmount = recurringAmount; }
     
@@ -766,8 +770,9 @@ public class PaymentDispute {
     private String description;
     private long initiatedDate;
     private long dueDate;
+    private long escalatedDate;
     private DisputeEvidence evidence;
-    private List<DisputeEvent> events;
+    private long eventJournalOffset = -1;
 
     public String getDisputeId() { return disputeId; }
     public void setDisputeId(String disputeId) { this.disputeId = disputeId; }
@@ -802,11 +807,14 @@ public class PaymentDispute {
     public long getDueDate() { return dueDate; }
     public void setDueDate(long dueDate) { this.dueDate = dueDate; }
     
+    public long getEscalatedDate() { return escalatedDate; }
+    public void setEscalatedDate(long escalatedDate) { this.escalatedDate = escalatedDate; }
+    
     public DisputeEvidence getEvidence() { return evidence; }
     public void setEvidence(DisputeEvidence evidence) { this.evidence = evidence; }
     
-    public List<DisputeEvent> getEvents() { return events; }
-    public void setEvents(List<DisputeEvent> events) { this.events = events; }
+    public long getEventJournalOffset() { return eventJournalOffset; }
+    public void setEventJournalOffset(long eventJournalOffset) { this.eventJournalOffset = eventJournalOffset; }
 }
 
 /**
@@ -854,6 +862,14 @@ public class DisputeEvent {
     private String status;
     private String notes;
 
+    public DisputeEvent() {}
+    public DisputeEvent(String eventType, long timestamp, String status, String notes) {
+        this.eventType = eventType;
+        this.timestamp = timestamp;
+        this.status = status;
+        this.notes = notes;
+    }
+
     public String getEventType() { return eventType; }
     public void setEventType(String eventType) { this.eventType = eventType; }
     
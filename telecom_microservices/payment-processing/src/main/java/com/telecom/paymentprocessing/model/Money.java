@@ -0,0 +1,358 @@
+package com.telecom.paymentprocessing.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Currency;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fixed-point amount of money: a long count of the currency's minor units
+ * (cents for USD, yen for JPY, fils for KWD) and an ISO currency code.
+ *
+ * Addition is exact. Multiplying by a rate rounds half-even to the minor unit once,
+ * so sums of fees and taxes never drift the way repeated double arithmetic does.
+ * Rates are given in millionths (2% is 20_000). The static long methods do the same
+ * arithmetic on bare minor units without allocating.
+ *
+ * Serialized as {"amount": 10.50, "currency": "USD"} with the amount written as an
+ * exact decimal.
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+
+    public static final String DEFAULT_CURRENCY = "USD";
+    public static final long RATE_ONE = 1_000_000L;
+
+    private static final long[] POW10 = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L
+    };
+    private static final Map<String, Integer> DIGITS = new ConcurrentHashMap<>();
+
+    private final long minorUnits;
+    private final String currency;
+    private final int digits;
+
+    private Money(long minorUnits, String currency, int digits) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+        this.digits = digits;
+    }
+
+    public static Money ofMinor(long minorUnits, String currency) {
+        String code = code(currency);
+        return new Money(minorUnits, code, digits(code));
+    }
+
+    /**
+     * Nearest amount to a double, rounded half-even to the currency's minor unit.
+     */
+    public static Money of(double amount, String currency) {
+        String code = code(currency);
+        int digits = digits(code);
+        return new Money(minorOf(amount, digits), code, digits);
+    }
+
+    /**
+     * Exact amount from a decimal string such as "-12.345"; extra fraction digits
+     * are rounded half-even.
+     */
+    public static Money parse(String amount, String currency) {
+        String code = code(currency);
+        int digits = digits(code);
+        return new Money(parseMinor(amount, digits), code, digits);
+    }
+
+    public static Money zero(String currency) {
+        return ofMinor(0, currency);
+    }
+
+    public long getMinorUnits() { return minorUnits; }
+    public String getCurrency() { return currency; }
+    public int getDigits() { return digits; }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency, digits);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency, digits);
+    }
+
+    /**
+     * This amount times a rate in millionths, rounded half-even to the minor unit.
+     */
+    public Money times(long rateMicros) {
+        return new Money(applyRate(minorUnits, rateMicros), currency, digits);
+    }
+
+    /**
+     * Round half-even to a multiple of {@code increment} minor units (e.g. 5 for
+     * cash rounding to 0.05).
+     */
+    public Money roundTo(long increment) {
+        return new Money(roundMinor(minorUnits, increment), currency, digits);
+    }
+
+    public Money abs() {
+        return minorUnits >= 0 ? this : new Money(Math.negateExact(minorUnits), currency, digits);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency, digits);
+    }
+
+    public boolean isZero() { return minorUnits == 0; }
+    public boolean isNegative() { return minorUnits < 0; }
+
+    public double toDouble() {
+        return toDouble(minorUnits, digits);
+    }
+
+    public String toPlainString() {
+        return format(minorUnits, digits);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        Money other = (Money) o;
+        return minorUnits == other.minorUnits && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toPlainString() + " " + currency;
+    }
+
+    // ==================== Minor-unit arithmetic ====================
+
+    /**
+     * Number of minor-unit digits of a currency; 2 for unknown codes. Only ISO codes
+     * are cached, so request-supplied garbage cannot grow the cache.
+     */
+    public static int digits(String currency) {
+        if (currency == null) currency = DEFAULT_CURRENCY;
+        Integer digits = DIGITS.get(currency);
+        if (digits != null) return digits;
+        int resolved;
+        try {
+            resolved = Currency.getInstance(currency).getDefaultFractionDigits();
+        } catch (IllegalArgumentException e) {
+            return 2;
+        }
+        // Currencies without a minor unit report -1
+        resolved = Math.max(0, Math.min(resolved, POW10.length - 1));
+        DIGITS.put(currency, resolved);
+        return resolved;
+    }
+
+    /**
+     * Minor units nearest to a double amount, rounded half-even.
+     */
+    public static long minorOf(double amount, int digits) {
+        double scaled = Math.rint(amount * POW10[digits]);
+        if (Math.abs(scaled) >= 0x1p63) throw new ArithmeticException("Amount out of range: " + amount);
+        return (long) scaled;
+    }
+
+    public static double toDouble(long minorUnits, int digits) {
+        // One correctly rounded division: exact decimals map to their nearest double
+        return minorUnits / (double) POW10[digits];
+    }
+
+    /**
+     * {@code minorUnits * rateMicros / 1_000_000}, rounded half-even. Exact for the whole
+     * long range; products that overflow 64 bits take a slower 128-bit path.
+     */
+    public static long applyRate(long minorUnits, long rateMicros) {
+        long high = Math.multiplyHigh(minorUnits, rateMicros);
+        long low = minorUnits * rateMicros;
+        if (high != (low >> 63)) {
+            BigInteger[] qr = BigInteger.valueOf(minorUnits).multiply(BigInteger.valueOf(rateMicros))
+                .divideAndRemainder(BigInteger.valueOf(RATE_ONE));
+            long quotient = qr[0].longValueExact();
+            return roundHalfEven(quotient, qr[1].longValue(), RATE_ONE);
+        }
+        return roundHalfEven(low / RATE_ONE, low % RATE_ONE, RATE_ONE);
+    }
+
+    /**
+     * Rate in millionths nearest to a double factor (e.g. 0.08 to 80_000).
+     */
+    public static long rateMicros(double factor) {
+        return Math.round(factor * RATE_ONE);
+    }
+
+    public static long roundMinor(long minorUnits, long increment) {
+        if (increment <= 1) return minorUnits;
+        return Math.multiplyExact(roundHalfEven(minorUnits / increment, minorUnits % increment, increment), increment);
+    }
+
+    /**
+     * Exact minor units of a decimal string, without going through double or BigDecimal.
+     */
+    public static long parseMinor(CharSequence text, int digits) {
+        int i = 0;
+        int end = text.length();
+        while (i < end && text.charAt(i) == ' ') i++;
+        while (end > i && text.charAt(end - 1) == ' ') end--;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long value = 0;
+        int fraction = -1;
+        boolean any = false;
+        long remainder = 0;
+        long dropScale = 1;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') throw new NumberFormatException("Invalid amount: " + text);
+            any = true;
+            if (fraction >= digits) {
+                // Digits beyond the minor unit only decide rounding
+                if (dropScale < 1_000_000_000_000_000L) {
+                    remainder = remainder * 10 + (c - '0');
+                    dropScale *= 10;
+                } else if (c != '0' && remainder % 10 == 0) {
+                    remainder += 1;  // sticky digit so a trailing tail still breaks a tie
+                }
+                continue;
+            }
+            value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+            if (fraction >= 0) fraction++;
+        }
+        if (!any) throw new NumberFormatException("Invalid amount: " + text);
+        for (int f = Math.max(fraction, 0); f < digits; f++) value = Math.multiplyExact(value, 10);
+        if (dropScale > 1) value = roundHalfEven(value, remainder, dropScale);
+        return negative ? -value : value;
+    }
+
+    public static String format(long minorUnits, int digits) {
+        StringBuilder out = new StringBuilder(24);
+        if (minorUnits < 0) out.append('-');
+        // Long.MIN_VALUE has no positive counterpart; work on the magnitude as unsigned
+        String magnitude = Long.toUnsignedString(minorUnits < 0 ? -minorUnits : minorUnits);
+        int integerDigits = magnitude.length() - digits;
+        if (integerDigits <= 0) {
+            out.append('0');
+            if (digits > 0) out.append('.');
+            for (int i = integerDigits; i < 0; i++) out.append('0');
+            out.append(magnitude);
+        } else {
+            out.append(magnitude, 0, integerDigits);
+            if (digits > 0) out.append('.').append(magnitude, integerDigits, magnitude.length());
+        }
+        return out.toString();
+    }
+
+    // ============ Private Helper Methods ============
+
+    /**
+     * Round {@code quotient + remainder / divisor} half-even, where quotient and
+     * remainder come from truncating division.
+     */
+    private static long roundHalfEven(long quotient, long remainder, long divisor) {
+        long twice = Math.abs(remainder) * 2;
+        if (twice > divisor || (twice == divisor && (quotient & 1) != 0)) {
+            return remainder < 0 ? quotient - 1 : quotient + 1;
+        }
+        return quotient;
+    }
+
+    private static String code(String currency) {
+        return currency != null ? currency : DEFAULT_CURRENCY;
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+        }
+    }
+
+    // ==================== Jackson ====================
+
+    public static final class Serializer extends StdSerializer<Money> {
+        private static final long serialVersionUID = 1L;
+
+        public Serializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeFieldName("amount");
+            gen.writeNumber(value.toPlainString());
+            gen.writeStringField("currency", value.currency);
+            gen.writeEndObject();
+        }
+    }
+
+    public static final class Deserializer extends StdDeserializer<Money> {
+        private static final long serialVersionUID = 1L;
+
+        public Deserializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() != JsonToken.START_OBJECT) {
+                return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+            }
+            String amount = null;
+            String currency = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                JsonToken token = p.nextToken();
+                if ("amount".equals(field)) {
+                    // Number text as written, so 0.1 stays exactly 0.1
+                    amount = token == JsonToken.VALUE_NULL ? null : p.getText();
+                } else if ("currency".equals(field)) {
+                    currency = token == JsonToken.VALUE_NULL ? null : p.getText();
+                } else {
+                    p.skipChildren();
+                }
+            }
+            if (amount == null) {
+                return (Money) ctxt.handleWeirdStringValue(Money.class, null, "Money requires an amount");
+            }
+            try {
+                return parse(amount, currency);
+            } catch (NumberFormatException | ArithmeticException e) {
+                return (Money) ctxt.handleWeirdStringValue(Money.class, amount, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk reconciliation of a bank payments file against invoices.
+ *
+ * The file is streamed once and its payments are spread over partitions by
+ * normalized reference; invoices are spread the same way by invoice number, so
+ * each partition can build its own hash index and be matched in parallel without
+ * sharing state. A payment whose reference and amount match an invoice is MATCHED;
+ * a matching reference with a different amount is a DISCREPANCY. Payments left
+ * over (usually a missing or mistyped reference) go through a second pass that
+ * matches on currency, payer and amount within a tolerance, using an index of
+ * amount buckets; only an unambiguous closest candidate is accepted.
+ *
+ * Reports are written as CSV files into a directory per run. Invoices are not
+ * modified.
+ */
+@Component
+public class BulkReconciler {
+
+    public static final String MATCHED = "MATCHED";
+    public static final String FUZZY_MATCHED = "FUZZY_MATCHED";
+    public static final String DISCREPANCY = "DISCREPANCY";
+
+    @Value("${payment.reconciliation.input-dir:data/reconciliation/in}")
+    private String inputDir = "data/reconciliation/in";
+
+    @Value("${payment.reconciliation.output-dir:data/reconciliation/out}")
+    private String outputDir = "data/reconciliation/out";
+
+    // Absolute tolerance for the fuzzy pass, in currency units
+    @Value("${payment.reconciliation.amount-tolerance:0.50}")
+    private double amountTolerance = 0.50;
+
+    // Relative tolerance for the fuzzy pass; the larger of the two applies
+    @Value("${payment.reconciliation.amount-tolerance-percent:0.5}")
+    private double amountTolerancePercent = 0.5;
+
+    // 0 means one partition per available processor
+    @Value("${payment.reconciliation.partitions:0}")
+    private int partitions = 0;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        if (partitions <= 0) partitions = Runtime.getRuntime().availableProcessors();
+        AtomicInteger n = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(partitions, r -> {
+            Thread t = new Thread(r, "reconciliation-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) executor.shutdown();
+    }
+
+    /**
+     * Reconcile a payments file from the input directory against the given invoices.
+     *
+     * The file is CSV with the columns reference,amount,currency,valueDate[,payerId];
+     * a header line and blank lines are skipped.
+     */
+    public Map<String, Object> reconcile(String fileName, Collection<Invoice> invoices) throws IOException {
+        long start = System.nanoTime();
+        Path in = Paths.get(inputDir).toAbsolutePath().normalize();
+        Path file = in.resolve(fileName).normalize();
+        if (!file.startsWith(in) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("Payments file not found: " + fileName);
+        }
+
+        // Partition payments while streaming the file
+        List<List<BankPayment>> paymentParts = newPartitions();
+        int read = 0;
+        int malformed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) continue;
+                BankPayment payment = parse(line, lineNumber);
+                if (payment == null) {
+                    if (lineNumber > 1) malformed++;
+                    continue;
+                }
+                paymentParts.get(partitionOf(payment.reference)).add(payment);
+                read++;
+            }
+        }
+
+        List<List<Candidate>> invoiceParts = newPartitions();
+        int considered = 0;
+        for (Invoice invoice : invoices) {
+            if (invoice.getStatus() == InvoiceStatus.DRAFT || invoice.getStatus() == InvoiceStatus.CANCELLED) continue;
+            Candidate candidate = new Candidate(invoice);
+            invoiceParts.get(partitionOf(candidate.reference)).add(candidate);
+            considered++;
+        }
+
+        // First pass: hash join on reference, partitions in parallel
+        List<Future<PartitionResult>> futures = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            List<BankPayment> payments = paymentParts.get(p);
+            List<Candidate> candidates = invoiceParts.get(p);
+            futures.add(executor.submit(() -> joinOnReference(payments, candidates)));
+        }
+        List<Match> matches = new ArrayList<>();
+        List<BankPayment> leftoverPayments = new ArrayList<>();
+        List<Candidate> leftoverInvoices = new ArrayList<>();
+        for (Future<PartitionResult> future : futures) {
+            PartitionResult result = await(future);
+            matches.addAll(result.matches);
+            leftoverPayments.addAll(result.unmatchedPayments);
+            leftoverInvoices.addAll(result.unmatchedInvoices);
+        }
+
+        // Second pass: amount within tolerance for what the references could not match
+        List<BankPayment> unmatchedPayments = new ArrayList<>();
+        int fuzzy = fuzzyMatch(leftoverPayments, leftoverInvoices, matches, unmatchedPayments);
+
+        List<Candidate> unmatchedInvoices = new ArrayList<>();
+        for (Candidate candidate : leftoverInvoices) {
+            if (!candidate.claimed && isOutstanding(candidate.invoice.getStatus())) unmatchedInvoices.add(candidate);
+        }
+
+        String runId = "recon-" + System.currentTimeMillis();
+        Path reportDir = Paths.get(outputDir).resolve(runId);
+        Files.createDirectories(reportDir);
+        int discrepancies = 0;
+        for (Match match : matches) {
+            if (DISCREPANCY.equals(match.type)) discrepancies++;
+        }
+        writeMatches(reportDir.resolve("matched.csv"), matches, false);
+        writeMatches(reportDir.resolve("discrepancies.csv"), matches, true);
+        writeUnmatchedPayments(reportDir.resolve("unmatched-payments.csv"), unmatchedPayments);
+        writeUnmatchedInvoices(reportDir.resolve("unmatched-invoices.csv"), unmatchedInvoices);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("runId", runId);
+        summary.put("file", fileName);
+        summary.put("paymentsRead", read);
+        summary.put("malformedLines", malformed);
+        summary.put("invoicesConsidered", considered);
+        summary.put("matched", matches.size() - discrepancies - fuzzy);
+        summary.put("fuzzyMatched", fuzzy);
+        summary.put("discrepancies", discrepancies);
+        summary.put("unmatchedPayments", unmatchedPayments.size());
+        summary.put("unmatchedInvoices", unmatchedInvoices.size());
+        summary.put("partitions", partitions);
+        summary.put("reportDir", reportDir.toString());
+        summary.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        return summary;
+    }
+
+    // ============ Private Helper Methods ============
+
+    /**
+     * Match one partition on reference. Each payment claims at most one invoice and
+     * each invoice at most one payment; the exact amount is preferred.
+     */
+    private static PartitionResult joinOnReference(List<BankPayment> payments, List<Candidate> invoices) {
+        Map<String, List<Candidate>> byReference = new HashMap<>(invoices.size() * 2);
+        for (Candidate candidate : invoices) {
+            if (!candidate.reference.isEmpty()) {
+                byReference.computeIfAbsent(candidate.reference, r -> new ArrayList<>(1)).add(candidate);
+            }
+        }
+
+        PartitionResult result = new PartitionResult();
+        List<BankPayment> noExactAmount = new ArrayList<>();
+        for (BankPayment payment : payments) {
+            Candidate exact = null;
+            List<Candidate> sameReference = byReference.get(payment.reference);
+            if (sameReference != null) {
+                for (Candidate candidate : sameReference) {
+                    if (!candidate.claimed && candidate.outstandingMinor == payment.amountMinor
+                            && candidate.currency.equals(payment.currency)) {
+                        exact = candidate;
+                        break;
+                    }
+                }
+            }
+            if (exact != null) {
+                exact.claimed = true;
+                result.matches.add(new Match(MATCHED, payment, exact));
+            } else {
+                noExactAmount.add(payment);
+            }
+        }
+        // Only once every exact match is taken: same reference, different amount
+        for (BankPayment payment : noExactAmount) {
+            Candidate other = null;
+            List<Candidate> sameReference = byReference.get(payment.reference);
+            if (sameReference != null) {
+                for (Candidate candidate : sameReference) {
+                    if (!candidate.claimed) {
+                        other = candidate;
+                        break;
+                    }
+                }
+            }
+            if (other != null) {
+                other.claimed = true;
+                result.matches.add(new Match(DISCREPANCY, payment, other));
+            } else {
+                result.unmatchedPayments.add(payment);
+            }
+        }
+        for (Candidate candidate : invoices) {
+            if (!candidate.claimed) result.unmatchedInvoices.add(candidate);
+        }
+        return result;
+    }
+
+    /**
+     * Match leftover payments to leftover invoices by amount within tolerance. A payment
+     * that names its payer only looks at that customer's invoices; otherwise invoices are
+     * indexed by currency and amount bucket (bucket width = the absolute tolerance in
+     * that currency's minor units), so the payment only looks at its own and the
+     * neighbouring buckets.
+     */
+    private int fuzzyMatch(List<BankPayment> payments, List<Candidate> invoices, List<Match> matches,
+                           List<BankPayment> unmatched) {
+        Map<String, Long> toleranceMinor = new HashMap<>();
+        Map<String, Map<Long, List<Candidate>>> index = new HashMap<>();
+        Map<String, List<Candidate>> byPayer = new HashMap<>();
+        for (Candidate candidate : invoices) {
+            if (!isOutstanding(candidate.invoice.getStatus())) continue;
+            long bucketMinor = Math.max(1, toleranceMinor.computeIfAbsent(candidate.currency, this::absoluteTolerance));
+            index.computeIfAbsent(candidate.currency, c -> new HashMap<>())
+                .computeIfAbsent(Math.floorDiv(candidate.outstandingMinor, bucketMinor), b -> new ArrayList<>(1))
+                .add(candidate);
+            if (candidate.invoice.getCustomerId() != null) {
+                byPayer.computeIfAbsent(candidate.invoice.getCustomerId(), c -> new ArrayList<>(2)).add(candidate);
+            }
+        }
+
+        int fuzzy = 0;
+        for (BankPayment payment : payments) {
+            long absolute = toleranceMinor.computeIfAbsent(payment.currency, this::absoluteTolerance);
+            long bucketMinor = Math.max(1, absolute);
+            long tolerance = Math.max(absolute,
+                Math.round(Math.abs(payment.amountMinor) * amountTolerancePercent / 100.0));
+            List<List<Candidate>> lists = new ArrayList<>();
+            if (payment.payerId != null) {
+                List<Candidate> own = byPayer.get(payment.payerId);
+                if (own != null) lists.add(own);
+            } else {
+                Map<Long, List<Candidate>> buckets = index.get(payment.currency);
+                long spread = tolerance / bucketMinor + 1;
+                long bucket = Math.floorDiv(payment.amountMinor, bucketMinor);
+                for (long b = bucket - spread; buckets != null && b <= bucket + spread; b++) {
+                    List<Candidate> candidates = buckets.get(b);
+                    if (candidates != null) lists.add(candidates);
+                }
+            }
+
+            Candidate best = null;
+            long bestDiff = Long.MAX_VALUE;
+            boolean ambiguous = false;
+            for (List<Candidate> candidates : lists) {
+                for (Candidate candidate : candidates) {
+                    if (candidate.claimed || !candidate.currency.equals(payment.currency)) continue;
+                    long diff = Math.abs(candidate.outstandingMinor - payment.amountMinor);
+                    if (diff > tolerance) continue;
+                    if (diff < bestDiff) {
+                        best = candidate;
+                        bestDiff = diff;
+                        ambiguous = false;
+                    } else if (diff == bestDiff) {
+                        ambiguous = true;
+                    }
+                }
+            }
+            if (best != null && !ambiguous) {
+                best.claimed = true;
+                matches.add(new Match(FUZZY_MATCHED, payment, best));
+                fuzzy++;
+            } else {
+                unmatched.add(payment);
+            }
+        }
+        return fuzzy;
+    }
+
+    /**
+     * The absolute amount tolerance in minor units of {@code currency}.
+     */
+    private long absoluteTolerance(String currency) {
+        return Money.minorOf(amountTolerance, Money.digits(currency));
+    }
+
+    private static BankPayment parse(String line, int lineNumber) {
+        String[] fields = line.split(",", -1);
+        if (fields.length < 4) return null;
+        try {
+            String currency = fields[2].trim().toUpperCase(Locale.ROOT);
+            long amountMinor = Money.parseMinor(fields[1], Money.digits(currency));
+            long valueDate = Long.parseLong(fields[3].trim());
+            String payerId = fields.length > 4 && !fields[4].trim().isEmpty() ? fields[4].trim() : null;
+            return new BankPayment(lineNumber, fields[0].trim(), normalize(fields[0]), amountMinor,
+                currency, valueDate, payerId);
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reference as matched: upper case letters and digits only, so "inv 2024/00001"
+     * and "INV-2024-00001" are the same reference.
+     */
+    private static String normalize(String reference) {
+        if (reference == null) return "";
+        StringBuilder sb = new StringBuilder(reference.length());
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c >= 'a' && c <= 'z') sb.append((char) (c - 32));
+            else if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isOutstanding(InvoiceStatus status) {
+        return InvoiceOverdueTracker.isOutstanding(status) || status == InvoiceStatus.OVERDUE;
+    }
+
+    private int partitionOf(String reference) {
+        return Math.floorMod(reference.hashCode(), partitions);
+    }
+
+    private <T> List<List<T>> newPartitions() {
+        List<List<T>> parts = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) parts.add(new ArrayList<>());
+        return parts;
+    }
+
+    private static PartitionResult await(Future<PartitionResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Reconciliation interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Reconciliation partition failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static void writeMatches(Path path, List<Match> matches, boolean discrepancies) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("line,reference,amount,currency,invoiceId,invoiceNumber,customerId,invoiceAmount,difference,matchType\n");
+            for (Match match : matches) {
+                if (DISCREPANCY.equals(match.type) != discrepancies) continue;
+                BankPayment p = match.payment;
+                Candidate c = match.invoice;
+                out.write(p.line + "," + csv(p.rawReference) + "," + money(p.amountMinor, p.currency) + "," + p.currency + ","
+                    + c.invoice.getInvoiceId() + "," + csv(c.invoice.getInvoiceNumber()) + "," + csv(c.invoice.getCustomerId()) + ","
+                    + money(c.outstandingMinor, c.currency) + "," + money(p.amountMinor - c.outstandingMinor, p.currency) + "," + match.type + "\n");
+            }
+        }
+    }
+
+    private static void writeUnmatchedPayments(Path path, List<BankPayment> payments) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("line,reference,amount,currency,valueDate,payerId\n");
+            for (BankPayment p : payments) {
+                out.write(p.line + "," + csv(p.rawReference) + "," + money(p.amountMinor, p.currency) + "," + p.currency + ","
+                    + p.valueDate + "," + csv(p.payerId) + "\n");
+            }
+        }
+    }
+
+    private static void writeUnmatchedInvoices(Path path, List<Candidate> invoices) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("invoiceId,invoiceNumber,customerId,outstanding,currency,dueDate,status\n");
+            for (Candidate c : invoices) {
+                out.write(c.invoice.getInvoiceId() + "," + csv(c.invoice.getInvoiceNumber()) + "," + csv(c.invoice.getCustomerId()) + ","
+                    + money(c.outstandingMinor, c.currency) + "," + c.currency + "," + c.invoice.getDueDate() + "," + c.invoice.getStatus() + "\n");
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        return value == null ? "" : value.replace(',', ' ');
+    }
+
+    private static String money(long minor, String currency) {
+        return Money.format(minor, Money.digits(currency));
+    }
+
+    private static final class BankPayment {
+        private final int line;
+        private final String rawReference;
+        private final String reference;
+        private final long amountMinor;
+        private final String currency;
+        private final long valueDate;
+        private final String payerId;
+
+        BankPayment(int line, String rawReference, String reference, long amountMinor, String currency,
+                    long valueDate, String payerId) {
+            this.line = line;
+            this.rawReference = rawReference;
+            this.reference = reference;
+            this.amountMinor = amountMinor;
+            this.currency = currency;
+            this.valueDate = valueDate;
+            this.payerId = payerId;
+        }
+    }
+
+    /**
+     * An invoice with its normalized reference and the amount still owed on it.
+     */
+    private static final class Candidate {
+        private final Invoice invoice;
+        private final String reference;
+        private final String currency;
+        private final long outstandingMinor;
+        private boolean claimed;
+
+        Candidate(Invoice invoice) {
+            this.invoice = invoice;
+            this.reference = normalize(invoice.getInvoiceNumber());
+            this.currency = invoice.getCurrency() != null ? invoice.getCurrency().toUpperCase(Locale.ROOT) : "USD";
+            int digits = Money.digits(currency);
+            long outstanding = Money.minorOf(invoice.getTotalAmount(), digits);
+            if (invoice.getPayments() != null) {
+                for (PaymentRecord payment : invoice.getPayments()) outstanding -= Money.minorOf(payment.getAmountPaid(), digits);
+            }
+            this.outstandingMinor = outstanding;
+        }
+    }
+
+    private static final class Match {
+        private final String type;
+        private final BankPayment payment;
+        private final Candidate invoice;
+
+        Match(String type, BankPayment payment, Candidate invoice) {
+            this.type = type;
+            this.payment = payment;
+            this.invoice = invoice;
+        }
+    }
+
+    private static final class PartitionResult {
+        private final List<Match> matches = new ArrayList<>();
+        private final List<BankPayment> unmatchedPayments = new ArrayList<>();
+        private final List<Candidate> unmatchedInvoices = new ArrayList<>();
+    }
+}
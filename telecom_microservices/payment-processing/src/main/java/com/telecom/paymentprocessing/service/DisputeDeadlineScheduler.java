@@ -0,0 +1,381 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evidence deadlines of open disputes.
+ *
+ * Disputes are indexed by due date in a skip list, so the disputes due within any
+ * window are found in O(log n) plus the size of the answer. A second skip list holds
+ * what is still to fire for each dispute: an alert at each configured lead time
+ * before the deadline (7, 3 and 1 days by default) and an escalation at the deadline
+ * itself. A background job hands whatever has come due to the registered
+ * {@link DeadlineHandler}; a dispute leaves both indexes once it is answered.
+ */
+@Component
+public class DisputeDeadlineScheduler {
+
+    /**
+     * Acts on a dispute whose alert or deadline has come round.
+     */
+    public interface DeadlineHandler {
+        /**
+         * @param leadMs time left before the deadline for an alert, or 0 when the
+         *               deadline has passed and the dispute should be escalated
+         * @return true if the alert or escalation applied, false if the dispute no longer needed it
+         */
+        boolean onDeadline(String disputeId, long dueAt, long leadMs);
+    }
+
+    /**
+     * Gate checked before each scheduled run (e.g. a feature flag).
+     */
+    public interface DeadlineGate {
+        boolean isEnabled();
+    }
+
+    private static final long ESCALATION = 0;
+
+    @Value("${payment.disputes.response-days:45}")
+    private int responseDays = 45;
+
+    @Value("${payment.disputes.alert-lead-times:7d,3d,1d}")
+    private String alertLeadTimes = "7d,3d,1d";
+
+    @Value("${payment.disputes.deadline-check-interval-ms:1000}")
+    private long checkIntervalMs = 1000;
+
+    @Value("${payment.disputes.recent-alerts:1000}")
+    private int recentAlertLimit = 1000;
+
+    /**
+     * Something to fire for a dispute: an alert {@code leadMs} before the deadline, or
+     * the escalation when {@code leadMs} is 0.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final long at;
+        private final String disputeId;
+        private final long dueAt;
+        private final long leadMs;
+
+        Entry(long at, String disputeId, long dueAt, long leadMs) {
+            this.at = at;
+            this.disputeId = disputeId;
+            this.dueAt = dueAt;
+            this.leadMs = leadMs;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int c = Long.compare(at, o.at);
+            if (c != 0) return c;
+            c = disputeId.compareTo(o.disputeId);
+            return c != 0 ? c : Long.compare(o.leadMs, leadMs);
+        }
+    }
+
+    private static final class DueKey implements Comparable<DueKey> {
+        private final long dueAt;
+        private final String disputeId;
+
+        DueKey(long dueAt, String disputeId) {
+            this.dueAt = dueAt;
+            this.disputeId = disputeId;
+        }
+
+        @Override
+        public int compareTo(DueKey o) {
+            int c = Long.compare(dueAt, o.dueAt);
+            return c != 0 ? c : disputeId.compareTo(o.disputeId);
+        }
+    }
+
+    private final ConcurrentSkipListSet<DueKey> byDue = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<Entry> timeline = new ConcurrentSkipListSet<>();
+    private final Map<String, DueKey> dueOf = new ConcurrentHashMap<>();
+    private final Map<String, List<Entry>> pendingOf = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<Map<String, Object>> recentAlerts = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger recentAlertCount = new AtomicInteger();
+
+    private final AtomicLong alertsSent = new AtomicLong();
+    private final AtomicLong escalated = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong runs = new AtomicLong();
+    private volatile long lastRunAt;
+
+    private long[] leadTimesMs = parseLeadTimes("7d,3d,1d");
+    private volatile DeadlineHandler handler;
+    private volatile DeadlineGate gate = () -> true;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        leadTimesMs = parseLeadTimes(alertLeadTimes);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dispute-deadlines");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::processDueQuietly, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    public void setDeadlineHandler(DeadlineHandler handler, DeadlineGate gate) {
+        this.handler = handler;
+        this.gate = gate;
+    }
+
+    /**
+     * Evidence deadline for a dispute opened at {@code openedAt}.
+     */
+    public long dueDateFor(long openedAt) {
+        return openedAt + responseDays * 24L * 60 * 60 * 1000;
+    }
+
+    /**
+     * Track a dispute's deadline, replacing any earlier one. Lead times that have already
+     * passed collapse into a single alert for the nearest of them, sent on the next run.
+     */
+    public synchronized void register(String disputeId, long dueAt) {
+        unregister(disputeId);
+        long now = System.currentTimeMillis();
+        DueKey key = new DueKey(dueAt, disputeId);
+        byDue.add(key);
+        dueOf.put(disputeId, key);
+
+        List<Entry> entries = new ArrayList<>(leadTimesMs.length + 1);
+        long missedLead = -1;
+        for (long lead : leadTimesMs) {
+            long at = dueAt - lead;
+            if (at > now) entries.add(new Entry(at, disputeId, dueAt, lead));
+            else missedLead = lead;  // lead times are sorted longest first, so this ends at the nearest
+        }
+        if (missedLead > 0 && dueAt > now) entries.add(new Entry(now, disputeId, dueAt, missedLead));
+        entries.add(new Entry(dueAt, disputeId, dueAt, ESCALATION));
+        timeline.addAll(entries);
+        pendingOf.put(disputeId, entries);
+    }
+
+    /**
+     * Stop tracking a dispute, e.g. once evidence is submitted or it is resolved.
+     */
+    public synchronized void unregister(String disputeId) {
+        DueKey key = dueOf.remove(disputeId);
+        if (key != null) byDue.remove(key);
+        List<Entry> entries = pendingOf.remove(disputeId);
+        if (entries != null) timeline.removeAll(entries);
+    }
+
+    /**
+     * Ids of tracked disputes due in {@code [from, to)}, earliest first.
+     */
+    public List<String> dueWithin(long from, long to, int limit) {
+        List<String> ids = new ArrayList<>();
+        if (from >= to) return ids;
+        for (DueKey key : byDue.subSet(new DueKey(from, ""), new DueKey(to, ""))) {
+            if (ids.size() >= limit) break;
+            ids.add(key.disputeId);
+        }
+        return ids;
+    }
+
+    /**
+     * Fire every alert and escalation that has come due. While the gate is closed
+     * nothing is taken off the timeline, so the next open run catches up. An entry
+     * whose handler call throws goes back on the timeline for the next run; the rest
+     * of the batch still fires.
+     */
+    public Map<String, Object> processDue() {
+        DeadlineHandler target = handler;
+        List<Entry> due = new ArrayList<>();
+        if (target != null && gate.isEnabled()) {
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                for (Entry entry = first(); entry != null && entry.at <= now; entry = first()) {
+                    timeline.remove(entry);
+                    List<Entry> pending = pendingOf.get(entry.disputeId);
+                    if (pending != null) pending.remove(entry);
+                    due.add(entry);
+                }
+            }
+        }
+        // The handler runs outside the lock so it may register or unregister the dispute
+        int alerts = 0;
+        int escalations = 0;
+        int skips = 0;
+        int failures = 0;
+        for (Entry entry : due) {
+            boolean applied;
+            try {
+                applied = target.onDeadline(entry.disputeId, entry.dueAt, entry.leadMs);
+            } catch (RuntimeException e) {
+                failures++;
+                requeue(entry);
+                System.err.println("Dispute deadline handler failed for " + entry.disputeId + ": " + e.getMessage());
+                continue;
+            }
+            if (!applied) {
+                skips++;
+                continue;
+            }
+            if (entry.leadMs == ESCALATION) escalations++;
+            else alerts++;
+            remember(entry);
+        }
+        alertsSent.addAndGet(alerts);
+        escalated.addAndGet(escalations);
+        skipped.addAndGet(skips);
+        failed.addAndGet(failures);
+        runs.incrementAndGet();
+        lastRunAt = System.currentTimeMillis();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("alerts", alerts);
+        result.put("escalated", escalations);
+        result.put("skipped", skips);
+        result.put("failed", failures);
+        return result;
+    }
+
+    /**
+     * Most recent alerts and escalations, newest first.
+     */
+    public List<Map<String, Object>> recentAlerts(int limit) {
+        List<Map<String, Object>> alerts = new ArrayList<>();
+        for (Iterator<Map<String, Object>> it = recentAlerts.descendingIterator(); it.hasNext() && alerts.size() < limit; ) {
+            alerts.add(it.next());
+        }
+        return alerts;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tracked", dueOf.size());
+        stats.put("pendingNotifications", timeline.size());
+        DueKey next = byDue.isEmpty() ? null : firstDue();
+        stats.put("nextDueAt", next != null ? next.dueAt : 0);
+        stats.put("alertsSent", alertsSent.get());
+        stats.put("escalated", escalated.get());
+        stats.put("skipped", skipped.get());
+        stats.put("handlerFailures", failed.get());
+        stats.put("runs", runs.get());
+        stats.put("lastRunAt", lastRunAt);
+        List<String> leads = new ArrayList<>();
+        for (long lead : leadTimesMs) leads.add(describe(lead));
+        stats.put("alertLeadTimes", leads);
+        stats.put("responseDays", responseDays);
+        return stats;
+    }
+
+    /**
+     * Disputes still waiting on our response.
+     */
+    public static boolean isAwaitingResponse(DisputeStatus status) {
+        return status == DisputeStatus.OPENED || status == DisputeStatus.UNDER_REVIEW;
+    }
+
+    /**
+     * Lead time as written in configuration, e.g. "3d" or "12h".
+     */
+    public static String describe(long ms) {
+        if (ms % 86_400_000L == 0) return ms / 86_400_000L + "d";
+        if (ms % 3_600_000L == 0) return ms / 3_600_000L + "h";
+        if (ms % 60_000L == 0) return ms / 60_000L + "m";
+        return ms + "ms";
+    }
+
+    // ============ Private Helper Methods ============
+
+    private Entry first() {
+        try {
+            return timeline.first();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    private DueKey firstDue() {
+        try {
+            return byDue.first();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Put back an entry whose handler failed, unless the dispute has since been
+     * unregistered or registered again with another deadline.
+     */
+    private synchronized void requeue(Entry entry) {
+        DueKey key = dueOf.get(entry.disputeId);
+        List<Entry> pending = pendingOf.get(entry.disputeId);
+        if (key == null || pending == null || key.dueAt != entry.dueAt) return;
+        pending.add(entry);
+        timeline.add(entry);
+    }
+
+    private void remember(Entry entry) {
+        Map<String, Object> alert = new HashMap<>();
+        alert.put("disputeId", entry.disputeId);
+        alert.put("type", entry.leadMs == ESCALATION ? "ESCALATED" : "DEADLINE_ALERT");
+        alert.put("leadTime", entry.leadMs == ESCALATION ? null : describe(entry.leadMs));
+        alert.put("dueAt", entry.dueAt);
+        alert.put("at", System.currentTimeMillis());
+        recentAlerts.addLast(alert);
+        if (recentAlertCount.incrementAndGet() > recentAlertLimit && recentAlerts.pollFirst() != null) {
+            recentAlertCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * "7d,3d,12h" to milliseconds, longest first, without duplicates.
+     */
+    private static long[] parseLeadTimes(String spec) {
+        TreeSet<Long> leads = new TreeSet<>(Comparator.reverseOrder());
+        for (String part : spec.split(",")) {
+            String p = part.trim().toLowerCase(Locale.ROOT);
+            if (p.isEmpty()) continue;
+            long unit;
+            String number;
+            if (p.endsWith("ms")) { unit = 1; number = p.substring(0, p.length() - 2); }
+            else if (p.endsWith("d")) { unit = 86_400_000L; number = p.substring(0, p.length() - 1); }
+            else if (p.endsWith("h")) { unit = 3_600_000L; number = p.substring(0, p.length() - 1); }
+            else if (p.endsWith("m")) { unit = 60_000L; number = p.substring(0, p.length() - 1); }
+            else if (p.endsWith("s")) { unit = 1_000L; number = p.substring(0, p.length() - 1); }
+            else throw new IllegalArgumentException("Lead time needs a unit (d, h, m, s or ms): " + part);
+            long lead = Long.parseLong(number.trim()) * unit;
+            if (lead <= 0) throw new IllegalArgumentException("Lead time must be positive: " + part);
+            leads.add(lead);
+        }
+        long[] result = new long[leads.size()];
+        int i = 0;
+        for (long lead : leads) result[i++] = lead;
+        return result;
+    }
+
+    private void processDueQuietly() {
+        try {
+            processDue();
+        } catch (RuntimeException e) {
+            System.err.println("Dispute deadline run failed: " + e.getMessage());
+        }
+    }
+}
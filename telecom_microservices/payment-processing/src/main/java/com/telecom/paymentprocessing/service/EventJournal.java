@@ -0,0 +1,650 @@
+package com.telecom.paymentprocessing.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only journal of transaction and dispute lifecycle events.
+ *
+ * Events are encoded in a compact binary form into memory-mapped segment files.
+ * Each record points back to the previous record of the same entity, so an entity
+ * only needs to keep the offset of its latest event; its history is read by walking
+ * that chain when someone asks for it. Known event types and statuses are stored as
+ * one-byte codes and UUID entity ids as 16 bytes.
+ *
+ * Record layout: int length, then kind, previous offset, timestamp, entity id,
+ * event type, status and description. The length is written last, so a record cut
+ * short by a crash reads as the end of the journal. Mapped pages are forced to disk
+ * periodically.
+ *
+ * The latest offset of every entity is also kept in a memory-mapped hash index next
+ * to the segments, so entities from before a restart can be found without holding
+ * an entry per entity on the heap. The index records how far into the journal it is
+ * complete; on startup only the records after that point are replayed into it.
+ */
+@Component
+public class EventJournal {
+
+    public static final byte TRANSACTION = 1;
+    public static final byte DISPUTE = 2;
+
+    /**
+     * One journal record, as read back.
+     */
+    public static final class Event {
+        private final byte kind;
+        private final String entityId;
+        private final long offset;
+        private final long previous;
+        private final long timestamp;
+        private final String eventType;
+        private final String status;
+        private final String description;
+
+        Event(byte kind, String entityId, long offset, long previous, long timestamp,
+              String eventType, String status, String description) {
+            this.kind = kind;
+            this.entityId = entityId;
+            this.offset = offset;
+            this.previous = previous;
+            this.timestamp = timestamp;
+            this.eventType = eventType;
+            this.status = status;
+            this.description = description;
+        }
+
+        public byte getKind() { return kind; }
+        public String getEntityId() { return entityId; }
+        public long getOffset() { return offset; }
+        public long getPrevious() { return previous; }
+        public long getTimestamp() { return timestamp; }
+        public String getEventType() { return eventType; }
+        public String getStatus() { return status; }
+        public String getDescription() { return description; }
+    }
+
+    // Codes are positions in this list (plus one) and are persisted: only ever append to it
+    private static final List<String> CODES = Arrays.asList(
+        "CREATED", "PENDING", "PROCESSING", "AUTHORIZED", "CAPTURED", "SETTLED", "FAILED",
+        "CANCELLED", "REFUNDED", "DISPUTED", "CHARGEBACK", "FRAUD_REJECTED", "DECLINED",
+        "GATEWAY_ERROR", "REJECTED", "OPENED", "UNDER_REVIEW", "EVIDENCE_SUBMITTED",
+        "RESOLVED", "WON", "LOST", "WITHDRAWN", "DEADLINE_ALERT", "ESCALATED");
+    private static final Map<String, Integer> CODE_OF = new HashMap<>();
+
+    static {
+        for (int i = 0; i < CODES.size(); i++) CODE_OF.put(CODES.get(i), i + 1);
+    }
+
+    private static final int INLINE = 0;
+    private static final int UUID_ID = 0xFF;
+    private static final int MAX_TEXT_BYTES = 4096;
+    private static final int MAX_RECORD_BYTES = 4 + 1 + 8 + 8 + 1 + 255 + 3 * (5 + MAX_TEXT_BYTES);
+
+    @Value("${payment.journal.dir:data/journal}")
+    private String dir = "data/journal";
+
+    @Value("${payment.journal.segment-bytes:67108864}")
+    private int segmentBytes = 64 * 1024 * 1024;
+
+    @Value("${payment.journal.force-interval-ms:1000}")
+    private long forceIntervalMs = 1000;
+
+    // Copy-on-write: segments are added rarely and read on every history lookup
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private final HeadIndex heads = new HeadIndex();
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder bytesAppended = new LongAdder();
+    private final LongAdder historyReads = new LongAdder();
+    private long replayedOnStartup;
+
+    private volatile MappedByteBuffer current;
+    private int position;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path path = Paths.get(dir);
+        Files.createDirectories(path);
+        for (int i = 0; Files.exists(segmentPath(i)); i++) segments.add(map(i));
+        if (segments.isEmpty()) segments.add(map(0));
+        current = segments.get(segments.size() - 1);
+        position = endOf(current);
+
+        // Bring the head index up to the end of the journal; normally only a short tail
+        long end = endOffset();
+        heads.open(path.resolve("heads.idx"));
+        long from = heads.indexedTo();
+        if (from > end) {
+            // The index saw records that did not reach the disk: rebuild it from scratch
+            System.err.println("Event journal head index is ahead of the journal, rebuilding it");
+            heads.clear();
+            from = 0;
+        }
+        long[] replayed = new long[1];
+        replay(from, (kind, entityId, offset) -> {
+            heads.put(kind, entityId, offset);
+            replayed[0]++;
+        });
+        heads.setIndexedTo(end);
+        replayedOnStartup = replayed[0];
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "event-journal-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::force, forceIntervalMs, forceIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) flusher.shutdown();
+        force();
+    }
+
+    /**
+     * Append an event and return its offset. {@code previous} is the offset of the
+     * entity's latest event, or -1 for its first.
+     */
+    public synchronized long append(byte kind, String entityId, long previous, long timestamp,
+                                    String eventType, String status, String description) {
+        ByteBuffer record = scratch;
+        record.clear();
+        record.position(4);
+        record.put(kind);
+        record.putLong(previous);
+        record.putLong(timestamp);
+        putId(record, entityId);
+        putText(record, eventType, true);
+        putText(record, status, true);
+        putText(record, description, false);
+        int length = record.position() - 4;
+        record.flip();
+
+        if (position + record.limit() + 4 > segmentBytes) roll();
+        long offset = (long) (segments.size() - 1) * segmentBytes + position;
+        ByteBuffer target = current.duplicate();
+        target.position(position + 4);
+        record.position(4);
+        target.put(record);
+        // Length last: until it is set the record reads as the end of the journal
+        current.putInt(position, length);
+        position += 4 + length;
+
+        heads.put(kind, entityId, offset);
+        heads.setIndexedTo(offset + 4 + length);
+
+        appended.increment();
+        bytesAppended.add(4 + length);
+        return offset;
+    }
+
+    /**
+     * Events of one entity, oldest first, by walking back from its latest offset.
+     */
+    public List<Event> history(long latest) {
+        historyReads.increment();
+        List<Event> events = new ArrayList<>();
+        for (long offset = latest; offset >= 0; ) {
+            Event event = read(offset);
+            events.add(event);
+            offset = event.previous;
+        }
+        Collections.reverse(events);
+        return events;
+    }
+
+    public Event latest(long offset) {
+        return offset >= 0 ? read(offset) : null;
+    }
+
+    /**
+     * Latest offset of a transaction or dispute, including ones journaled before the
+     * last restart, or -1.
+     */
+    public synchronized long recoveredHead(byte kind, String entityId) {
+        long head = heads.get(kind, entityId);
+        return head < endOffset() ? head : -1;
+    }
+
+    /**
+     * Visit every record in append order.
+     */
+    public void replay(java.util.function.Consumer<Event> visitor) {
+        int segmentCount;
+        synchronized (this) {
+            segmentCount = segments.size();
+        }
+        replay(0, (kind, entityId, offset) -> {
+            int s = (int) (offset / segmentBytes);
+            if (s < segmentCount) visitor.accept(decode(segments.get(s), offset));
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("segments", segments.size());
+            stats.put("sizeBytes", (long) (segments.size() - 1) * segmentBytes + position);
+        }
+        stats.put("segmentBytes", segmentBytes);
+        stats.put("appended", appended.sum());
+        stats.put("bytesAppended", bytesAppended.sum());
+        long count = appended.sum();
+        stats.put("avgRecordBytes", count == 0 ? 0 : bytesAppended.sum() / count);
+        stats.put("historyReads", historyReads.sum());
+        synchronized (this) {
+            stats.put("indexedEntities", heads.size());
+            stats.put("headIndexCapacity", heads.capacity());
+        }
+        stats.put("replayedOnStartup", replayedOnStartup);
+        stats.put("dir", dir);
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private interface RecordVisitor {
+        void visit(byte kind, String entityId, long offset);
+    }
+
+    /**
+     * Visit the kind, entity and offset of every record from {@code from} to the
+     * current end, without decoding the rest of the record.
+     */
+    private void replay(long from, RecordVisitor visitor) {
+        int segmentCount;
+        int end;
+        synchronized (this) {
+            segmentCount = segments.size();
+            end = position;
+        }
+        for (int s = (int) (from / segmentBytes); s < segmentCount; s++) {
+            MappedByteBuffer segment = segments.get(s);
+            int limit = s == segmentCount - 1 ? end : segmentBytes;
+            int at = s == from / segmentBytes ? (int) (from % segmentBytes) : 0;
+            while (at + 4 <= limit) {
+                int length = segment.getInt(at);
+                if (length <= 0) break;
+                ByteBuffer in = segment.duplicate();
+                in.position(at + 4);
+                byte kind = in.get();
+                in.position(at + 4 + 1 + 8 + 8);
+                visitor.visit(kind, getId(in), (long) s * segmentBytes + at);
+                at += 4 + length;
+            }
+        }
+    }
+
+    private long endOffset() {
+        return (long) (segments.size() - 1) * segmentBytes + position;
+    }
+
+    private Event read(long offset) {
+        int s = (int) (offset / segmentBytes);
+        if (s >= segments.size()) throw new IllegalArgumentException("Journal offset out of range: " + offset);
+        return decode(segments.get(s), offset);
+    }
+
+    private Event decode(MappedByteBuffer segment, long offset) {
+        ByteBuffer in = segment.duplicate();
+        in.position((int) (offset % segmentBytes) + 4);
+        byte kind = in.get();
+        long previous = in.getLong();
+        long timestamp = in.getLong();
+        String entityId = getId(in);
+        String eventType = getText(in);
+        String status = getText(in);
+        String description = getText(in);
+        return new Event(kind, entityId, offset, previous, timestamp, eventType, status, description);
+    }
+
+    private void roll() {
+        if (position + 4 <= segmentBytes) current.putInt(position, 0);
+        try {
+            MappedByteBuffer next = map(segments.size());
+            segments.add(next);
+            current = next;
+            position = 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open a new journal segment: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Force the newest segments, then the head index, so the index on disk never
+     * claims records the journal on disk does not have.
+     */
+    private void force() {
+        List<MappedByteBuffer> toForce;
+        synchronized (this) {
+            toForce = new ArrayList<>(segments.subList(Math.max(0, segments.size() - 2), segments.size()));
+        }
+        for (MappedByteBuffer segment : toForce) {
+            try {
+                segment.force();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to force journal segment: " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            heads.force();
+        }
+    }
+
+    private MappedByteBuffer map(int index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return Paths.get(dir, String.format("events-%06d.seg", index));
+    }
+
+    private static int endOf(MappedByteBuffer segment) {
+        int at = 0;
+        while (at + 4 <= segment.capacity()) {
+            int length = segment.getInt(at);
+            if (length <= 0 || at + 4 + length > segment.capacity()) break;
+            at += 4 + length;
+        }
+        return at;
+    }
+
+    private static void putId(ByteBuffer out, String id) {
+        if (id.length() == 36) {
+            try {
+                UUID uuid = UUID.fromString(id);
+                out.put((byte) UUID_ID);
+                out.putLong(uuid.getMostSignificantBits());
+                out.putLong(uuid.getLeastSignificantBits());
+                return;
+            } catch (IllegalArgumentException e) {
+                // Not a UUID after all; stored as text below
+            }
+        }
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, UUID_ID - 1);
+        out.put((byte) length);
+        out.put(bytes, 0, length);
+    }
+
+    private static String getId(ByteBuffer in) {
+        int marker = in.get() & 0xFF;
+        if (marker == UUID_ID) return new UUID(in.getLong(), in.getLong()).toString();
+        byte[] bytes = new byte[marker];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A known code as one byte; anything else as a zero byte, a varint length and UTF-8.
+     */
+    private static void putText(ByteBuffer out, String value, boolean coded) {
+        if (value == null) {
+            out.put((byte) INLINE);
+            putVarint(out, 0);
+            return;
+        }
+        Integer code = coded ? CODE_OF.get(value) : null;
+        if (code != null) {
+            out.put((byte) code.intValue());
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_TEXT_BYTES);
+        out.put((byte) INLINE);
+        // Length 0 is null, so stored lengths are shifted by one
+        putVarint(out, length + 1);
+        out.put(bytes, 0, length);
+    }
+
+    private static String getText(ByteBuffer in) {
+        int code = in.get() & 0xFF;
+        if (code != INLINE) return CODES.get(code - 1);
+        int length = getVarint(in);
+        if (length == 0) return null;
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    /**
+     * Open-addressing hash table in a memory-mapped file from entity to the offset of
+     * its latest record. Keys are 128 bits: a UUID id as is, any other id as two
+     * independent 64-bit hashes. The header holds the journal offset up to which the
+     * table is complete. Grows by rewriting into a file twice the size. Guarded by the
+     * journal's lock.
+     */
+    private static final class HeadIndex {
+        private static final int MAGIC = 0x48454144;
+        private static final int HEADER_BYTES = 64;
+        private static final int CAPACITY_AT = 4;
+        private static final int SIZE_AT = 8;
+        private static final int INDEXED_TO_AT = 16;
+        private static final int SLOT_BYTES = 32;
+        private static final int INITIAL_CAPACITY = 1 << 16;
+        private static final int MAX_CAPACITY = 1 << 26;
+
+        private Path path;
+        private MappedByteBuffer table;
+        private int capacity;
+        private int size;
+        private boolean full;
+
+        void open(Path path) throws IOException {
+            this.path = path;
+            if (Files.exists(path)) {
+                table = map(path, Files.size(path));
+                if (table.getInt(0) == MAGIC) {
+                    capacity = table.getInt(CAPACITY_AT);
+                    size = table.getInt(SIZE_AT);
+                    return;
+                }
+                System.err.println("Event journal head index " + path + " is not valid, rebuilding it");
+            }
+            create(INITIAL_CAPACITY);
+        }
+
+        long indexedTo() {
+            return table.getLong(INDEXED_TO_AT);
+        }
+
+        void setIndexedTo(long offset) {
+            table.putLong(INDEXED_TO_AT, offset);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        void clear() {
+            create(INITIAL_CAPACITY);
+        }
+
+        void put(byte kind, String entityId, long offset) {
+            UUID key = keyOf(entityId);
+            long hi = key.getMostSignificantBits();
+            long lo = key.getLeastSignificantBits();
+            int at = find(kind, hi, lo);
+            if (table.getLong(at + 16) != 0) {
+                table.putLong(at + 16, offset + 1);
+                return;
+            }
+            if ((size + 1) * 2L > capacity) {
+                if (!grow()) return;
+                at = find(kind, hi, lo);
+            }
+            table.putLong(at, hi);
+            table.putLong(at + 8, lo);
+            table.putLong(at + 24, kind);
+            table.putLong(at + 16, offset + 1);
+            table.putInt(SIZE_AT, ++size);
+        }
+
+        long get(byte kind, String entityId) {
+            UUID key = keyOf(entityId);
+            int at = find(kind, key.getMostSignificantBits(), key.getLeastSignificantBits());
+            return table.getLong(at + 16) - 1;
+        }
+
+        void force() {
+            try {
+                table.force();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to force event journal head index: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Position of the key's slot, or of the empty slot where it would go.
+         */
+        private int find(byte kind, long hi, long lo) {
+            int mask = capacity - 1;
+            for (int i = mix(hi ^ lo ^ kind) & mask; ; i = (i + 1) & mask) {
+                int at = HEADER_BYTES + i * SLOT_BYTES;
+                if (table.getLong(at + 16) == 0) return at;
+                if (table.getLong(at) == hi && table.getLong(at + 8) == lo && table.getLong(at + 24) == kind) return at;
+            }
+        }
+
+        /**
+         * Rewrite into a table twice the size; false, and indexing stops, at the maximum.
+         */
+        private boolean grow() {
+            if (capacity >= MAX_CAPACITY) {
+                if (!full) System.err.println("Event journal head index is full; new entities are not indexed");
+                full = true;
+                return false;
+            }
+            MappedByteBuffer old = table;
+            int oldCapacity = capacity;
+            long indexedTo = indexedTo();
+            Path tmp = Paths.get(path + ".tmp");
+            try {
+                Files.deleteIfExists(tmp);
+                table = map(tmp, HEADER_BYTES + (long) oldCapacity * 2 * SLOT_BYTES);
+                init(oldCapacity * 2);
+                for (int i = 0; i < oldCapacity; i++) {
+                    int from = HEADER_BYTES + i * SLOT_BYTES;
+                    long head = old.getLong(from + 16);
+                    if (head == 0) continue;
+                    long hi = old.getLong(from);
+                    long lo = old.getLong(from + 8);
+                    long kind = old.getLong(from + 24);
+                    int at = find((byte) kind, hi, lo);
+                    table.putLong(at, hi);
+                    table.putLong(at + 8, lo);
+                    table.putLong(at + 24, kind);
+                    table.putLong(at + 16, head);
+                    size++;
+                }
+                table.putInt(SIZE_AT, size);
+                setIndexedTo(indexedTo);
+                table.force();
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to grow the event journal head index: " + e.getMessage(), e);
+            }
+        }
+
+        private void create(int newCapacity) {
+            try {
+                Files.deleteIfExists(path);
+                table = map(path, HEADER_BYTES + (long) newCapacity * SLOT_BYTES);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to create the event journal head index: " + e.getMessage(), e);
+            }
+            init(newCapacity);
+        }
+
+        private void init(int newCapacity) {
+            capacity = newCapacity;
+            size = 0;
+            table.putInt(CAPACITY_AT, capacity);
+            table.putInt(SIZE_AT, 0);
+            table.putLong(INDEXED_TO_AT, 0);
+            table.putInt(0, MAGIC);
+        }
+
+        private static MappedByteBuffer map(Path file, long bytes) throws IOException {
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            }
+        }
+
+        /**
+         * The id itself when it is a UUID, else two independent 64-bit hashes of it.
+         */
+        private static UUID keyOf(String id) {
+            UUID uuid = uuidOf(id);
+            if (uuid != null) return uuid;
+            long hi = 0xcbf29ce484222325L;
+            long lo = 0x9E3779B97F4A7C15L;
+            for (int i = 0; i < id.length(); i++) {
+                char c = id.charAt(i);
+                hi = (hi ^ c) * 0x100000001b3L;
+                lo = (lo + c) * 0xC2B2AE3D27D4EB4FL ^ (lo >>> 29);
+            }
+            return new UUID(hi, lo);
+        }
+
+        private static UUID uuidOf(String id) {
+            if (id.length() != 36) return null;
+            try {
+                return UUID.fromString(id);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
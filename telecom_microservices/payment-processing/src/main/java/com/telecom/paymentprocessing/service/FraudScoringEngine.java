@@ -0,0 +1,308 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+/**
+ * Weighted fraud scoring over a primitive feature vector.
+ *
+ * Scorers are plug-ins that read one row of a columnar {@link Features} batch and
+ * return a risk in [0, 1]; the overall score is their weighted mean and the risk
+ * level comes from the configured thresholds. Single transactions are scored
+ * through a per-thread one-row batch, so the only allocation is the
+ * {@link Assessment} itself; backfills score whole batches in one call.
+ */
+@Component
+public class FraudScoringEngine {
+
+    /**
+     * A single fraud signal. Implementations must be stateless and thread-safe.
+     */
+    public interface Scorer {
+        String name();
+
+        /**
+         * Risk in [0, 1] for row {@code row} of the batch.
+         */
+        double score(Features features, int row);
+    }
+
+    public static final String LEVEL_LOW = "LOW";
+    public static final String LEVEL_MEDIUM = "MEDIUM";
+    public static final String LEVEL_HIGH = "HIGH";
+
+    private static final double[] METHOD_RISK = new double[PaymentMethod.values().length];
+
+    static {
+        Arrays.fill(METHOD_RISK, 0.5);
+        METHOD_RISK[PaymentMethod.CREDIT_CARD.ordinal()] = 0.3;
+        METHOD_RISK[PaymentMethod.DEBIT_CARD.ordinal()] = 0.2;
+        METHOD_RISK[PaymentMethod.DIGITAL_WALLET.ordinal()] = 0.15;
+        METHOD_RISK[PaymentMethod.BANK_TRANSFER.ordinal()] = 0.25;
+        METHOD_RISK[PaymentMethod.USSD.ordinal()] = 0.4;
+    }
+
+    @Value("${payment.fraud.weights:amount=1,method=1,geo=1,velocity=1,device=0}")
+    private String weightSpec = "amount=1,method=1,geo=1,velocity=1,device=0";
+
+    @Value("${payment.fraud.threshold-high:0.75}")
+    private double thresholdHigh = 0.75;
+
+    @Value("${payment.fraud.threshold-medium:0.50}")
+    private double thresholdMedium = 0.50;
+
+    // Replaced wholesale on registration so scoring threads never see a partial update
+    private volatile Registry registry = new Registry(new Scorer[0], new double[0]);
+
+    private final ThreadLocal<Features> single = ThreadLocal.withInitial(() -> new Features(1));
+
+    @PostConstruct
+    public void init() {
+        Map<String, Double> weights = parseWeights(weightSpec);
+        register(scorer("amount", (f, i) -> amountRisk(f.amount[i])), weights.getOrDefault("amount", 0.0));
+        register(scorer("method", (f, i) -> f.method[i] >= 0 ? METHOD_RISK[f.method[i]] : 0.5), weights.getOrDefault("method", 0.0));
+        register(scorer("geo", (f, i) -> f.geoRisk[i]), weights.getOrDefault("geo", 0.0));
+        register(scorer("velocity", (f, i) -> f.velocity[i]), weights.getOrDefault("velocity", 0.0));
+        register(scorer("device", (f, i) -> f.deviceRisk[i]), weights.getOrDefault("device", 0.0));
+    }
+
+    /**
+     * Add a scorer, or change the weight of an existing one with the same name.
+     * A weight of zero keeps the scorer in the breakdown without affecting the score.
+     */
+    public synchronized void register(Scorer scorer, double weight) {
+        if (weight < 0) throw new IllegalArgumentException("Scorer weight must not be negative: " + scorer.name());
+        Registry current = registry;
+        int at = current.indexOf(scorer.name());
+        int size = at >= 0 ? current.scorers.length : current.scorers.length + 1;
+        Scorer[] scorers = Arrays.copyOf(current.scorers, size);
+        double[] weights = Arrays.copyOf(current.weights, size);
+        int slot = at >= 0 ? at : size - 1;
+        scorers[slot] = scorer;
+        weights[slot] = weight;
+        registry = new Registry(scorers, weights);
+    }
+
+    public synchronized void setThresholds(double medium, double high) {
+        if (medium < 0 || high > 1 || medium > high) {
+            throw new IllegalArgumentException("Thresholds must satisfy 0 <= medium <= high <= 1");
+        }
+        this.thresholdMedium = medium;
+        this.thresholdHigh = high;
+    }
+
+    /**
+     * Score one transaction.
+     */
+    public Assessment score(double amount, PaymentMethod method, double geoRisk, double velocity, double deviceRisk) {
+        Features features = single.get();
+        features.clear();
+        features.add(amount, method, geoRisk, velocity, deviceRisk);
+        Registry r = registry;
+        Assessment result = new Assessment(r.names, new double[r.scorers.length]);
+        evaluate(r, features, 0, result);
+        return result;
+    }
+
+    /**
+     * Score every row of a batch. The returned array is indexed like the batch rows.
+     */
+    public Assessment[] scoreBatch(Features batch) {
+        Registry r = registry;
+        Assessment[] results = new Assessment[batch.size];
+        for (int i = 0; i < batch.size; i++) {
+            results[i] = new Assessment(r.names, new double[r.scorers.length]);
+            evaluate(r, batch, i, results[i]);
+        }
+        return results;
+    }
+
+    public Map<String, Object> config() {
+        Registry r = registry;
+        Map<String, Object> weights = new LinkedHashMap<>();
+        for (int i = 0; i < r.scorers.length; i++) weights.put(r.names[i], r.weights[i]);
+        Map<String, Object> config = new HashMap<>();
+        config.put("weights", weights);
+        config.put("thresholdMedium", thresholdMedium);
+        config.put("thresholdHigh", thresholdHigh);
+        return config;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private void evaluate(Registry r, Features features, int row, Assessment into) {
+        double weighted = 0;
+        for (int s = 0; s < r.scorers.length; s++) {
+            double score = clamp(r.scorers[s].score(features, row));
+            into.scores[s] = score;
+            weighted += score * r.weights[s];
+        }
+        into.overall = r.totalWeight > 0 ? weighted / r.totalWeight : 0;
+        into.level = into.overall >= thresholdHigh ? LEVEL_HIGH
+            : into.overall >= thresholdMedium ? LEVEL_MEDIUM : LEVEL_LOW;
+    }
+
+    private static double amountRisk(double amount) {
+        // Score increases for unusual amounts
+        if (amount > 10000) return 0.7;
+        if (amount > 5000) return 0.5;
+        if (amount > 1000) return 0.3;
+        return 0.1;
+    }
+
+    private static double clamp(double score) {
+        return score < 0 ? 0 : score > 1 ? 1 : score;
+    }
+
+    private static Map<String, Double> parseWeights(String spec) {
+        Map<String, Double> weights = new HashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            if (kv.length != 2) continue;
+            try {
+                weights.put(kv[0].trim(), Double.parseDouble(kv[1].trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid fraud scorer weight: " + part);
+            }
+        }
+        return weights;
+    }
+
+    private interface ScoreFunction {
+        double apply(Features features, int row);
+    }
+
+    private static Scorer scorer(String name, ScoreFunction function) {
+        return new Scorer() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public double score(Features features, int row) {
+                return function.apply(features, row);
+            }
+        };
+    }
+
+    private static final class Registry {
+        private final Scorer[] scorers;
+        private final double[] weights;
+        private final String[] names;
+        private final double totalWeight;
+
+        Registry(Scorer[] scorers, double[] weights) {
+            this.scorers = scorers;
+            this.weights = weights;
+            this.names = new String[scorers.length];
+            double total = 0;
+            for (int i = 0; i < scorers.length; i++) {
+                names[i] = scorers[i].name();
+                total += weights[i];
+            }
+            this.totalWeight = total;
+        }
+
+        int indexOf(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) return i;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Column-oriented batch of transaction features. Rows are appended with
+     * {@link #add}; the arrays grow as needed and are reused after {@link #clear}.
+     */
+    public static final class Features {
+        public double[] amount;
+        public int[] method;
+        public double[] geoRisk;
+        public double[] velocity;
+        public double[] deviceRisk;
+        private int size;
+
+        public Features(int capacity) {
+            capacity = Math.max(1, capacity);
+            amount = new double[capacity];
+            method = new int[capacity];
+            geoRisk = new double[capacity];
+            velocity = new double[capacity];
+            deviceRisk = new double[capacity];
+        }
+
+        public int add(double amountValue, PaymentMethod paymentMethod, double geo, double velocityScore, double device) {
+            if (size == amount.length) grow();
+            amount[size] = amountValue;
+            method[size] = paymentMethod != null ? paymentMethod.ordinal() : -1;
+            geoRisk[size] = geo;
+            velocity[size] = velocityScore;
+            deviceRisk[size] = device;
+            return size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        private void grow() {
+            int capacity = amount.length * 2;
+            amount = Arrays.copyOf(amount, capacity);
+            method = Arrays.copyOf(method, capacity);
+            geoRisk = Arrays.copyOf(geoRisk, capacity);
+            velocity = Arrays.copyOf(velocity, capacity);
+            deviceRisk = Arrays.copyOf(deviceRisk, capacity);
+        }
+    }
+
+    /**
+     * Result of scoring one transaction: per-scorer scores, the weighted overall
+     * score and the risk level.
+     */
+    public static final class Assessment {
+        private final String[] names;
+        private final double[] scores;
+        private double overall;
+        private String level;
+
+        Assessment(String[] names, double[] scores) {
+            this.names = names;
+            this.scores = scores;
+        }
+
+        public double getOverall() {
+            return overall;
+        }
+
+        public String getLevel() {
+            return level;
+        }
+
+        public double getScore(String scorer) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(scorer)) return scores[i];
+            }
+            return Double.NaN;
+        }
+
+        /**
+         * Breakdown in the "&lt;name&gt;Score" / "overallScore" shape stored on ComplianceInfo.
+         * Built on request, so scoring itself never boxes.
+         */
+        public Map<String, Object> toScoreMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) map.put(names[i] + "Score", scores[i]);
+            map.put("overallScore", overall);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.telecom.paymentprocessing.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Health- and cost-aware payment gateway routing.
+ *
+ * For every gateway the router keeps an EWMA of response latency, technical error
+ * rate and approval rate, and a circuit breaker. Gateways are ranked by processing
+ * cost plus a health penalty; an open breaker takes a gateway out of rotation until
+ * its cool-down ends, after which a single probe decides whether it closes again.
+ * Large payments are hedged: if the first gateway has not answered within the hedge
+ * delay, the next-best gateway is tried as well and the first answer wins. A
+ * technical error fails over once to another healthy gateway. When both hedged
+ * requests are approved, the losing authorization is voided at its gateway so the
+ * customer is not left with two holds. A small share of
+ * traffic explores other gateways so a recovered gateway wins its traffic back.
+ */
+@Component
+public class GatewayRouter {
+
+    /**
+     * Sends an authorization to one gateway.
+     */
+    public interface GatewayCall {
+        CompletableFuture<GatewaySimulator.GatewayResponse> authorize(String gateway);
+    }
+
+    /**
+     * Voids an approved authorization at the gateway that issued it.
+     */
+    public interface GatewayVoid {
+        CompletableFuture<GatewaySimulator.GatewayResponse> voidAuthorization(String gateway, String gatewayReference);
+    }
+
+    enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    // Per gateway: percentage fee and fixed fee, e.g. "STRIPE:2.9:0.30"
+    @Value("${payment.routing.costs:STRIPE:2.9:0.30,PAYPAL:3.4:0.30,SQUARE:2.6:0.10,GATEWAY2U:2.2:0.20}")
+    private String costSpec = "STRIPE:2.9:0.30,PAYPAL:3.4:0.30,SQUARE:2.6:0.10,GATEWAY2U:2.2:0.20";
+
+    @Value("${payment.routing.default-gateway:GATEWAY2U}")
+    private String defaultGateway = "GATEWAY2U";
+
+    @Value("${payment.routing.ewma-alpha:0.1}")
+    private double alpha = 0.1;
+
+    // Health penalty weights, in percentage points of cost
+    @Value("${payment.routing.latency-weight:1.0}")
+    private double latencyWeight = 1.0;
+
+    @Value("${payment.routing.error-weight:20.0}")
+    private double errorWeight = 20.0;
+
+    @Value("${payment.routing.decline-weight:5.0}")
+    private double declineWeight = 5.0;
+
+    // Latency that costs latencyWeight percentage points
+    @Value("${payment.routing.latency-reference-ms:100}")
+    private double latencyReferenceMs = 100;
+
+    // Share of traffic sent to a random healthy gateway so idle gateways' stats stay current
+    @Value("${payment.routing.explore-rate:0.02}")
+    private double exploreRate = 0.02;
+
+    @Value("${payment.routing.breaker.error-threshold:0.5}")
+    private double breakerErrorThreshold = 0.5;
+
+    @Value("${payment.routing.breaker.consecutive-failures:5}")
+    private int breakerConsecutiveFailures = 5;
+
+    @Value("${payment.routing.breaker.min-requests:20}")
+    private int breakerMinRequests = 20;
+
+    @Value("${payment.routing.breaker.open-ms:10000}")
+    private long breakerOpenMs = 10000;
+
+    @Value("${payment.routing.hedge.min-amount:5000}")
+    private double hedgeMinAmount = 5000;
+
+    // The hedge fires after max(min-delay, multiplier x EWMA latency of the first gateway)
+    @Value("${payment.routing.hedge.min-delay-ms:50}")
+    private long hedgeMinDelayMs = 50;
+
+    @Value("${payment.routing.hedge.latency-multiplier:2.0}")
+    private double hedgeLatencyMultiplier = 2.0;
+
+    // Tries at voiding a losing hedged approval before it is reported for manual reversal
+    @Value("${payment.routing.hedge.void-attempts:3}")
+    private int voidAttempts = 3;
+
+    private final Map<String, GatewayHealth> gateways = new LinkedHashMap<>();
+    private ScheduledExecutorService hedgeTimer;
+
+    private final LongAdder routed = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder hedgeVoids = new LongAdder();
+    private final LongAdder hedgeVoidFailures = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder explored = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        for (String entry : costSpec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 3) continue;
+            gateways.put(parts[0], new GatewayHealth(parts[0], Double.parseDouble(parts[1]), Double.parseDouble(parts[2])));
+        }
+        gateways.computeIfAbsent(defaultGateway, g -> new GatewayHealth(g, 0, 0));
+        hedgeTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gateway-hedge");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (hedgeTimer != null) hedgeTimer.shutdownNow();
+    }
+
+    /**
+     * Authorize through the best gateway for the amount. With {@code adaptive} off the
+     * default gateway is always used, with no hedging or failover, but health is still
+     * tracked. Completes exceptionally if no gateway is available or all attempts failed.
+     * Approvals that lose a hedge are voided through {@code voider}.
+     */
+    public CompletableFuture<GatewaySimulator.GatewayResponse> authorize(double amount, boolean adaptive, GatewayCall call,
+                                                                         GatewayVoid voider) {
+        routed.increment();
+        if (!adaptive) {
+            CompletableFuture<GatewaySimulator.GatewayResponse> result = new CompletableFuture<>();
+            Routing routing = new Routing(call, voider, result, Collections.singletonList(defaultGateway), false);
+            routing.attempt(gateways.get(defaultGateway));
+            return result;
+        }
+
+        List<GatewayHealth> ranked = rank(amount);
+        CompletableFuture<GatewaySimulator.GatewayResponse> result = new CompletableFuture<>();
+        Routing routing = new Routing(call, voider, result, new ArrayList<>(), true);
+        GatewayHealth primary = routing.next(ranked);
+        if (primary == null) {
+            unavailable.increment();
+            result.completeExceptionally(new GatewaySimulator.GatewayException(null, "No payment gateway available"));
+            return result;
+        }
+        routing.ranked = ranked;
+        routing.attempt(primary);
+
+        if (amount >= hedgeMinAmount && ranked.size() > 1) {
+            long delay = Math.max(hedgeMinDelayMs, (long) (primary.ewmaLatencyMs * hedgeLatencyMultiplier));
+            hedgeTimer.schedule(() -> {
+                if (result.isDone()) return;
+                GatewayHealth backup = routing.next(ranked);
+                if (backup == null) return;
+                hedges.increment();
+                routing.hedgedTo = backup.name;
+                routing.attempt(backup);
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    /**
+     * Per-gateway health, breaker state and routing score, plus routing totals.
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> perGateway = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (GatewayHealth health : gateways.values()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            synchronized (health) {
+                m.put("state", health.stateAt(now));
+                m.put("ewmaLatencyMs", Math.round(health.ewmaLatencyMs * 10) / 10.0);
+                m.put("errorRate", Math.round(health.ewmaErrorRate * 10000) / 10000.0);
+                m.put("approvalRate", Math.round(health.ewmaApprovalRate * 10000) / 10000.0);
+                m.put("requests", health.requests);
+                m.put("errors", health.errors);
+                m.put("declines", health.declines);
+                m.put("consecutiveFailures", health.consecutiveFailures);
+                m.put("breakerTrips", health.trips);
+            }
+            m.put("feePercent", health.feePercent);
+            m.put("fixedFee", health.fixedFee);
+            m.put("score", Math.round(score(health, 100.0) * 1000) / 1000.0);
+            perGateway.put(health.name, m);
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("gateways", perGateway);
+        metrics.put("routed", routed.sum());
+        metrics.put("hedges", hedges.sum());
+        metrics.put("hedgeWins", hedgeWins.sum());
+        metrics.put("hedgeVoids", hedgeVoids.sum());
+        metrics.put("hedgeVoidFailures", hedgeVoidFailures.sum());
+        metrics.put("failovers", failovers.sum());
+        metrics.put("explored", explored.sum());
+        metrics.put("unavailable", unavailable.sum());
+        return metrics;
+    }
+
+    // ============ Private Helper Methods ============
+
+    /**
+     * Gateways whose breaker lets traffic through, cheapest effective cost first.
+     */
+    private List<GatewayHealth> rank(double amount) {
+        long now = System.currentTimeMillis();
+        List<GatewayHealth> candidates = new ArrayList<>(gateways.size());
+        for (GatewayHealth health : gateways.values()) {
+            if (health.stateAt(now) != BreakerState.OPEN) candidates.add(health);
+        }
+        candidates.sort(Comparator.comparingDouble(h -> score(h, amount)));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (candidates.size() > 1 && random.nextDouble() < exploreRate) {
+            Collections.swap(candidates, 0, 1 + random.nextInt(candidates.size() - 1));
+            explored.increment();
+        }
+        return candidates;
+    }
+
+    /**
+     * Effective cost in percent of the amount: the fee plus health penalties.
+     */
+    private double score(GatewayHealth health, double amount) {
+        double fee = health.feePercent + (amount > 0 ? health.fixedFee * 100.0 / amount : 0);
+        return fee
+            + latencyWeight * health.ewmaLatencyMs / latencyReferenceMs
+            + errorWeight * health.ewmaErrorRate
+            + declineWeight * (1.0 - health.ewmaApprovalRate);
+    }
+
+    /**
+     * Void a losing approval, retrying technical errors up to {@code voidAttempts} times.
+     */
+    private void voidLosingApproval(GatewayVoid voider, GatewaySimulator.GatewayResponse approval, int attempt) {
+        CompletableFuture<GatewaySimulator.GatewayResponse> voided;
+        try {
+            voided = voider.voidAuthorization(approval.getGateway(), approval.getGatewayReference());
+        } catch (RuntimeException e) {
+            voided = new CompletableFuture<>();
+            voided.completeExceptionally(e);
+        }
+        voided.whenComplete((r, error) -> {
+            if (error == null) {
+                hedgeVoids.increment();
+            } else if (attempt < voidAttempts) {
+                voidLosingApproval(voider, approval, attempt + 1);
+            } else {
+                hedgeVoidFailures.increment();
+                System.err.println("Failed to void hedged authorization " + approval.getGatewayReference()
+                    + " at " + approval.getGateway() + " after " + attempt + " attempts; it needs a manual reversal");
+            }
+        });
+    }
+
+    /**
+     * State of one authorization: attempts made, outstanding calls and the result.
+     */
+    private final class Routing {
+        private final GatewayCall call;
+        private final GatewayVoid voider;
+        private final CompletableFuture<GatewaySimulator.GatewayResponse> result;
+        private final List<String> tried;
+        private final boolean mayFailover;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicBoolean failedOver = new AtomicBoolean();
+        private volatile List<GatewayHealth> ranked = Collections.emptyList();
+        private volatile String hedgedTo;
+
+        Routing(GatewayCall call, GatewayVoid voider, CompletableFuture<GatewaySimulator.GatewayResponse> result,
+                List<String> tried, boolean mayFailover) {
+            this.call = call;
+            this.voider = voider;
+            this.result = result;
+            this.tried = tried;
+            this.mayFailover = mayFailover;
+        }
+
+        /**
+         * Next untried gateway that accepts a request (claims the probe of a half-open breaker).
+         */
+        synchronized GatewayHealth next(List<GatewayHealth> candidates) {
+            for (GatewayHealth health : candidates) {
+                if (tried.contains(health.name)) continue;
+                if (health.tryAcquire(System.currentTimeMillis())) {
+                    tried.add(health.name);
+                    return health;
+                }
+            }
+            return null;
+        }
+
+        void attempt(GatewayHealth health) {
+            outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            CompletableFuture<GatewaySimulator.GatewayResponse> response;
+            try {
+                response = call.authorize(health.name);
+            } catch (RuntimeException e) {
+                response = new CompletableFuture<>();
+                response.completeExceptionally(e);
+            }
+            response.whenComplete((r, error) -> {
+                double latencyMs = (System.nanoTime() - start) / 1e6;
+                health.record(latencyMs, error == null, r != null && r.isApproved(), System.currentTimeMillis());
+                int left = outstanding.decrementAndGet();
+                if (error == null) {
+                    if (result.complete(r)) {
+                        if (health.name.equals(hedgedTo)) hedgeWins.increment();
+                    } else if (r.isApproved()) {
+                        // A hedged duplicate was approved after the winner; release its hold
+                        voidLosingApproval(voider, r, 1);
+                    }
+                    return;
+                }
+                if (left > 0 || result.isDone()) return;
+                GatewayHealth fallback = mayFailover && failedOver.compareAndSet(false, true) ? next(ranked) : null;
+                if (fallback != null) {
+                    failovers.increment();
+                    attempt(fallback);
+                } else {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    result.completeExceptionally(cause);
+                }
+            });
+        }
+    }
+
+    /**
+     * Health statistics and circuit breaker of one gateway. Guarded by its own monitor.
+     */
+    private final class GatewayHealth {
+        private final String name;
+        private final double feePercent;
+        private final double fixedFee;
+
+        private double ewmaLatencyMs;
+        private double ewmaErrorRate;
+        private double ewmaApprovalRate = 1.0;
+        private long requests;
+        private long errors;
+        private long declines;
+        private int consecutiveFailures;
+        private long trips;
+
+        private BreakerState state = BreakerState.CLOSED;
+        private long openUntil;
+        private boolean probeInFlight;
+
+        GatewayHealth(String name, double feePercent, double fixedFee) {
+            this.name = name;
+            this.feePercent = feePercent;
+            this.fixedFee = fixedFee;
+        }
+
+        synchronized BreakerState stateAt(long now) {
+            if (state == BreakerState.OPEN && now >= openUntil) {
+                state = BreakerState.HALF_OPEN;
+                probeInFlight = false;
+            }
+            return state;
+        }
+
+        /**
+         * Whether a request may be sent now; a half-open breaker admits one probe at a time.
+         */
+        synchronized boolean tryAcquire(long now) {
+            switch (stateAt(now)) {
+                case CLOSED:
+                    return true;
+                case HALF_OPEN:
+                    if (probeInFlight) return false;
+                    probeInFlight = true;
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        synchronized void record(double latencyMs, boolean ok, boolean approved, long now) {
+            requests++;
+            ewmaLatencyMs = requests == 1 ? latencyMs : ewmaLatencyMs + alpha * (latencyMs - ewmaLatencyMs);
+            ewmaErrorRate += alpha * ((ok ? 0.0 : 1.0) - ewmaErrorRate);
+            if (ok) {
+                ewmaApprovalRate += alpha * ((approved ? 1.0 : 0.0) - ewmaApprovalRate);
+                if (!approved) declines++;
+                consecutiveFailures = 0;
+                if (state == BreakerState.HALF_OPEN) {
+                    state = BreakerState.CLOSED;
+                    probeInFlight = false;
+                    ewmaErrorRate = 0;
+                }
+                return;
+            }
+            errors++;
+            consecutiveFailures++;
+            boolean trip = state == BreakerState.HALF_OPEN
+                || consecutiveFailures >= breakerConsecutiveFailures
+                || (requests >= breakerMinRequests && ewmaErrorRate >= breakerErrorThreshold);
+            if (trip && state != BreakerState.OPEN) {
+                state = BreakerState.OPEN;
+                openUntil = now + breakerOpenMs;
+                probeInFlight = false;
+                trips++;
+            }
+        }
+    }
+}
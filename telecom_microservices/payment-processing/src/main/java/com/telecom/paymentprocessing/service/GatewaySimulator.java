@@ -0,0 +1,252 @@
+package com.telecom.paymentprocessing.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for the external payment gateways.
+ *
+ * Each gateway has a latency and outcome profile: a base latency plus an
+ * exponentially distributed jitter, occasional latency spikes, business declines
+ * and technical errors. Responses are delivered by timer threads once the
+ * simulated latency has passed, so waiting on a gateway never holds a request or
+ * pipeline thread. Latency, spikes, declines and errors all default to 0, so a
+ * default deployment answers at once and approves every payment the baseline
+ * approved; profiles can be changed at runtime for benchmarks and fault injection.
+ */
+@Component
+public class GatewaySimulator {
+
+    /**
+     * Technical gateway failure (timeout, 5xx, connection reset).
+     */
+    public static class GatewayException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final String gateway;
+
+        public GatewayException(String gateway, String message) {
+            super(message);
+            this.gateway = gateway;
+        }
+
+        public String getGateway() {
+            return gateway;
+        }
+    }
+
+    /**
+     * Authorization response from a gateway: approved, or declined with a response code.
+     */
+    public static final class GatewayResponse {
+        private final String gateway;
+        private final boolean approved;
+        private final String responseCode;
+        private final String message;
+        private final String gatewayReference;
+        private final long latencyMs;
+
+        GatewayResponse(String gateway, boolean approved, String responseCode, String message,
+                        String gatewayReference, long latencyMs) {
+            this.gateway = gateway;
+            this.approved = approved;
+            this.responseCode = responseCode;
+            this.message = message;
+            this.gatewayReference = gatewayReference;
+            this.latencyMs = latencyMs;
+        }
+
+        public String getGateway() { return gateway; }
+        public boolean isApproved() { return approved; }
+        public String getResponseCode() { return responseCode; }
+        public String getMessage() { return message; }
+        public String getGatewayReference() { return gatewayReference; }
+        public long getLatencyMs() { return latencyMs; }
+    }
+
+    @Value("${payment.gateway.sim.base-latency-ms:0}")
+    private long baseLatencyMs = 0;
+
+    @Value("${payment.gateway.sim.jitter-ms:0}")
+    private long jitterMs = 0;
+
+    @Value("${payment.gateway.sim.spike-rate:0}")
+    private double spikeRate = 0;
+
+    @Value("${payment.gateway.sim.spike-latency-ms:1000}")
+    private long spikeLatencyMs = 1000;
+
+    @Value("${payment.gateway.sim.decline-rate:0}")
+    private double declineRate = 0;
+
+    @Value("${payment.gateway.sim.error-rate:0}")
+    private double errorRate = 0;
+
+    @Value("${payment.gateway.sim.timer-threads:2}")
+    private int timerThreads = 2;
+
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+    private ScheduledThreadPoolExecutor timer;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger n = new AtomicInteger();
+        timer = new ScheduledThreadPoolExecutor(Math.max(1, timerThreads), r -> {
+            Thread t = new Thread(r, "gateway-sim-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) timer.shutdownNow();
+    }
+
+    /**
+     * Send an authorization to the gateway. The future completes with the response,
+     * or exceptionally with a {@link GatewayException} on a technical failure.
+     */
+    public CompletableFuture<GatewayResponse> authorize(String gateway, double amount, String currency) {
+        Profile profile = profile(gateway);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = profile.baseLatencyMs + (long) (-Math.log(1.0 - random.nextDouble()) * profile.jitterMs);
+        if (random.nextDouble() < profile.spikeRate) latency += profile.spikeLatencyMs;
+        double outcome = random.nextDouble();
+        long delay = latency;
+
+        profile.requests.increment();
+        CompletableFuture<GatewayResponse> future = new CompletableFuture<>();
+        timer.schedule(() -> {
+            if (outcome < profile.errorRate) {
+                profile.errors.increment();
+                future.completeExceptionally(new GatewayException(gateway, "Gateway " + gateway + " returned a technical error"));
+            } else if (outcome < profile.errorRate + profile.declineRate) {
+                profile.declines.increment();
+                future.complete(new GatewayResponse(gateway, false, "05", "Do not honor", null, delay));
+            } else {
+                future.complete(new GatewayResponse(gateway, true, "00", "Approved",
+                    gateway + "-" + UUID.randomUUID().toString().substring(0, 12), delay));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    /**
+     * Void an approved authorization so the hold on the customer's funds is released.
+     * Takes the profile's latency and fails with a {@link GatewayException} at its error
+     * rate, like an authorization.
+     */
+    public CompletableFuture<GatewayResponse> voidAuthorization(String gateway, String gatewayReference) {
+        Profile profile = profile(gateway);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = profile.baseLatencyMs + (long) (-Math.log(1.0 - random.nextDouble()) * profile.jitterMs);
+        boolean error = random.nextDouble() < profile.errorRate;
+
+        CompletableFuture<GatewayResponse> future = new CompletableFuture<>();
+        timer.schedule(() -> {
+            if (error) {
+                profile.errors.increment();
+                future.completeExceptionally(new GatewayException(gateway, "Gateway " + gateway + " returned a technical error"));
+            } else {
+                profile.voids.increment();
+                future.complete(new GatewayResponse(gateway, true, "00", "Authorization voided", gatewayReference, delay));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    /**
+     * Change a gateway's profile. Unknown keys are ignored; missing keys keep their value.
+     * Keys: baseLatencyMs, jitterMs, spikeRate, spikeLatencyMs, declineRate, errorRate.
+     */
+    public Map<String, Object> configure(String gateway, Map<String, Object> settings) {
+        Profile profile = profile(gateway);
+        synchronized (profile) {
+            profile.baseLatencyMs = longSetting(settings, "baseLatencyMs", profile.baseLatencyMs);
+            profile.jitterMs = longSetting(settings, "jitterMs", profile.jitterMs);
+            profile.spikeLatencyMs = longSetting(settings, "spikeLatencyMs", profile.spikeLatencyMs);
+            profile.spikeRate = rateSetting(settings, "spikeRate", profile.spikeRate);
+            profile.declineRate = rateSetting(settings, "declineRate", profile.declineRate);
+            profile.errorRate = rateSetting(settings, "errorRate", profile.errorRate);
+        }
+        return profile.describe();
+    }
+
+    public Map<String, Object> profiles() {
+        Map<String, Object> result = new TreeMap<>();
+        for (Map.Entry<String, Profile> e : profiles.entrySet()) result.put(e.getKey(), e.getValue().describe());
+        return result;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private Profile profile(String gateway) {
+        return profiles.computeIfAbsent(gateway, g -> new Profile(baseLatencyMs, jitterMs, spikeRate, spikeLatencyMs, declineRate, errorRate));
+    }
+
+    private static long longSetting(Map<String, Object> settings, String key, long current) {
+        Object value = settings.get(key);
+        if (value == null) return current;
+        long parsed = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+        if (parsed < 0) throw new IllegalArgumentException(key + " must not be negative");
+        return parsed;
+    }
+
+    private static double rateSetting(Map<String, Object> settings, String key, double current) {
+        Object value = settings.get(key);
+        if (value == null) return current;
+        double parsed = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+        if (parsed < 0 || parsed > 1) throw new IllegalArgumentException(key + " must be between 0 and 1");
+        return parsed;
+    }
+
+    private static final class Profile {
+        private volatile long baseLatencyMs;
+        private volatile long jitterMs;
+        private volatile double spikeRate;
+        private volatile long spikeLatencyMs;
+        private volatile double declineRate;
+        private volatile double errorRate;
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder declines = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder voids = new LongAdder();
+
+        Profile(long baseLatencyMs, long jitterMs, double spikeRate, long spikeLatencyMs, double declineRate, double errorRate) {
+            this.baseLatencyMs = baseLatencyMs;
+            this.jitterMs = jitterMs;
+            this.spikeRate = spikeRate;
+            this.spikeLatencyMs = spikeLatencyMs;
+            this.declineRate = declineRate;
+            this.errorRate = errorRate;
+        }
+
+        Map<String, Object> describe() {
+            Map<String, Object> d = new LinkedHashMap<>();
+            d.put("baseLatencyMs", baseLatencyMs);
+            d.put("jitterMs", jitterMs);
+            d.put("spikeRate", spikeRate);
+            d.put("spikeLatencyMs", spikeLatencyMs);
+            d.put("declineRate", declineRate);
+            d.put("errorRate", errorRate);
+            d.put("requests", requests.sum());
+            d.put("declines", declines.sum());
+            d.put("errors", errors.sum());
+            d.put("voids", voids.sum());
+            return d;
+        }
+    }
+}
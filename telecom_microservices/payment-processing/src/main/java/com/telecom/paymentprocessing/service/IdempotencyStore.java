@@ -0,0 +1,396 @@
+package com.telecom.paymentprocessing.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency keys for payment creation.
+ *
+ * The first request with a key runs the payment; requests with the same key that
+ * arrive while it runs wait for its result, and later ones get the stored result
+ * until the key's TTL expires. A key reused with a different request is rejected.
+ * Failed attempts are not remembered, so the client can retry them.
+ *
+ * Completed results are appended to a binary log by a background writer (group
+ * commit every flush interval, off the request path) and replayed on startup; the
+ * log is rewritten without expired records at startup and whenever it has grown
+ * well beyond the live key count. Each record holds the result as it stands when
+ * written. A result returned before the payment finishes (asynchronous submission)
+ * is appended again once it does, and replay keeps the last record of each key.
+ */
+@Component
+public class IdempotencyStore {
+
+    /**
+     * The key was already used for a request with different parameters.
+     */
+    public static class IdempotencyConflictException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public IdempotencyConflictException(String message) {
+            super(message);
+        }
+    }
+
+    private static final int RECORD_MAGIC = 0x1D;
+
+    @Value("${payment.idempotency.ttl-ms:86400000}")
+    private long ttlMs = 86400000;
+
+    @Value("${payment.idempotency.max-entries:1000000}")
+    private int maxEntries = 1000000;
+
+    @Value("${payment.idempotency.log-path:data/idempotency.log}")
+    private String logPath = "data/idempotency.log";
+
+    @Value("${payment.idempotency.flush-interval-ms:50}")
+    private long flushIntervalMs = 50;
+
+    private final ObjectMapper mapper = new ObjectMapper()
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<PendingRecord> unwritten = new ConcurrentLinkedQueue<>();
+    private final AtomicLong logRecords = new AtomicLong();
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+
+    private ScheduledExecutorService writer;
+    private DataOutputStream log;
+
+    @PostConstruct
+    public void start() {
+        Path path = Paths.get(logPath);
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            if (Files.exists(path)) replay(path);
+            sweep();
+            compact();
+        } catch (IOException e) {
+            System.err.println("Idempotency log unavailable, keys will not survive a restart: " + e.getMessage());
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotency-log");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(this::maintainQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer != null) writer.shutdown();
+        try {
+            if (writer != null) writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            flush();
+            closeLog();
+        }
+    }
+
+    /**
+     * Run {@code action} once per key. {@code fingerprint} identifies the request
+     * parameters; a different fingerprint under the same key is a conflict.
+     */
+    public PaymentTransaction execute(String key, long fingerprint, Supplier<PaymentTransaction> action) {
+        return executeAsync(key, fingerprint, completed -> action.get());
+    }
+
+    /**
+     * As {@link #execute}, for an action that returns its transaction before the payment
+     * finishes. The action is handed a callback to run once the transaction has reached
+     * its final state; the key's record is then written again, so a replay after a
+     * restart does not return the accept-time snapshot.
+     */
+    public PaymentTransaction executeAsync(String key, long fingerprint, Function<Runnable, PaymentTransaction> action) {
+        long now = System.currentTimeMillis();
+        Entry mine = new Entry(fingerprint, now + ttlMs);
+        while (true) {
+            Entry existing = entries.putIfAbsent(key, mine);
+            if (existing == null) break;
+            if (existing.expiresAt <= now && existing.result.isDone()) {
+                if (entries.replace(key, existing, mine)) {
+                    expired.increment();
+                    break;
+                }
+                continue;
+            }
+            if (existing.fingerprint != fingerprint) {
+                conflicts.increment();
+                throw new IdempotencyConflictException("Idempotency key was already used with different request parameters");
+            }
+            if (existing.result.isDone()) replayed.increment(); else waited.increment();
+            return join(existing.result);
+        }
+
+        executed.increment();
+        try {
+            PaymentTransaction result = action.apply(() -> unwritten.add(new PendingRecord(key, mine)));
+            mine.result.complete(result);
+            unwritten.add(new PendingRecord(key, mine));
+            return result;
+        } catch (RuntimeException e) {
+            entries.remove(key, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Fingerprint of the fields that define a payment request. Only uses hashes that are
+     * stable across JVMs, since fingerprints are persisted.
+     */
+    public static long fingerprint(PaymentTransaction request) {
+        long h = 1125899906842597L;
+        h = 31 * h + Objects.hashCode(request.getCustomerId());
+        h = 31 * h + Objects.hashCode(request.getOrderId());
+        h = 31 * h + Double.hashCode(request.getAmount());
+        h = 31 * h + Objects.hashCode(request.getCurrency());
+        h = 31 * h + (request.getPaymentMethod() != null ? request.getPaymentMethod().name().hashCode() : 0);
+        h = 31 * h + Objects.hashCode(request.getBillingAccountId());
+        return h;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("keys", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMs", ttlMs);
+        stats.put("executed", executed.sum());
+        stats.put("replayed", replayed.sum());
+        stats.put("waitedForInFlight", waited.sum());
+        stats.put("conflicts", conflicts.sum());
+        stats.put("expired", expired.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("recoveredOnStartup", recovered.sum());
+        stats.put("logRecords", logRecords.get());
+        stats.put("pendingWrites", unwritten.size());
+        stats.put("writeFailures", writeFailures.sum());
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private void maintainQuietly() {
+        try {
+            synchronized (this) {
+                flush();
+                sweep();
+                if (logRecords.get() > 2L * entries.size() + 10000) compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            writeFailures.increment();
+            System.err.println("Idempotency log maintenance failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Append results queued since the last flush. Called by the writer only. A record
+     * queued by a completion callback that ran before its action returned waits for
+     * the next flush; one whose action failed, or whose key has since expired or been
+     * evicted, is dropped.
+     */
+    private void flush() {
+        if (unwritten.isEmpty()) return;
+        List<PendingRecord> notReady = new ArrayList<>();
+        try {
+            if (log == null) openLog();
+            PendingRecord record;
+            while ((record = unwritten.poll()) != null) {
+                CompletableFuture<PaymentTransaction> result = record.entry.result;
+                if (!result.isDone()) {
+                    notReady.add(record);
+                } else if (!result.isCompletedExceptionally() && entries.get(record.key) == record.entry) {
+                    write(log, record.key, record.entry, serialize(result.join()));
+                }
+            }
+            unwritten.addAll(notReady);
+            log.flush();
+        } catch (IOException e) {
+            writeFailures.increment();
+            closeLog();
+            System.err.println("Failed to append to idempotency log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drop expired keys, and the soonest-expiring completed keys if over capacity.
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> {
+            boolean dead = e.getValue().expiresAt <= now && e.getValue().result.isDone();
+            if (dead) expired.increment();
+            return dead;
+        });
+        int excess = entries.size() - maxEntries;
+        if (excess <= 0) return;
+        List<Map.Entry<String, Entry>> completed = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().result.isDone()) completed.add(e);
+        }
+        completed.sort(Comparator.comparingLong(e -> e.getValue().expiresAt));
+        for (int i = 0; i < excess && i < completed.size(); i++) {
+            if (entries.remove(completed.get(i).getKey(), completed.get(i).getValue())) evicted.increment();
+        }
+    }
+
+    private void replay(Path path) throws IOException {
+        long now = System.currentTimeMillis();
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            while (true) {
+                int magic;
+                try {
+                    magic = data.readUnsignedByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (magic != RECORD_MAGIC) {
+                    System.err.println("Corrupt idempotency log record, ignoring the rest of the log");
+                    break;
+                }
+                try {
+                    String key = data.readUTF();
+                    long expiresAt = data.readLong();
+                    long fingerprint = data.readLong();
+                    byte[] payload = new byte[data.readInt()];
+                    data.readFully(payload);
+                    if (expiresAt <= now) continue;
+                    Entry entry = new Entry(fingerprint, expiresAt);
+                    entry.result.complete(mapper.readValue(payload, PaymentTransaction.class));
+                    // A later record of the same key holds a newer state of its result
+                    if (entries.put(key, entry) == null) recovered.increment();
+                } catch (EOFException e) {
+                    // Torn tail from a crash mid-write: everything before it is intact
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrite the log with one record per live completed key.
+     */
+    private void compact() throws IOException {
+        flush();
+        closeLog();
+        Path path = Paths.get(logPath);
+        Path tmp = Paths.get(logPath + ".tmp");
+        long records = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.expiresAt <= now || !entry.result.isDone() || entry.result.isCompletedExceptionally()) continue;
+                write(out, e.getKey(), entry, serialize(entry.result.join()));
+                records++;
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logRecords.set(records);
+        openLog();
+    }
+
+    private void write(DataOutputStream out, String key, Entry entry, byte[] payload) throws IOException {
+        out.writeByte(RECORD_MAGIC);
+        out.writeUTF(key);
+        out.writeLong(entry.expiresAt);
+        out.writeLong(entry.fingerprint);
+        out.writeInt(payload.length);
+        out.write(payload);
+        logRecords.incrementAndGet();
+    }
+
+    private byte[] serialize(PaymentTransaction transaction) throws IOException {
+        // Serialize a consistent copy of the event list; the transaction may still be progressing
+        synchronized (transaction) {
+            return mapper.writeValueAsBytes(transaction);
+        }
+    }
+
+    private void openLog() throws IOException {
+        log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(logPath),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    private void closeLog() {
+        if (log == null) return;
+        try {
+            log.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close idempotency log: " + e.getMessage());
+        }
+        log = null;
+    }
+
+    private static PaymentTransaction join(CompletableFuture<PaymentTransaction> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+        private final long fingerprint;
+        private final long expiresAt;
+        private final CompletableFuture<PaymentTransaction> result = new CompletableFuture<>();
+
+        Entry(long fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class PendingRecord {
+        private final String key;
+        private final Entry entry;
+
+        PendingRecord(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+}
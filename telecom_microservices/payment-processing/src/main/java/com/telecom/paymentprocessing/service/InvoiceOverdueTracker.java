@@ -0,0 +1,181 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of invoices by customer and by due date.
+ *
+ * Each customer's invoice ids are kept in their own set, so per-customer reports
+ * touch only that customer's invoices. Outstanding invoices are also placed on a
+ * {@link TimingWheel} keyed on their due date; a background job advances the wheel
+ * and hands each invoice that falls due to the registered {@link OverdueHandler}.
+ */
+@Component
+public class InvoiceOverdueTracker {
+
+    /**
+     * Moves an invoice that has reached its due date to OVERDUE.
+     */
+    public interface OverdueHandler {
+        /**
+         * @return true if the invoice was marked overdue, false if it no longer needed to be
+         */
+        boolean onDue(String invoiceId);
+    }
+
+    /**
+     * Gate checked before each scheduled run (e.g. a feature flag).
+     */
+    public interface OverdueGate {
+        boolean isEnabled();
+    }
+
+    @Value("${payment.invoices.wheel-tick-ms:1000}")
+    private long wheelTickMs = 1000;
+
+    @Value("${payment.invoices.overdue-check-interval-ms:1000}")
+    private long checkIntervalMs = 1000;
+
+    private final Map<String, Set<String>> byCustomer = new ConcurrentHashMap<>();
+    private final Map<String, TimingWheel.Timer<String>> timers = new HashMap<>();
+    private TimingWheel<String> wheel;
+
+    private final AtomicLong markedOverdue = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong runs = new AtomicLong();
+    private volatile long lastRunAt;
+
+    private volatile OverdueHandler handler;
+    private volatile OverdueGate gate = () -> true;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        synchronized (this) {
+            if (wheel == null) wheel = new TimingWheel<>(wheelTickMs, System.currentTimeMillis());
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "invoice-overdue");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::processDueQuietly, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    public void setOverdueHandler(OverdueHandler handler, OverdueGate gate) {
+        this.handler = handler;
+        this.gate = gate;
+    }
+
+    /**
+     * Add an invoice, or refresh its due-date timer after its status or due date changed.
+     * Only ISSUED, SENT and PARTIALLY_PAID invoices with a due date are scheduled.
+     */
+    public void index(Invoice invoice) {
+        byCustomer.computeIfAbsent(invoice.getCustomerId(), c -> ConcurrentHashMap.newKeySet()).add(invoice.getInvoiceId());
+        synchronized (this) {
+            if (wheel == null) wheel = new TimingWheel<>(wheelTickMs, System.currentTimeMillis());
+            wheel.cancel(timers.remove(invoice.getInvoiceId()));
+            if (invoice.getDueDate() > 0 && isOutstanding(invoice.getStatus())) {
+                timers.put(invoice.getInvoiceId(), wheel.schedule(invoice.getInvoiceId(), invoice.getDueDate()));
+            }
+        }
+    }
+
+    public void remove(Invoice invoice) {
+        Set<String> ids = byCustomer.get(invoice.getCustomerId());
+        if (ids != null) ids.remove(invoice.getInvoiceId());
+        synchronized (this) {
+            if (wheel != null) wheel.cancel(timers.remove(invoice.getInvoiceId()));
+        }
+    }
+
+    public Set<String> invoicesOf(String customerId) {
+        Set<String> ids = byCustomer.get(customerId);
+        return ids != null ? Collections.unmodifiableSet(ids) : Collections.emptySet();
+    }
+
+    /**
+     * Advance the wheel to now and hand every invoice that fell due to the handler.
+     * While the gate is closed the wheel is not advanced, so nothing is lost; the
+     * next open run catches up.
+     */
+    public Map<String, Object> processDue() {
+        OverdueHandler target = handler;
+        List<String> due = new ArrayList<>();
+        if (target != null && gate.isEnabled()) {
+            synchronized (this) {
+                if (wheel != null) {
+                    wheel.advance(System.currentTimeMillis(), invoiceId -> {
+                        timers.remove(invoiceId);
+                        due.add(invoiceId);
+                    });
+                }
+            }
+        }
+        // The handler runs outside the wheel lock so it may re-index the invoice
+        int marked = 0;
+        for (String invoiceId : due) {
+            if (target.onDue(invoiceId)) marked++;
+        }
+        markedOverdue.addAndGet(marked);
+        skipped.addAndGet(due.size() - marked);
+        runs.incrementAndGet();
+        lastRunAt = System.currentTimeMillis();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("markedOverdue", marked);
+        result.put("skipped", due.size() - marked);
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        int indexed = 0;
+        for (Set<String> ids : byCustomer.values()) indexed += ids.size();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("indexedInvoices", indexed);
+        stats.put("customers", byCustomer.size());
+        synchronized (this) {
+            stats.put("scheduled", wheel != null ? wheel.size() : 0);
+        }
+        stats.put("markedOverdue", markedOverdue.get());
+        stats.put("skipped", skipped.get());
+        stats.put("runs", runs.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("wheelTickMs", wheelTickMs);
+        stats.put("checkIntervalMs", checkIntervalMs);
+        return stats;
+    }
+
+    /**
+     * Invoice statuses that can still become overdue.
+     */
+    public static boolean isOutstanding(InvoiceStatus status) {
+        return status == InvoiceStatus.ISSUED || status == InvoiceStatus.SENT || status == InvoiceStatus.PARTIALLY_PAID;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private void processDueQuietly() {
+        try {
+            processDue();
+        } catch (RuntimeException e) {
+            System.err.println("Invoice overdue run failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.telecom.paymentprocessing.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in microseconds, laid out like HdrHistogram.
+ *
+ * Values below 64 get a bucket each; above that every power of two is split into
+ * 32 linear sub-buckets, so a reported value is within about 3% of the recorded
+ * one, up to a ceiling of 2^36 microseconds (about 19 hours). Recording is one array
+ * increment plus two adders and never blocks; readers take a {@link Snapshot}, which
+ * may miss a few values recorded while it is copied.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final long MAX_VALUE = (1L << 36) - 1;
+    private static final int LENGTH = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LENGTH);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        counts.incrementAndGet(indexOf(value));
+        total.increment();
+        sum.add(value);
+        // Only contended while the maximum is still climbing
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) current = max.get();
+    }
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot().add(this);
+    }
+
+    /**
+     * Point-in-time copy of one or more histograms, for percentiles.
+     */
+    public static final class Snapshot {
+        private final long[] counts = new long[LENGTH];
+        private long total;
+        private long sum;
+        private long max;
+
+        public Snapshot add(LatencyHistogram histogram) {
+            long added = 0;
+            for (int i = 0; i < LENGTH; i++) {
+                long c = histogram.counts.get(i);
+                counts[i] += c;
+                added += c;
+            }
+            // Count what was copied rather than the adder, so percentiles stay consistent
+            total += added;
+            sum += histogram.sum.sum();
+            max = Math.max(max, histogram.max.get());
+            return this;
+        }
+
+        public long count() {
+            return total;
+        }
+
+        /**
+         * Smallest recorded value (to bucket precision) with at least {@code percentile}
+         * percent of values at or below it; 0 when empty.
+         */
+        public long valueAtPercentile(double percentile) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < LENGTH; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(highestEquivalent(i), max);
+            }
+            return max;
+        }
+
+        public double mean() {
+            return total == 0 ? 0.0 : sum / (double) total;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", total);
+            map.put("meanMs", millis(Math.round(mean())));
+            map.put("p50Ms", millis(valueAtPercentile(50)));
+            map.put("p90Ms", millis(valueAtPercentile(90)));
+            map.put("p99Ms", millis(valueAtPercentile(99)));
+            map.put("p999Ms", millis(valueAtPercentile(99.9)));
+            map.put("maxMs", millis(max));
+            return map;
+        }
+    }
+
+    // ============ Private Helper Methods ============
+
+    /**
+     * Bucket of a value: its top 6 significant bits, offset by how far it was shifted.
+     * Contiguous from 0, with exact buckets for values below 64.
+     */
+    private static int indexOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalent(int index) {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        long mantissa = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,289 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Streaming payment analytics, updated as transactions change state.
+ *
+ * Outcomes are counted per minute in a ring of the last {@code window-minutes}
+ * minutes, overall and by payment method, gateway and currency; currency series also
+ * sum amounts in minor units. Latency of each pipeline stage goes into a
+ * {@link LatencyHistogram}, both since startup and per minute.
+ *
+ * Nothing on the recording path takes a lock: a series is looked up in a concurrent
+ * map, the current minute's slot is swapped in with a CAS when the minute turns, and
+ * counters are adders. Only the first payment seen for a new method, gateway or
+ * currency creates its series. Currencies that are not ISO 4217 codes, and gateways
+ * beyond the first {@value #MAX_GATEWAYS}, share a single OTHER series, so request
+ * input cannot create series without bound; OTHER has counts but no amounts.
+ */
+@Component
+public class PaymentAnalytics {
+
+    public enum Outcome { APPROVED, DECLINED, FAILED, SETTLED, REFUNDED }
+
+    public enum Stage { VALIDATION, FRAUD, COMPLIANCE, AUTHORIZATION, GATEWAY, TOTAL }
+
+    public static final String OTHER = "OTHER";
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final int MAX_GATEWAYS = 32;
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final Stage[] STAGES = Stage.values();
+
+    @Value("${payment.analytics.window-minutes:60}")
+    private int windowMinutes = 60;
+
+    /**
+     * One minute's counters. Slots are replaced, never reset, so a writer still
+     * holding the previous minute's slot cannot corrupt the new one.
+     */
+    private static class MinuteSlot {
+        final long minute;
+
+        MinuteSlot(long minute) {
+            this.minute = minute;
+        }
+    }
+
+    private static final class Counts extends MinuteSlot {
+        final LongAdder[] count = adders();
+        final LongAdder[] minorUnits = adders();
+
+        Counts(long minute) {
+            super(minute);
+        }
+
+        private static LongAdder[] adders() {
+            LongAdder[] adders = new LongAdder[OUTCOMES.length];
+            for (int i = 0; i < adders.length; i++) adders[i] = new LongAdder();
+            return adders;
+        }
+    }
+
+    private static final class Latencies extends MinuteSlot {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Latencies(long minute) {
+            super(minute);
+        }
+    }
+
+    /**
+     * Ring of per-minute slots indexed by minute modulo the window.
+     */
+    private static final class MinuteRing<T extends MinuteSlot> {
+        private final AtomicReferenceArray<T> slots;
+        private final LongFunction<T> factory;
+
+        MinuteRing(int minutes, LongFunction<T> factory) {
+            this.slots = new AtomicReferenceArray<>(minutes);
+            this.factory = factory;
+        }
+
+        /**
+         * Slot for {@code minute}, or null if the ring has already moved past it.
+         */
+        T slot(long minute) {
+            int index = (int) Math.floorMod(minute, (long) slots.length());
+            while (true) {
+                T slot = slots.get(index);
+                if (slot != null && slot.minute == minute) return slot;
+                if (slot != null && slot.minute > minute) return null;
+                T fresh = factory.apply(minute);
+                if (slots.compareAndSet(index, slot, fresh)) return fresh;
+            }
+        }
+
+        /**
+         * Slots for the minutes in {@code (toMinute - minutes, toMinute]}.
+         */
+        List<T> recent(long toMinute, int minutes) {
+            List<T> recent = new ArrayList<>();
+            for (int i = 0; i < slots.length(); i++) {
+                T slot = slots.get(i);
+                if (slot != null && slot.minute <= toMinute && slot.minute > toMinute - minutes) recent.add(slot);
+            }
+            return recent;
+        }
+    }
+
+    private MinuteRing<Counts> overall;
+    private final Map<String, MinuteRing<Counts>> byMethod = new ConcurrentHashMap<>();
+    private final Map<String, MinuteRing<Counts>> byGateway = new ConcurrentHashMap<>();
+    private final Map<String, MinuteRing<Counts>> byCurrency = new ConcurrentHashMap<>();
+    private final LatencyHistogram[] lifetime = new LatencyHistogram[STAGES.length];
+    private final List<MinuteRing<Latencies>> latencies = new ArrayList<>();
+    private final long startedAt = System.currentTimeMillis();
+
+    @PostConstruct
+    public void start() {
+        windowMinutes = Math.max(1, windowMinutes);
+        overall = new MinuteRing<>(windowMinutes, Counts::new);
+        for (int i = 0; i < STAGES.length; i++) {
+            lifetime[i] = new LatencyHistogram();
+            latencies.add(new MinuteRing<>(windowMinutes, Latencies::new));
+        }
+    }
+
+    /**
+     * Count a transaction reaching {@code outcome}. Gateway and currency may be null
+     * when not known at that point.
+     */
+    public void record(Outcome outcome, PaymentMethod method, String gateway, String currency, double amount) {
+        long minute = System.currentTimeMillis() / MINUTE_MS;
+        add(overall, minute, outcome, 0);
+        if (method != null) add(ring(byMethod, method.name()), minute, outcome, 0);
+        if (gateway != null) add(ring(byGateway, gatewayKey(gateway)), minute, outcome, 0);
+        if (currency != null) {
+            String key = currencyKey(currency);
+            add(ring(byCurrency, key), minute, outcome, OTHER.equals(key) ? 0 : Money.minorOf(amount, Money.digits(key)));
+        }
+    }
+
+    public void recordLatency(Stage stage, long nanos) {
+        lifetime[stage.ordinal()].recordNanos(nanos);
+        Latencies slot = latencies.get(stage.ordinal()).slot(System.currentTimeMillis() / MINUTE_MS);
+        if (slot != null) slot.histogram.recordNanos(nanos);
+    }
+
+    /**
+     * Record the time since {@code startNanos} against a stage and return the current
+     * time, so consecutive stages can be timed one after another.
+     */
+    public long lap(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        recordLatency(stage, now - startNanos);
+        return now;
+    }
+
+    /**
+     * Outcome counts, approval ratios and stage latencies over the last {@code minutes}
+     * minutes (capped at the configured window), plus per-minute totals.
+     */
+    public Map<String, Object> snapshot(int minutes) {
+        int window = Math.max(1, Math.min(minutes, windowMinutes));
+        long now = System.currentTimeMillis() / MINUTE_MS;
+
+        Map<String, Object> stageLatency = new LinkedHashMap<>();
+        for (Stage stage : STAGES) {
+            LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+            for (Latencies slot : latencies.get(stage.ordinal()).recent(now, window)) snapshot.add(slot.histogram);
+            stageLatency.put(stage.name(), snapshot.toMap());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windowMinutes", window);
+        result.put("overall", summarize(overall.recent(now, window), null));
+        result.put("perMinute", perMinute(now, window));
+        result.put("byMethod", summarizeAll(byMethod, now, window, false));
+        result.put("byGateway", summarizeAll(byGateway, now, window, false));
+        result.put("byCurrency", summarizeAll(byCurrency, now, window, true));
+        result.put("stageLatency", stageLatency);
+        return result;
+    }
+
+    /**
+     * Stage latencies since startup.
+     */
+    public Map<String, Object> lifetimeLatency() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("since", startedAt);
+        for (Stage stage : STAGES) {
+            result.put(stage.name(), lifetime[stage.ordinal()].snapshot().toMap());
+        }
+        return result;
+    }
+
+    // ============ Private Helper Methods ============
+
+    /**
+     * The currency itself if it is an ISO 4217 code, else {@link #OTHER}.
+     */
+    private String currencyKey(String currency) {
+        if (byCurrency.containsKey(currency)) return currency;
+        try {
+            Currency.getInstance(currency);
+            return currency;
+        } catch (IllegalArgumentException e) {
+            return OTHER;
+        }
+    }
+
+    private String gatewayKey(String gateway) {
+        return byGateway.containsKey(gateway) || byGateway.size() < MAX_GATEWAYS ? gateway : OTHER;
+    }
+
+    private MinuteRing<Counts> ring(Map<String, MinuteRing<Counts>> dimension, String key) {
+        MinuteRing<Counts> ring = dimension.get(key);
+        return ring != null ? ring : dimension.computeIfAbsent(key, k -> new MinuteRing<>(windowMinutes, Counts::new));
+    }
+
+    private static void add(MinuteRing<Counts> ring, long minute, Outcome outcome, long minorUnits) {
+        Counts slot = ring.slot(minute);
+        if (slot == null) return;
+        slot.count[outcome.ordinal()].increment();
+        if (minorUnits != 0) slot.minorUnits[outcome.ordinal()].add(minorUnits);
+    }
+
+    /**
+     * Outcome counts over the given minutes; amounts only for a currency series.
+     */
+    private static Map<String, Object> summarize(List<Counts> slots, String currency) {
+        long[] counts = new long[OUTCOMES.length];
+        long[] minor = new long[OUTCOMES.length];
+        for (Counts slot : slots) {
+            for (int i = 0; i < OUTCOMES.length; i++) {
+                counts[i] += slot.count[i].sum();
+                minor[i] += slot.minorUnits[i].sum();
+            }
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        Map<String, Object> volume = new LinkedHashMap<>();
+        int digits = Money.digits(currency);
+        for (Outcome outcome : OUTCOMES) {
+            summary.put(outcome.name().toLowerCase(Locale.ROOT), counts[outcome.ordinal()]);
+            if (currency != null) volume.put(outcome.name().toLowerCase(Locale.ROOT), Money.format(minor[outcome.ordinal()], digits));
+        }
+        long approved = counts[Outcome.APPROVED.ordinal()];
+        long decided = approved + counts[Outcome.DECLINED.ordinal()] + counts[Outcome.FAILED.ordinal()];
+        summary.put("attempts", decided);
+        summary.put("approvalRate", decided == 0 ? 0.0 : Math.round(approved * 10000.0 / decided) / 10000.0);
+        if (currency != null) summary.put("volume", volume);
+        return summary;
+    }
+
+    /**
+     * Summary per key of a dimension, skipping keys with nothing in the window.
+     */
+    private static Map<String, Object> summarizeAll(Map<String, MinuteRing<Counts>> dimension, long now, int window,
+                                                    boolean currencies) {
+        Map<String, Object> summaries = new TreeMap<>();
+        for (Map.Entry<String, MinuteRing<Counts>> entry : dimension.entrySet()) {
+            List<Counts> recent = entry.getValue().recent(now, window);
+            boolean amounts = currencies && !OTHER.equals(entry.getKey());
+            if (!recent.isEmpty()) summaries.put(entry.getKey(), summarize(recent, amounts ? entry.getKey() : null));
+        }
+        return summaries;
+    }
+
+    private List<Map<String, Object>> perMinute(long now, int window) {
+        List<Counts> recent = overall.recent(now, window);
+        recent.sort(Comparator.comparingLong(slot -> slot.minute));
+        List<Map<String, Object>> minutes = new ArrayList<>();
+        for (Counts slot : recent) {
+            Map<String, Object> minute = summarize(Collections.singletonList(slot), null);
+            minute.put("minute", slot.minute * MINUTE_MS);
+            minutes.add(minute);
+        }
+        return minutes;
+    }
+}
@@ -0,0 +1,110 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking payment pipeline.
+ *
+ * The local stages (validation, fraud, compliance, authorization) run on a small
+ * CPU-sized worker pool; the gateway stage returns a future that is completed by
+ * the gateway client, so no thread waits for the remote round trip. The number of
+ * payments in flight is capped; submissions beyond the cap are rejected.
+ */
+@Component
+public class PaymentPipeline {
+
+    // 0 means one worker per available processor
+    @Value("${payment.pipeline.workers:0}")
+    private int workers = 0;
+
+    @Value("${payment.pipeline.max-in-flight:20000}")
+    private int maxInFlight = 20000;
+
+    private ExecutorService executor;
+    private Semaphore permits;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalLatencyMicros = new LongAdder();
+    private final AtomicLong maxLatencyMicros = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        int size = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger n = new AtomicInteger();
+        executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "payment-pipeline-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        permits = new Semaphore(maxInFlight);
+        workers = size;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) executor.shutdown();
+    }
+
+    /**
+     * Run {@code prepare} on a pipeline worker, then hand its result to {@code dispatch}
+     * (the asynchronous gateway stage). The returned future completes when dispatch does.
+     */
+    public CompletableFuture<PaymentTransaction> submit(Supplier<PaymentTransaction> prepare,
+                                                        Function<PaymentTransaction, CompletionStage<PaymentTransaction>> dispatch) {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            throw new RuntimeException("Payment pipeline is at capacity, retry later");
+        }
+        accepted.increment();
+        long start = System.nanoTime();
+        CompletableFuture<PaymentTransaction> result;
+        try {
+            result = CompletableFuture.supplyAsync(prepare, executor).thenCompose(dispatch);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return result.whenComplete((transaction, error) -> {
+            permits.release();
+            long micros = (System.nanoTime() - start) / 1000;
+            totalLatencyMicros.add(micros);
+            maxLatencyMicros.accumulateAndGet(micros, Math::max);
+            if (error != null) failed.increment(); else completed.increment();
+        });
+    }
+
+    public Map<String, Object> metrics() {
+        long done = completed.sum() + failed.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("workers", workers);
+        metrics.put("maxInFlight", maxInFlight);
+        metrics.put("inFlight", permits != null ? maxInFlight - permits.availablePermits() : 0);
+        metrics.put("accepted", accepted.sum());
+        metrics.put("completed", completed.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("avgLatencyMs", done == 0 ? 0.0 : Math.round(totalLatencyMicros.sum() / (double) done) / 1000.0);
+        metrics.put("maxLatencyMs", maxLatencyMicros.get() / 1000.0);
+        return metrics;
+    }
+}
@@ -14,12 +14,16 @@
         }
 package com.telecom.paymentprocessing.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import com.telecom.common.FeatureFlagReader;
 import com.telecom.paymentprocessing.model.*;
 import com.telecom.paymentprocessing.config.PaymentProcessingFeatureFlagConstants;
 import javax.annotation.PostConstruct;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -34,13 +38,83 @@ public class PaymentProcessingService {
     private final Map<String, PaymentTransaction> transactionStore = new ConcurrentHashMap<>();
     private final Map<String, Invoice> invoiceStore = new ConcurrentHashMap<>();
     private final Map<String, Refund> refundStore = new ConcurrentHashMap<>();
-    private final Map<String, RecurringPayment> recurringPaymentStore = new ConcurrentHashMap<>();
     private final Map<String, PaymentDispute> disputeStore = new ConcurrentHashMap<>();
     private final Map<String, Map<String,Object>> genericStore = new ConcurrentHashMap<>();
-    
-    // Fraud scoring configuration
-    private static final double FRAUD_THRESHOLD_HIGH = 0.75;
-    private static final double FRAUD_THRESHOLD_MEDIUM = 0.50;
+
+    // Sliding-window payment counts per customer and card
+    @Autowired
+    private VelocityTracker velocityTracker;
+
+    // Weighted fraud scorers and risk thresholds
+    @Autowired
+    private FraudScoringEngine fraudScoringEngine;
+
+    // Async validation/fraud/authorization stages and the gateway round trip
+    @Autowired
+    private PaymentPipeline paymentPipeline;
+
+    // Local stand-in for the remote payment gateways
+    @Autowired
+    private GatewaySimulator gatewaySimulator;
+
+    // Cost- and health-based gateway selection with circuit breakers and hedging
+    @Autowired
+    private GatewayRouter gatewayRouter;
+
+    // Idempotency-Key results for payment creation, persisted across restarts
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    // Invoices by customer, and a due-date timing wheel for overdue detection
+    @Autowired
+    private InvoiceOverdueTracker invoiceOverdueTracker;
+
+    // Recurring payment schedules, charged through the pipeline as they fall due
+    @Autowired
+    private RecurringPaymentScheduler recurringPaymentScheduler;
+
+    // Per-gateway settlement batches, closed at cutoffs and written as settlement files
+    @Autowired
+    private SettlementBatcher settlementBatcher;
+
+    // Partitioned hash-join reconciliation of bank payment files against invoices
+    @Autowired
+    private BulkReconciler bulkReconciler;
+
+    // Memory-mapped journal of transaction and dispute events; entities keep only their latest offset
+    @Autowired
+    private EventJournal eventJournal;
+
+    // Time/node/sequence ids behind reference and invoice numbers
+    @Autowired
+    private SnowflakeIdGenerator idGenerator;
+
+    // Encrypted card numbers behind payment tokens, so recurring charges and refunds can resolve them
+    @Autowired
+    private TokenVault tokenVault;
+
+    // Evidence deadlines of open disputes: alerts at lead times, escalation once overdue
+    @Autowired
+    private DisputeDeadlineScheduler disputeDeadlineScheduler;
+
+    // Per-minute outcome counts by method, gateway and currency, and per-stage latency histograms
+    @Autowired
+    private PaymentAnalytics paymentAnalytics;
+
+    // Refunded total per transaction, reserved by CAS so refunds never exceed the captured amount
+    @Autowired
+    private RefundLedger refundLedger;
+
+    // Fee and tax rates in millionths, applied with Money so results are exact to the cent
+    private static final long REFUND_FEE_RATE = 20_000;  // 2% refund processing fee
+    private static final long TAX_RATE = 80_000;         // 8% tax
+    private static final long LATE_FEE_RATE = 50_000;    // 5% late fee
+
+    // Largest tokenize batch accepted over the API
+    private static final int VAULT_MAX_BATCH = 100_000;
+
+    // Transactions scored per batch when backfilling fraud assessments
+    private static final int FRAUD_RESCORE_BATCH = 4096;
     
     // Payment gateway configuration
     private static final Map<String, String> GATEWAY_CONFIG = new HashMap<>();
@@ -54,6 +128,15 @@ public class PaymentProcessingService {
 
     @PostConstruct
     public void init() {
+        invoiceOverdueTracker.setOverdueHandler(this::markOverdue,
+            () -> FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_OVERDUE_TRACKING));
+        recurringPaymentScheduler.setRecurringCharge(this::chargeRecurringPayments,
+            () -> FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_RECURRING_PAYMENT));
+        settlementBatcher.setSettlementHandler(this::settleTransaction,
+            () -> FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_SETTLEMENT));
+        disputeDeadlineScheduler.setDeadlineHandler(this::onDisputeDeadline,
+            () -> FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_DISPUTE_TRACKING));
+
         // Populate with sample transactions
         for (int i = 1; i <= 5; i++) {
             createSampleTransaction(i);
@@ -87,18 +170,239 @@ public class PaymentProcessingService {
         invoice.setCreatedAt(System.currentTimeMillis());
         
         invoiceStore.put(invoice.getInvoiceId(), invoice);
+        invoiceOverdueTracker.index(invoice);
     }
 
     // ==================== PAYMENT TRANSACTION PROCESSING ====================
 
     /**
-     * Process a payment transaction with comprehensive validation and fraud checking
+     * Process a payment transaction with comprehensive validation and fraud checking.
+     * Runs the same pipeline as {@link #submitPayment(PaymentTransaction, String)} and waits for the gateway result.
      */
     public PaymentTransaction processPayment(PaymentTransaction paymentRequest) {
+        return processPayment(paymentRequest, null);
+    }
+
+    /**
+     * Process a payment at most once per idempotency key. Retries with the same key return
+     * the original transaction; a retry that arrives while the original runs waits for it.
+     */
+    public PaymentTransaction processPayment(PaymentTransaction paymentRequest, String idempotencyKey) {
+        if (idempotencyKey != null && !idempotencyKey.isEmpty()) {
+            return idempotencyStore.execute(idempotencyKey, IdempotencyStore.fingerprint(paymentRequest),
+                    () -> executePayment(paymentRequest));
+        }
+        return executePayment(paymentRequest);
+    }
+
+    private PaymentTransaction executePayment(PaymentTransaction paymentRequest) {
         if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_TRANSACTION_PROCESSING)) {
             throw new RuntimeException("Payment processing is disabled");
         }
 
+        try {
+            return runPayment(paymentRequest).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Run a payment through the pipeline; the future completes with the gateway result
+     */
+    private CompletableFuture<PaymentTransaction> runPayment(PaymentTransaction paymentRequest) {
+        return runPayment(paymentRequest, null);
+    }
+
+    /**
+     * As {@link #runPayment(PaymentTransaction)}, with the card behind the request's token
+     * already resolved from the vault (null to look it up in the pipeline)
+     */
+    private CompletableFuture<PaymentTransaction> runPayment(PaymentTransaction paymentRequest, CardDetails vaulted) {
+        PaymentTransaction transaction = newTransaction(paymentRequest);
+        return submitToPipeline(transaction, paymentRequest, vaulted);
+    }
+
+    /**
+     * Accept a payment for asynchronous processing. The transaction is stored as PROCESSING
+     * and returned immediately; its status changes once the pipeline and gateway complete.
+     */
+    public PaymentTransaction submitPayment(PaymentTransaction paymentRequest, String idempotencyKey) {
+        if (idempotencyKey != null && !idempotencyKey.isEmpty()) {
+            return idempotencyStore.executeAsync(idempotencyKey, IdempotencyStore.fingerprint(paymentRequest),
+                    completed -> acceptPayment(paymentRequest, completed));
+        }
+        return acceptPayment(paymentRequest, () -> { });
+    }
+
+    /**
+     * Store the transaction as PROCESSING and start it; {@code completed} runs once it
+     * has reached its final state
+     */
+    private PaymentTransaction acceptPayment(PaymentTransaction paymentRequest, Runnable completed) {
+        if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_TRANSACTION_PROCESSING)) {
+            throw new RuntimeException("Payment processing is disabled");
+        }
+
+        PaymentTransaction transaction = newTransaction(paymentRequest);
+        transaction.setStatus(TransactionStatus.PROCESSING);
+        storeTransaction(transaction);
+
+        CompletableFuture<PaymentTransaction> result;
+        try {
+            result = submitToPipeline(transaction, paymentRequest, null);
+        } catch (RuntimeException e) {
+            // Rejected before entering the pipeline (e.g. at capacity); don't leave it PROCESSING
+            failTransaction(transaction, "REJECTED", e.getMessage());
+            throw e;
+        }
+        result.whenComplete((done, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                failTransaction(transaction, "REJECTED", cause.getMessage());
+            }
+            completed.run();
+        });
+        return transaction;
+    }
+
+    /**
+     * Hand a new transaction to the pipeline, timing it end to end. Payments the pipeline
+     * rejects or that throw in a local stage are counted as failed here.
+     */
+    private CompletableFuture<PaymentTransaction> submitToPipeline(PaymentTransaction transaction, PaymentTransaction paymentRequest,
+                                                                   CardDetails vaulted) {
+        long start = System.nanoTime();
+        CompletableFuture<PaymentTransaction> result;
+        try {
+            result = paymentPipeline.submit(() -> preparePayment(transaction, paymentRequest, vaulted), this::dispatchToGateway);
+        } catch (RuntimeException e) {
+            recordOutcome(PaymentAnalytics.Outcome.FAILED, transaction, null);
+            throw e;
+        }
+        return result.whenComplete((completed, error) -> {
+            paymentAnalytics.lap(PaymentAnalytics.Stage.TOTAL, start);
+            if (error != null) recordOutcome(PaymentAnalytics.Outcome.FAILED, transaction, null);
+        });
+    }
+
+    /**
+     * Current status and history of a transaction, or null if unknown
+     */
+    public Map<String, Object> getTransactionStatus(String transactionId) {
+        PaymentTransaction transaction = transactionStore.get(transactionId);
+        if (transaction == null) return getJournaledTransactionStatus(transactionId);
+
+        Map<String, Object> status = new HashMap<>();
+        status.put("transactionId", transaction.getTransactionId());
+        status.put("referenceNumber", transaction.getReferenceNumber());
+        status.put("status", transaction.getStatus());
+        status.put("amount", transaction.getAmount());
+        status.put("currency", transaction.getCurrency());
+        status.put("updatedAt", transaction.getUpdatedAt());
+        status.put("events", getTransactionEvents(transactionId));
+        return status;
+    }
+
+    /**
+     * Event history of a transaction, read from the event journal. Transactions from
+     * before a restart are served from the journal alone.
+     */
+    public List<TransactionEvent> getTransactionEvents(String transactionId) {
+        long head = transactionJournalHead(transactionId);
+        if (head < 0) return null;
+        List<TransactionEvent> events = new ArrayList<>();
+        for (EventJournal.Event event : eventJournal.history(head)) {
+            events.add(new TransactionEvent(event.getEventType(), event.getTimestamp(),
+                event.getStatus(), event.getDescription()));
+        }
+        return events;
+    }
+
+    /**
+     * Event history of a dispute, read from the event journal
+     */
+    public List<DisputeEvent> getDisputeEvents(String disputeId) {
+        PaymentDispute dispute = disputeStore.get(disputeId);
+        long head;
+        if (dispute != null) {
+            synchronized (dispute) {
+                head = dispute.getEventJournalOffset();
+            }
+        } else {
+            head = eventJournal.recoveredHead(EventJournal.DISPUTE, disputeId);
+        }
+        if (head < 0) return null;
+        List<DisputeEvent> events = new ArrayList<>();
+        for (EventJournal.Event event : eventJournal.history(head)) {
+            events.add(new DisputeEvent(event.getEventType(), event.getTimestamp(),
+                event.getStatus(), event.getDescription()));
+        }
+        return events;
+    }
+
+    /**
+     * Status of a transaction that is no longer held in memory, rebuilt from its
+     * latest journal event
+     */
+    public Map<String, Object> getJournaledTransactionStatus(String transactionId) {
+        long head = eventJournal.recoveredHead(EventJournal.TRANSACTION, transactionId);
+        if (head < 0) return null;
+        EventJournal.Event latest = eventJournal.latest(head);
+        Map<String, Object> status = new HashMap<>();
+        status.put("transactionId", transactionId);
+        status.put("status", latest.getStatus());
+        status.put("updatedAt", latest.getTimestamp());
+        status.put("events", getTransactionEvents(transactionId));
+        status.put("recoveredFromJournal", true);
+        return status;
+    }
+
+    public Map<String, Object> getEventJournalStats() {
+        return eventJournal.stats();
+    }
+
+    public Map<String, Object> getIdGeneratorStats() {
+        return idGenerator.stats();
+    }
+
+    public Map<String, Object> getIdempotencyStats() {
+        return idempotencyStore.stats();
+    }
+
+    /**
+     * Rolling outcome counts, approval rates and stage latencies over the last {@code minutes}
+     */
+    public Map<String, Object> getPaymentAnalytics(int minutes) {
+        if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_ANALYTICS)) {
+            throw new RuntimeException("Payment analytics is disabled");
+        }
+        Map<String, Object> analytics = paymentAnalytics.snapshot(minutes);
+        analytics.put("lifetimeStageLatency", paymentAnalytics.lifetimeLatency());
+        return analytics;
+    }
+
+    public Map<String, Object> getPipelineMetrics() {
+        return paymentPipeline.metrics();
+    }
+
+    public Map<String, Object> getGatewayRoutingMetrics() {
+        return gatewayRouter.metrics();
+    }
+
+    public Map<String, Object> getGatewaySimulation() {
+        return gatewaySimulator.profiles();
+    }
+
+    public Map<String, Object> configureGatewaySimulation(String gateway, Map<String, Object> settings) {
+        if (!GATEWAY_CONFIG.containsKey(gateway)) {
+            throw new RuntimeException("Unknown payment gateway: " + gateway);
+        }
+        return gatewaySimulator.configure(gateway, settings);
+    }
+
+    private PaymentTransaction newTransaction(PaymentTransaction paymentRequest) {
         PaymentTransaction transaction = new PaymentTransaction();
         transaction.setTransactionId(UUID.randomUUID().toString());
         transaction.setReferenceNumber(generateReferenceNumber());
@@ -111,20 +415,43 @@ public class PaymentProcessingService {
         transaction.setStatus(TransactionStatus.PENDING);
         transaction.setCreatedAt(System.currentTimeMillis());
 
+        addEvent(transaction, "CREATED", "PENDING", "Transaction created");
+        return transaction;
+    }
+
+    /**
+     * Local pipeline stages: validation, velocity, fraud, compliance and authorization
+     */
+    private PaymentTransaction preparePayment(PaymentTransaction transaction, PaymentTransaction paymentRequest, CardDetails vaulted) {
+        long stageStart = System.nanoTime();
+
         // Validate transaction
         if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_VALIDATION)) {
             validateTransaction(transaction);
         }
+        stageStart = paymentAnalytics.lap(PaymentAnalytics.Stage.VALIDATION, stageStart);
+
+        // Record the attempt before scoring so a burst counts against itself
+        String cardKey = cardKeyOf(paymentRequest.getPaymentDetails());
+        velocityTracker.record(transaction.getCustomerId(), cardKey, transaction.getAmount());
 
         // Check fraud
         if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_FRAUD_DETECTION)) {
-            performFraudDetection(transaction);
+            performFraudDetection(transaction, cardKey);
+            if (transaction.getStatus() == TransactionStatus.FAILED) {
+                paymentAnalytics.lap(PaymentAnalytics.Stage.FRAUD, stageStart);
+                addEvent(transaction, "FRAUD_REJECTED", "FAILED", transaction.getComplianceInfo().getFraudReason());
+                recordOutcome(PaymentAnalytics.Outcome.DECLINED, transaction, null);
+                return transaction;
+            }
         }
+        stageStart = paymentAnalytics.lap(PaymentAnalytics.Stage.FRAUD, stageStart);
 
         // Check compliance
         if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_PCI_COMPLIANCE)) {
-            performPCICompliance(transaction);
+            performPCICompliance(transaction, paymentRequest.getPaymentDetails(), vaulted);
         }
+        stageStart = paymentAnalytics.lap(PaymentAnalytics.Stage.COMPLIANCE, stageStart);
 
         // Perform authorization
         if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_3D_SECURE)) {
@@ -132,19 +459,76 @@ public class PaymentProcessingService {
         } else {
             authorizeTransaction(transaction);
         }
+        paymentAnalytics.lap(PaymentAnalytics.Stage.AUTHORIZATION, stageStart);
+        return transaction;
+    }
 
-        // Route to payment gateway
-        routeToPaymentGateway(transaction);
+    /**
+     * Gateway stage: completes when the selected gateway answers, without blocking a thread
+     */
+    private CompletableFuture<PaymentTransaction> dispatchToGateway(PaymentTransaction transaction) {
+        if (transaction.getStatus() == TransactionStatus.FAILED) {
+            storeTransaction(transaction);
+            return CompletableFuture.completedFuture(transaction);
+        }
+        // Adaptive routing picks by cost and gateway health; otherwise the default gateway is used
+        boolean adaptive = FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_INTELLIGENT_ROUTING);
+        long start = System.nanoTime();
+        return gatewayRouter.authorize(transaction.getAmount(), adaptive,
+                gateway -> gatewaySimulator.authorize(gateway, transaction.getAmount(), transaction.getCurrency()),
+                gatewaySimulator::voidAuthorization)
+            .handle((response, error) -> {
+                paymentAnalytics.lap(PaymentAnalytics.Stage.GATEWAY, start);
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    failTransaction(transaction, "GATEWAY_ERROR", cause.getMessage());
+                    recordOutcome(PaymentAnalytics.Outcome.FAILED, transaction, null);
+                } else {
+                    routeToPaymentGateway(transaction, response);
+                    storeTransaction(transaction);
+                }
+                return transaction;
+            });
+    }
 
-        // Initialize events
-        List<TransactionEvent> events = new ArrayList<>();
-        events.add(new TransactionEvent("CREATED", System.currentTimeMillis(), "PENDING", "Transaction created"));
-        transaction.setEvents(events);
+    private void failTransaction(PaymentTransaction transaction, String eventType, String reason) {
+        transaction.setStatus(TransactionStatus.FAILED);
+        addEvent(transaction, eventType, "FAILED", reason);
+        storeTransaction(transaction);
+    }
 
+    private void recordOutcome(PaymentAnalytics.Outcome outcome, PaymentTransaction transaction, String gateway) {
+        paymentAnalytics.record(outcome, transaction.getPaymentMethod(), gateway, transaction.getCurrency(), transaction.getAmount());
+    }
+
+    private void addEvent(PaymentTransaction transaction, String eventType, String status, String description) {
+        transaction.setUpdatedAt(System.currentTimeMillis());
+        synchronized (transaction) {
+            long offset = eventJournal.append(EventJournal.TRANSACTION, transaction.getTransactionId(),
+                transaction.getEventJournalOffset(), System.currentTimeMillis(), eventType, status, description);
+            transaction.setEventJournalOffset(offset);
+        }
+    }
+
+    private void addDisputeEvent(PaymentDispute dispute, String eventType, String status, String notes) {
+        synchronized (dispute) {
+            long offset = eventJournal.append(EventJournal.DISPUTE, dispute.getDisputeId(),
+                dispute.getEventJournalOffset(), System.currentTimeMillis(), eventType, status, notes);
+            dispute.setEventJournalOffset(offset);
+        }
+    }
+
+    private long transactionJournalHead(String transactionId) {
+        PaymentTransaction transaction = transactionStore.get(transactionId);
+        if (transaction == null) return eventJournal.recoveredHead(EventJournal.TRANSACTION, transactionId);
+        synchronized (transaction) {
+            return transaction.getEventJournalOffset();
+        }
+    }
+
+    private void storeTransaction(PaymentTransaction transaction) {
         transactionStore.put(transaction.getTransactionId(), transaction);
         genericStore.put(transaction.getTransactionId(), convertToMap(transaction));
-
-        return transaction;
     }
 
     /**
@@ -165,87 +549,76 @@ public class PaymentProcessingService {
     /**
      * Perform fraud detection with multiple scoring mechanisms
      */
-    private void performFraudDetection(PaymentTransaction transaction) {
-        ComplianceInfo compliance = new ComplianceInfo();
-        Map<String, Object> fraudScores = new HashMap<>();
-
-        // Amount-based fraud scoring
-        double amountScore = calculateAmountScore(transaction.getAmount());
-        fraudScores.put("amountScore", amountScore);
-
-        // Payment method risk scoring
-        double methodScore = calculateMethodScore(transaction.getPaymentMethod());
-        fraudScores.put("methodScore", methodScore);
-
-        // Geographic risk scoring
-        double geoScore = calculateGeoScore();
-        fraudScores.put("geoScore", geoScore);
-
-        // Velocity risk scoring
-        double velocityScore = calculateVelocityScore(transaction.getCustomerId());
-        fraudScores.put("velocityScore", velocityScore);
-
-        // Overall fraud score
-        double overallFraudScore = (amountScore + methodScore + geoScore + velocityScore) / 4.0;
-        fraudScores.put("overallScore", overallFraudScore);
+    private void performFraudDetection(PaymentTransaction transaction, String cardKey) {
+        FraudScoringEngine.Assessment assessment = fraudScoringEngine.score(
+                transaction.getAmount(),
+                transaction.getPaymentMethod(),
+                calculateGeoScore(),
+                calculateVelocityScore(transaction.getCustomerId(), cardKey),
+                calculateDeviceScore());
+        applyFraudAssessment(transaction, assessment, new ComplianceInfo(), true);
+    }
 
-        compliance.setFraudScores(fraudScores);
+    /**
+     * Record an assessment on the transaction; a HIGH risk fails it when {@code failOnHigh} is set
+     */
+    private void applyFraudAssessment(PaymentTransaction transaction, FraudScoringEngine.Assessment assessment,
+                                      ComplianceInfo compliance, boolean failOnHigh) {
+        compliance.setFraudScores(assessment.toScoreMap());
         compliance.setComplianceCheckTime(System.currentTimeMillis());
+        compliance.setFraudRiskLevel(assessment.getLevel());
 
-        if (overallFraudScore >= FRAUD_THRESHOLD_HIGH) {
-            compliance.setFraudRiskLevel("HIGH");
+        if (FraudScoringEngine.LEVEL_HIGH.equals(assessment.getLevel())) {
             compliance.setFraudDetected(true);
-            compliance.setFraudReason("High fraud score: " + overallFraudScore);
-            transaction.setStatus(TransactionStatus.FAILED);
-        } else if (overallFraudScore >= FRAUD_THRESHOLD_MEDIUM) {
-            compliance.setFraudRiskLevel("MEDIUM");
+            compliance.setFraudReason("High fraud score: " + assessment.getOverall());
+            if (failOnHigh) transaction.setStatus(TransactionStatus.FAILED);
+        } else if (FraudScoringEngine.LEVEL_MEDIUM.equals(assessment.getLevel())) {
+            compliance.setFraudDetected(false);
             compliance.setFraudReason("Medium fraud risk detected");
         } else {
-            compliance.setFraudRiskLevel("LOW");
+            compliance.setFraudDetected(false);
+            compliance.setFraudReason(null);
         }
 
         transaction.setComplianceInfo(compliance);
     }
 
-    private double calculateAmountScore(double amount) {
-        // Score increases for unusual amounts
-        if (amount > 10000) return 0.7;
-        if (amount > 5000) return 0.5;
-        if (amount > 1000) return 0.3;
-        return 0.1;
+    private double calculateGeoScore() {
+        // Simulated geographic risk
+        return 0.2;
     }
 
-    private double calculateMethodScore(PaymentMethod method) {
-        switch(method) {
-            case CREDIT_CARD: return 0.3;
-            case DEBIT_CARD: return 0.2;
-            case DIGITAL_WALLET: return 0.15;
-            case BANK_TRANSFER: return 0.25;
-            case USSD: return 0.4;
-            default: return 0.5;
-        }
+    private double calculateDeviceScore() {
+        // Simulated device risk - no device fingerprint is captured yet
+        return 0.2;
     }
 
-    private double calculateGeoScore() {
-        // Simulated geographic risk
-        return 0.2;
+    private double calculateVelocityScore(String customerId, String cardKey) {
+        // Transactions and amounts over the last minute, hour and day vs. configured limits
+        return velocityTracker.score(customerId, cardKey);
     }
 
-    private double calculateVelocityScore(String customerId) {
-        // Simulated velocity check - how many transactions in short time
-        return 0.15;
+    /**
+     * Velocity key for the card used: the vault's keyed fingerprint, which is the same
+     * whether the client sent a token or the card number, so both count against one card
+     */
+    private String cardKeyOf(PaymentDetails details) {
+        if (details == null) return null;
+        if (details.getToken() != null && !details.getToken().isEmpty()) return tokenVault.tokenFingerprint(details.getToken());
+        if (details.getCardDetails() == null) return null;
+        return tokenVault.fingerprint(details.getCardDetails().getCardNumber());
     }
 
     /**
      * Perform PCI-DSS compliance checks
      */
-    private void performPCICompliance(PaymentTransaction transaction) {
+    private void performPCICompliance(PaymentTransaction transaction, PaymentDetails requestDetails, CardDetails vaulted) {
         ComplianceInfo compliance = transaction.getComplianceInfo() != null ? 
                                     transaction.getComplianceInfo() : new ComplianceInfo();
 
         // Tokenize payment data if enabled
         if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_TOKENIZATION)) {
-            tokenizePaymentData(transaction);
+            tokenizePaymentData(transaction, requestDetails, vaulted);
             compliance.setPciCompliant(true);
         } else {
             compliance.setPciCompliant(false);
@@ -265,18 +638,36 @@ public class PaymentProcessingService {
     }
 
     /**
-     * Tokenize payment data for PCI compliance
+     * Tokenize payment data for PCI compliance: the card number goes into the token vault
+     * and the transaction keeps only the token and last four digits. A request that already
+     * carries a vault token (e.g. a recurring charge) is checked against the vault, unless
+     * the caller already resolved it ({@code vaulted}).
      */
-    private void tokenizePaymentData(PaymentTransaction transaction) {
+    private void tokenizePaymentData(PaymentTransaction transaction, PaymentDetails requestDetails, CardDetails vaulted) {
         PaymentDetails paymentDetails = transaction.getPaymentDetails() != null ? 
                                         transaction.getPaymentDetails() : new PaymentDetails();
 
-        if (transaction.getPaymentMethod() == PaymentMethod.CREDIT_CARD && paymentDetails.getCardDetails() != null) {
-            CardDetails cardDetails = paymentDetails.getCardDetails();
-            String last4 = cardDetails.getCardNumber().substring(cardDetails.getCardNumber().length() - 4);
-            paymentDetails.setLast4Digits(last4);
-            paymentDetails.setToken("tok_" + UUID.randomUUID().toString());
-            paymentDetails.setTokenized(true);
+        boolean card = transaction.getPaymentMethod() == PaymentMethod.CREDIT_CARD
+            || transaction.getPaymentMethod() == PaymentMethod.DEBIT_CARD;
+        if (card && requestDetails != null) {
+            CardDetails cardDetails = requestDetails.getCardDetails();
+            if (cardDetails != null && cardDetails.getCardNumber() != null) {
+                String token = tokenVault.tokenize(cardDetails.getCardNumber(),
+                    cardDetails.getExpiryMonth(), cardDetails.getExpiryYear());
+                String cardNumber = cardDetails.getCardNumber().trim();
+                paymentDetails.setLast4Digits(cardNumber.substring(Math.max(0, cardNumber.length() - 4)));
+                paymentDetails.setToken(token);
+                paymentDetails.setTokenized(true);
+            } else if (requestDetails.getToken() != null) {
+                CardDetails resolved = vaulted != null ? vaulted : tokenVault.detokenize(requestDetails.getToken());
+                if (resolved == null) {
+                    throw new RuntimeException("Unknown payment token");
+                }
+                String cardNumber = resolved.getCardNumber();
+                paymentDetails.setLast4Digits(cardNumber.substring(cardNumber.length() - 4));
+                paymentDetails.setToken(requestDetails.getToken());
+                paymentDetails.setTokenized(true);
+            }
         }
 
         transaction.setPaymentDetails(paymentDetails);
@@ -320,12 +711,22 @@ public class PaymentProcessingService {
     }
 
     /**
-     * Route transaction to appropriate payment gateway
+     * Apply the gateway's answer: capture on approval, fail on decline
      */
-    private void routeToPaymentGateway(PaymentTransaction transaction) {
-        String selectedGateway = selectPaymentGateway(transaction);
-        
-        // Simulate gateway processing
+    private void routeToPaymentGateway(PaymentTransaction transaction, GatewaySimulator.GatewayResponse response) {
+        if (!response.isApproved()) {
+            if (transaction.getAuthorizationInfo() != null) {
+                transaction.getAuthorizationInfo().setAuthorizationStatus("DECLINED");
+                transaction.getAuthorizationInfo().setResponseCode(response.getResponseCode());
+                transaction.getAuthorizationInfo().setResponseMessage(response.getMessage());
+            }
+            transaction.setStatus(TransactionStatus.FAILED);
+            addEvent(transaction, "DECLINED", "FAILED",
+                    "Declined by " + response.getGateway() + ": " + response.getResponseCode() + " " + response.getMessage());
+            recordOutcome(PaymentAnalytics.Outcome.DECLINED, transaction, response.getGateway());
+            return;
+        }
+
         SettlementInfo settlementInfo = new SettlementInfo();
         settlementInfo.setSettlementId("SETTLE-" + UUID.randomUUID().toString());
         settlementInfo.setSettlementStatus(SettlementStatus.PROCESSING);
@@ -337,24 +738,103 @@ public class PaymentProcessingService {
 
         transaction.setSettlementInfo(settlementInfo);
         transaction.setStatus(TransactionStatus.CAPTURED);
-        
-        // Add event
-        if (transaction.getEvents() != null) {
-            transaction.getEvents().add(new TransactionEvent("CAPTURED", System.currentTimeMillis(), 
-                    "CAPTURED", "Payment captured via " + selectedGateway));
+        addEvent(transaction, "CAPTURED", "CAPTURED",
+                "Payment captured via " + response.getGateway() + " (" + response.getGatewayReference() + ")");
+        recordOutcome(PaymentAnalytics.Outcome.APPROVED, transaction, response.getGateway());
+        settlementBatcher.add(response.getGateway(), transaction);
+    }
+
+    /**
+     * Recent payment velocity for a customer
+     */
+    public Map<String, Object> getCustomerVelocity(String customerId) {
+        if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_FRAUD_DETECTION)) {
+            throw new RuntimeException("Fraud detection is disabled");
         }
+        return velocityTracker.customerVelocity(customerId);
+    }
+
+    public Map<String, Object> getVelocityStats() {
+        return velocityTracker.stats();
     }
 
-    private String selectPaymentGateway(PaymentTransaction transaction) {
-        if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_INTELLIGENT_ROUTING)) {
-            // Intelligent routing based on amount and method
-            if (transaction.getAmount() > 5000) {
-                return "STRIPE";
-            } else if (transaction.getPaymentMethod() == PaymentMethod.DIGITAL_WALLET) {
-                return "PAYPAL";
+    /**
+     * Re-run fraud scoring over stored transactions (all of them when no ids are given).
+     * Assessments are refreshed in batches; transaction statuses are left unchanged.
+     */
+    public Map<String, Object> rescoreTransactions(List<String> transactionIds) {
+        if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_FRAUD_DETECTION)) {
+            throw new RuntimeException("Fraud detection is disabled");
+        }
+
+        long start = System.currentTimeMillis();
+        Collection<PaymentTransaction> targets;
+        if (transactionIds == null || transactionIds.isEmpty()) {
+            targets = transactionStore.values();
+        } else {
+            targets = new ArrayList<>();
+            for (String id : transactionIds) {
+                PaymentTransaction transaction = transactionStore.get(id);
+                if (transaction != null) targets.add(transaction);
             }
         }
-        return "GATEWAY2U";
+
+        Map<String, Integer> byLevel = new HashMap<>();
+        FraudScoringEngine.Features batch = new FraudScoringEngine.Features(FRAUD_RESCORE_BATCH);
+        List<PaymentTransaction> rows = new ArrayList<>(FRAUD_RESCORE_BATCH);
+        int scored = 0;
+        Iterator<PaymentTransaction> it = targets.iterator();
+        while (it.hasNext()) {
+            PaymentTransaction transaction = it.next();
+            batch.add(transaction.getAmount(), transaction.getPaymentMethod(), calculateGeoScore(),
+                    calculateVelocityScore(transaction.getCustomerId(), null), calculateDeviceScore());
+            rows.add(transaction);
+            if (rows.size() == FRAUD_RESCORE_BATCH || !it.hasNext()) {
+                FraudScoringEngine.Assessment[] assessments = fraudScoringEngine.scoreBatch(batch);
+                for (int i = 0; i < assessments.length; i++) {
+                    PaymentTransaction row = rows.get(i);
+                    ComplianceInfo compliance = row.getComplianceInfo() != null ? row.getComplianceInfo() : new ComplianceInfo();
+                    applyFraudAssessment(row, assessments[i], compliance, false);
+                    byLevel.merge(assessments[i].getLevel(), 1, Integer::sum);
+                }
+                scored += assessments.length;
+                batch.clear();
+                rows.clear();
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("scored", scored);
+        result.put("byRiskLevel", byLevel);
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    public Map<String, Object> getFraudScoringConfig() {
+        return fraudScoringEngine.config();
+    }
+
+    // ==================== TOKEN VAULT ====================
+
+    /**
+     * Vault tokens for a batch of cards, in order; a card already in the vault keeps its token
+     */
+    public List<String> tokenizeCards(List<CardDetails> cards) {
+        if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_TOKENIZATION)) {
+            throw new RuntimeException("Tokenization is disabled");
+        }
+        checkVaultBatch(cards.size());
+        return tokenVault.tokenizeAll(cards);
+    }
+
+    public Map<String, Object> getTokenVaultStats() {
+        return tokenVault.stats();
+    }
+
+    private void checkVaultBatch(int size) {
+        if (size > VAULT_MAX_BATCH) {
+            throw new RuntimeException("At most " + VAULT_MAX_BATCH + " entries per vault batch");
+        }
     }
 
     // ==================== SETTLEMENT & RECONCILIATION ====================
@@ -377,16 +857,55 @@ public class PaymentProcessingService {
             transaction.getSettlementInfo().setSettlementTime(System.currentTimeMillis());
             transaction.setStatus(TransactionStatus.SETTLED);
 
-            if (transaction.getEvents() != null) {
-                transaction.getEvents().add(new TransactionEvent("SETTLED", System.currentTimeMillis(), 
-                        "SETTLED", "Payment settled successfully"));
-            }
+            addEvent(transaction, "SETTLED", "SETTLED", "Payment settled successfully");
+            recordOutcome(PaymentAnalytics.Outcome.SETTLED, transaction, null);
         }
 
         transactionStore.put(transactionId, transaction);
         return transaction;
     }
 
+    /**
+     * Close all open settlement batches now and write their settlement files
+     */
+    public List<Map<String, Object>> closeSettlementBatches() {
+        if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_SETTLEMENT)) {
+            throw new RuntimeException("Payment settlement is disabled");
+        }
+        return settlementBatcher.closeAll().join();
+    }
+
+    /**
+     * Recently written settlement batches and open batch sizes
+     */
+    public Map<String, Object> getSettlementBatches() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("recentBatches", settlementBatcher.recentBatches());
+        result.put("stats", settlementBatcher.stats());
+        return result;
+    }
+
+    /**
+     * Mark a transaction of a written settlement file as SETTLED. Returns false if it
+     * left CAPTURED since the file was written (e.g. settled individually).
+     */
+    private boolean settleTransaction(String batchNumber, PaymentTransaction transaction) {
+        synchronized (transaction) {
+            if (transaction.getStatus() != TransactionStatus.CAPTURED) return false;
+            SettlementInfo settlementInfo = transaction.getSettlementInfo();
+            if (settlementInfo != null) {
+                settlementInfo.setSettlementStatus(SettlementStatus.SETTLED);
+                settlementInfo.setSettlementTime(System.currentTimeMillis());
+                settlementInfo.setBatchNumber(batchNumber);
+            }
+            transaction.setStatus(TransactionStatus.SETTLED);
+        }
+        addEvent(transaction, "SETTLED", "SETTLED", "Payment settled in batch " + batchNumber);
+        recordOutcome(PaymentAnalytics.Outcome.SETTLED, transaction, null);
+        storeTransaction(transaction);
+        return true;
+    }
+
     /**
      * Reconcile payments with invoices
      */
@@ -401,26 +920,41 @@ public class PaymentProcessingService {
         }
 
         Map<String, Object> reconciliation = new HashMap<>();
-        double totalPayments = 0;
+        Money invoiceAmount = Money.of(invoice.getTotalAmount(), invoice.getCurrency());
+        Money totalPayments = Money.zero(invoiceAmount.getCurrency());
         
         if (invoice.getPayments() != null) {
             for (PaymentRecord payment : invoice.getPayments()) {
-                totalPayments += payment.getAmountPaid();
+                totalPayments = totalPayments.plus(Money.of(payment.getAmountPaid(), invoiceAmount.getCurrency()));
             }
         }
 
-        double discrepancy = Math.abs(invoice.getTotalAmount() - totalPayments);
+        Money discrepancy = invoiceAmount.minus(totalPayments).abs();
         
         reconciliation.put("invoiceId", invoice.getInvoiceId());
-        reconciliation.put("invoiceAmount", invoice.getTotalAmount());
-        reconciliation.put("totalPayments", totalPayments);
-        reconciliation.put("discrepancy", discrepancy);
-        reconciliation.put("status", discrepancy == 0 ? "MATCHED" : "DISCREPANCY");
+        reconciliation.put("invoiceAmount", invoiceAmount.toDouble());
+        reconciliation.put("totalPayments", totalPayments.toDouble());
+        reconciliation.put("discrepancy", discrepancy.toDouble());
+        reconciliation.put("status", discrepancy.isZero() ? "MATCHED" : "DISCREPANCY");
         reconciliation.put("reconciliationTime", System.currentTimeMillis());
 
         return reconciliation;
     }
 
+    /**
+     * Reconcile a bank payments file against all invoices and write the match reports
+     */
+    public Map<String, Object> reconcileBankFile(String fileName) {
+        if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_RECONCILIATION)) {
+            throw new RuntimeException("Payment reconciliation is disabled");
+        }
+        try {
+            return bulkReconciler.reconcile(fileName, invoiceStore.values());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to reconcile " + fileName + ": " + e.getMessage());
+        }
+    }
+
     // ==================== REFUND PROCESSING ====================
 
     /**
@@ -437,11 +971,36 @@ public class PaymentProcessingService {
             throw new RuntimeException("Refund processing is disabled");
         }
 
+        // Only money that was actually taken can be given back
+        TransactionStatus status = originalTransaction.getStatus();
+        if (status != TransactionStatus.CAPTURED && status != TransactionStatus.SETTLED) {
+            throw new RuntimeException("Only captured or settled transactions can be refunded; "
+                + transactionId + " is " + status);
+        }
+
+        Money amount = Money.of(refundAmount, originalTransaction.getCurrency());
+        Money captured = Money.of(originalTransaction.getAmount(), originalTransaction.getCurrency());
+        Money refundedTotal = refundLedger.reserve(transactionId, captured, amount);
+        try {
+            return createRefund(originalTransaction, reason, amount, refundedTotal.equals(captured));
+        } catch (RuntimeException e) {
+            refundLedger.release(transactionId, amount);
+            throw e;
+        }
+    }
+
+    /**
+     * Record a refund; the original is marked REFUNDED only once {@code fullyRefunded},
+     * so after a partial refund it stays refundable for the rest.
+     */
+    private Refund createRefund(PaymentTransaction originalTransaction, RefundReason reason, Money amount,
+                                boolean fullyRefunded) {
+        String transactionId = originalTransaction.getTransactionId();
         Refund refund = new Refund();
         refund.setRefundId(UUID.randomUUID().toString());
         refund.setOriginalTransactionId(transactionId);
         refund.setCustomerId(originalTransaction.getCustomerId());
-        refund.setRefundAmount(refundAmount);
+        refund.setRefundAmount(amount.toDouble());
         refund.setCurrency(originalTransaction.getCurrency());
         refund.setReason(reason);
         refund.setStatus(RefundStatus.PENDING);
@@ -449,8 +1008,9 @@ public class PaymentProcessingService {
 
         RefundDetails refundDetails = new RefundDetails();
         refundDetails.setRefundMethod(originalTransaction.getPaymentMethod().toString());
-        refundDetails.setProcessingFee(calculateRefundFee(refundAmount));
-        refundDetails.setRefundableAmount(refundAmount - refundDetails.getProcessingFee());
+        Money fee = calculateRefundFee(amount);
+        refundDetails.setProcessingFee(fee.toDouble());
+        refundDetails.setRefundableAmount(amount.minus(fee).toDouble());
         
         refund.setRefundDetails(refundDetails);
 
@@ -458,7 +1018,13 @@ public class PaymentProcessingService {
         if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_AUTO_REFUND)) {
             refund.setStatus(RefundStatus.PROCESSING);
             refund.setProcessedAt(System.currentTimeMillis());
-            originalTransaction.setStatus(TransactionStatus.REFUNDED);
+            if (fullyRefunded) {
+                synchronized (originalTransaction) {
+                    originalTransaction.setStatus(TransactionStatus.REFUNDED);
+                }
+            }
+            paymentAnalytics.record(PaymentAnalytics.Outcome.REFUNDED, originalTransaction.getPaymentMethod(), null,
+                originalTransaction.getCurrency(), amount.toDouble());
         }
 
         // Enable refund tracking
@@ -472,9 +1038,21 @@ public class PaymentProcessingService {
         return refund;
     }
 
-    private double calculateRefundFee(double refundAmount) {
-        // 2% refund processing fee
-        return refundAmount * 0.02;
+    private Money calculateRefundFee(Money refundAmount) {
+        return refundAmount.times(REFUND_FEE_RATE);
+    }
+
+    /**
+     * Captured, refunded and refundable amounts of a transaction, or null if unknown
+     */
+    public Map<String, Object> getRefundBalance(String transactionId) {
+        PaymentTransaction transaction = transactionStore.get(transactionId);
+        if (transaction == null) return null;
+        return refundLedger.balance(transactionId, Money.of(transaction.getAmount(), transaction.getCurrency()));
+    }
+
+    public Map<String, Object> getRefundLedgerStats() {
+        return refundLedger.stats();
     }
 
     // ==================== RECURRING PAYMENT & BILLING ====================
@@ -492,6 +1070,12 @@ public class PaymentProcessingService {
         recurring.setCustomerId(paymentRequest.getCustomerId());
         recurring.setBillingAccountId(paymentRequest.getBillingAccountId());
         recurring.setPaymentMethod(paymentRequest.getPaymentMethod());
+        if (paymentRequest.getPaymentToken() != null) {
+            if (!tokenVault.contains(paymentRequest.getPaymentToken())) {
+                throw new RuntimeException("Unknown payment token");
+            }
+            recurring.setPaymentToken(paymentRequest.getPaymentToken());
+        }
         recurring.setRecurringAmount(paymentRequest.getRecurringAmount());
         recurring.setCurrency(paymentRequest.getCurrency());
         recurring.setBillingFrequency(paymentRequest.getBillingFrequency());
@@ -503,10 +1087,75 @@ public class PaymentProcessingService {
         // Calculate next billing date
         recurring.setNextBillingDate(calculateNextBillingDate(paymentRequest.getStartDate(), paymentRequest.getBillingFrequency()));
         
-        recurringPaymentStore.put(recurring.getRecurringPaymentId(), recurring);
+        recurringPaymentScheduler.register(recurring);
         return recurring;
     }
 
+    /**
+     * Recurring payment with its execution history, or null if unknown
+     */
+    public RecurringPayment getRecurringPayment(String recurringPaymentId) {
+        return recurringPaymentScheduler.find(recurringPaymentId);
+    }
+
+    public Map<String, Object> getRecurringSchedulerStats() {
+        return recurringPaymentScheduler.stats();
+    }
+
+    /**
+     * Charge one billing cycle of each recurring payment in a scheduler batch. The batch's
+     * vault tokens are resolved with one detokenizeAll call rather than one lookup per charge.
+     */
+    private List<CompletableFuture<PaymentTransaction>> chargeRecurringPayments(List<RecurringPayment> schedules, long[] cycleAt) {
+        if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_TRANSACTION_PROCESSING)) {
+            throw new RuntimeException("Payment processing is disabled");
+        }
+
+        // Tokens are only resolved when tokenization runs; otherwise the pipeline never looks at them
+        Iterator<CardDetails> cards = Collections.emptyIterator();
+        if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_TOKENIZATION)) {
+            List<String> tokens = new ArrayList<>();
+            for (RecurringPayment recurring : schedules) {
+                if (recurring.getPaymentToken() != null) tokens.add(recurring.getPaymentToken());
+            }
+            if (!tokens.isEmpty()) cards = tokenVault.detokenizeAll(tokens).iterator();
+        }
+
+        List<CompletableFuture<PaymentTransaction>> results = new ArrayList<>(schedules.size());
+        for (int i = 0; i < schedules.size(); i++) {
+            RecurringPayment recurring = schedules.get(i);
+            CardDetails vaulted = recurring.getPaymentToken() != null && cards.hasNext() ? cards.next() : null;
+            try {
+                results.add(chargeRecurringPayment(recurring, cycleAt[i], vaulted));
+            } catch (RuntimeException e) {
+                CompletableFuture<PaymentTransaction> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                results.add(failed);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Charge one billing cycle of a recurring payment through the payment pipeline
+     */
+    private CompletableFuture<PaymentTransaction> chargeRecurringPayment(RecurringPayment recurring, long cycleAt, CardDetails vaulted) {
+        PaymentTransaction paymentRequest = new PaymentTransaction();
+        paymentRequest.setCustomerId(recurring.getCustomerId());
+        paymentRequest.setBillingAccountId(recurring.getBillingAccountId());
+        paymentRequest.setOrderId("REC-" + recurring.getRecurringPaymentId() + "-" + cycleAt);
+        paymentRequest.setAmount(recurring.getRecurringAmount());
+        paymentRequest.setCurrency(recurring.getCurrency());
+        paymentRequest.setPaymentMethod(recurring.getPaymentMethod());
+        paymentRequest.setDescription("Recurring payment " + recurring.getRecurringPaymentId());
+        if (recurring.getPaymentToken() != null) {
+            PaymentDetails details = new PaymentDetails();
+            details.setToken(recurring.getPaymentToken());
+            paymentRequest.setPaymentDetails(details);
+        }
+        return runPayment(paymentRequest, vaulted);
+    }
+
     /**
      * Generate invoice for billing account
      */
@@ -520,33 +1169,36 @@ public class PaymentProcessingService {
         invoice.setInvoiceNumber(generateInvoiceNumber());
         invoice.setCustomerId(customerId);
         invoice.setBillingAccountId(billingAccountId);
-        invoice.setStatus(InvoiceStatus.DRAFT);
+        invoice.setStatus(InvoiceStatus.ISSUED);
         invoice.setLineItems(lineItems);
         invoice.setCreatedAt(System.currentTimeMillis());
 
-        // Calculate amounts
-        double subtotal = 0;
+        invoice.setCurrency("USD");
+
+        // Calculate amounts; each line is rounded to the cent once, then summed exactly
+        Money subtotal = Money.zero(invoice.getCurrency());
         for (InvoiceLineItem item : lineItems) {
-            item.setTotalPrice(item.getQuantity() * item.getUnitPrice());
-            subtotal += item.getTotalPrice();
+            Money lineTotal = Money.of(item.getQuantity() * item.getUnitPrice(), invoice.getCurrency());
+            item.setTotalPrice(lineTotal.toDouble());
+            subtotal = subtotal.plus(lineTotal);
         }
 
-        invoice.setSubtotal(subtotal);
+        invoice.setSubtotal(subtotal.toDouble());
         
         // Calculate tax if enabled
         if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_BILLING_CYCLES)) {
-            double taxAmount = subtotal * 0.08;  // 8% tax
-            invoice.setTaxAmount(taxAmount);
-            invoice.setTotalAmount(subtotal + taxAmount);
+            Money taxAmount = subtotal.times(TAX_RATE);
+            invoice.setTaxAmount(taxAmount.toDouble());
+            invoice.setTotalAmount(subtotal.plus(taxAmount).toDouble());
         } else {
-            invoice.setTotalAmount(subtotal);
+            invoice.setTotalAmount(subtotal.toDouble());
         }
 
-        invoice.setCurrency("USD");
-        invoice.setDueDate(System.currentTimeMillis() + (30 * 24 * 60 * 60 * 1000));  // 30 days
+        invoice.setDueDate(System.currentTimeMillis() + (30L * 24 * 60 * 60 * 1000));  // 30 days
         invoice.setIssuedAt(System.currentTimeMillis());
 
         invoiceStore.put(invoice.getInvoiceId(), invoice);
+        invoiceOverdueTracker.index(invoice);
         return invoice;
     }
 
@@ -560,33 +1212,59 @@ public class PaymentProcessingService {
 
         Map<String, Object> overdueReport = new HashMap<>();
         List<Invoice> overdueInvoices = new ArrayList<>();
-        double totalOverdue = 0;
-
-        for (Invoice invoice : invoiceStore.values()) {
-            if (invoice.getCustomerId().equals(customerId) && 
-                (invoice.getStatus() == InvoiceStatus.OVERDUE || invoice.getStatus() == InvoiceStatus.ISSUED)) {
-                if (invoice.getDueDate() < System.currentTimeMillis()) {
-                    overdueInvoices.add(invoice);
-                    totalOverdue += invoice.getTotalAmount();
-                    
-                    // Apply late fee if enabled
-                    if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_LATE_FEE)) {
-                        double lateFee = invoice.getTotalAmount() * 0.05;  // 5% late fee
-                        invoice.setTotalAmount(invoice.getTotalAmount() + lateFee);
-                        invoice.setStatus(InvoiceStatus.OVERDUE);
-                    }
-                }
+        Money totalOverdue = null;
+        long now = System.currentTimeMillis();
+
+        for (String invoiceId : invoiceOverdueTracker.invoicesOf(customerId)) {
+            Invoice invoice = invoiceStore.get(invoiceId);
+            if (invoice == null || invoice.getDueDate() <= 0 || invoice.getDueDate() >= now) continue;
+            // Catch up on anything the wheel has not reached yet
+            markOverdue(invoiceId);
+            if (invoice.getStatus() == InvoiceStatus.OVERDUE) {
+                overdueInvoices.add(invoice);
+                // Reported in the first invoice's currency, as a single total
+                String currency = totalOverdue != null ? totalOverdue.getCurrency() : invoice.getCurrency();
+                Money amount = Money.of(invoice.getTotalAmount(), currency);
+                totalOverdue = totalOverdue == null ? amount : totalOverdue.plus(amount);
             }
         }
 
         overdueReport.put("customerId", customerId);
         overdueReport.put("overdueInvoiceCount", overdueInvoices.size());
-        overdueReport.put("totalOverdue", totalOverdue);
+        overdueReport.put("totalOverdue", totalOverdue != null ? totalOverdue.toDouble() : 0.0);
         overdueReport.put("invoices", overdueInvoices);
 
         return overdueReport;
     }
 
+    /**
+     * Move an outstanding invoice past its due date to OVERDUE, applying the late fee once.
+     * Called by the overdue wheel as invoices fall due and by {@link #trackOverdueBills(String)}.
+     */
+    private boolean markOverdue(String invoiceId) {
+        Invoice invoice = invoiceStore.get(invoiceId);
+        if (invoice == null) return false;
+        synchronized (invoice) {
+            if (!InvoiceOverdueTracker.isOutstanding(invoice.getStatus())
+                    || invoice.getDueDate() <= 0 || invoice.getDueDate() > System.currentTimeMillis()) {
+                return false;
+            }
+            if (FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_LATE_FEE)) {
+                Money total = Money.of(invoice.getTotalAmount(), invoice.getCurrency());
+                invoice.setTotalAmount(total.plus(total.times(LATE_FEE_RATE)).toDouble());
+            }
+            invoice.setStatus(InvoiceStatus.OVERDUE);
+        }
+        return true;
+    }
+
+    /**
+     * Invoice index and overdue wheel statistics
+     */
+    public Map<String, Object> getOverdueTrackingStats() {
+        return invoiceOverdueTracker.stats();
+    }
+
     // ==================== DISPUTE MANAGEMENT ====================
 
     /**
@@ -612,13 +1290,12 @@ public class PaymentProcessingService {
         dispute.setCurrency(transaction.getCurrency());
         dispute.setStatus(DisputeStatus.OPENED);
         dispute.setInitiatedDate(System.currentTimeMillis());
-        dispute.setDueDate(System.currentTimeMillis() + (45 * 24 * 60 * 60 * 1000));  // 45 days for response
+        dispute.setDueDate(disputeDeadlineScheduler.dueDateFor(dispute.getInitiatedDate()));
 
-        List<DisputeEvent> events = new ArrayList<>();
-        events.add(new DisputeEvent("OPENED", System.currentTimeMillis(), "OPENED", "Dispute opened"));
-        dispute.setEvents(events);
+        addDisputeEvent(dispute, "OPENED", "OPENED", "Dispute opened");
 
         disputeStore.put(dispute.getDisputeId(), dispute);
+        disputeDeadlineScheduler.register(dispute.getDisputeId(), dispute.getDueDate());
         transaction.setStatus(TransactionStatus.DISPUTED);
         transactionStore.put(transactionId, transaction);
 
@@ -638,18 +1315,71 @@ public class PaymentProcessingService {
             throw new RuntimeException("Chargeback defense is disabled");
         }
 
-        dispute.setEvidence(evidence);
-        dispute.setStatus(DisputeStatus.EVIDENCE_SUBMITTED);
+        // Same lock as onDisputeDeadline, so an escalation can't overwrite the submission
+        synchronized (dispute) {
+            dispute.setEvidence(evidence);
+            dispute.setStatus(DisputeStatus.EVIDENCE_SUBMITTED);
 
-        if (dispute.getEvents() != null) {
-            dispute.getEvents().add(new DisputeEvent("EVIDENCE_SUBMITTED", System.currentTimeMillis(), 
-                    "EVIDENCE_SUBMITTED", "Evidence submitted for dispute"));
-        }
+            addDisputeEvent(dispute, "EVIDENCE_SUBMITTED", "EVIDENCE_SUBMITTED", "Evidence submitted for dispute");
 
-        disputeStore.put(disputeId, dispute);
+            disputeStore.put(disputeId, dispute);
+            disputeDeadlineScheduler.unregister(disputeId);
+        }
         return dispute;
     }
 
+    /**
+     * Open disputes whose evidence is due within the next {@code withinMs}, earliest first;
+     * with {@code includeOverdue} also those already past their deadline.
+     */
+    public List<PaymentDispute> getDisputesDueWithin(long withinMs, boolean includeOverdue, int limit) {
+        if (!FeatureFlagReader.isFeatureEnabled(PaymentProcessingFeatureFlagConstants.PAYMENT_ENABLE_DISPUTE_TRACKING)) {
+            throw new RuntimeException("Dispute tracking is disabled");
+        }
+
+        long now = System.currentTimeMillis();
+        long from = includeOverdue ? Long.MIN_VALUE : now;
+        long to = withinMs >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + withinMs;
+        List<PaymentDispute> disputes = new ArrayList<>();
+        for (String disputeId : disputeDeadlineScheduler.dueWithin(from, to, limit)) {
+            PaymentDispute dispute = disputeStore.get(disputeId);
+            if (dispute != null) disputes.add(dispute);
+        }
+        return disputes;
+    }
+
+    public List<Map<String, Object>> getRecentDisputeAlerts(int limit) {
+        return disputeDeadlineScheduler.recentAlerts(limit);
+    }
+
+    public Map<String, Object> getDisputeDeadlineStats() {
+        return disputeDeadlineScheduler.stats();
+    }
+
+    /**
+     * Deadline callback: journal an alert while the dispute still awaits our response,
+     * or escalate it for review once the deadline has passed.
+     */
+    private boolean onDisputeDeadline(String disputeId, long dueAt, long leadMs) {
+        PaymentDispute dispute = disputeStore.get(disputeId);
+        if (dispute == null) return false;
+        synchronized (dispute) {
+            // Answered since, or re-registered with a different deadline
+            if (!DisputeDeadlineScheduler.isAwaitingResponse(dispute.getStatus()) || dispute.getDueDate() != dueAt) {
+                return false;
+            }
+            if (leadMs > 0) {
+                addDisputeEvent(dispute, "DEADLINE_ALERT", dispute.getStatus().name(),
+                    "Evidence due in " + DisputeDeadlineScheduler.describe(leadMs));
+                return true;
+            }
+            dispute.setStatus(DisputeStatus.UNDER_REVIEW);
+            dispute.setEscalatedDate(System.currentTimeMillis());
+            addDisputeEvent(dispute, "ESCALATED", "UNDER_REVIEW", "Evidence deadline passed without a response");
+            return true;
+        }
+    }
+
     // ==================== LEGACY GENERIC METHODS ====================
 
     public List<Object> listAll() {
@@ -713,29 +1443,15 @@ public class PaymentProcessingService {
     // ==================== UTILITY METHODS ====================
 
     private String generateReferenceNumber() {
-        String timestamp = String.format("%010d", System.currentTimeMillis() % 10000000000L);
-        String random = String.format("%05d", (int)(Math.random() * 100000));
-        return "TXN-" + timestamp + "-" + random;
+        return idGenerator.nextReferenceNumber();
     }
 
     private String generateInvoiceNumber() {
-        String timestamp = String.format("%08d", System.currentTimeMillis() % 100000000L);
-        String random = String.format("%03d", (int)(Math.random() * 1000));
-        return "INV-" + timestamp + "-" + random;
+        return idGenerator.nextInvoiceNumber();
     }
 
     private long calculateNextBillingDate(long startDate, BillingFrequency frequency) {
-        long interval;
-        switch(frequency) {
-            case DAILY: interval = 1 * 24 * 60 * 60 * 1000L; break;
-            case WEEKLY: interval = 7 * 24 * 60 * 60 * 1000L; break;
-            case MONTHLY: interval = 30 * 24 * 60 * 60 * 1000L; break;
-            case QUARTERLY: interval = 90 * 24 * 60 * 60 * 1000L; break;
-            case SEMI_ANNUAL: interval = 180 * 24 * 60 * 60 * 1000L; break;
-            case ANNUAL: interval = 365 * 24 * 60 * 60 * 1000L; break;
-            default: interval = 30 * 24 * 60 * 60 * 1000L;
-        }
-        return startDate + interval;
+        return RecurringPaymentScheduler.nextBillingDate(startDate, frequency);
     }
 
     private Map<String, Object> convertToMap(PaymentTransaction transaction) {
@@ -0,0 +1,667 @@
+package com.telecom.paymentprocessing.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Store and scheduler for recurring payments.
+ *
+ * Active schedules are kept in an ordered index by their next due time, so each run
+ * only looks at the schedules that are due. Due schedules are charged in batches,
+ * limited both by a per-second rate and by the number of charges in flight; each
+ * outcome is added to the schedule's execution history and the schedule is moved
+ * to its next billing date (or retried after a delay when the charge failed).
+ *
+ * Schedules and their progress are kept in an append-only log that is replayed on
+ * startup. A claim record for every charge is written and forced to disk before the
+ * charge is sent; if that fails the batch is put back and nothing is charged.
+ * A claim found without an outcome after a restart is never re-sent, since the
+ * charge may already have gone through: it is recorded as UNKNOWN and the schedule
+ * is suspended for review.
+ */
+@Component
+public class RecurringPaymentScheduler {
+
+    /**
+     * Charges one billing cycle of each schedule in a batch, so per-batch work such as
+     * resolving vault tokens is done once. Returns one future per schedule, in order;
+     * each completes with the resulting transaction, or exceptionally if that charge
+     * could not be made.
+     */
+    public interface RecurringCharge {
+        List<CompletableFuture<PaymentTransaction>> charge(List<RecurringPayment> schedules, long[] cycleAt);
+    }
+
+    /**
+     * Gate checked before each scheduled run (e.g. a feature flag).
+     */
+    public interface ChargeGate {
+        boolean isEnabled();
+    }
+
+    public static final String EXECUTION_SUCCEEDED = "SUCCEEDED";
+    public static final String EXECUTION_FAILED = "FAILED";
+    public static final String EXECUTION_UNKNOWN = "UNKNOWN";
+
+    private static final int SCHEDULE_RECORD = 0x51;
+    private static final int CLAIM_RECORD = 0x52;
+    private static final int RESULT_RECORD = 0x53;
+
+    // Failure reasons are the latest journaled event of the charge transaction
+    @Autowired
+    private EventJournal eventJournal;
+
+    @Value("${payment.recurring.run-interval-ms:1000}")
+    private long runIntervalMs = 1000;
+
+    @Value("${payment.recurring.max-per-second:500}")
+    private int maxPerSecond = 500;
+
+    @Value("${payment.recurring.max-in-flight:200}")
+    private int maxInFlight = 200;
+
+    @Value("${payment.recurring.retry-delay-ms:3600000}")
+    private long retryDelayMs = 3600000;
+
+    @Value("${payment.recurring.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${payment.recurring.history-limit:50}")
+    private int historyLimit = 50;
+
+    @Value("${payment.recurring.log-path:data/recurring-payments.log}")
+    private String logPath = "data/recurring-payments.log";
+
+    @Value("${payment.recurring.flush-interval-ms:50}")
+    private long flushIntervalMs = 50;
+
+    private final ObjectMapper mapper = new ObjectMapper()
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Map<String, RecurringPayment> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<DueKey> byDue = new ConcurrentSkipListSet<>();
+    private final Map<String, DueKey> scheduled = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<byte[]> unwritten = new ConcurrentLinkedQueue<>();
+    private final AtomicLong logRecords = new AtomicLong();
+
+    private final LongAdder charged = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder suspendedOnRecovery = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder releasedBatches = new LongAdder();
+    private final AtomicLong runs = new AtomicLong();
+    private volatile long lastRunAt;
+
+    private volatile RecurringCharge charge;
+    private volatile ChargeGate gate = () -> true;
+    private ScheduledExecutorService scheduler;
+    private FileChannel logChannel;
+    private DataOutputStream log;
+    private double tokens;
+    private long tokensAt;
+
+    @PostConstruct
+    public void start() {
+        Path path = Paths.get(logPath);
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            if (Files.exists(path)) replay(path);
+            compact();
+        } catch (IOException e) {
+            System.err.println("Recurring payment log unavailable, schedules will not survive a restart: " + e.getMessage());
+        }
+        tokensAt = System.currentTimeMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "recurring-payments");
+            t.setDaemon(true);
+            return t;
+        });
+        // Both tasks run on the same thread, which is the only writer of the log
+        scheduler.scheduleWithFixedDelay(this::runQuietly, runIntervalMs, runIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdown();
+        try {
+            if (scheduler != null) scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            flush(true);
+            closeLog();
+        }
+    }
+
+    public void setRecurringCharge(RecurringCharge charge, ChargeGate gate) {
+        this.charge = charge;
+        this.gate = gate;
+    }
+
+    /**
+     * Add a new schedule. ACTIVE schedules are charged from their next billing date on.
+     */
+    public void register(RecurringPayment schedule) {
+        if (schedule.getExecutions() == null) schedule.setExecutions(new ArrayList<>());
+        byId.put(schedule.getRecurringPaymentId(), schedule);
+        unwritten.add(scheduleRecord(schedule));
+        if (schedule.getStatus() == RecurringPaymentStatus.ACTIVE) {
+            index(schedule.getRecurringPaymentId(), schedule.getNextBillingDate());
+        }
+    }
+
+    public RecurringPayment find(String recurringPaymentId) {
+        return byId.get(recurringPaymentId);
+    }
+
+    /**
+     * Charge every schedule that is due, within the rate and in-flight limits. Schedules
+     * left over by the limits stay due and are picked up by the next run.
+     */
+    public synchronized Map<String, Object> processDue() {
+        RecurringCharge target = charge;
+        List<Claim> batch = new ArrayList<>();
+        if (target != null && gate.isEnabled()) {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(maxPerSecond, tokens + (now - tokensAt) * maxPerSecond / 1000.0);
+            tokensAt = now;
+            int limit = (int) Math.min(tokens, maxInFlight - inFlight.size());
+            for (DueKey key : byDue.headSet(DueKey.lowest(now + 1))) {
+                if (batch.size() >= limit) break;
+                RecurringPayment schedule = byId.get(key.recurringPaymentId);
+                if (schedule == null || !byDue.remove(key)) continue;
+                scheduled.remove(key.recurringPaymentId, key);
+                synchronized (schedule) {
+                    if (schedule.getStatus() != RecurringPaymentStatus.ACTIVE) continue;
+                    batch.add(new Claim(schedule, key.dueAt, schedule.getNextBillingDate(), trailingFailures(schedule) + 1));
+                }
+            }
+            tokens -= batch.size();
+        }
+
+        boolean released = false;
+        if (!batch.isEmpty()) {
+            // Claims must be durable before any of the charges is sent
+            List<byte[]> claims = new ArrayList<>(batch.size());
+            for (Claim claim : batch) claims.add(claimRecord(claim));
+            unwritten.addAll(claims);
+            if (flush(true)) {
+                dispatch(target, batch);
+            } else {
+                release(batch, claims);
+                released = true;
+            }
+        }
+        runs.incrementAndGet();
+        lastRunAt = System.currentTimeMillis();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("dispatched", released ? 0 : batch.size());
+        result.put("released", released ? batch.size() : 0);
+        result.put("inFlight", inFlight.size());
+        return result;
+    }
+
+    /**
+     * Next billing date one billing period after {@code from}.
+     */
+    public static long nextBillingDate(long from, BillingFrequency frequency) {
+        long interval;
+        switch (frequency != null ? frequency : BillingFrequency.MONTHLY) {
+            case DAILY: interval = 1 * 24 * 60 * 60 * 1000L; break;
+            case WEEKLY: interval = 7 * 24 * 60 * 60 * 1000L; break;
+            case QUARTERLY: interval = 90 * 24 * 60 * 60 * 1000L; break;
+            case SEMI_ANNUAL: interval = 180 * 24 * 60 * 60 * 1000L; break;
+            case ANNUAL: interval = 365 * 24 * 60 * 60 * 1000L; break;
+            default: interval = 30 * 24 * 60 * 60 * 1000L;
+        }
+        return from + interval;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("schedules", byId.size());
+        stats.put("scheduled", byDue.size());
+        stats.put("inFlight", inFlight.size());
+        stats.put("charged", charged.sum());
+        stats.put("succeeded", succeeded.sum());
+        stats.put("failed", failed.sum());
+        stats.put("expired", expired.sum());
+        stats.put("failedAfterRetries", exhausted.sum());
+        stats.put("suspendedOnRecovery", suspendedOnRecovery.sum());
+        stats.put("runs", runs.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("maxPerSecond", maxPerSecond);
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("logRecords", logRecords.get());
+        stats.put("pendingWrites", unwritten.size());
+        stats.put("writeFailures", writeFailures.sum());
+        stats.put("releasedBatches", releasedBatches.sum());
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    /**
+     * Put back a batch whose claims could not be made durable, so none of it is charged
+     * now and every schedule is due again for the next run. A claim that reached the log
+     * in part is treated as interrupted on replay, which suspends the schedule for review
+     * rather than charging it twice.
+     */
+    private void release(List<Claim> batch, List<byte[]> claims) {
+        // Records still queued are dropped; byte[] equality is identity, so only these go
+        unwritten.removeAll(claims);
+        for (Claim claim : batch) index(claim.schedule.getRecurringPaymentId(), claim.dueAt);
+        tokens += batch.size();
+        releasedBatches.increment();
+        System.err.println("Recurring payment claims could not be written, released " + batch.size() + " due charges");
+    }
+
+    private void dispatch(RecurringCharge target, List<Claim> batch) {
+        List<RecurringPayment> schedules = new ArrayList<>(batch.size());
+        long[] cycles = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Claim claim = batch.get(i);
+            schedules.add(claim.schedule);
+            cycles[i] = claim.cycleAt;
+            inFlight.add(claim.schedule.getRecurringPaymentId());
+            charged.increment();
+        }
+
+        List<CompletableFuture<PaymentTransaction>> results = null;
+        RuntimeException failure = null;
+        try {
+            results = target.charge(schedules, cycles);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Claim claim = batch.get(i);
+            CompletableFuture<PaymentTransaction> result = results != null && i < results.size() ? results.get(i) : null;
+            if (result == null) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(failure != null ? failure : new IllegalStateException("No charge result"));
+            }
+            result.whenComplete((transaction, error) -> {
+                try {
+                    complete(claim, transaction, error);
+                } finally {
+                    inFlight.remove(claim.schedule.getRecurringPaymentId());
+                }
+            });
+        }
+    }
+
+    /**
+     * Record the outcome of a charge and move the schedule on.
+     */
+    private void complete(Claim claim, PaymentTransaction transaction, Throwable error) {
+        RecurringPayment schedule = claim.schedule;
+        RecurringPaymentExecution execution = new RecurringPaymentExecution();
+        execution.setExecutionId(UUID.randomUUID().toString());
+        execution.setExecutionDate(System.currentTimeMillis());
+        execution.setAmount(schedule.getRecurringAmount());
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            execution.setStatus(EXECUTION_FAILED);
+            execution.setFailureReason(cause.getMessage());
+        } else {
+            execution.setTransactionId(transaction.getTransactionId());
+            if (transaction.getStatus() == TransactionStatus.FAILED) {
+                execution.setStatus(EXECUTION_FAILED);
+                execution.setFailureReason(lastEventDescription(transaction));
+            } else {
+                execution.setStatus(EXECUTION_SUCCEEDED);
+            }
+        }
+
+        long dueAt;
+        synchronized (schedule) {
+            apply(schedule, claim.cycleAt, execution);
+            unwritten.add(resultRecord(schedule, claim.cycleAt, execution));
+            dueAt = schedule.getStatus() != RecurringPaymentStatus.ACTIVE ? 0
+                : EXECUTION_SUCCEEDED.equals(execution.getStatus()) ? schedule.getNextBillingDate()
+                : execution.getExecutionDate() + retryDelayMs;
+        }
+        if (EXECUTION_SUCCEEDED.equals(execution.getStatus())) succeeded.increment(); else failed.increment();
+        if (schedule.getStatus() == RecurringPaymentStatus.EXPIRED) expired.increment();
+        if (schedule.getStatus() == RecurringPaymentStatus.FAILED) exhausted.increment();
+        if (dueAt > 0) index(schedule.getRecurringPaymentId(), dueAt);
+    }
+
+    /**
+     * Apply an execution to a schedule. Shared by live charges and log replay so both
+     * reach the same state.
+     */
+    private void apply(RecurringPayment schedule, long cycleAt, RecurringPaymentExecution execution) {
+        if (schedule.getExecutions() == null) schedule.setExecutions(new ArrayList<>());
+        List<RecurringPaymentExecution> history = schedule.getExecutions();
+        history.add(execution);
+        if (history.size() > historyLimit) history.subList(0, history.size() - historyLimit).clear();
+
+        if (EXECUTION_SUCCEEDED.equals(execution.getStatus())) {
+            schedule.setExecutionCount(schedule.getExecutionCount() + 1);
+            long next = nextBillingDate(cycleAt, schedule.getBillingFrequency());
+            schedule.setNextBillingDate(next);
+            if (schedule.getEndDate() > 0 && next > schedule.getEndDate()) {
+                schedule.setStatus(RecurringPaymentStatus.EXPIRED);
+            }
+        } else if (EXECUTION_UNKNOWN.equals(execution.getStatus())) {
+            schedule.setStatus(RecurringPaymentStatus.SUSPENDED);
+        } else if (trailingFailures(schedule) >= maxAttempts) {
+            schedule.setStatus(RecurringPaymentStatus.FAILED);
+        }
+    }
+
+    private int trailingFailures(RecurringPayment schedule) {
+        int failures = 0;
+        List<RecurringPaymentExecution> history = schedule.getExecutions();
+        if (history == null) return 0;
+        for (int i = history.size() - 1; i >= 0; i--) {
+            if (!EXECUTION_FAILED.equals(history.get(i).getStatus())) break;
+            failures++;
+        }
+        return failures;
+    }
+
+    private void index(String recurringPaymentId, long dueAt) {
+        DueKey key = new DueKey(dueAt, recurringPaymentId);
+        DueKey previous = scheduled.put(recurringPaymentId, key);
+        if (previous != null) byDue.remove(previous);
+        byDue.add(key);
+    }
+
+    private String lastEventDescription(PaymentTransaction transaction) {
+        long offset;
+        synchronized (transaction) {
+            offset = transaction.getEventJournalOffset();
+        }
+        EventJournal.Event latest = eventJournal.latest(offset);
+        return latest == null || latest.getDescription() == null ? "Payment failed" : latest.getDescription();
+    }
+
+    private void runQuietly() {
+        try {
+            processDue();
+        } catch (RuntimeException e) {
+            System.err.println("Recurring payment run failed: " + e.getMessage());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            synchronized (this) {
+                flush(false);
+                if (logRecords.get() > 2L * byId.size() + 10000 && inFlight.isEmpty()) compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            writeFailures.increment();
+            System.err.println("Recurring payment log maintenance failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Append queued records to the log, and with {@code force} also sync them to disk.
+     * Returns false if they could not be written.
+     */
+    private boolean flush(boolean force) {
+        if (unwritten.isEmpty() && !force) return true;
+        try {
+            if (log == null) openLog();
+            byte[] record;
+            while ((record = unwritten.poll()) != null) {
+                log.write(record);
+                logRecords.incrementAndGet();
+            }
+            log.flush();
+            if (force) logChannel.force(false);
+            return true;
+        } catch (IOException e) {
+            writeFailures.increment();
+            closeLog();
+            System.err.println("Failed to append to recurring payment log: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void replay(Path path) throws IOException {
+        Map<String, Long> claims = new HashMap<>();
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            while (true) {
+                int type;
+                try {
+                    type = data.readUnsignedByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    if (type == SCHEDULE_RECORD) {
+                        RecurringPayment schedule = mapper.readValue(readPayload(data), RecurringPayment.class);
+                        if (schedule.getExecutions() == null) schedule.setExecutions(new ArrayList<>());
+                        byId.put(schedule.getRecurringPaymentId(), schedule);
+                    } else if (type == CLAIM_RECORD) {
+                        String id = data.readUTF();
+                        claims.put(id, data.readLong());
+                        data.readInt();
+                    } else if (type == RESULT_RECORD) {
+                        String id = data.readUTF();
+                        long cycleAt = data.readLong();
+                        RecurringPaymentExecution execution = mapper.readValue(readPayload(data), RecurringPaymentExecution.class);
+                        RecurringPayment schedule = byId.get(id);
+                        if (schedule != null) apply(schedule, cycleAt, execution);
+                        claims.remove(id);
+                    } else {
+                        System.err.println("Corrupt recurring payment log record, ignoring the rest of the log");
+                        break;
+                    }
+                } catch (EOFException e) {
+                    // Torn tail from a crash mid-write: everything before it is intact
+                    break;
+                }
+            }
+        }
+
+        // Claims without an outcome may or may not have been charged: never send them again
+        for (Map.Entry<String, Long> claim : claims.entrySet()) {
+            RecurringPayment schedule = byId.get(claim.getKey());
+            if (schedule == null) continue;
+            RecurringPaymentExecution execution = new RecurringPaymentExecution();
+            execution.setExecutionId(UUID.randomUUID().toString());
+            execution.setExecutionDate(System.currentTimeMillis());
+            execution.setAmount(schedule.getRecurringAmount());
+            execution.setStatus(EXECUTION_UNKNOWN);
+            execution.setFailureReason("Interrupted before the outcome was recorded; check the gateway before resuming");
+            apply(schedule, claim.getValue(), execution);
+            suspendedOnRecovery.increment();
+        }
+
+        for (RecurringPayment schedule : byId.values()) {
+            if (schedule.getStatus() != RecurringPaymentStatus.ACTIVE) continue;
+            List<RecurringPaymentExecution> history = schedule.getExecutions();
+            boolean retrying = !history.isEmpty() && EXECUTION_FAILED.equals(history.get(history.size() - 1).getStatus());
+            index(schedule.getRecurringPaymentId(), retrying
+                ? history.get(history.size() - 1).getExecutionDate() + retryDelayMs
+                : schedule.getNextBillingDate());
+        }
+    }
+
+    /**
+     * Rewrite the log with one schedule record per schedule. Only called with nothing in flight.
+     */
+    private void compact() throws IOException {
+        flush(false);
+        closeLog();
+        Path path = Paths.get(logPath);
+        Path tmp = Paths.get(logPath + ".tmp");
+        long records = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            for (RecurringPayment schedule : byId.values()) {
+                byte[] record;
+                synchronized (schedule) {
+                    record = scheduleRecord(schedule);
+                }
+                out.write(record);
+                records++;
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logRecords.set(records);
+        openLog();
+    }
+
+    private byte[] scheduleRecord(RecurringPayment schedule) {
+        try {
+            byte[] payload = mapper.writeValueAsBytes(schedule);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 8);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(SCHEDULE_RECORD);
+            out.writeInt(payload.length);
+            out.write(payload);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize recurring payment " + schedule.getRecurringPaymentId(), e);
+        }
+    }
+
+    private byte[] claimRecord(Claim claim) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(CLAIM_RECORD);
+            out.writeUTF(claim.schedule.getRecurringPaymentId());
+            out.writeLong(claim.cycleAt);
+            out.writeInt(claim.attempt);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize recurring payment claim", e);
+        }
+    }
+
+    private byte[] resultRecord(RecurringPayment schedule, long cycleAt, RecurringPaymentExecution execution) {
+        try {
+            byte[] payload = mapper.writeValueAsBytes(execution);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(RESULT_RECORD);
+            out.writeUTF(schedule.getRecurringPaymentId());
+            out.writeLong(cycleAt);
+            out.writeInt(payload.length);
+            out.write(payload);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize recurring payment execution", e);
+        }
+    }
+
+    private static byte[] readPayload(DataInputStream data) throws IOException {
+        byte[] payload = new byte[data.readInt()];
+        data.readFully(payload);
+        return payload;
+    }
+
+    private void openLog() throws IOException {
+        logChannel = FileChannel.open(Paths.get(logPath),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(logChannel)));
+    }
+
+    private void closeLog() {
+        if (log == null) return;
+        try {
+            log.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close recurring payment log: " + e.getMessage());
+        }
+        log = null;
+        logChannel = null;
+    }
+
+    private static final class Claim {
+        private final RecurringPayment schedule;
+        private final long dueAt;
+        private final long cycleAt;
+        private final int attempt;
+
+        Claim(RecurringPayment schedule, long dueAt, long cycleAt, int attempt) {
+            this.schedule = schedule;
+            this.dueAt = dueAt;
+            this.cycleAt = cycleAt;
+            this.attempt = attempt;
+        }
+    }
+
+    /**
+     * Orders by due time, then schedule id so equal due times stay distinct.
+     */
+    private static final class DueKey implements Comparable<DueKey> {
+        private final long dueAt;
+        private final String recurringPaymentId;
+
+        DueKey(long dueAt, String recurringPaymentId) {
+            this.dueAt = dueAt;
+            this.recurringPaymentId = recurringPaymentId;
+        }
+
+        static DueKey lowest(long dueAt) {
+            return new DueKey(dueAt, "");
+        }
+
+        @Override
+        public int compareTo(DueKey other) {
+            int c = Long.compare(dueAt, other.dueAt);
+            return c != 0 ? c : recurringPaymentId.compareTo(other.recurringPaymentId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DueKey)) return false;
+            DueKey other = (DueKey) o;
+            return dueAt == other.dueAt && recurringPaymentId.equals(other.recurringPaymentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(dueAt) * 31 + recurringPaymentId.hashCode();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.stereotype.Component;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running refund total of each transaction, so a refund can be checked against what
+ * is left of the captured amount without scanning stored refunds.
+ *
+ * Each transaction has one account holding the captured amount and the refunded total
+ * in minor units. A refund reserves its amount with a compare-and-set on that total and
+ * is rejected if the total would pass the captured amount, so concurrent partial
+ * refunds can never add up to more than was captured. Refunds of different
+ * transactions never contend, and no refund waits on a lock.
+ */
+@Component
+public class RefundLedger {
+
+    /**
+     * Refund that would take the refunded total past the captured amount.
+     */
+    public static class OverRefundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public OverRefundException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Account {
+        private final long capturedMinor;
+        private final String currency;
+        private final AtomicLong refundedMinor = new AtomicLong();
+        private final LongAdder refunds = new LongAdder();
+
+        Account(long capturedMinor, String currency) {
+            this.capturedMinor = capturedMinor;
+            this.currency = currency;
+        }
+    }
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+
+    /**
+     * Reserve {@code amount} against a transaction's captured amount and return the new
+     * refunded total. The account is opened with {@code captured} on the first refund.
+     *
+     * @throws OverRefundException if the refund exceeds what is left to refund
+     */
+    public Money reserve(String transactionId, Money captured, Money amount) {
+        if (amount.getMinorUnits() <= 0) {
+            throw new IllegalArgumentException("Refund amount must be positive");
+        }
+        Account account = accounts.get(transactionId);
+        if (account == null) {
+            account = accounts.computeIfAbsent(transactionId, id -> new Account(captured.getMinorUnits(), captured.getCurrency()));
+        }
+        if (!account.currency.equals(amount.getCurrency())) {
+            throw new IllegalArgumentException("Refund currency " + amount.getCurrency() + " does not match " + account.currency);
+        }
+
+        long add = amount.getMinorUnits();
+        while (true) {
+            long current = account.refundedMinor.get();
+            long next = current + add;
+            // next < current only if the sum overflowed
+            if (next < current || next > account.capturedMinor) {
+                rejected.increment();
+                throw new OverRefundException("Refund of " + amount.toPlainString() + " " + account.currency
+                    + " exceeds the refundable balance of "
+                    + Money.format(account.capturedMinor - current, amount.getDigits()) + " " + account.currency);
+            }
+            if (account.refundedMinor.compareAndSet(current, next)) {
+                account.refunds.increment();
+                reserved.increment();
+                return Money.ofMinor(next, account.currency);
+            }
+            casRetries.increment();
+        }
+    }
+
+    /**
+     * Give back a reservation whose refund did not go ahead.
+     */
+    public void release(String transactionId, Money amount) {
+        Account account = accounts.get(transactionId);
+        if (account == null) return;
+        account.refundedMinor.addAndGet(-amount.getMinorUnits());
+        account.refunds.decrement();
+        released.increment();
+    }
+
+    /**
+     * Captured, refunded and refundable amounts of a transaction; {@code captured} is
+     * used when it has had no refunds yet.
+     */
+    public Map<String, Object> balance(String transactionId, Money captured) {
+        Account account = accounts.get(transactionId);
+        long capturedMinor = account != null ? account.capturedMinor : captured.getMinorUnits();
+        String currency = account != null ? account.currency : captured.getCurrency();
+        long refunded = account != null ? account.refundedMinor.get() : 0;
+        int digits = Money.digits(currency);
+        Map<String, Object> balance = new HashMap<>();
+        balance.put("transactionId", transactionId);
+        balance.put("currency", currency);
+        balance.put("captured", Money.toDouble(capturedMinor, digits));
+        balance.put("refunded", Money.toDouble(refunded, digits));
+        balance.put("refundable", Money.toDouble(capturedMinor - refunded, digits));
+        balance.put("refunds", account != null ? account.refunds.sum() : 0L);
+        return balance;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("accounts", accounts.size());
+        stats.put("reserved", reserved.sum());
+        stats.put("released", released.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("casRetries", casRetries.sum());
+        return stats;
+    }
+}
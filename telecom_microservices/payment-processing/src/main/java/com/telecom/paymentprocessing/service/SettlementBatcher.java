@@ -0,0 +1,415 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batches captured transactions into settlement files, one batch per gateway.
+ *
+ * Captured transactions are added to their gateway's open batch. A batch is closed
+ * at each configured cutoff time, or as soon as it reaches the maximum batch size.
+ * Closed batches are written by a single writer thread as CSV settlement files with
+ * a header, one detail line per transaction and a trailer with the count and total.
+ * Lines are encoded straight into a direct buffer and written through a file channel.
+ * Once the file is on disk each of its transactions is handed to the
+ * {@link SettlementHandler}, which marks it SETTLED. A batch whose file could not be
+ * written goes back to its open batch for the next cutoff; once the file exists the
+ * batch is never written again, and transactions the handler fails on are recorded
+ * with the batch instead.
+ */
+@Component
+public class SettlementBatcher {
+
+    /**
+     * Marks one transaction of a written settlement file as settled.
+     *
+     * @return false if the transaction no longer needed settling
+     */
+    public interface SettlementHandler {
+        boolean onSettled(String batchNumber, PaymentTransaction transaction);
+    }
+
+    /**
+     * Gate checked before each cutoff (e.g. a feature flag).
+     */
+    public interface SettlementGate {
+        boolean isEnabled();
+    }
+
+    private static final DateTimeFormatter BATCH_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    // Longest detail line we expect; the buffer is drained before it gets this full
+    private static final int MAX_LINE_BYTES = 1024;
+    private static final int RECENT_BATCHES = 100;
+    // Failed transaction ids kept in a batch summary
+    private static final int MAX_REPORTED_FAILURES = 100;
+
+    // Cutoff times of day (UTC) at which every open batch is closed
+    @Value("${payment.settlement.cutoffs:00:00,06:00,12:00,18:00}")
+    private String cutoffs = "00:00,06:00,12:00,18:00";
+
+    @Value("${payment.settlement.max-batch-size:100000}")
+    private int maxBatchSize = 100000;
+
+    @Value("${payment.settlement.output-dir:data/settlement}")
+    private String outputDir = "data/settlement";
+
+    private final Map<String, OpenBatch> open = new ConcurrentHashMap<>();
+    private final Deque<Map<String, Object>> recent = new ArrayDeque<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder settled = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder settleFailures = new LongAdder();
+
+    private List<LocalTime> cutoffTimes = new ArrayList<>();
+    private volatile SettlementHandler handler;
+    private volatile SettlementGate gate = () -> true;
+    private volatile long nextCutoffAt;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService writer;
+    private ByteBuffer buffer;
+
+    @PostConstruct
+    public void start() {
+        cutoffTimes = parseCutoffs(cutoffs);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "settlement-cutoff");
+            t.setDaemon(true);
+            return t;
+        });
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "settlement-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduleNextCutoff();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdown();
+        if (writer != null) writer.shutdown();
+    }
+
+    public void setSettlementHandler(SettlementHandler handler, SettlementGate gate) {
+        this.handler = handler;
+        this.gate = gate;
+    }
+
+    /**
+     * Add a captured transaction to its gateway's open batch.
+     */
+    public void add(String gateway, PaymentTransaction transaction) {
+        List<PaymentTransaction> full = null;
+        OpenBatch batch = open.computeIfAbsent(gateway, OpenBatch::new);
+        synchronized (batch) {
+            batch.transactions.add(transaction);
+            if (batch.transactions.size() >= maxBatchSize && gate.isEnabled()) full = batch.drain();
+        }
+        queued.increment();
+        if (full != null) submit(gateway, full);
+    }
+
+    /**
+     * Close every open batch now, regardless of the cutoff. Completes once all files are written.
+     */
+    public CompletableFuture<List<Map<String, Object>>> closeAll() {
+        List<CompletableFuture<Map<String, Object>>> closing = new ArrayList<>();
+        for (OpenBatch batch : open.values()) {
+            List<PaymentTransaction> transactions;
+            synchronized (batch) {
+                transactions = batch.drain();
+            }
+            if (!transactions.isEmpty()) closing.add(submit(batch.gateway, transactions));
+        }
+        return CompletableFuture.allOf(closing.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<Map<String, Object>> summaries = new ArrayList<>(closing.size());
+            for (CompletableFuture<Map<String, Object>> f : closing) summaries.add(f.join());
+            return summaries;
+        });
+    }
+
+    public List<Map<String, Object>> recentBatches() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> pending = new TreeMap<>();
+        for (OpenBatch batch : open.values()) {
+            synchronized (batch) {
+                pending.put(batch.gateway, batch.transactions.size());
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("openBatches", pending);
+        stats.put("queued", queued.sum());
+        stats.put("batchesWritten", written.sum());
+        stats.put("settled", settled.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        stats.put("settleFailures", settleFailures.sum());
+        stats.put("cutoffs", cutoffs);
+        stats.put("nextCutoffAt", nextCutoffAt);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("outputDir", outputDir);
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private CompletableFuture<Map<String, Object>> submit(String gateway, List<PaymentTransaction> transactions) {
+        String batchNumber = gateway + "-" + LocalDateTime.now(ZoneOffset.UTC).format(BATCH_TIME) + "-" + sequence.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> writeBatch(gateway, batchNumber, transactions), writer);
+    }
+
+    /**
+     * Write a closed batch to its settlement file, then settle its transactions. Writer thread only.
+     */
+    private Map<String, Object> writeBatch(String gateway, String batchNumber, List<PaymentTransaction> transactions) {
+        long start = System.nanoTime();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("batchNumber", batchNumber);
+        summary.put("gateway", gateway);
+
+        // Only transactions still waiting for settlement go into the file
+        List<PaymentTransaction> included = new ArrayList<>(transactions.size());
+        for (PaymentTransaction transaction : transactions) {
+            if (transaction.getStatus() == TransactionStatus.CAPTURED) included.add(transaction);
+        }
+        Path file;
+        try {
+            file = writeFile(gateway, batchNumber, included);
+        } catch (IOException | RuntimeException e) {
+            writeFailures.increment();
+            System.err.println("Failed to write settlement batch " + batchNumber + ": " + e.getMessage());
+            // No file was produced: put the transactions back so the next cutoff retries them
+            OpenBatch batch = open.computeIfAbsent(gateway, OpenBatch::new);
+            synchronized (batch) {
+                batch.transactions.addAll(transactions);
+            }
+            summary.put("error", e.getMessage());
+            return finish(summary, start);
+        }
+        written.increment();
+
+        // The file is final from here on; a transaction that fails to settle stays out of later batches
+        SettlementHandler target = handler;
+        int settledNow = 0;
+        int failures = 0;
+        List<String> failedIds = new ArrayList<>();
+        for (PaymentTransaction transaction : included) {
+            if (target == null) break;
+            try {
+                if (target.onSettled(batchNumber, transaction)) settledNow++;
+            } catch (RuntimeException e) {
+                settleFailures.increment();
+                failures++;
+                if (failedIds.size() < MAX_REPORTED_FAILURES) failedIds.add(transaction.getTransactionId());
+                System.err.println("Failed to settle transaction " + transaction.getTransactionId()
+                    + " of batch " + batchNumber + ": " + e.getMessage());
+            }
+        }
+        settled.add(settledNow);
+        skipped.add(transactions.size() - settledNow);
+
+        summary.put("file", file.toString());
+        summary.put("transactions", included.size());
+        summary.put("settled", settledNow);
+        summary.put("skipped", transactions.size() - settledNow);
+        if (failures > 0) {
+            summary.put("settleFailures", failures);
+            summary.put("failedTransactions", failedIds);
+        }
+        return finish(summary, start);
+    }
+
+    private Map<String, Object> finish(Map<String, Object> summary, long start) {
+        summary.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        summary.put("closedAt", System.currentTimeMillis());
+        synchronized (recent) {
+            recent.addFirst(summary);
+            if (recent.size() > RECENT_BATCHES) recent.removeLast();
+        }
+        return summary;
+    }
+
+    private Path writeFile(String gateway, String batchNumber, List<PaymentTransaction> transactions) throws IOException {
+        Path dir = Paths.get(outputDir);
+        Files.createDirectories(dir);
+        Path file = dir.resolve(batchNumber + ".csv");
+        Path tmp = dir.resolve(batchNumber + ".csv.tmp");
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        ByteBuffer out = buffer;
+        out.clear();
+
+        long totalMinor = 0;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.put((byte) 'H').put((byte) ',');
+            putAscii(out, batchNumber);
+            out.put((byte) ',');
+            putAscii(out, gateway);
+            out.put((byte) ',');
+            putLong(out, System.currentTimeMillis());
+            out.put((byte) '\n');
+
+            for (PaymentTransaction transaction : transactions) {
+                if (out.remaining() < MAX_LINE_BYTES) drain(channel, out);
+                SettlementInfo info = transaction.getSettlementInfo();
+                AuthorizationInfo auth = transaction.getAuthorizationInfo();
+                long minor = Money.minorOf(transaction.getAmount(), Money.digits(transaction.getCurrency()));
+                totalMinor += minor;
+                out.put((byte) 'D').put((byte) ',');
+                putAscii(out, transaction.getTransactionId());
+                out.put((byte) ',');
+                putAscii(out, transaction.getReferenceNumber());
+                out.put((byte) ',');
+                putAscii(out, info != null ? info.getSettlementId() : null);
+                out.put((byte) ',');
+                putAscii(out, auth != null ? auth.getAuthorizationCode() : null);
+                out.put((byte) ',');
+                putLong(out, minor);
+                out.put((byte) ',');
+                putAscii(out, transaction.getCurrency());
+                out.put((byte) ',');
+                putLong(out, transaction.getCreatedAt());
+                out.put((byte) '\n');
+            }
+
+            if (out.remaining() < MAX_LINE_BYTES) drain(channel, out);
+            out.put((byte) 'T').put((byte) ',');
+            putLong(out, transactions.size());
+            out.put((byte) ',');
+            putLong(out, totalMinor);
+            out.put((byte) '\n');
+            drain(channel, out);
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * Field text as ASCII; separators and non-ASCII characters are replaced so a field
+     * can never break the line layout.
+     */
+    private static void putAscii(ByteBuffer out, String value) {
+        if (value == null) return;
+        int length = Math.min(value.length(), MAX_LINE_BYTES / 8);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            out.put(c < 0x20 || c > 0x7E || c == ',' ? (byte) '_' : (byte) c);
+        }
+    }
+
+    private static void putLong(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        if (value < 10) {
+            out.put((byte) ('0' + value));
+            return;
+        }
+        int start = out.position();
+        while (value > 0) {
+            out.put((byte) ('0' + value % 10));
+            value /= 10;
+        }
+        // Digits were written least significant first
+        for (int i = start, j = out.position() - 1; i < j; i++, j--) {
+            byte b = out.get(i);
+            out.put(i, out.get(j));
+            out.put(j, b);
+        }
+    }
+
+    private void scheduleNextCutoff() {
+        if (cutoffTimes.isEmpty()) return;
+        nextCutoffAt = nextCutoff(System.currentTimeMillis());
+        long delay = Math.max(0, nextCutoffAt - System.currentTimeMillis());
+        scheduler.schedule(this::cutoff, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cutoff() {
+        try {
+            if (handler != null && gate.isEnabled()) closeAll();
+        } catch (RuntimeException e) {
+            System.err.println("Settlement cutoff failed: " + e.getMessage());
+        } finally {
+            scheduleNextCutoff();
+        }
+    }
+
+    private long nextCutoff(long now) {
+        ZonedDateTime current = Instant.ofEpochMilli(now).atZone(ZoneOffset.UTC);
+        long best = Long.MAX_VALUE;
+        for (LocalTime time : cutoffTimes) {
+            ZonedDateTime candidate = current.toLocalDate().atTime(time).atZone(ZoneOffset.UTC);
+            if (!candidate.isAfter(current)) candidate = candidate.plusDays(1);
+            best = Math.min(best, candidate.toInstant().toEpochMilli());
+        }
+        return best;
+    }
+
+    private static List<LocalTime> parseCutoffs(String spec) {
+        List<LocalTime> times = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String trimmed = part.trim();
+            if (!trimmed.isEmpty()) times.add(LocalTime.parse(trimmed));
+        }
+        return times;
+    }
+
+    private static final class OpenBatch {
+        private final String gateway;
+        private List<PaymentTransaction> transactions = new ArrayList<>();
+
+        OpenBatch(String gateway) {
+            this.gateway = gateway;
+        }
+
+        List<PaymentTransaction> drain() {
+            List<PaymentTransaction> drained = transactions;
+            transactions = new ArrayList<>();
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.telecom.paymentprocessing.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Snowflake-style unique ids for reference and invoice numbers.
+ *
+ * An id packs 41 bits of milliseconds since 2024-01-01 UTC, a 10-bit node id,
+ * a 4-bit stripe and an 8-bit sequence into a positive long. Each thread is pinned
+ * to one of 16 stripes, so threads rarely share a counter; every stripe can issue
+ * 256 ids per millisecond, about 4 million per second per node. When a stripe runs
+ * out within a millisecond it moves on to the next millisecond rather than waiting
+ * for the clock, and it never moves backwards if the wall clock does.
+ *
+ * Ids are unique across instances as long as every instance has its own
+ * {@code payment.ids.node-id}, so the generator refuses to start without one. A node
+ * id derived from the host name and process id can clash with another instance's and
+ * silently repeat reference and invoice numbers; it is only used for a single local
+ * instance that sets {@code payment.ids.allow-derived-node-id=true}.
+ */
+@Component
+public class SnowflakeIdGenerator {
+
+    public static final long EPOCH_MS = 1704067200000L;  // 2024-01-01T00:00:00Z
+
+    private static final int SEQUENCE_BITS = 8;
+    private static final int STRIPE_BITS = 4;
+    private static final int NODE_BITS = 10;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final int STRIPE_SHIFT = SEQUENCE_BITS;
+    private static final int NODE_SHIFT = SEQUENCE_BITS + STRIPE_BITS;
+    private static final int TIME_SHIFT = SEQUENCE_BITS + STRIPE_BITS + NODE_BITS;
+
+    // Each stripe's state sits 128 bytes from its neighbours so stripes don't share a cache line
+    private static final int PADDING = 16;
+
+    // Widest positive long in decimal; ids are zero-padded to it so they sort by time
+    private static final int DIGITS = 19;
+
+    private static final AtomicInteger nextStripe = new AtomicInteger();
+    private static final ThreadLocal<Integer> threadStripe =
+        ThreadLocal.withInitial(() -> nextStripe.getAndIncrement() & (STRIPES - 1));
+
+    @Value("${payment.ids.node-id:-1}")
+    private int configuredNodeId = -1;
+
+    @Value("${payment.ids.allow-derived-node-id:false}")
+    private boolean allowDerivedNodeId = false;
+
+    // Per stripe: milliseconds since the epoch in the high bits, last sequence in the low bits
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPES * PADDING);
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder borrowedMs = new LongAdder();
+    private long nodeBits;
+    private int nodeId;
+
+    @PostConstruct
+    public void start() {
+        if (configuredNodeId < 0 && !allowDerivedNodeId) {
+            throw new IllegalStateException("payment.ids.node-id is not set; give every instance its own node id"
+                + " between 0 and " + MAX_NODE + " (set payment.ids.allow-derived-node-id=true only for a single local instance)");
+        }
+        nodeId = configuredNodeId >= 0 ? configuredNodeId : derivedNodeId();
+        if (nodeId > MAX_NODE) {
+            throw new IllegalStateException("payment.ids.node-id must be between 0 and " + MAX_NODE + ": " + nodeId);
+        }
+        if (configuredNodeId < 0) {
+            System.err.println("payment.ids.node-id not set; using derived node id " + nodeId + ", safe for a single instance only");
+        }
+        nodeBits = (long) nodeId << NODE_SHIFT;
+    }
+
+    /**
+     * Next id; never blocks.
+     */
+    public long nextId() {
+        int stripe = threadStripe.get();
+        int index = stripe * PADDING;
+        long now = System.currentTimeMillis() - EPOCH_MS;
+        while (true) {
+            long state = stripes.get(index);
+            long lastMs = state >>> SEQUENCE_BITS;
+            long ms;
+            long sequence;
+            boolean borrowed = false;
+            if (now > lastMs) {
+                ms = now;
+                sequence = 0;
+            } else if ((state & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                ms = lastMs;
+                sequence = (state & SEQUENCE_MASK) + 1;
+            } else {
+                // Stripe exhausted for this millisecond (or the clock stepped back): take the next one
+                ms = lastMs + 1;
+                sequence = 0;
+                borrowed = true;
+            }
+            if (stripes.compareAndSet(index, state, (ms << SEQUENCE_BITS) | sequence)) {
+                if (borrowed) borrowedMs.increment();
+                generated.increment();
+                return (ms << TIME_SHIFT) | nodeBits | ((long) stripe << STRIPE_SHIFT) | sequence;
+            }
+        }
+    }
+
+    public String nextReferenceNumber() {
+        return format("TXN-", nextId());
+    }
+
+    public String nextInvoiceNumber() {
+        return format("INV-", nextId());
+    }
+
+    /**
+     * Prefix followed by the id as 19 zero-padded decimal digits.
+     */
+    public static String format(String prefix, long id) {
+        int length = prefix.length();
+        char[] chars = new char[length + DIGITS];
+        prefix.getChars(0, length, chars, 0);
+        long value = id;
+        for (int i = chars.length - 1; i >= length; i--) {
+            chars[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        return new String(chars);
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH_MS;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> NODE_SHIFT) & MAX_NODE);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("nodeIdConfigured", configuredNodeId >= 0);
+        stats.put("stripes", STRIPES);
+        stats.put("generated", generated.sum());
+        stats.put("borrowedMs", borrowedMs.sum());
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private static int derivedNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        String name = host + "/" + ProcessHandle.current().pid();
+        int hash = name.hashCode();
+        hash ^= hash >>> 16;
+        return hash & MAX_NODE;
+    }
+}
@@ -0,0 +1,149 @@
+package com.telecom.paymentprocessing.service;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for deadlines far in the future.
+ *
+ * Four levels of 64 slots cover 64^4 ticks (about 194 days at one-second ticks);
+ * later deadlines wait in an overflow list. An entry sits in the coarsest level
+ * that can hold it and is moved down a level each time that level's slot comes
+ * round, so scheduling and firing are O(1) however many deadlines are pending.
+ * Cancellation is lazy: cancelled entries are dropped when their slot is reached.
+ *
+ * Not thread-safe; callers serialize access.
+ */
+public final class TimingWheel<T> {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /**
+     * A scheduled deadline; keep it to cancel the timer.
+     */
+    public static final class Timer<T> {
+        private final T payload;
+        private final long deadlineMs;
+        private final long deadlineTick;
+        private boolean cancelled;
+
+        Timer(T payload, long deadlineMs, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineMs = deadlineMs;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getPayload() { return payload; }
+        public long getDeadlineMs() { return deadlineMs; }
+        public boolean isCancelled() { return cancelled; }
+    }
+
+    private final long tickMs;
+    private final List<List<Timer<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+    private final List<Timer<T>> overflow = new ArrayList<>();
+    private final List<Timer<T>> due = new ArrayList<>();
+    private long currentTick;
+    private int pending;
+
+    public TimingWheel(long tickMs, long startMs) {
+        this.tickMs = tickMs;
+        this.currentTick = startMs / tickMs;
+        for (int i = 0; i < LEVELS * SLOTS; i++) slots.add(new ArrayList<>());
+    }
+
+    /**
+     * Schedule a payload for {@code deadlineMs}. Deadlines that have already
+     * passed fire on the next {@link #advance}.
+     */
+    public Timer<T> schedule(T payload, long deadlineMs) {
+        // Round up so a timer never fires before its deadline
+        Timer<T> timer = new Timer<>(payload, deadlineMs, Math.floorDiv(deadlineMs + tickMs - 1, tickMs));
+        place(timer);
+        pending++;
+        return timer;
+    }
+
+    public void cancel(Timer<T> timer) {
+        if (timer != null && !timer.cancelled) {
+            timer.cancelled = true;
+            pending--;
+        }
+    }
+
+    /**
+     * Move the clock to {@code nowMs}, handing every timer that is due to {@code fire}
+     * in deadline-tick order.
+     */
+    public int advance(long nowMs, Consumer<T> fire) {
+        long target = Math.floorDiv(nowMs, tickMs);
+        int fired = drain(due, fire);
+        while (currentTick < target) {
+            currentTick++;
+            // Cascade coarser levels whose slot boundary was just crossed, coarsest first
+            for (int level = LEVELS - 1; level >= 1; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    if (level == LEVELS - 1) cascade(overflow);
+                    cascade(slot(level, currentTick));
+                }
+            }
+            fired += drain(slot(0, currentTick), fire);
+            fired += drain(due, fire);
+            // Nothing left anywhere ahead of the target: jump instead of stepping tick by tick
+            if (pending == 0) currentTick = target;
+        }
+        return fired;
+    }
+
+    public int size() {
+        return pending;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private void place(Timer<T> timer) {
+        long delta = timer.deadlineTick - currentTick;
+        if (delta <= 0) {
+            due.add(timer);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < (1L << (SLOT_BITS * (level + 1)))) {
+                slot(level, timer.deadlineTick).add(timer);
+                return;
+            }
+        }
+        overflow.add(timer);
+    }
+
+    private List<Timer<T>> slot(int level, long tick) {
+        int index = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        return slots.get(level * SLOTS + index);
+    }
+
+    private void cascade(List<Timer<T>> bucket) {
+        if (bucket.isEmpty()) return;
+        List<Timer<T>> moving = new ArrayList<>(bucket);
+        bucket.clear();
+        for (Timer<T> timer : moving) {
+            if (!timer.cancelled) place(timer);
+        }
+    }
+
+    private int drain(List<Timer<T>> bucket, Consumer<T> fire) {
+        if (bucket.isEmpty()) return 0;
+        List<Timer<T>> firing = new ArrayList<>(bucket);
+        bucket.clear();
+        int fired = 0;
+        for (Timer<T> timer : firing) {
+            if (timer.cancelled) continue;
+            timer.cancelled = true;
+            pending--;
+            fire.accept(timer.payload);
+            fired++;
+        }
+        return fired;
+    }
+}
@@ -0,0 +1,690 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.CardDetails;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Vault mapping payment tokens to encrypted card numbers.
+ *
+ * Each card is one 64-byte record in memory-mapped segment files: the 128-bit token,
+ * a keyed hash of the PAN, and the PAN and expiry encrypted with AES-GCM (the token
+ * is both the nonce source and the associated data). Nothing but the two indexes
+ * lives on the heap: open-addressing tables of primitive longs and ints from token
+ * to record and from PAN hash to record, so tokenizing the same card again returns
+ * its existing token. The indexes are rebuilt from the records on start without
+ * decrypting anything.
+ *
+ * Lookups share a read lock and decrypt outside it; tokenizing takes the write lock.
+ * Records are written with their status byte last, so a torn record is ignored on
+ * restart. Pages are forced to disk after each batch and periodically.
+ *
+ * The master key never lives next to the records: it comes from
+ * {@code payment.vault.key} (e.g. the PAYMENT_VAULT_KEY environment variable) or a
+ * PKCS12 keystore. It is loaded on the first tokenize or detokenize, so the service
+ * starts without one while tokenization is off; those calls fail until it is set.
+ * Card data only leaves the vault through package-private calls made for gateway
+ * dispatch.
+ */
+@Component
+public class TokenVault {
+
+    public static final String TOKEN_PREFIX = "tok_";
+
+    private static final int RECORD_BYTES = 64;
+    private static final int STATUS = 0;
+    private static final int TOKEN_HI = 8;
+    private static final int TOKEN_LO = 16;
+    private static final int PAN_HASH = 24;
+    private static final int CIPHERTEXT = 32;
+    private static final int PLAINTEXT_BYTES = 12;      // 10 bytes of packed PAN digits, expiry month and year
+    private static final int TAG_BITS = 128;
+    private static final byte LIVE = 1;
+    private static final int MIN_PAN_DIGITS = 12;
+    private static final int MAX_PAN_DIGITS = 19;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Value("${payment.vault.dir:data/vault}")
+    private String dir = "data/vault";
+
+    @Value("${payment.vault.records-per-segment:1048576}")
+    private int recordsPerSegment = 1 << 20;
+
+    // Base64 of a 32-byte master key; when empty the key is read from the keystore below
+    @Value("${payment.vault.key:}")
+    private String masterKey = "";
+
+    // PKCS12 keystore holding the master key as a secret key entry; must be outside the vault directory
+    @Value("${payment.vault.keystore-path:}")
+    private String keystorePath = "";
+
+    @Value("${payment.vault.keystore-password:}")
+    private String keystorePassword = "";
+
+    @Value("${payment.vault.key-alias:token-vault}")
+    private String keyAlias = "token-vault";
+
+    @Value("${payment.vault.force-interval-ms:1000}")
+    private long forceIntervalMs = 1000;
+
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] tokenEntropy = new byte[16];  // guarded by the write lock
+    private final LongAdder tokenized = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder detokenized = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Open addressing: keys[i] is the token's high word or the PAN hash, slots[i] the record number + 1
+    private long[] tokenKeys;
+    private int[] tokenSlots;
+    private long[] panKeys;
+    private int[] panSlots;
+    private int records;
+
+    // Set once by ensureKeys(); keyed is written last and publishes the others
+    private volatile boolean keyed;
+    private SecretKeySpec encryptionKey;
+    private SecretKeySpec panHashKey;
+    private ThreadLocal<Cipher> ciphers;
+    private ThreadLocal<Mac> macs;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(Paths.get(dir));
+        if (!hasKeySource()) {
+            System.err.println("Token vault has no master key configured; tokenization will fail until"
+                + " payment.vault.key (PAYMENT_VAULT_KEY) or payment.vault.keystore-path is set");
+        }
+
+        // The indexes are rebuilt from plaintext fields, so recovery does not need the key
+        for (int i = 0; Files.exists(segmentPath(i)); i++) segments.add(map(i));
+        int capacity = 1024;
+        tokenKeys = new long[capacity];
+        tokenSlots = new int[capacity];
+        panKeys = new long[capacity];
+        panSlots = new int[capacity];
+        recover();
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "token-vault-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::force, forceIntervalMs, forceIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) flusher.shutdown();
+        force();
+    }
+
+    /**
+     * Token for a card, minting one if the PAN is not yet in the vault. Left for the
+     * periodic flush so the payment path does not wait on the disk.
+     */
+    public String tokenize(String cardNumber, String expiryMonth, String expiryYear) {
+        return tokenizeBatch(Collections.singletonList(card(cardNumber, expiryMonth, expiryYear))).get(0);
+    }
+
+    /**
+     * Tokens for a batch of cards, in order, under one lock acquisition and one flush.
+     */
+    public List<String> tokenizeAll(List<CardDetails> cards) {
+        List<String> tokens = tokenizeBatch(cards);
+        force();
+        return tokens;
+    }
+
+    /**
+     * Card number and expiry behind a token, or null if the vault does not know it.
+     * For gateway dispatch inside this service only; never expose it over the API.
+     */
+    CardDetails detokenize(String token) {
+        return detokenizeAll(Collections.singletonList(token)).get(0);
+    }
+
+    /**
+     * Cards for a batch of tokens, in order; unknown tokens map to null. Records are
+     * located under one read lock and decrypted after it is released. Internal, like
+     * {@link #detokenize}.
+     */
+    List<CardDetails> detokenizeAll(List<String> tokens) {
+        ensureKeys();
+        int n = tokens.size();
+        int[] found = new int[n];
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < n; i++) found[i] = findByToken(tokens.get(i));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<CardDetails> cards = new ArrayList<>(n);
+        byte[] plaintext = new byte[PLAINTEXT_BYTES];
+        for (int i = 0; i < n; i++) {
+            if (found[i] < 0) {
+                misses.increment();
+                cards.add(null);
+                continue;
+            }
+            decrypt(found[i], plaintext);
+            cards.add(cardOf(plaintext));
+            detokenized.increment();
+        }
+        Arrays.fill(plaintext, (byte) 0);
+        return cards;
+    }
+
+    /**
+     * Keyed fingerprint of a card number, the same one its tokens have (see
+     * {@link #tokenFingerprint}), so a card is recognised however it is presented.
+     * Null when the number is not a valid PAN or the vault has no key configured.
+     */
+    String fingerprint(String cardNumber) {
+        if (!hasKeySource()) return null;
+        String pan;
+        try {
+            pan = normalizePan(cardNumber);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        ensureKeys();
+        return Long.toHexString(panHash(pan));
+    }
+
+    /**
+     * Fingerprint of the card behind a token, read from its record without decrypting
+     * anything; null if the vault does not know the token.
+     */
+    String tokenFingerprint(String token) {
+        lock.readLock().lock();
+        try {
+            int record = findByToken(token);
+            if (record < 0) return null;
+            MappedByteBuffer segment = segments.get(record / recordsPerSegment);
+            return Long.toHexString(segment.getLong((record % recordsPerSegment) * RECORD_BYTES + PAN_HASH));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String token) {
+        lock.readLock().lock();
+        try {
+            return findByToken(token) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("records", records);
+            stats.put("indexCapacity", tokenKeys.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("keyLoaded", keyed);
+        stats.put("segments", segments.size());
+        stats.put("recordBytes", RECORD_BYTES);
+        stats.put("tokenized", tokenized.sum());
+        stats.put("reusedTokens", reused.sum());
+        stats.put("detokenized", detokenized.sum());
+        stats.put("unknownTokens", misses.sum());
+        stats.put("dir", dir);
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private List<String> tokenizeBatch(List<CardDetails> cards) {
+        ensureKeys();
+        int n = cards.size();
+        String[] pans = new String[n];
+        long[] hashes = new long[n];
+        byte[][] plaintexts = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            CardDetails card = cards.get(i);
+            pans[i] = normalizePan(card != null ? card.getCardNumber() : null);
+            hashes[i] = panHash(pans[i]);
+            plaintexts[i] = plaintext(pans[i], card.getExpiryMonth(), card.getExpiryYear());
+        }
+
+        List<String> tokens = new ArrayList<>(n);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < n; i++) {
+                int existing = findByPan(hashes[i], pans[i]);
+                if (existing >= 0) {
+                    reused.increment();
+                    tokens.add(tokenAt(existing));
+                    continue;
+                }
+                tokens.add(append(hashes[i], plaintexts[i]));
+                tokenized.increment();
+            }
+        } finally {
+            lock.writeLock().unlock();
+            for (byte[] plaintext : plaintexts) Arrays.fill(plaintext, (byte) 0);
+        }
+        return tokens;
+    }
+
+    private void recover() {
+        for (int s = 0; s < segments.size(); s++) {
+            MappedByteBuffer segment = segments.get(s);
+            for (int r = 0; r < recordsPerSegment; r++) {
+                int at = r * RECORD_BYTES;
+                if (segment.get(at + STATUS) != LIVE) return;
+                int record = records++;
+                ensureCapacity();
+                insert(tokenKeys, tokenSlots, segment.getLong(at + TOKEN_HI), record);
+                insert(panKeys, panSlots, segment.getLong(at + PAN_HASH), record);
+            }
+        }
+    }
+
+    /**
+     * Write a new record and index it; caller holds the write lock.
+     */
+    private String append(long panHash, byte[] plaintext) {
+        long hi;
+        long lo;
+        do {
+            // One call for both words; each SecureRandom call costs a read of the OS entropy source
+            random.nextBytes(tokenEntropy);
+            ByteBuffer bits = ByteBuffer.wrap(tokenEntropy);
+            hi = bits.getLong();
+            lo = bits.getLong();
+        } while (hi == 0 || probe(tokenKeys, tokenSlots, hi) >= 0);
+
+        int record = records;
+        int s = record / recordsPerSegment;
+        if (s == segments.size()) {
+            try {
+                segments.add(map(s));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open a new vault segment: " + e.getMessage(), e);
+            }
+        }
+        MappedByteBuffer segment = segments.get(s);
+        int at = (record % recordsPerSegment) * RECORD_BYTES;
+        byte[] ciphertext = encrypt(hi, lo, plaintext);
+        segment.putLong(at + TOKEN_HI, hi);
+        segment.putLong(at + TOKEN_LO, lo);
+        segment.putLong(at + PAN_HASH, panHash);
+        ByteBuffer out = segment.duplicate();
+        out.position(at + CIPHERTEXT);
+        out.put(ciphertext);
+        // Status last: until it is set the record does not exist
+        segment.put(at + STATUS, LIVE);
+
+        records++;
+        ensureCapacity();
+        insert(tokenKeys, tokenSlots, hi, record);
+        insert(panKeys, panSlots, panHash, record);
+        return format(hi, lo);
+    }
+
+    private int findByToken(String token) {
+        if (token == null || token.length() != TOKEN_PREFIX.length() + 32 || !token.startsWith(TOKEN_PREFIX)) return -1;
+        long hi = parseHex(token, TOKEN_PREFIX.length());
+        long lo = parseHex(token, TOKEN_PREFIX.length() + 16);
+        if (hi == 0) return -1;
+        int record = probe(tokenKeys, tokenSlots, hi);
+        if (record < 0) return -1;
+        MappedByteBuffer segment = segments.get(record / recordsPerSegment);
+        return segment.getLong((record % recordsPerSegment) * RECORD_BYTES + TOKEN_LO) == lo ? record : -1;
+    }
+
+    /**
+     * Record holding this PAN, or -1; PAN hashes can collide, so candidates are decrypted and compared.
+     */
+    private int findByPan(long hash, String pan) {
+        int mask = panKeys.length - 1;
+        byte[] plaintext = new byte[PLAINTEXT_BYTES];
+        for (int i = mix(hash) & mask; panSlots[i] != 0; i = (i + 1) & mask) {
+            if (panKeys[i] != hash) continue;
+            int record = panSlots[i] - 1;
+            decrypt(record, plaintext);
+            if (pan.equals(panOf(plaintext))) return record;
+        }
+        return -1;
+    }
+
+    private static int probe(long[] keys, int[] slots, long key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) return slots[i] - 1;
+        }
+        return -1;
+    }
+
+    private static void insert(long[] keys, int[] slots, long key, int record) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (slots[i] != 0) i = (i + 1) & mask;
+        keys[i] = key;
+        slots[i] = record + 1;
+    }
+
+    /**
+     * Keep both tables at most half full; rehashes in place of the old arrays.
+     */
+    private void ensureCapacity() {
+        if (records * 2 <= tokenKeys.length) return;
+        int capacity = tokenKeys.length * 2;
+        long[] oldTokenKeys = tokenKeys;
+        int[] oldTokenSlots = tokenSlots;
+        long[] oldPanKeys = panKeys;
+        int[] oldPanSlots = panSlots;
+        long[] newTokenKeys = new long[capacity];
+        int[] newTokenSlots = new int[capacity];
+        long[] newPanKeys = new long[capacity];
+        int[] newPanSlots = new int[capacity];
+        for (int i = 0; i < oldTokenSlots.length; i++) {
+            if (oldTokenSlots[i] != 0) insert(newTokenKeys, newTokenSlots, oldTokenKeys[i], oldTokenSlots[i] - 1);
+            if (oldPanSlots[i] != 0) insert(newPanKeys, newPanSlots, oldPanKeys[i], oldPanSlots[i] - 1);
+        }
+        tokenKeys = newTokenKeys;
+        tokenSlots = newTokenSlots;
+        panKeys = newPanKeys;
+        panSlots = newPanSlots;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private byte[] encrypt(long hi, long lo, byte[] plaintext) {
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, nonce(hi, lo)));
+            cipher.updateAAD(tokenBytes(hi, lo));
+            return cipher.doFinal(plaintext);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Vault encryption failed", e);
+        }
+    }
+
+    private void decrypt(int record, byte[] plaintext) {
+        MappedByteBuffer segment = segments.get(record / recordsPerSegment);
+        int at = (record % recordsPerSegment) * RECORD_BYTES;
+        long hi = segment.getLong(at + TOKEN_HI);
+        long lo = segment.getLong(at + TOKEN_LO);
+        byte[] ciphertext = new byte[PLAINTEXT_BYTES + TAG_BITS / 8];
+        ByteBuffer in = segment.duplicate();
+        in.position(at + CIPHERTEXT);
+        in.get(ciphertext);
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, nonce(hi, lo)));
+            cipher.updateAAD(tokenBytes(hi, lo));
+            cipher.doFinal(ciphertext, 0, ciphertext.length, plaintext, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Vault record " + record + " failed authentication", e);
+        }
+    }
+
+    /**
+     * 96-bit GCM nonce from the token, which is random and unique within the vault.
+     */
+    private static byte[] nonce(long hi, long lo) {
+        return ByteBuffer.allocate(12).putLong(hi).putInt((int) (lo >>> 32)).array();
+    }
+
+    private static byte[] tokenBytes(long hi, long lo) {
+        return ByteBuffer.allocate(16).putLong(hi).putLong(lo).array();
+    }
+
+    private long panHash(String pan) {
+        byte[] digest = macs.get().doFinal(pan.getBytes(StandardCharsets.US_ASCII));
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    /**
+     * PAN digits packed two per byte (0xF pads odd lengths and the unused tail),
+     * then expiry month and two-digit year.
+     */
+    private static byte[] plaintext(String pan, String expiryMonth, String expiryYear) {
+        byte[] out = new byte[PLAINTEXT_BYTES];
+        for (int i = 0; i < 20; i++) {
+            int nibble = i < pan.length() ? pan.charAt(i) - '0' : 0xF;
+            out[i / 2] |= (byte) (i % 2 == 0 ? nibble << 4 : nibble);
+        }
+        out[10] = (byte) parseOr(expiryMonth, 0);
+        out[11] = (byte) (parseOr(expiryYear, 0) % 100);
+        return out;
+    }
+
+    private static String panOf(byte[] plaintext) {
+        StringBuilder pan = new StringBuilder(MAX_PAN_DIGITS);
+        for (int i = 0; i < 20; i++) {
+            int nibble = (plaintext[i / 2] >> (i % 2 == 0 ? 4 : 0)) & 0xF;
+            if (nibble == 0xF) break;
+            pan.append((char) ('0' + nibble));
+        }
+        return pan.toString();
+    }
+
+    private static CardDetails cardOf(byte[] plaintext) {
+        CardDetails card = new CardDetails();
+        card.setCardNumber(panOf(plaintext));
+        if (plaintext[10] != 0) {
+            card.setExpiryMonth(plaintext[10] < 10 ? "0" + plaintext[10] : String.valueOf(plaintext[10]));
+            card.setExpiryYear(String.valueOf(2000 + plaintext[11]));
+        }
+        return card;
+    }
+
+    private static CardDetails card(String cardNumber, String expiryMonth, String expiryYear) {
+        CardDetails card = new CardDetails();
+        card.setCardNumber(cardNumber);
+        card.setExpiryMonth(expiryMonth);
+        card.setExpiryYear(expiryYear);
+        return card;
+    }
+
+    private static String normalizePan(String cardNumber) {
+        if (cardNumber == null) throw new IllegalArgumentException("Card number is required");
+        StringBuilder digits = new StringBuilder(MAX_PAN_DIGITS);
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            if (c >= '0' && c <= '9') digits.append(c);
+            else if (c != ' ' && c != '-') throw new IllegalArgumentException("Card number must be digits");
+        }
+        if (digits.length() < MIN_PAN_DIGITS || digits.length() > MAX_PAN_DIGITS) {
+            throw new IllegalArgumentException("Card number must have " + MIN_PAN_DIGITS + "-" + MAX_PAN_DIGITS + " digits");
+        }
+        return digits.toString();
+    }
+
+    private static int parseOr(String value, int fallback) {
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private String tokenAt(int record) {
+        MappedByteBuffer segment = segments.get(record / recordsPerSegment);
+        int at = (record % recordsPerSegment) * RECORD_BYTES;
+        return format(segment.getLong(at + TOKEN_HI), segment.getLong(at + TOKEN_LO));
+    }
+
+    private static String format(long hi, long lo) {
+        char[] chars = new char[TOKEN_PREFIX.length() + 32];
+        TOKEN_PREFIX.getChars(0, TOKEN_PREFIX.length(), chars, 0);
+        for (int i = 0; i < 16; i++) {
+            chars[TOKEN_PREFIX.length() + i] = HEX[(int) (hi >>> (60 - 4 * i)) & 0xF];
+            chars[TOKEN_PREFIX.length() + 16 + i] = HEX[(int) (lo >>> (60 - 4 * i)) & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static long parseHex(String token, int from) {
+        long value = 0;
+        for (int i = from; i < from + 16; i++) {
+            int digit = Character.digit(token.charAt(i), 16);
+            if (digit < 0) return 0;
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Derive the encryption and PAN index keys from the master key on first use.
+     */
+    private void ensureKeys() {
+        if (keyed) return;
+        synchronized (this) {
+            if (keyed) return;
+            try {
+                byte[] master = loadMasterKey();
+                encryptionKey = new SecretKeySpec(derive(master, "token-vault-encryption"), "AES");
+                panHashKey = new SecretKeySpec(derive(master, "token-vault-pan-index"), "HmacSHA256");
+                Arrays.fill(master, (byte) 0);
+            } catch (IOException | GeneralSecurityException e) {
+                throw new IllegalStateException("Failed to load the token vault master key: " + e.getMessage(), e);
+            }
+            ciphers = ThreadLocal.withInitial(() -> newInstance(() -> Cipher.getInstance("AES/GCM/NoPadding")));
+            macs = ThreadLocal.withInitial(() -> newInstance(() -> {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(panHashKey);
+                return mac;
+            }));
+            keyed = true;
+        }
+    }
+
+    private boolean hasKeySource() {
+        return (masterKey != null && !masterKey.trim().isEmpty())
+            || (keystorePath != null && !keystorePath.trim().isEmpty());
+    }
+
+    /**
+     * Master key from {@code payment.vault.key} or the configured keystore. Fails when
+     * neither is set, or when the keystore sits inside the vault directory, since
+     * whoever can read the records would then have the key as well.
+     */
+    private byte[] loadMasterKey() throws IOException, GeneralSecurityException {
+        byte[] key;
+        if (masterKey != null && !masterKey.trim().isEmpty()) {
+            try {
+                key = Base64.getDecoder().decode(masterKey.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("payment.vault.key is not valid base64");
+            }
+        } else if (keystorePath != null && !keystorePath.trim().isEmpty()) {
+            key = loadKeystoreKey(Paths.get(keystorePath.trim()));
+        } else {
+            String legacy = Files.exists(Paths.get(dir, "vault.key"))
+                ? "; move the key found at " + Paths.get(dir, "vault.key") + " out of the vault directory" : "";
+            throw new IllegalStateException("Token vault has no master key: set payment.vault.key (PAYMENT_VAULT_KEY)"
+                + " or payment.vault.keystore-path" + legacy);
+        }
+        if (key.length != 32) throw new IllegalStateException("The token vault master key must be 32 bytes");
+        return key;
+    }
+
+    private byte[] loadKeystoreKey(Path path) throws IOException, GeneralSecurityException {
+        Path vaultDir = Paths.get(dir).toAbsolutePath().normalize();
+        if (path.toAbsolutePath().normalize().startsWith(vaultDir)) {
+            throw new IllegalStateException("payment.vault.keystore-path must be outside the vault directory " + vaultDir);
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalStateException("Token vault keystore not found: " + path);
+        }
+        char[] password = keystorePassword != null ? keystorePassword.toCharArray() : new char[0];
+        try {
+            KeyStore keystore = KeyStore.getInstance("PKCS12");
+            try (InputStream in = Files.newInputStream(path)) {
+                keystore.load(in, password);
+            }
+            Key entry = keystore.getKey(keyAlias, password);
+            if (entry == null || entry.getEncoded() == null) {
+                throw new IllegalStateException("Token vault keystore " + path + " has no secret key '" + keyAlias + "'");
+            }
+            return entry.getEncoded();
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    private static byte[] derive(byte[] master, String purpose) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(master, "HmacSHA256"));
+        return mac.doFinal(purpose.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private interface CryptoFactory<T> {
+        T create() throws GeneralSecurityException;
+    }
+
+    private static <T> T newInstance(CryptoFactory<T> factory) {
+        try {
+            return factory.create();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Vault crypto unavailable", e);
+        }
+    }
+
+    private void force() {
+        // Records are only appended, so only the newest segments can have dirty pages
+        List<MappedByteBuffer> toForce = segments.subList(Math.max(0, segments.size() - 2), segments.size());
+        for (MappedByteBuffer segment : toForce) {
+            try {
+                segment.force();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to force vault segment: " + e.getMessage());
+            }
+        }
+    }
+
+    private MappedByteBuffer map(int index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_BYTES);
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return Paths.get(dir, String.format("vault-%06d.dat", index));
+    }
+}
@@ -0,0 +1,257 @@
+package com.telecom.paymentprocessing.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sliding-window payment velocity per customer and per card.
+ *
+ * Every tracked key owns one fixed-size ring of time buckets for each window
+ * (1 minute in 5 s buckets, 1 hour in 1 min buckets, 24 hours in 1 h buckets),
+ * holding the transaction count and the amount in minor units. Each bucket word
+ * carries the bucket's epoch in its high bits, so a stale bucket is reset and
+ * incremented by the same CAS and recording never takes a lock. Keys that have
+ * been idle longer than the longest window are evicted by a background sweep.
+ */
+@Component
+public class VelocityTracker {
+
+    private static final int VALUE_BITS = 40;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long TAG_MASK = (1L << (64 - VALUE_BITS)) - 1;
+
+    private static final Window[] WINDOWS = {
+        new Window("lastMinute", 5000L, 12, 0),
+        new Window("lastHour", 60000L, 60, 12),
+        new Window("lastDay", 3600000L, 24, 72)
+    };
+    private static final int BUCKETS = 96;
+
+    @Value("${payment.velocity.idle-eviction-ms:90000000}")
+    private long idleEvictionMs = 90000000;
+
+    @Value("${payment.velocity.sweep-interval-ms:300000}")
+    private long sweepIntervalMs = 300000;
+
+    @Value("${payment.velocity.minute-count-limit:5}")
+    private int minuteCountLimit = 5;
+
+    @Value("${payment.velocity.hour-count-limit:20}")
+    private int hourCountLimit = 20;
+
+    @Value("${payment.velocity.day-count-limit:60}")
+    private int dayCountLimit = 60;
+
+    @Value("${payment.velocity.day-amount-limit:10000}")
+    private double dayAmountLimit = 10000;
+
+    private final Map<String, Counters> customers = new ConcurrentHashMap<>();
+    private final Map<String, Counters> cards = new ConcurrentHashMap<>();
+    private final long origin = System.currentTimeMillis();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "velocity-eviction");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::evictIdleQuietly, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    /**
+     * Count one payment attempt against the customer and, if known, the card.
+     */
+    public void record(String customerId, String cardKey, double amount) {
+        long now = System.currentTimeMillis();
+        long minorUnits = Math.min(VALUE_MASK, Math.max(0, Math.round(amount * 100)));
+        if (customerId != null) add(customers, customerId, now, minorUnits);
+        if (cardKey != null) add(cards, cardKey, now, minorUnits);
+        recorded.increment();
+    }
+
+    /**
+     * Velocity risk in [0.15, 1]: the highest ratio of observed activity to its
+     * configured limit over all windows of the customer and the card.
+     */
+    public double score(String customerId, String cardKey) {
+        long now = System.currentTimeMillis();
+        double ratio = Math.max(ratio(customers.get(customerId), now), cardKey != null ? ratio(cards.get(cardKey), now) : 0);
+        return Math.max(0.15, Math.min(1.0, ratio));
+    }
+
+    /**
+     * Window totals for a customer; all zero if the customer has no recent activity.
+     */
+    public Map<String, Object> customerVelocity(String customerId) {
+        long now = System.currentTimeMillis();
+        Counters counters = customers.get(customerId);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("customerId", customerId);
+        for (Window window : WINDOWS) {
+            long[] totals = counters != null ? counters.totals(window, now - origin) : new long[2];
+            Map<String, Object> w = new LinkedHashMap<>();
+            w.put("count", totals[0]);
+            w.put("amount", totals[1] / 100.0);
+            result.put(window.name, w);
+        }
+        result.put("score", score(customerId, null));
+        return result;
+    }
+
+    /**
+     * Drop keys with no activity for longer than the idle threshold.
+     */
+    public int evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleEvictionMs;
+        return evictIdle(customers, cutoff) + evictIdle(cards, cutoff);
+    }
+
+    public Map<String, Object> stats() {
+        int keys = customers.size() + cards.size();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("trackedCustomers", customers.size());
+        stats.put("trackedCards", cards.size());
+        stats.put("recorded", recorded.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("bytesPerKey", Counters.APPROX_BYTES);
+        stats.put("approxBytes", (long) keys * Counters.APPROX_BYTES);
+        stats.put("idleEvictionMs", idleEvictionMs);
+        stats.put("limits", Map.of(
+            "minuteCount", minuteCountLimit,
+            "hourCount", hourCountLimit,
+            "dayCount", dayCountLimit,
+            "dayAmount", dayAmountLimit));
+        return stats;
+    }
+
+    // ============ Private Helper Methods ============
+
+    private void add(Map<String, Counters> keys, String key, long now, long minorUnits) {
+        while (true) {
+            Counters counters = keys.computeIfAbsent(key, k -> new Counters());
+            counters.add(now, now - origin, minorUnits);
+            // Raced with eviction: the update landed on a detached ring, so repeat it on a fresh one
+            if (!counters.retired) return;
+        }
+    }
+
+    private double ratio(Counters counters, long now) {
+        if (counters == null) return 0;
+        long[] minute = counters.totals(WINDOWS[0], now - origin);
+        long[] hour = counters.totals(WINDOWS[1], now - origin);
+        long[] day = counters.totals(WINDOWS[2], now - origin);
+        double r = (double) minute[0] / minuteCountLimit;
+        r = Math.max(r, (double) hour[0] / hourCountLimit);
+        r = Math.max(r, (double) day[0] / dayCountLimit);
+        return Math.max(r, day[1] / 100.0 / dayAmountLimit);
+    }
+
+    private int evictIdle(Map<String, Counters> keys, long cutoff) {
+        int removed = 0;
+        for (String key : keys.keySet()) {
+            boolean[] dropped = new boolean[1];
+            keys.computeIfPresent(key, (k, counters) -> {
+                if (counters.lastSeen >= cutoff) return counters;
+                counters.retired = true;
+                dropped[0] = true;
+                return null;
+            });
+            if (dropped[0]) removed++;
+        }
+        evicted.add(removed);
+        return removed;
+    }
+
+    private void evictIdleQuietly() {
+        try {
+            evictIdle();
+        } catch (RuntimeException e) {
+            System.err.println("Velocity eviction failed: " + e.getMessage());
+        }
+    }
+
+    private static final class Window {
+        private final String name;
+        private final long bucketMillis;
+        private final int buckets;
+        private final int offset;
+
+        Window(String name, long bucketMillis, int buckets, int offset) {
+            this.name = name;
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Rings for all windows of one key in a single array: per bucket a count word
+     * and an amount word, each packed as (epoch tag << 40 | value).
+     */
+    private static final class Counters {
+        static final int APPROX_BYTES = BUCKETS * 2 * 8 + 64;
+
+        private final AtomicLongArray words = new AtomicLongArray(BUCKETS * 2);
+        private volatile long lastSeen;
+        private volatile boolean retired;
+
+        void add(long now, long elapsed, long minorUnits) {
+            elapsed = Math.max(0, elapsed);
+            for (Window window : WINDOWS) {
+                long epoch = elapsed / window.bucketMillis;
+                int index = (window.offset + (int) (epoch % window.buckets)) * 2;
+                increment(index, epoch, 1);
+                increment(index + 1, epoch, minorUnits);
+            }
+            lastSeen = now;
+        }
+
+        /**
+         * {count, amount in minor units} over the buckets still inside the window,
+         * {@code elapsed} being milliseconds since the tracker started.
+         */
+        long[] totals(Window window, long elapsed) {
+            long current = Math.max(0, elapsed) / window.bucketMillis;
+            long[] totals = new long[2];
+            for (int age = 0; age < window.buckets && age <= current; age++) {
+                long epoch = current - age;
+                int index = (window.offset + (int) (epoch % window.buckets)) * 2;
+                long tag = epoch & TAG_MASK;
+                long count = words.get(index);
+                long amount = words.get(index + 1);
+                if ((count >>> VALUE_BITS) == tag) totals[0] += count & VALUE_MASK;
+                if ((amount >>> VALUE_BITS) == tag) totals[1] += amount & VALUE_MASK;
+            }
+            return totals;
+        }
+
+        private void increment(int index, long epoch, long delta) {
+            long tag = epoch & TAG_MASK;
+            while (true) {
+                long word = words.get(index);
+                long value = (word >>> VALUE_BITS) == tag ? word & VALUE_MASK : 0;
+                long next = (tag << VALUE_BITS) | Math.min(VALUE_MASK, value + delta);
+                if (word == next || words.compareAndSet(index, word, next)) return;
+            }
+        }
+    }
+}
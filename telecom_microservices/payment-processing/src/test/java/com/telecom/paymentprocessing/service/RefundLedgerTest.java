@@ -0,0 +1,141 @@
+package com.telecom.paymentprocessing.service;
+
+import com.telecom.paymentprocessing.model.Money;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Refund ledger: concurrent partial refunds never add up to more than was captured,
+ * and released reservations become refundable again. The throughput benchmark is
+ * tagged "perf" and only runs with -Dperf=true; it publishes refunds/s as report
+ * entries and does not assert on speed.
+ */
+class RefundLedgerTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    void rejectsRefundsBeyondTheCapturedAmount() {
+        RefundLedger ledger = new RefundLedger();
+        Money captured = Money.of(100.00, "USD");
+
+        assertEquals(Money.of(60.00, "USD"), ledger.reserve("T1", captured, Money.of(60.00, "USD")));
+        assertThrows(RefundLedger.OverRefundException.class, () -> ledger.reserve("T1", captured, Money.of(40.01, "USD")));
+        assertEquals(captured, ledger.reserve("T1", captured, Money.of(40.00, "USD")));
+        assertThrows(RefundLedger.OverRefundException.class, () -> ledger.reserve("T1", captured, Money.of(0.01, "USD")));
+
+        assertThrows(IllegalArgumentException.class, () -> ledger.reserve("T2", captured, Money.of(0, "USD")));
+        assertThrows(IllegalArgumentException.class, () -> ledger.reserve("T2", captured, Money.of(1, "EUR")));
+    }
+
+    @Test
+    void releasedReservationIsRefundableAgain() {
+        RefundLedger ledger = new RefundLedger();
+        Money captured = Money.of(50, "JPY");
+        ledger.reserve("T1", captured, Money.of(50, "JPY"));
+        ledger.release("T1", Money.of(20, "JPY"));
+
+        assertEquals(20.0, ledger.balance("T1", captured).get("refundable"));
+        assertEquals(captured, ledger.reserve("T1", captured, Money.of(20, "JPY")));
+    }
+
+    @Test
+    void concurrentPartialRefundsNeverOverRefund() throws Exception {
+        RefundLedger ledger = new RefundLedger();
+        int rounds = 200;
+        for (int round = 0; round < rounds; round++) {
+            String transactionId = "T" + round;
+            Money captured = Money.ofMinor(10_000 + round, "USD");
+            AtomicLong accepted = new AtomicLong();
+            CountDownLatch go = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Thread worker = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    await(go);
+                    for (int i = 0; i < 50; i++) {
+                        Money amount = Money.ofMinor(1 + random.nextInt(1_500), "USD");
+                        try {
+                            ledger.reserve(transactionId, captured, amount);
+                        } catch (RefundLedger.OverRefundException e) {
+                            continue;
+                        }
+                        // Some refunds fail downstream and give their reservation back
+                        if (random.nextInt(4) == 0) {
+                            ledger.release(transactionId, amount);
+                        } else {
+                            accepted.addAndGet(amount.getMinorUnits());
+                        }
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            go.countDown();
+            for (Thread worker : workers) worker.join();
+
+            long refunded = Money.minorOf((Double) ledger.balance(transactionId, captured).get("refunded"), 2);
+            assertEquals(accepted.get(), refunded, "ledger total matches the refunds that went ahead");
+            assertTrue(refunded <= captured.getMinorUnits(), "refunded " + refunded + " of " + captured);
+        }
+        assertTrue(((Number) ledger.stats().get("rejected")).longValue() > 0, "the race was exercised");
+    }
+
+    @Test
+    @Tag("perf")
+    @EnabledIfSystemProperty(named = "perf", matches = "true")
+    void refundThroughput(TestReporter reporter) throws Exception {
+        benchmark(reporter, "distinct transactions", false);
+        benchmark(reporter, "one hot transaction", true);
+    }
+
+    private static void benchmark(TestReporter reporter, String label, boolean hot) throws Exception {
+        RefundLedger ledger = new RefundLedger();
+        int perThread = 200_000;
+        Money captured = Money.ofMinor(Long.MAX_VALUE / 2, "USD");
+        Money amount = Money.ofMinor(1, "USD");
+        String[][] ids = new String[THREADS][perThread];
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < perThread; i++) ids[t][i] = hot ? "HOT" : "T" + ((t * perThread + i) % 100_000);
+        }
+
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String[] own = ids[t];
+            Thread worker = new Thread(() -> {
+                await(go);
+                for (String id : own) ledger.reserve(id, captured, amount);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers) worker.join();
+        long elapsed = System.nanoTime() - start;
+
+        long refunds = (long) THREADS * perThread;
+        assertEquals(refunds, ((Number) ledger.stats().get("reserved")).longValue());
+        reporter.publishEntry("RefundLedger (" + label + ")", String.format(
+            "%d refunds on %d threads in %d ms, %.1f M refunds/s, %d CAS retries",
+            refunds, THREADS, elapsed / 1_000_000, refunds * 1000.0 / elapsed, ledger.stats().get("casRetries")));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.telecom.paymentprocessing.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uniqueness of Snowflake ids under contention, across nodes and when a stripe
+ * runs out of sequence numbers within a millisecond.
+ */
+class SnowflakeIdGeneratorTest {
+
+    private static SnowflakeIdGenerator generator(int nodeId) {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+        ReflectionTestUtils.setField(generator, "configuredNodeId", nodeId);
+        generator.start();
+        return generator;
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        SnowflakeIdGenerator generator = generator(7);
+        // More threads than stripes, so some threads share a stripe and race on its CAS
+        int threads = 24;
+        int perThread = 100_000;
+        long[][] ids = new long[threads][perThread];
+
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long[] out = ids[t];
+            Thread worker = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < out.length; i++) out[i] = generator.nextId();
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        go.countDown();
+        for (Thread worker : workers) worker.join();
+
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                long id = ids[t][i];
+                assertTrue(id > 0, "ids are positive");
+                assertEquals(7, SnowflakeIdGenerator.nodeOf(id));
+                // A thread sees its own ids strictly increasing
+                if (i > 0) assertTrue(id > ids[t][i - 1], "ids of one thread increase");
+            }
+            System.arraycopy(ids[t], 0, all, t * perThread, perThread);
+        }
+        assertNoDuplicates(all);
+        assertEquals((long) all.length, ((Number) generator.stats().get("generated")).longValue());
+    }
+
+    @Test
+    void exhaustedStripeBorrowsTheNextMillisecond() {
+        SnowflakeIdGenerator generator = generator(1);
+        // One thread, one stripe: far more than 256 ids per millisecond
+        long[] ids = new long[200_000];
+        for (int i = 0; i < ids.length; i++) ids[i] = generator.nextId();
+
+        for (int i = 1; i < ids.length; i++) assertTrue(ids[i] > ids[i - 1]);
+        assertNoDuplicates(ids.clone());
+        assertTrue(((Number) generator.stats().get("borrowedMs")).longValue() > 0, "stripe ran out at least once");
+        // Borrowing never runs far ahead of the clock
+        long last = SnowflakeIdGenerator.timestampOf(ids[ids.length - 1]);
+        assertTrue(last - System.currentTimeMillis() < 1000, "ids stay close to the wall clock");
+    }
+
+    @Test
+    void generatorsWithDifferentNodesNeverCollide() {
+        SnowflakeIdGenerator first = generator(1);
+        SnowflakeIdGenerator second = generator(2);
+        int count = 100_000;
+        long[] ids = new long[count * 2];
+        for (int i = 0; i < count; i++) {
+            ids[2 * i] = first.nextId();
+            ids[2 * i + 1] = second.nextId();
+        }
+        assertNoDuplicates(ids);
+    }
+
+    @Test
+    void formattedIdsSortByTime() {
+        SnowflakeIdGenerator generator = generator(3);
+        String previous = null;
+        for (int i = 0; i < 10_000; i++) {
+            String reference = generator.nextReferenceNumber();
+            assertEquals("TXN-".length() + 19, reference.length());
+            if (previous != null) assertTrue(reference.compareTo(previous) > 0);
+            previous = reference;
+        }
+        assertEquals("INV-0000000000000000042", SnowflakeIdGenerator.format("INV-", 42));
+    }
+
+    @Test
+    void rejectsNodeIdsOutOfRange() {
+        assertThrows(IllegalStateException.class, () -> generator(1024));
+    }
+
+    @Test
+    void requiresANodeIdUnlessDerivingIsAllowed() {
+        assertThrows(IllegalStateException.class, () -> generator(-1));
+
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+        ReflectionTestUtils.setField(generator, "allowDerivedNodeId", true);
+        generator.start();
+        assertEquals(false, generator.stats().get("nodeIdConfigured"));
+        assertEquals(generator.stats().get("nodeId"), SnowflakeIdGenerator.nodeOf(generator.nextId()));
+    }
+
+    private static void assertNoDuplicates(long[] ids) {
+        Arrays.sort(ids);
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] == ids[i - 1]) fail("Duplicate id " + ids[i]);
+        }
+    }
+}